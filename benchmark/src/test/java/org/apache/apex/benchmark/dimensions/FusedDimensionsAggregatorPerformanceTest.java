@@ -0,0 +1,174 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.apex.benchmark.dimensions;
+
+import java.util.List;
+import java.util.Random;
+
+import org.junit.Test;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import org.apache.apex.malhar.lib.appdata.gpo.GPOMutable;
+import org.apache.apex.malhar.lib.appdata.schemas.DimensionalConfigurationSchema;
+import org.apache.apex.malhar.lib.dimensions.DimensionsEvent.Aggregate;
+import org.apache.apex.malhar.lib.dimensions.DimensionsEvent.EventKey;
+import org.apache.apex.malhar.lib.dimensions.DimensionsEvent.InputEvent;
+import org.apache.apex.malhar.lib.dimensions.aggregator.AggregatorRegistry;
+import org.apache.apex.malhar.lib.dimensions.aggregator.FusedDimensionsAggregator;
+import org.apache.apex.malhar.lib.dimensions.aggregator.IncrementalAggregator;
+
+import com.google.common.collect.Lists;
+
+import it.unimi.dsi.fastutil.objects.Object2ObjectOpenCustomHashMap;
+
+/**
+ * Compares the {@link FusedDimensionsAggregator} with the aggregation of each {@link IncrementalAggregator} of the
+ * {@link AggregatorRegistry} in its own hash map, for a schema with 20 measures and 8 dimensions combinations.
+ */
+public class FusedDimensionsAggregatorPerformanceTest
+{
+  private static final transient Logger logger =
+      LoggerFactory.getLogger(FusedDimensionsAggregatorPerformanceTest.class);
+  private static final int MEASURES = 20;
+  private static final int ROUNDS = 3;
+  private static final String[] PUBLISHERS = {"twitter", "facebook", "yahoo", "google", "bing", "amazon"};
+  private static final String[] ADVERTISERS = {"starbucks", "safeway", "mcdonalds", "macys", "taco bell", "walmart"};
+  private static final String[] LOCATIONS = {"N", "LREC", "SKY", "AL", "AK", "AZ", "AR", "CA", "CO", "CT"};
+
+  private int eventsPerWindow = 100000;
+  private int windows = 5;
+
+  @Test
+  public void testCompareAggregation()
+  {
+    DimensionalConfigurationSchema schema = new DimensionalConfigurationSchema(createSchema(),
+        AggregatorRegistry.newDefaultAggregatorRegistry());
+    FusedDimensionsAggregator fused = new FusedDimensionsAggregator(schema, 1);
+    List<InputEvent> inputEvents = createInputEvents(schema);
+    int dimensionsCombinations = schema.getDimensionsDescriptorIDToDimensionsDescriptor().size();
+
+    List<IncrementalAggregator> aggregators = Lists.newArrayList();
+    List<Integer> aggregatorIDs = Lists.newArrayList();
+    for (int ddID = 0; ddID < dimensionsCombinations; ddID++) {
+      aggregators.addAll(fused.getIncrementalAggregators(ddID));
+      aggregatorIDs.addAll(schema.getDimensionsDescriptorIDToIncrementalAggregatorIDs().get(ddID));
+    }
+
+    for (int round = 0; round < ROUNDS; round++) {
+      long aggregates = 0;
+      long beginTime = System.currentTimeMillis();
+      for (int window = 0; window < windows; window++) {
+        List<Object2ObjectOpenCustomHashMap<InputEvent, Aggregate>> maps = Lists.newArrayList();
+        for (IncrementalAggregator aggregator : aggregators) {
+          maps.add(new Object2ObjectOpenCustomHashMap<InputEvent, Aggregate>(aggregator));
+        }
+
+        for (InputEvent inputEvent : inputEvents) {
+          for (int index = 0; index < aggregators.size(); index++) {
+            IncrementalAggregator aggregator = aggregators.get(index);
+            Object2ObjectOpenCustomHashMap<InputEvent, Aggregate> map = maps.get(index);
+            Aggregate aggregate = map.get(inputEvent);
+            if (aggregate == null) {
+              aggregate = aggregator.getGroup(inputEvent, aggregatorIDs.get(index));
+              map.put(inputEvent, aggregate);
+            }
+            aggregator.aggregate(aggregate, inputEvent);
+          }
+        }
+
+        for (Object2ObjectOpenCustomHashMap<InputEvent, Aggregate> map : maps) {
+          aggregates += map.size();
+        }
+      }
+      long registryCost = System.currentTimeMillis() - beginTime;
+
+      long fusedAggregates = 0;
+      beginTime = System.currentTimeMillis();
+      for (int window = 0; window < windows; window++) {
+        for (InputEvent inputEvent : inputEvents) {
+          fused.aggregate(inputEvent);
+        }
+        fusedAggregates += fused.flush().size();
+      }
+      long fusedCost = System.currentTimeMillis() - beginTime;
+
+      logger.info("Aggregator registry: {} ms for {} aggregates; fused: {} ms for {} aggregates", registryCost,
+          aggregates, fusedCost, fusedAggregates);
+    }
+
+    long events = (long)eventsPerWindow * windows;
+    logger.info("{} aggregators over {} dimensions combinations, {} events", aggregators.size(),
+        dimensionsCombinations, events);
+  }
+
+  protected String createSchema()
+  {
+    StringBuilder values = new StringBuilder();
+    String[] aggregators = {"[\"SUM\",\"COUNT\"]", "[\"SUM\",\"MIN\",\"MAX\"]", "[\"SUM\"]", "[\"MAX\",\"LAST\"]"};
+    for (int measure = 0; measure < MEASURES; measure++) {
+      if (measure > 0) {
+        values.append(",\n");
+      }
+      values.append("{\"name\":\"measure").append(measure).append("\",\"type\":\"")
+          .append(measure % 2 == 0 ? "long" : "double").append("\",\"aggregators\":")
+          .append(aggregators[measure % aggregators.length]).append('}');
+    }
+
+    return "{\"keys\":[{\"name\":\"publisher\",\"type\":\"string\"},\n" +
+        "{\"name\":\"advertiser\",\"type\":\"string\"},\n" +
+        "{\"name\":\"location\",\"type\":\"string\"}],\n" +
+        "\"timeBuckets\":[\"1m\"],\n" +
+        "\"values\":[" + values + "],\n" +
+        "\"dimensions\":[{\"combination\":[]},\n" +
+        "{\"combination\":[\"location\"]},\n" +
+        "{\"combination\":[\"advertiser\"]},\n" +
+        "{\"combination\":[\"publisher\"]},\n" +
+        "{\"combination\":[\"advertiser\",\"location\"]},\n" +
+        "{\"combination\":[\"publisher\",\"location\"]},\n" +
+        "{\"combination\":[\"publisher\",\"advertiser\"]},\n" +
+        "{\"combination\":[\"publisher\",\"advertiser\",\"location\"]}]}";
+  }
+
+  protected List<InputEvent> createInputEvents(DimensionalConfigurationSchema schema)
+  {
+    Random random = new Random();
+    List<InputEvent> inputEvents = Lists.newArrayList();
+    long time = System.currentTimeMillis();
+
+    for (int index = 0; index < eventsPerWindow; index++) {
+      GPOMutable keys = new GPOMutable(schema.getKeyDescriptorWithTime());
+      keys.setField("publisher", PUBLISHERS[random.nextInt(PUBLISHERS.length)]);
+      keys.setField("advertiser", ADVERTISERS[random.nextInt(ADVERTISERS.length)]);
+      keys.setField("location", LOCATIONS[random.nextInt(LOCATIONS.length)]);
+      keys.setField("time", time);
+
+      GPOMutable values = new GPOMutable(schema.getInputValuesDescriptor());
+      for (int measure = 0; measure < MEASURES; measure++) {
+        if (measure % 2 == 0) {
+          values.setField("measure" + measure, (long)random.nextInt(1000));
+        } else {
+          values.setField("measure" + measure, random.nextDouble());
+        }
+      }
+      inputEvents.add(new InputEvent(new EventKey(1, 0, 0, keys), values));
+    }
+    return inputEvents;
+  }
+}
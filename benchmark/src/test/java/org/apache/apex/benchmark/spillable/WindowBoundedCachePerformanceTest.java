@@ -0,0 +1,95 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.apex.benchmark.spillable;
+
+import java.util.Random;
+
+import org.junit.Test;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import org.apache.apex.malhar.lib.state.spillable.WindowBoundedCache;
+import org.apache.apex.malhar.lib.state.spillable.WindowBoundedMapCache;
+import org.apache.apex.malhar.lib.utils.serde.LongSerde;
+import org.apache.apex.malhar.lib.utils.serde.Serde;
+import org.apache.apex.malhar.lib.utils.serde.StringSerde;
+
+/**
+ * Compares the cost of the caches of the spillable data structures for a keyed aggregation: every tuple reads the
+ * value of its key and puts the updated value, and the changed keys are iterated at the end of the window.
+ */
+public class WindowBoundedCachePerformanceTest
+{
+  private static final transient Logger logger = LoggerFactory.getLogger(WindowBoundedCachePerformanceTest.class);
+  private static final int numberOfKeys = 200000;
+  private static final int tuplesPerWindow = 10000;
+  private static final int numberOfWindows = 500;
+  private static final int warmUpWindows = 100;
+
+  @Test
+  public void testCompareCachesForLongKeys()
+  {
+    Long[] keys = new Long[numberOfKeys];
+    for (int i = 0; i < keys.length; i++) {
+      keys[i] = (long)i;
+    }
+    compare(keys, new LongSerde());
+  }
+
+  @Test
+  public void testCompareCachesForStringKeys()
+  {
+    String[] keys = new String[numberOfKeys];
+    for (int i = 0; i < keys.length; i++) {
+      keys[i] = "key" + i;
+    }
+    compare(keys, new StringSerde());
+  }
+
+  protected <K> void compare(K[] keys, Serde<K> keySerde)
+  {
+    for (WindowBoundedCache.Type type : WindowBoundedCache.Type.values()) {
+      WindowBoundedCache<K, Long> cache = type.newCache(keySerde, WindowBoundedMapCache.DEFAULT_MAX_SIZE);
+      run(cache, keys, warmUpWindows);
+      long beginTime = System.currentTimeMillis();
+      long checksum = run(cache, keys, numberOfWindows);
+      logger.info("{} cost for {} keys: {} ms, checksum {}", cache.getClass().getSimpleName(),
+          keys[0].getClass().getSimpleName(), System.currentTimeMillis() - beginTime, checksum);
+    }
+  }
+
+  protected <K> long run(WindowBoundedCache<K, Long> cache, K[] keys, int windows)
+  {
+    Random random = new Random(0);
+    long checksum = 0;
+    for (int window = 0; window < windows; window++) {
+      for (int i = 0; i < tuplesPerWindow; i++) {
+        // skewed keys, so that the hot keys stay in the cache
+        K key = keys[(int)(keys.length * Math.pow(random.nextDouble(), 4))];
+        Long value = cache.get(key);
+        cache.put(key, value == null ? 1L : value + 1);
+      }
+      for (K key : cache.getChangedKeys()) {
+        checksum += cache.get(key);
+      }
+      cache.endWindow();
+    }
+    return checksum;
+  }
+}
@@ -0,0 +1,169 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.apex.benchmark.util.serde;
+
+import java.nio.ByteBuffer;
+import java.util.Map;
+
+import org.junit.Test;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import org.apache.apex.malhar.lib.appdata.gpo.GPOByteArrayList;
+import org.apache.apex.malhar.lib.appdata.gpo.GPOFlyweight;
+import org.apache.apex.malhar.lib.appdata.gpo.GPOMutable;
+import org.apache.apex.malhar.lib.appdata.gpo.GPOSerializer;
+import org.apache.apex.malhar.lib.appdata.gpo.GPOUtils;
+import org.apache.apex.malhar.lib.appdata.schemas.FieldsDescriptor;
+import org.apache.apex.malhar.lib.appdata.schemas.Type;
+import org.apache.apex.malhar.lib.utils.serde.SerializationBuffer;
+import org.apache.commons.lang3.mutable.MutableInt;
+
+import com.google.common.collect.Maps;
+
+/**
+ * Compares the reflective {@link GPOUtils} serialization of {@link GPOMutable}s with the generated
+ * {@link GPOSerializer} and the in place reads of {@link GPOFlyweight}.
+ */
+public class GPOSerializerPerformanceTest
+{
+  private static final transient Logger logger = LoggerFactory.getLogger(GPOSerializerPerformanceTest.class);
+  private static final int WARMUP_ROUNDS = 2;
+  private int dataSize = 1000000;
+
+  @Test
+  public void testCompareSerialize()
+  {
+    FieldsDescriptor fd = createFieldsDescriptor();
+    GPOMutable gpo = createGPO(fd);
+    GPOSerializer serializer = GPOSerializer.create(fd);
+    GPOByteArrayList byteArrayList = new GPOByteArrayList();
+    ByteBuffer byteBuffer = ByteBuffer.allocate(serializer.serializedLength(gpo));
+    SerializationBuffer buffer = SerializationBuffer.READ_BUFFER;
+
+    long sum = 0;
+    for (int round = 0; round <= WARMUP_ROUNDS; round++) {
+      long beginTime = System.currentTimeMillis();
+      for (int i = 0; i < dataSize; ++i) {
+        gpo.setField("count", (long)i);
+        sum += GPOUtils.serialize(gpo, byteArrayList).length;
+      }
+      long gpoUtilsCost = System.currentTimeMillis() - beginTime;
+
+      beginTime = System.currentTimeMillis();
+      for (int i = 0; i < dataSize; ++i) {
+        gpo.setField("count", (long)i);
+        byteBuffer.clear();
+        serializer.serialize(gpo, byteBuffer);
+        sum += byteBuffer.position();
+      }
+      long byteBufferCost = System.currentTimeMillis() - beginTime;
+
+      beginTime = System.currentTimeMillis();
+      for (int i = 0; i < dataSize; ++i) {
+        gpo.setField("count", (long)i);
+        serializer.serialize(gpo, buffer);
+        buffer.toSlice();
+      }
+      buffer.release();
+      long serializationBufferCost = System.currentTimeMillis() - beginTime;
+
+      if (round == WARMUP_ROUNDS) {
+        logger.info("GPOUtils serialize cost: {}", gpoUtilsCost);
+        logger.info("GPOSerializer serialize cost to ByteBuffer: {}", byteBufferCost);
+        logger.info("GPOSerializer serialize cost to SerializationBuffer: {}", serializationBufferCost);
+      }
+    }
+    logger.debug("checksum {}", sum);
+  }
+
+  @Test
+  public void testCompareDeserialize()
+  {
+    FieldsDescriptor fd = createFieldsDescriptor();
+    GPOMutable gpo = createGPO(fd);
+    GPOSerializer serializer = GPOSerializer.create(fd);
+    byte[] bytes = serializer.serialize(gpo);
+    ByteBuffer byteBuffer = ByteBuffer.wrap(bytes);
+    GPOMutable reused = new GPOMutable(fd);
+    GPOFlyweight flyweight = new GPOFlyweight(fd);
+
+    long sum = 0;
+    for (int round = 0; round <= WARMUP_ROUNDS; round++) {
+      long beginTime = System.currentTimeMillis();
+      for (int i = 0; i < dataSize; ++i) {
+        sum += GPOUtils.deserialize(fd, bytes, new MutableInt(0)).getFieldLong("count");
+      }
+      long gpoUtilsCost = System.currentTimeMillis() - beginTime;
+
+      beginTime = System.currentTimeMillis();
+      for (int i = 0; i < dataSize; ++i) {
+        byteBuffer.clear();
+        serializer.deserialize(byteBuffer, reused);
+        sum += reused.getFieldLong("count");
+      }
+      long serializerCost = System.currentTimeMillis() - beginTime;
+
+      beginTime = System.currentTimeMillis();
+      for (int i = 0; i < dataSize; ++i) {
+        sum += flyweight.wrap(byteBuffer, 0).getFieldLong("count");
+      }
+      long flyweightCost = System.currentTimeMillis() - beginTime;
+
+      if (round == WARMUP_ROUNDS) {
+        logger.info("GPOUtils deserialize cost: {}", gpoUtilsCost);
+        logger.info("GPOSerializer deserialize cost into reused GPOMutable: {}", serializerCost);
+        logger.info("GPOFlyweight single field read cost: {}", flyweightCost);
+      }
+    }
+    logger.debug("checksum {}", sum);
+  }
+
+  protected FieldsDescriptor createFieldsDescriptor()
+  {
+    Map<String, Type> fieldToType = Maps.newHashMap();
+    fieldToType.put("publisher", Type.STRING);
+    fieldToType.put("advertiser", Type.STRING);
+    fieldToType.put("location", Type.STRING);
+    fieldToType.put("time", Type.LONG);
+    fieldToType.put("count", Type.LONG);
+    fieldToType.put("impressions", Type.LONG);
+    fieldToType.put("clicks", Type.LONG);
+    fieldToType.put("cost", Type.DOUBLE);
+    fieldToType.put("revenue", Type.DOUBLE);
+    fieldToType.put("bucket", Type.INTEGER);
+    return new FieldsDescriptor(fieldToType);
+  }
+
+  protected GPOMutable createGPO(FieldsDescriptor fd)
+  {
+    GPOMutable gpo = new GPOMutable(fd);
+    gpo.setField("publisher", "google");
+    gpo.setField("advertiser", "starbucks");
+    gpo.setField("location", "SKY");
+    gpo.setField("time", 1456300800000L);
+    gpo.setField("count", 1L);
+    gpo.setField("impressions", 1000L);
+    gpo.setField("clicks", 12L);
+    gpo.setField("cost", 1.5);
+    gpo.setField("revenue", 3.25);
+    gpo.setField("bucket", 60000);
+    return gpo;
+  }
+}
@@ -64,6 +64,8 @@ import com.datatorrent.netlet.util.DTThrowable;
  * <ol>
  * <li>Out-of-box One-to-one and one-to-many partition strategy support plus customizable partition strategy
  * refer to AbstractKafkaPartitioner </li>
+ * <li>Load aware one-to-many partition strategy which balances the rate and the lag of the kafka partitions across
+ * the operator partitions, refer to OneToManyHeuristicPartitioner</li>
  * <li>Fault-tolerant when the input operator goes down, it redeploys on other node</li>
  * <li>At-least-once semantics for operator failure (no matter which operator fails)</li>
  * <li>At-least-once semantics for cold restart (no data loss even if you restart the application)</li>
@@ -132,6 +134,12 @@ public abstract class AbstractKafkaInputOperator implements InputOperator,
 
   private int holdingBufferSize = 1024;
 
+  private double maxLoadSkew = 1.5;
+
+  private double balancedLoadSkew = 1.2;
+
+  private long lagDrainTime = 60000L;
+
   private Properties consumerProps = new Properties();
 
   /**
@@ -252,25 +260,48 @@ public abstract class AbstractKafkaInputOperator implements InputOperator,
   @Override
   public void emitTuples()
   {
-    int count = consumerWrapper.messageSize();
+    // the consumer threads keep buffering messages, so a call emits at most the messages buffered when it starts
+    int remaining = consumerWrapper.messageSize();
     if (maxTuplesPerWindow > 0) {
-      count = Math.min(count, maxTuplesPerWindow - emitCount);
+      remaining = Math.min(remaining, maxTuplesPerWindow - emitCount);
     }
-    for (int i = 0; i < count; i++) {
-      Pair<String, ConsumerRecord<byte[], byte[]>> tuple = consumerWrapper.pollMessage();
-      ConsumerRecord<byte[], byte[]> msg = tuple.getRight();
-      emitTuple(tuple.getLeft(), msg);
-      AbstractKafkaPartitioner.PartitionMeta pm = new AbstractKafkaPartitioner.PartitionMeta(tuple.getLeft(),
-          msg.topic(), msg.partition());
-      offsetTrack.put(pm, msg.offset() + 1);
+    KafkaConsumerWrapper.RecordBatch batch;
+    while (remaining > 0 && (batch = consumerWrapper.pollBatch(remaining)) != null) {
+      List<ConsumerRecord<byte[], byte[]>> messages = batch.getRecords();
+      emitTuples(batch.getCluster(), messages);
+      ConsumerRecord<byte[], byte[]> first = messages.get(0);
+      AbstractKafkaPartitioner.PartitionMeta pm = new AbstractKafkaPartitioner.PartitionMeta(batch.getCluster(),
+          first.topic(), first.partition());
+      offsetTrack.put(pm, messages.get(messages.size() - 1).offset() + 1);
+      long bytes = 0;
+      for (ConsumerRecord<byte[], byte[]> msg : messages) {
+        bytes += (msg.key() == null ? 0 : msg.key().length) + (msg.value() == null ? 0 : msg.value().length);
+      }
+      metrics.recordEmitted(pm, messages.size(), bytes);
       if (isIdempotent() && !windowStartOffset.containsKey(pm)) {
-        windowStartOffset.put(pm, msg.offset());
+        windowStartOffset.put(pm, first.offset());
       }
+      remaining -= messages.size();
+      emitCount += messages.size();
     }
-    emitCount += count;
     processConsumerError();
   }
 
+  /**
+   * Emits consecutive messages of a kafka partition which were polled together. Override it to process the
+   * messages as a batch. The list is only valid during the call. By default every message is emitted with
+   * {@link #emitTuple(String, ConsumerRecord)}.
+   *
+   * @param cluster  kafka cluster of the messages
+   * @param messages messages in offset order
+   */
+  protected void emitTuples(String cluster, List<ConsumerRecord<byte[], byte[]>> messages)
+  {
+    for (ConsumerRecord<byte[], byte[]> message : messages) {
+      emitTuple(cluster, message);
+    }
+  }
+
   protected abstract void emitTuple(String cluster, ConsumerRecord<byte[], byte[]> message);
 
   @Override
@@ -288,10 +319,24 @@ public abstract class AbstractKafkaInputOperator implements InputOperator,
 
   private void replay(long windowId)
   {
+    //The kafka partitions may have been re-assigned to other operator partitions by the partitioner. So the
+    //partition loads the recovery data of all the partitions for the window and replays the kafka partitions which
+    //are assigned to it.
     try {
-      @SuppressWarnings("unchecked")
-      Map<AbstractKafkaPartitioner.PartitionMeta, Pair<Long, Long>> windowData =
-          (Map<AbstractKafkaPartitioner.PartitionMeta, Pair<Long, Long>>)windowDataManager.retrieve(windowId);
+      Map<AbstractKafkaPartitioner.PartitionMeta, Pair<Long, Long>> windowData = new HashMap<>();
+      Map<Integer, Object> recoveryDataPerOperator = windowDataManager.retrieveAllPartitions(windowId);
+      if (recoveryDataPerOperator != null) {
+        for (Object recovery : recoveryDataPerOperator.values()) {
+          @SuppressWarnings("unchecked")
+          Map<AbstractKafkaPartitioner.PartitionMeta, Pair<Long, Long>> recoveryData =
+              (Map<AbstractKafkaPartitioner.PartitionMeta, Pair<Long, Long>>)recovery;
+          for (Map.Entry<AbstractKafkaPartitioner.PartitionMeta, Pair<Long, Long>> entry : recoveryData.entrySet()) {
+            if (assignment.contains(entry.getKey())) {
+              windowData.put(entry.getKey(), entry.getValue());
+            }
+          }
+        }
+      }
       consumerWrapper.emitImmediately(windowData);
     } catch (IOException e) {
       DTThrowable.rethrow(e);
@@ -328,6 +373,11 @@ public abstract class AbstractKafkaInputOperator implements InputOperator,
     applicationName = context.getValue(Context.DAGContext.APPLICATION_NAME);
     consumerWrapper.create(this);
     metrics = new KafkaMetrics(metricsRefreshInterval);
+    if (assignment != null) {
+      for (AbstractKafkaPartitioner.PartitionMeta partitionMeta : assignment) {
+        metrics.addPartition(partitionMeta);
+      }
+    }
     windowDataManager.setup(context);
     operatorId = context.getId();
   }
@@ -362,7 +412,8 @@ public abstract class AbstractKafkaInputOperator implements InputOperator,
           partitioner = new OneToManyPartitioner(clusters, topics, this);
           break;
         case ONE_TO_MANY_HEURISTIC:
-          throw new UnsupportedOperationException("Not implemented yet");
+          partitioner = new OneToManyHeuristicPartitioner(clusters, topics, this);
+          break;
         default:
           throw new RuntimeException("Invalid strategy");
       }
@@ -374,6 +425,8 @@ public abstract class AbstractKafkaInputOperator implements InputOperator,
   @Override
   public Response processStats(BatchedOperatorStats batchedOperatorStats)
   {
+    initPartitioner();
+    partitioner.collectStats(batchedOperatorStats);
     long t = System.currentTimeMillis();
     if (repartitionInterval < 0 || repartitionCheckInterval < 0 ||
         t - lastCheckTime < repartitionCheckInterval || t - lastRepartitionTime < repartitionInterval) {
@@ -385,7 +438,6 @@ public abstract class AbstractKafkaInputOperator implements InputOperator,
 
     try {
       logger.debug("Process stats");
-      initPartitioner();
       return partitioner.processStats(batchedOperatorStats);
     } finally {
       lastCheckTime = System.currentTimeMillis();
@@ -439,7 +491,7 @@ public abstract class AbstractKafkaInputOperator implements InputOperator,
     return assignment;
   }
 
-  private boolean isIdempotent()
+  boolean isIdempotent()
   {
     return windowDataManager != null && !(windowDataManager instanceof WindowDataManager.NoopWindowDataManager);
   }
@@ -452,7 +504,7 @@ public abstract class AbstractKafkaInputOperator implements InputOperator,
 
   /**
    * initial partition count
-   * only used with PartitionStrategy.ONE_TO_MANY
+   * only used with PartitionStrategy.ONE_TO_MANY, PartitionStrategy.ONE_TO_MANY_HEURISTIC
    * or customized strategy
    */
   public int getInitialPartitionCount()
@@ -577,7 +629,8 @@ public abstract class AbstractKafkaInputOperator implements InputOperator,
   }
 
   /**
-   * Number of messages kept in memory waiting for emission to downstream operator
+   * Number of messages kept in memory waiting for emission to downstream operator. The consumer threads pause their
+   * partitions while it is reached.
    */
   public int getHoldingBufferSize()
   {
@@ -629,6 +682,53 @@ public abstract class AbstractKafkaInputOperator implements InputOperator,
     return repartitionInterval;
   }
 
+  /**
+   * The maximum ratio of the load of the most loaded operator partition to the average load of the operator
+   * partitions. When it is exceeded the kafka partitions are re-assigned.<br/>
+   * Only used with PartitionStrategy.ONE_TO_MANY_HEURISTIC
+   */
+  public double getMaxLoadSkew()
+  {
+    return maxLoadSkew;
+  }
+
+  public void setMaxLoadSkew(double maxLoadSkew)
+  {
+    this.maxLoadSkew = maxLoadSkew;
+  }
+
+  /**
+   * The ratio of the load of the most loaded operator partition to the average load of the operator partitions
+   * which is considered balanced. The kafka partitions are re-assigned only when the new assignment lowers the ratio
+   * by at least the difference of the max load skew and this skew, so that the operator doesn't repartition
+   * continuously when the load can't be balanced better.<br/>
+   * Only used with PartitionStrategy.ONE_TO_MANY_HEURISTIC
+   */
+  public double getBalancedLoadSkew()
+  {
+    return balancedLoadSkew;
+  }
+
+  public void setBalancedLoadSkew(double balancedLoadSkew)
+  {
+    this.balancedLoadSkew = balancedLoadSkew;
+  }
+
+  /**
+   * The time in milliseconds in which the lag of a kafka partition should be consumed. The load of a kafka partition
+   * is its emitted byte rate plus the byte rate needed to consume its lag in this time.<br/>
+   * Only used with PartitionStrategy.ONE_TO_MANY_HEURISTIC
+   */
+  public long getLagDrainTime()
+  {
+    return lagDrainTime;
+  }
+
+  public void setLagDrainTime(long lagDrainTime)
+  {
+    this.lagDrainTime = lagDrainTime;
+  }
+
   public void setWindowDataManager(WindowDataManager windowDataManager)
   {
     this.windowDataManager = windowDataManager;
@@ -23,6 +23,7 @@ import java.io.StringWriter;
 import java.util.ArrayList;
 import java.util.Collection;
 import java.util.HashMap;
+import java.util.HashSet;
 import java.util.Iterator;
 import java.util.LinkedList;
 import java.util.List;
@@ -35,6 +36,7 @@ import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import org.apache.apex.malhar.lib.util.KryoCloneUtils;
+import org.apache.apex.malhar.lib.wal.WindowDataManager;
 import org.apache.hadoop.classification.InterfaceStability;
 import org.apache.kafka.clients.consumer.KafkaConsumer;
 import org.apache.kafka.common.PartitionInfo;
@@ -52,7 +54,12 @@ import com.datatorrent.api.StatsListener;
  * It use a number of kafka consumers(one for each cluster) to get the latest partition metadata for topics that
  * the consumer subscribes and expose those to subclass which implements the assign method
  *
- * The partitioner is always stateless.
+ * The partitioner doesn't checkpoint any state. The stats which subclasses collect to assign the kafka partitions
+ * are kept in memory and are collected again after the partitioner is restored.
+ *
+ * The offsets of the kafka partitions which are re-assigned are transferred from the removed operator partitions to
+ * the new ones. When the operator is idempotent all the operator partitions are replaced on a change of the
+ * assignment and the window data managers of the new partitions replay the windows of the removed partitions.
  *
  * @since 3.3.0
  */
@@ -148,10 +155,25 @@ public abstract class AbstractKafkaPartitioner implements Partitioner<AbstractKa
       logger.info("Partition change detected: ");
       currentPartitions.clear();
       currentPartitions.addAll(parts);
+      //the running partitions of an idempotent operator are replaced so that the windows which were processed by
+      //them are replayed by the new partitions.
+      boolean replaceAll = prototypeOperator.isIdempotent();
+      for (Partition<AbstractKafkaInputOperator> partition : collection) {
+        if (partition.getStats() == null) {
+          replaceAll = false;
+        }
+      }
+      Map<PartitionMeta, Long> offsets = new HashMap<>();
+      Set<Integer> removedOperatorIds = new HashSet<>();
       int i = 0;
       List<Partition<AbstractKafkaInputOperator>> result = new LinkedList<>();
       for (Iterator<Partition<AbstractKafkaInputOperator>> iter = collection.iterator(); iter.hasNext(); ) {
         Partition<AbstractKafkaInputOperator> nextPartition = iter.next();
+        offsets.putAll(nextPartition.getPartitionedInstance().getOffsetTrack());
+        if (replaceAll) {
+          removedOperatorIds.add(nextPartition.getStats().getOperatorId());
+          continue;
+        }
         if (parts.remove(nextPartition.getPartitionedInstance().assignment())) {
           if (logger.isInfoEnabled()) {
             logger.info("[Existing] Partition {} with assignment {} ", i,
@@ -162,12 +184,28 @@ public abstract class AbstractKafkaPartitioner implements Partitioner<AbstractKa
         }
       }
 
+      List<WindowDataManager> windowDataManagers = null;
+      if (!removedOperatorIds.isEmpty()) {
+        windowDataManagers = prototypeOperator.getWindowDataManager().partition(parts.size(), removedOperatorIds);
+      }
       for (Set<AbstractKafkaPartitioner.PartitionMeta> partitionAssignment : parts) {
         if (logger.isInfoEnabled()) {
           logger.info("[New] Partition {} with assignment {} ", i,
               Joiner.on(';').join(partitionAssignment));
         }
-        result.add(createPartition(partitionAssignment));
+        Partition<AbstractKafkaInputOperator> partition = createPartition(partitionAssignment);
+        AbstractKafkaInputOperator operator = partition.getPartitionedInstance();
+        //continue from the offsets of the previous owners of the kafka partitions
+        for (PartitionMeta partitionMeta : partitionAssignment) {
+          Long offset = offsets.get(partitionMeta);
+          if (offset != null) {
+            operator.getOffsetTrack().put(partitionMeta, offset);
+          }
+        }
+        if (windowDataManagers != null) {
+          operator.setWindowDataManager(windowDataManagers.get(i));
+        }
+        result.add(partition);
         i++;
       }
 
@@ -189,6 +227,16 @@ public abstract class AbstractKafkaPartitioner implements Partitioner<AbstractKa
 
   }
 
+  /**
+   * Called with the stats of every operator partition, including the stats which are not processed by
+   * {@link #processStats(BatchedOperatorStats)} because the operator checks whether to repartition at an interval.
+   *
+   * @param batchedOperatorStats stats of an operator partition
+   */
+  protected void collectStats(BatchedOperatorStats batchedOperatorStats)
+  {
+  }
+
   @Override
   public Response processStats(BatchedOperatorStats batchedOperatorStats)
   {
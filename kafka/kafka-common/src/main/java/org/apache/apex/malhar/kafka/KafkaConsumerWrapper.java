@@ -21,7 +21,9 @@ package org.apache.apex.malhar.kafka;
 
 import java.io.Closeable;
 import java.io.IOException;
+import java.util.ArrayDeque;
 import java.util.ArrayList;
+import java.util.Collections;
 import java.util.HashMap;
 import java.util.Iterator;
 import java.util.LinkedList;
@@ -29,12 +31,13 @@ import java.util.List;
 import java.util.Map;
 import java.util.Properties;
 import java.util.Set;
-import java.util.concurrent.ArrayBlockingQueue;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
 import java.util.concurrent.Future;
 import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
 
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -66,6 +69,9 @@ import com.datatorrent.netlet.util.DTThrowable;
  *
  * It also use the consumers to commit the application processed offsets along with the application name
  *
+ * Each consumer thread hands off its whole poll batches to the operator thread through its own ring. When the
+ * buffered messages reach the holding buffer size, the consumer thread keeps the batches it polls after that and
+ * pauses its partitions until the operator thread catches up.
  *
  * @since 3.3.0
  */
@@ -79,8 +85,33 @@ public class KafkaConsumerWrapper implements Closeable
 
   private final Map<String, AbstractKafkaConsumer> consumers = new HashMap<>();
 
-  // The in memory buffer hold consumed messages
-  private ArrayBlockingQueue<Pair<String, ConsumerRecord<byte[], byte[]>>> holdingBuffer;
+  // the poll timeout of the consumer threads while their partitions are paused for backpressure
+  private static final long PAUSED_POLL_TIMEOUT = 100;
+
+  // the wait of putMessage while the holding buffer is full
+  private static final long PUT_MESSAGE_WAIT_MILLIS = 10;
+
+  // the maximum number of poll batches in the ring of a consumer thread
+  private static final int MAX_RING_CAPACITY = 1024;
+
+  // number of consumed messages in the rings
+  private final AtomicInteger bufferedMessages = new AtomicInteger();
+
+  private final List<ConsumerThread> consumerThreads = new ArrayList<>();
+
+  // the messages added with the deprecated putMessage, as batches of one message
+  private final ConcurrentLinkedQueue<Pair<String, ConsumerRecords<byte[], byte[]>>> putMessages =
+      new ConcurrentLinkedQueue<>();
+
+  private final RecordBatch batch = new RecordBatch();
+
+  // the position of the operator thread in the buffered messages
+  private int nextConsumerThread;
+  private String currentCluster;
+  private ConsumerRecords<byte[], byte[]> currentRecords;
+  private Iterator<TopicPartition> partitionIterator;
+  private List<ConsumerRecord<byte[], byte[]>> partitionRecords = Collections.emptyList();
+  private int partitionPosition;
 
   private AbstractKafkaInputOperator ownerOperator = null;
 
@@ -183,6 +214,26 @@ public class KafkaConsumerWrapper implements Closeable
     waitForReplay = false;
   }
 
+  /**
+   * Consecutive messages of a kafka partition which are handed off to the operator thread. The batch is reused by
+   * {@link #pollBatch(int)}, so it is valid only until the next call.
+   */
+  public static class RecordBatch
+  {
+    private String cluster;
+    private List<ConsumerRecord<byte[], byte[]>> records;
+
+    public String getCluster()
+    {
+      return cluster;
+    }
+
+    public List<ConsumerRecord<byte[], byte[]>> getRecords()
+    {
+      return records;
+    }
+  }
+
   static final class ConsumerThread implements Runnable
   {
 
@@ -192,6 +243,13 @@ public class KafkaConsumerWrapper implements Closeable
 
     private final KafkaConsumerWrapper wrapper;
 
+    final SpscRing<ConsumerRecords<byte[], byte[]>> ring;
+
+    // the batches which don't fit into the ring or the holding buffer yet
+    private final ArrayDeque<ConsumerRecords<byte[], byte[]>> pending = new ArrayDeque<>();
+
+    private boolean paused = false;
+
     private Map<TopicPartition, OffsetAndMetadata> offsetToCommit = null;
 
     public ConsumerThread(String cluster, AbstractKafkaConsumer consumer, KafkaConsumerWrapper wrapper)
@@ -199,6 +257,7 @@ public class KafkaConsumerWrapper implements Closeable
       this.cluster = cluster;
       this.consumer = consumer;
       this.wrapper = wrapper;
+      this.ring = new SpscRing<>(Math.min(wrapper.ownerOperator.getHoldingBufferSize(), MAX_RING_CAPACITY));
       this.offsetToCommit = new ConcurrentHashMap<>();
       wrapper.offsetsToCommit.put(cluster, offsetToCommit);
     }
@@ -221,15 +280,26 @@ public class KafkaConsumerWrapper implements Closeable
             consumer.commitAsync(offsetToCommit, wrapper.ownerOperator);
             offsetToCommit.clear();
           }
+          offerPending();
+          if (paused && pending.isEmpty()) {
+            consumer.resumeAllPartitions();
+            paused = false;
+          }
           try {
-            ConsumerRecords<byte[], byte[]> records = consumer.pollRecords(wrapper.ownerOperator.getConsumerTimeout());
-            for (ConsumerRecord<byte[], byte[]> record : records) {
-              wrapper.putMessage(Pair.of(cluster, record));
+            // keep polling while paused, so that the consumer stays alive and commits the offsets
+            long timeout = wrapper.ownerOperator.getConsumerTimeout();
+            ConsumerRecords<byte[], byte[]> records = consumer.pollRecords(paused ?
+                Math.min(timeout, PAUSED_POLL_TIMEOUT) : timeout);
+            handOff(records);
+            // the partitions are resumed by a replay as well, so pause again if records still arrive
+            if (!pending.isEmpty() && (!paused || !records.isEmpty())) {
+              for (TopicPartition tp : consumer.getPartitions()) {
+                consumer.pausePartition(tp);
+              }
+              paused = true;
             }
           } catch (NoOffsetForPartitionException e) {
             wrapper.handleNoOffsetForPartitionException(e, consumer);
-          } catch (InterruptedException e) {
-            throw new IllegalStateException("Consumer thread is interrupted unexpectedly", e);
           }
         }
       } catch (WakeupException we) {
@@ -244,6 +314,40 @@ public class KafkaConsumerWrapper implements Closeable
         consumer.close();
       }
     }
+
+    /**
+     * Hands off a poll batch to the operator thread, or keeps it pending if the holding buffer or the ring is full.
+     */
+    void handOff(ConsumerRecords<byte[], byte[]> records)
+    {
+      if (!records.isEmpty()) {
+        pending.add(records);
+        offerPending();
+      }
+    }
+
+    /**
+     * Hands off the pending batches while the buffered messages are less than the holding buffer size.
+     */
+    void offerPending()
+    {
+      int holdingBufferSize = wrapper.ownerOperator.getHoldingBufferSize();
+      while (!pending.isEmpty() && wrapper.bufferedMessages.get() < holdingBufferSize) {
+        ConsumerRecords<byte[], byte[]> records = pending.peek();
+        // count the messages before they are visible to the operator thread
+        wrapper.bufferedMessages.addAndGet(records.count());
+        if (!ring.offer(records)) {
+          wrapper.bufferedMessages.addAndGet(-records.count());
+          return;
+        }
+        pending.poll();
+      }
+    }
+
+    int pendingBatches()
+    {
+      return pending.size();
+    }
   }
 
   protected void handleNoOffsetForPartitionException(NoOffsetForPartitionException e,
@@ -270,7 +374,6 @@ public class KafkaConsumerWrapper implements Closeable
    */
   public void create(AbstractKafkaInputOperator ownerOperator)
   {
-    holdingBuffer = new ArrayBlockingQueue<>(ownerOperator.getHoldingBufferSize());
     this.ownerOperator = ownerOperator;
     logger.info("Create consumer wrapper with holding buffer size: {} ", ownerOperator.getHoldingBufferSize());
     if (logger.isInfoEnabled()) {
@@ -347,11 +450,19 @@ public class KafkaConsumerWrapper implements Closeable
       }
 
       consumers.put(e.getKey(), kc);
-      Future<?> future = kafkaConsumerExecutor.submit(new ConsumerThread(e.getKey(), kc, this));
+      ConsumerThread consumerThread = addConsumerThread(e.getKey(), kc);
+      Future<?> future = kafkaConsumerExecutor.submit(consumerThread);
       kafkaConsumerThreads.add(future);
     }
   }
 
+  ConsumerThread addConsumerThread(String cluster, AbstractKafkaConsumer consumer)
+  {
+    ConsumerThread consumerThread = new ConsumerThread(cluster, consumer, this);
+    consumerThreads.add(consumerThread);
+    return consumerThread;
+  }
+
   /**
    * The method is called in the deactivate method of the operator
    */
@@ -362,7 +473,7 @@ public class KafkaConsumerWrapper implements Closeable
       c.wakeup();
     }
     kafkaConsumerExecutor.shutdownNow();
-    holdingBuffer.clear();
+    clearBuffer();
     IOUtils.closeQuietly(this);
   }
 
@@ -371,23 +482,104 @@ public class KafkaConsumerWrapper implements Closeable
    */
   public void teardown()
   {
-    holdingBuffer.clear();
+    clearBuffer();
+  }
+
+  private void clearBuffer()
+  {
+    consumerThreads.clear();
+    putMessages.clear();
+    bufferedMessages.set(0);
+    nextConsumerThread = 0;
+    currentRecords = null;
+    partitionIterator = null;
+    partitionRecords = Collections.emptyList();
+    partitionPosition = 0;
+  }
+
+  /**
+   * Polls the next consecutive messages of a kafka partition. The consumer threads are polled round robin one poll
+   * batch at a time.
+   *
+   * @param maxRecords maximum number of messages in the batch
+   * @return the batch which is reused by the next call; null if there is no buffered message.
+   */
+  public RecordBatch pollBatch(int maxRecords)
+  {
+    if (maxRecords <= 0) {
+      return null;
+    }
+    while (partitionPosition == partitionRecords.size()) {
+      if (!nextPartitionRecords()) {
+        return null;
+      }
+    }
+    int end = Math.min(partitionRecords.size(), partitionPosition + maxRecords);
+    batch.cluster = currentCluster;
+    batch.records = partitionRecords.subList(partitionPosition, end);
+    bufferedMessages.addAndGet(partitionPosition - end);
+    partitionPosition = end;
+    return batch;
+  }
+
+  private boolean nextPartitionRecords()
+  {
+    if (partitionIterator == null || !partitionIterator.hasNext()) {
+      currentRecords = null;
+      partitionIterator = null;
+      for (int i = 0; i < consumerThreads.size() && currentRecords == null; i++) {
+        ConsumerThread consumerThread = consumerThreads.get(nextConsumerThread);
+        nextConsumerThread = (nextConsumerThread + 1) % consumerThreads.size();
+        currentRecords = consumerThread.ring.poll();
+        currentCluster = consumerThread.cluster;
+      }
+      if (currentRecords == null) {
+        Pair<String, ConsumerRecords<byte[], byte[]>> putMessage = putMessages.poll();
+        if (putMessage != null) {
+          currentCluster = putMessage.getLeft();
+          currentRecords = putMessage.getRight();
+        }
+      }
+      if (currentRecords == null) {
+        return false;
+      }
+      partitionIterator = currentRecords.partitions().iterator();
+    }
+    partitionRecords = partitionIterator.hasNext() ? currentRecords.records(partitionIterator.next()) :
+        Collections.<ConsumerRecord<byte[], byte[]>>emptyList();
+    partitionPosition = 0;
+    return true;
   }
 
   public Pair<String, ConsumerRecord<byte[], byte[]>> pollMessage()
   {
-    return holdingBuffer.poll();
+    RecordBatch recordBatch = pollBatch(1);
+    return recordBatch == null ? null : Pair.of(recordBatch.getCluster(), recordBatch.getRecords().get(0));
   }
 
   public int messageSize()
   {
-    return holdingBuffer.size();
+    return bufferedMessages.get();
   }
 
+  /**
+   * Adds a message to the buffered messages, waiting while the holding buffer is full.
+   *
+   * @deprecated The consumer threads hand off whole poll batches to the operator thread, which is more efficient.
+   * The messages added with this method are emitted after the batches which are already buffered.
+   */
+  @Deprecated
   protected final void putMessage(Pair<String, ConsumerRecord<byte[], byte[]>> msg) throws InterruptedException
   {
     // block from receiving more message
-    holdingBuffer.put(msg);
+    while (bufferedMessages.get() >= ownerOperator.getHoldingBufferSize()) {
+      Thread.sleep(PUT_MESSAGE_WAIT_MILLIS);
+    }
+    ConsumerRecord<byte[], byte[]> record = msg.getRight();
+    Map<TopicPartition, List<ConsumerRecord<byte[], byte[]>>> records = Collections.singletonMap(
+        new TopicPartition(record.topic(), record.partition()), Collections.singletonList(record));
+    bufferedMessages.incrementAndGet();
+    putMessages.add(Pair.of(msg.getLeft(), new ConsumerRecords<>(records)));
   }
 
   @Override
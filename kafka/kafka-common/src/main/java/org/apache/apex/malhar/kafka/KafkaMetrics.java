@@ -19,18 +19,25 @@
 package org.apache.apex.malhar.kafka;
 
 import java.io.Serializable;
+import java.util.ArrayList;
 import java.util.Collection;
 import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
 
 import org.apache.hadoop.classification.InterfaceStability;
 import org.apache.kafka.common.Metric;
 import org.apache.kafka.common.MetricName;
+import org.apache.kafka.common.TopicPartition;
 
 import com.datatorrent.api.AutoMetric;
 
 /**
  * Metrics class
+ * <p/>
+ * Besides the rates of the consumer of each cluster, it keeps the rates at which the operator emits the messages of
+ * each kafka partition and the lag of the consumer on each kafka partition, as far as the kafka client reports it.
+ * The {@link OneToManyHeuristicPartitioner} uses these to balance the load of the operator partitions.
  *
  * @since 3.3.0
  */
@@ -39,8 +46,15 @@ public class KafkaMetrics implements Serializable
 {
   private KafkaConsumerStats[] stats;
 
+  private KafkaPartitionStats[] partitionStats;
+
   private transient long lastMetricSampleTime = 0L;
 
+  /**
+   * bytes and messages emitted per kafka partition since the last sample
+   */
+  private final transient Map<AbstractKafkaPartitioner.PartitionMeta, long[]> emitted = new HashMap<>();
+
   private transient long metricsRefreshInterval;
 
   public KafkaMetrics(long metricsRefreshInterval)
@@ -55,6 +69,8 @@ public class KafkaMetrics implements Serializable
       return;
     }
 
+    long elapsedMillis = current - lastMetricSampleTime;
+    boolean firstSample = lastMetricSampleTime == 0L;
     lastMetricSampleTime = current;
 
     if (stats == null) {
@@ -84,6 +100,93 @@ public class KafkaMetrics implements Serializable
       stats[i].bytesPerSec = cMetrics.get(stats[i].bytePerSecMK).value();
       stats[i].msgsPerSec = cMetrics.get(stats[i].msgPerSecMK).value();
     }
+
+    updatePartitionStats(metricsMap, firstSample ? 0L : elapsedMillis);
+  }
+
+  /**
+   * Adds a kafka partition of the operator so that its stats are reported even when no message of it is emitted.
+   *
+   * @param partitionMeta kafka partition
+   */
+  void addPartition(AbstractKafkaPartitioner.PartitionMeta partitionMeta)
+  {
+    if (!emitted.containsKey(partitionMeta)) {
+      emitted.put(partitionMeta, new long[2]);
+    }
+  }
+
+  /**
+   * Records messages which are emitted by the operator.
+   *
+   * @param partitionMeta kafka partition of the messages
+   * @param messages      number of messages
+   * @param bytes         size of the keys and the values of the messages
+   */
+  void recordEmitted(AbstractKafkaPartitioner.PartitionMeta partitionMeta, int messages, long bytes)
+  {
+    long[] counts = emitted.get(partitionMeta);
+    if (counts == null) {
+      counts = new long[2];
+      emitted.put(partitionMeta, counts);
+    }
+    counts[0] += bytes;
+    counts[1] += messages;
+  }
+
+  private void updatePartitionStats(Map<String, Map<MetricName, ? extends Metric>> metricsMap, long elapsedMillis)
+  {
+    if (elapsedMillis <= 0) {
+      //the rates can only be computed from the second sample
+      for (long[] counts : emitted.values()) {
+        counts[0] = 0;
+        counts[1] = 0;
+      }
+      return;
+    }
+
+    List<KafkaPartitionStats> newPartitionStats = new ArrayList<>(emitted.size());
+    for (Map.Entry<AbstractKafkaPartitioner.PartitionMeta, long[]> entry : emitted.entrySet()) {
+      AbstractKafkaPartitioner.PartitionMeta partitionMeta = entry.getKey();
+      long[] counts = entry.getValue();
+      KafkaPartitionStats partitionStat = new KafkaPartitionStats();
+      partitionStat.cluster = partitionMeta.getCluster();
+      partitionStat.topic = partitionMeta.getTopic();
+      partitionStat.partitionId = partitionMeta.getPartitionId();
+      partitionStat.bytesPerSec = counts[0] * 1000.0 / elapsedMillis;
+      partitionStat.msgsPerSec = counts[1] * 1000.0 / elapsedMillis;
+      Map<MetricName, ? extends Metric> cMetrics = metricsMap.get(partitionMeta.getCluster());
+      if (cMetrics != null) {
+        partitionStat.lag = getRecordsLag(cMetrics, partitionMeta.getTopicPartition());
+      }
+      newPartitionStats.add(partitionStat);
+      counts[0] = 0;
+      counts[1] = 0;
+    }
+    partitionStats = newPartitionStats.toArray(new KafkaPartitionStats[newPartitionStats.size()]);
+  }
+
+  /**
+   * The lag of a kafka partition is reported by the kafka clients since 0.10.0, either as the metric
+   * "&lt;topic&gt;-&lt;partition&gt;.records-lag" or as the metric "records-lag" with the topic and the partition as
+   * tags.
+   *
+   * @return lag of the consumer in records; 0 if it is not reported.
+   */
+  private static double getRecordsLag(Map<MetricName, ? extends Metric> cMetrics, TopicPartition topicPartition)
+  {
+    String partitionLagName = topicPartition.topic() + "-" + topicPartition.partition() + ".records-lag";
+    String partition = Integer.toString(topicPartition.partition());
+    for (Map.Entry<MetricName, ? extends Metric> entry : cMetrics.entrySet()) {
+      MetricName mn = entry.getKey();
+      boolean matches = mn.name().equals(partitionLagName) || (mn.name().equals("records-lag") &&
+          topicPartition.topic().equals(mn.tags().get("topic")) && partition.equals(mn.tags().get("partition")));
+      if (matches) {
+        double lag = entry.getValue().value();
+        return Double.isNaN(lag) || Double.isInfinite(lag) || lag < 0 ? 0 : lag;
+      }
+    }
+    return 0;
   }
 
   public KafkaConsumerStats[] getStats()
@@ -91,6 +194,14 @@ public class KafkaMetrics implements Serializable
     return stats;
   }
 
+  /**
+   * @return the stats of the kafka partitions of the operator; null before the rates are sampled twice.
+   */
+  public KafkaPartitionStats[] getPartitionStats()
+  {
+    return partitionStats;
+  }
+
   /**
    * Counter class which gives the statistic value from the consumer
    */
@@ -114,6 +225,36 @@ public class KafkaMetrics implements Serializable
     }
   }
 
+  /**
+   * Statistic values of a kafka partition which is consumed by the operator
+   */
+  public static class KafkaPartitionStats implements Serializable
+  {
+    private static final long serialVersionUID = 3415587390726514732L;
+
+    public String cluster;
+
+    public String topic;
+
+    public int partitionId;
+
+    /**
+     * Rate at which the messages of the partition are emitted
+     */
+    public double msgsPerSec;
+
+    public double bytesPerSec;
+
+    /**
+     * Number of records in the partition which are not consumed yet
+     */
+    public double lag;
+
+    public KafkaPartitionStats()
+    {
+    }
+  }
+
   public static class KafkaMetricsAggregator implements AutoMetric.Aggregator, Serializable
   {
 
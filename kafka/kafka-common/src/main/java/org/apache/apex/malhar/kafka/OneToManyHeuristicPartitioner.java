@@ -0,0 +1,270 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.apex.malhar.kafka;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import org.apache.hadoop.classification.InterfaceStability;
+import org.apache.kafka.common.PartitionInfo;
+
+import com.datatorrent.api.Stats;
+
+/**
+ * A one-to-many partitioner implementation that creates fix number of operator partitions and bin-packs the Kafka
+ * partitions onto them by their load.
+ * <p/>
+ * The load of a Kafka partition is the rate at which its bytes are emitted plus the byte rate which is needed to
+ * consume its lag in {@link AbstractKafkaInputOperator#getLagDrainTime()}. Both are reported by the operator
+ * partitions in {@link KafkaMetrics}. A Kafka partition without stats is assumed to have the average load.
+ * <p/>
+ * The partitions are re-assigned only when the load of the most loaded operator partition exceeds the average load
+ * by {@link AbstractKafkaInputOperator#getMaxLoadSkew()} and the new assignment lowers the skew by at least the
+ * difference of {@link AbstractKafkaInputOperator#getMaxLoadSkew()} and
+ * {@link AbstractKafkaInputOperator#getBalancedLoadSkew()}. The skew is compared with the best skew which the loads of
+ * the kafka partitions allow rather than with a fixed target, so that the partitions are re-assigned again when the
+ * loads change even if a few kafka partitions dominate the load and the skew can't drop under the balanced skew.
+ */
+@InterfaceStability.Evolving
+public class OneToManyHeuristicPartitioner extends AbstractKafkaPartitioner
+{
+  private static final Logger logger = LoggerFactory.getLogger(OneToManyHeuristicPartitioner.class);
+
+  private final Map<PartitionMeta, Double> partitionLoads = new HashMap<>();
+
+  private final Map<Integer, Set<PartitionMeta>> operatorPartitions = new HashMap<>();
+
+  private int operatorCount;
+
+  public OneToManyHeuristicPartitioner(String[] clusters, String[] topics, AbstractKafkaInputOperator protoTypeOperator)
+  {
+    super(clusters, topics, protoTypeOperator);
+  }
+
+  @Override
+  List<Set<PartitionMeta>> assign(Map<String, Map<String, List<PartitionInfo>>> metadata)
+  {
+    if (prototypeOperator.getInitialPartitionCount() <= 0) {
+      throw new IllegalArgumentException("Num of partitions should be greater or equal to 1");
+    }
+
+    List<PartitionMeta> partitionMetas = new ArrayList<>();
+    for (Map.Entry<String, Map<String, List<PartitionInfo>>> clusterMap : metadata.entrySet()) {
+      for (Map.Entry<String, List<PartitionInfo>> topicPartition : clusterMap.getValue().entrySet()) {
+        for (PartitionInfo pif : topicPartition.getValue()) {
+          partitionMetas.add(new PartitionMeta(clusterMap.getKey(), topicPartition.getKey(), pif.partition()));
+        }
+      }
+    }
+
+    List<Set<PartitionMeta>> eachPartitionAssignment = new ArrayList<>();
+    binPack(partitionMetas, prototypeOperator.getInitialPartitionCount(), eachPartitionAssignment);
+    return eachPartitionAssignment;
+  }
+
+  @Override
+  protected void collectStats(BatchedOperatorStats batchedOperatorStats)
+  {
+    KafkaMetrics.KafkaPartitionStats[] partitionStats = null;
+    List<Stats.OperatorStats> lastWindowedStats = batchedOperatorStats.getLastWindowedStats();
+    if (lastWindowedStats != null) {
+      for (int i = lastWindowedStats.size() - 1; i >= 0 && partitionStats == null; i--) {
+        Map<String, Object> metrics = lastWindowedStats.get(i).metrics;
+        Object kafkaMetrics = metrics == null ? null : metrics.get("metrics");
+        if (kafkaMetrics instanceof KafkaMetrics) {
+          partitionStats = ((KafkaMetrics)kafkaMetrics).getPartitionStats();
+        }
+      }
+    }
+    if (partitionStats != null) {
+      updateLoads(batchedOperatorStats.getOperatorId(), partitionStats);
+    }
+  }
+
+  /**
+   * Updates the loads of the kafka partitions which are consumed by an operator partition.
+   */
+  void updateLoads(int operatorId, KafkaMetrics.KafkaPartitionStats[] partitionStats)
+  {
+    double bytesPerMsg = getAverageBytesPerMsg(partitionStats);
+    double lagDrainSecs = Math.max(prototypeOperator.getLagDrainTime(), 1L) / 1000.0;
+    Set<PartitionMeta> partitions = new HashSet<>();
+    for (KafkaMetrics.KafkaPartitionStats partitionStat : partitionStats) {
+      PartitionMeta partitionMeta = new PartitionMeta(partitionStat.cluster, partitionStat.topic,
+          partitionStat.partitionId);
+      double partitionBytesPerMsg = partitionStat.msgsPerSec > 0 ?
+          partitionStat.bytesPerSec / partitionStat.msgsPerSec : bytesPerMsg;
+      partitionLoads.put(partitionMeta, partitionStat.bytesPerSec + partitionStat.lag * partitionBytesPerMsg /
+          lagDrainSecs);
+      partitions.add(partitionMeta);
+    }
+    operatorPartitions.put(operatorId, partitions);
+  }
+
+  @Override
+  public Response processStats(BatchedOperatorStats batchedOperatorStats)
+  {
+    Response response = new Response();
+    response.repartitionRequired = isRebalanceRequired();
+    return response;
+  }
+
+  @Override
+  public void partitioned(Map<Integer, Partition<AbstractKafkaInputOperator>> map)
+  {
+    //the stats of the removed operator partitions are stale
+    operatorPartitions.keySet().retainAll(map.keySet());
+    operatorCount = map.size();
+    partitionLoads.clear();
+  }
+
+  private boolean isRebalanceRequired()
+  {
+    if (operatorPartitions.size() < Math.max(2, operatorCount)) {
+      return false;
+    }
+    List<PartitionMeta> partitionMetas = new ArrayList<>();
+    double maxLoad = 0;
+    for (Set<PartitionMeta> partitions : operatorPartitions.values()) {
+      double load = 0;
+      for (PartitionMeta partitionMeta : partitions) {
+        Double partitionLoad = partitionLoads.get(partitionMeta);
+        if (partitionLoad == null) {
+          //not all the partitions have reported their stats after the last repartitioning
+          return false;
+        }
+        load += partitionLoad;
+        partitionMetas.add(partitionMeta);
+      }
+      maxLoad = Math.max(maxLoad, load);
+    }
+
+    double averageLoad = sumLoads(partitionMetas) / operatorPartitions.size();
+    if (averageLoad <= 0) {
+      return false;
+    }
+    double skew = maxLoad / averageLoad;
+    if (skew <= prototypeOperator.getMaxLoadSkew()) {
+      return false;
+    }
+
+    double[] newLoads = binPack(partitionMetas, operatorPartitions.size(), new ArrayList<Set<PartitionMeta>>());
+    double newMaxLoad = 0;
+    for (double load : newLoads) {
+      newMaxLoad = Math.max(newMaxLoad, load);
+    }
+    double bestSkew = newMaxLoad / averageLoad;
+    double minGain = Math.max(prototypeOperator.getMaxLoadSkew() - prototypeOperator.getBalancedLoadSkew(), 0);
+    if (bestSkew >= skew || skew - bestSkew < minGain) {
+      //a few kafka partitions dominate the load or the loads changed too little since the last assignment
+      return false;
+    }
+    logger.info("Load skew {} exceeds {}. Max load {} bytes/s can be lowered to {} bytes/s", skew,
+        prototypeOperator.getMaxLoadSkew(), maxLoad, newMaxLoad);
+    return true;
+  }
+
+  /**
+   * Assigns the partitions with the largest load first to the operator partition with the least load.
+   *
+   * @return loads of the operator partitions.
+   */
+  private double[] binPack(List<PartitionMeta> partitionMetas, int partitionCount,
+      List<Set<PartitionMeta>> eachPartitionAssignment)
+  {
+    final Map<PartitionMeta, Double> loads = new HashMap<>();
+    double knownLoad = 0;
+    int known = 0;
+    for (PartitionMeta partitionMeta : partitionMetas) {
+      Double load = partitionLoads.get(partitionMeta);
+      if (load != null) {
+        knownLoad += load;
+        known++;
+      }
+    }
+    double defaultLoad = known > 0 ? knownLoad / known : 1;
+    for (PartitionMeta partitionMeta : partitionMetas) {
+      Double load = partitionLoads.get(partitionMeta);
+      loads.put(partitionMeta, load != null ? load : defaultLoad);
+    }
+
+    List<PartitionMeta> sorted = new ArrayList<>(partitionMetas);
+    Collections.sort(sorted, new Comparator<PartitionMeta>()
+    {
+      @Override
+      public int compare(PartitionMeta o1, PartitionMeta o2)
+      {
+        int result = Double.compare(loads.get(o2), loads.get(o1));
+        if (result == 0) {
+          result = o1.getCluster().compareTo(o2.getCluster());
+        }
+        if (result == 0) {
+          result = o1.getTopic().compareTo(o2.getTopic());
+        }
+        return result != 0 ? result : Integer.compare(o1.getPartitionId(), o2.getPartitionId());
+      }
+    });
+
+    int bins = Math.min(partitionCount, sorted.size());
+    double[] binLoads = new double[bins];
+    for (int i = 0; i < bins; i++) {
+      eachPartitionAssignment.add(new HashSet<PartitionMeta>());
+    }
+    for (PartitionMeta partitionMeta : sorted) {
+      int bin = 0;
+      for (int i = 1; i < bins; i++) {
+        if (binLoads[i] < binLoads[bin]) {
+          bin = i;
+        }
+      }
+      binLoads[bin] += loads.get(partitionMeta);
+      eachPartitionAssignment.get(bin).add(partitionMeta);
+    }
+    return binLoads;
+  }
+
+  private double sumLoads(List<PartitionMeta> partitionMetas)
+  {
+    double sum = 0;
+    for (PartitionMeta partitionMeta : partitionMetas) {
+      sum += partitionLoads.get(partitionMeta);
+    }
+    return sum;
+  }
+
+  private static double getAverageBytesPerMsg(KafkaMetrics.KafkaPartitionStats[] partitionStats)
+  {
+    double bytesPerSec = 0;
+    double msgsPerSec = 0;
+    for (KafkaMetrics.KafkaPartitionStats partitionStat : partitionStats) {
+      bytesPerSec += partitionStat.bytesPerSec;
+      msgsPerSec += partitionStat.msgsPerSec;
+    }
+    return msgsPerSec > 0 ? bytesPerSec / msgsPerSec : 1;
+  }
+}
@@ -38,8 +38,8 @@ public enum PartitionStrategy
   ONE_TO_MANY,
   /**
    * 1 to N partition based on the heuristic function
-   * <b>NOT</b> implemented yet
-   * TODO implement this later
+   * The kafka partitions are bin-packed onto the operator partitions by their emitted byte rate and lag.
+   * They are re-assigned when the load of the operator partitions is skewed
    */
   ONE_TO_MANY_HEURISTIC
 }
@@ -0,0 +1,102 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.apex.malhar.kafka;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+import com.google.common.base.Preconditions;
+
+/**
+ * A bounded ring with a single producer thread and a single consumer thread. It is used by
+ * {@link KafkaConsumerWrapper} to hand off the poll batches of a consumer thread to the operator thread without
+ * locks. The positions are published with ordered writes, so an element is visible to the consumer thread once the
+ * tail which covers it is read.
+ *
+ * @param <E> type of elements
+ */
+class SpscRing<E>
+{
+  private final Object[] elements;
+  private final int mask;
+
+  //next position to poll, written only by the consumer thread
+  private final AtomicLong head = new AtomicLong();
+  //next position to offer, written only by the producer thread
+  private final AtomicLong tail = new AtomicLong();
+
+  /**
+   * @param capacity minimum capacity which is rounded up to a power of 2.
+   */
+  SpscRing(int capacity)
+  {
+    Preconditions.checkArgument(capacity > 0 && capacity <= 1 << 30, "capacity");
+    int size = Integer.highestOneBit(capacity);
+    if (size < capacity) {
+      size <<= 1;
+    }
+    elements = new Object[size];
+    mask = size - 1;
+  }
+
+  /**
+   * Called by the producer thread.
+   *
+   * @return true if the element was added; false if the ring is full.
+   */
+  boolean offer(E element)
+  {
+    Preconditions.checkNotNull(element);
+    long currentTail = tail.get();
+    if (currentTail - head.get() == elements.length) {
+      return false;
+    }
+    elements[(int)(currentTail & mask)] = element;
+    tail.lazySet(currentTail + 1);
+    return true;
+  }
+
+  /**
+   * Called by the consumer thread.
+   *
+   * @return the oldest element; null if the ring is empty.
+   */
+  @SuppressWarnings("unchecked")
+  E poll()
+  {
+    long currentHead = head.get();
+    if (currentHead == tail.get()) {
+      return null;
+    }
+    int slot = (int)(currentHead & mask);
+    E element = (E)elements[slot];
+    elements[slot] = null;
+    head.lazySet(currentHead + 1);
+    return element;
+  }
+
+  int size()
+  {
+    return (int)(tail.get() - head.get());
+  }
+
+  int capacity()
+  {
+    return elements.length;
+  }
+}
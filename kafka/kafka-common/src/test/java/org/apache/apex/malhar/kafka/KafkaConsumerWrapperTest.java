@@ -0,0 +1,201 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.apex.malhar.kafka;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Properties;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import org.apache.commons.lang3.tuple.Pair;
+import org.apache.kafka.clients.consumer.ConsumerRecord;
+import org.apache.kafka.clients.consumer.ConsumerRecords;
+import org.apache.kafka.common.TopicPartition;
+
+public class KafkaConsumerWrapperTest
+{
+  private static final String CLUSTER = "localhost:9092";
+  private static final String TOPIC = "topic";
+
+  @Test
+  public void testBatchLimits()
+  {
+    KafkaConsumerWrapper wrapper = createWrapper(1024);
+    KafkaConsumerWrapper.ConsumerThread consumerThread = wrapper.addConsumerThread(CLUSTER, null);
+    Map<TopicPartition, List<ConsumerRecord<byte[], byte[]>>> records = new LinkedHashMap<>();
+    records.put(new TopicPartition(TOPIC, 0), createRecords(0, 0, 5));
+    records.put(new TopicPartition(TOPIC, 1), createRecords(1, 10, 3));
+    consumerThread.handOff(new ConsumerRecords<>(records));
+    Assert.assertEquals(8, wrapper.messageSize());
+
+    Assert.assertNull(wrapper.pollBatch(0));
+
+    Map<Integer, Long> nextOffsets = new LinkedHashMap<>();
+    nextOffsets.put(0, 0L);
+    nextOffsets.put(1, 10L);
+    int polled = 0;
+    KafkaConsumerWrapper.RecordBatch batch;
+    while ((batch = wrapper.pollBatch(2)) != null) {
+      Assert.assertEquals(CLUSTER, batch.getCluster());
+      List<ConsumerRecord<byte[], byte[]>> messages = batch.getRecords();
+      Assert.assertTrue("batch size " + messages.size(), messages.size() > 0 && messages.size() <= 2);
+      int partition = messages.get(0).partition();
+      for (ConsumerRecord<byte[], byte[]> message : messages) {
+        Assert.assertEquals("same partition", partition, message.partition());
+        long offset = nextOffsets.get(partition);
+        Assert.assertEquals("consecutive offsets", offset, message.offset());
+        nextOffsets.put(partition, offset + 1);
+      }
+      polled += messages.size();
+      Assert.assertEquals(8 - polled, wrapper.messageSize());
+    }
+    Assert.assertEquals(8, polled);
+    Assert.assertEquals(5L, (long)nextOffsets.get(0));
+    Assert.assertEquals(13L, (long)nextOffsets.get(1));
+  }
+
+  @Test
+  public void testHoldingBuffer()
+  {
+    KafkaConsumerWrapper wrapper = createWrapper(3);
+    KafkaConsumerWrapper.ConsumerThread consumerThread = wrapper.addConsumerThread(CLUSTER, null);
+    for (int i = 0; i < 3; i++) {
+      consumerThread.handOff(createBatch(0, i * 2, 2));
+    }
+    Assert.assertEquals("buffered messages", 4, wrapper.messageSize());
+    Assert.assertEquals("pending batches", 1, consumerThread.pendingBatches());
+
+    Assert.assertEquals(4, pollAll(wrapper).size());
+    Assert.assertEquals(0, wrapper.messageSize());
+
+    consumerThread.offerPending();
+    Assert.assertEquals(0, consumerThread.pendingBatches());
+    List<ConsumerRecord<byte[], byte[]>> messages = pollAll(wrapper);
+    Assert.assertEquals(2, messages.size());
+    Assert.assertEquals(4L, messages.get(0).offset());
+  }
+
+  @Test
+  public void testFullRing()
+  {
+    KafkaConsumerWrapper wrapper = createWrapper(4096);
+    KafkaConsumerWrapper.ConsumerThread consumerThread = wrapper.addConsumerThread(CLUSTER, null);
+    int capacity = consumerThread.ring.capacity();
+    for (int i = 0; i <= capacity; i++) {
+      consumerThread.handOff(createBatch(0, i, 1));
+    }
+    Assert.assertEquals("buffered messages", capacity, wrapper.messageSize());
+    Assert.assertEquals("pending batches", 1, consumerThread.pendingBatches());
+
+    Assert.assertEquals(capacity, pollAll(wrapper).size());
+    consumerThread.offerPending();
+    Assert.assertEquals(0, consumerThread.pendingBatches());
+    List<ConsumerRecord<byte[], byte[]>> messages = pollAll(wrapper);
+    Assert.assertEquals(1, messages.size());
+    Assert.assertEquals(capacity, messages.get(0).offset());
+  }
+
+  @Test
+  public void testRoundRobin()
+  {
+    KafkaConsumerWrapper wrapper = createWrapper(1024);
+    KafkaConsumerWrapper.ConsumerThread consumerThread1 = wrapper.addConsumerThread("cluster1", null);
+    KafkaConsumerWrapper.ConsumerThread consumerThread2 = wrapper.addConsumerThread("cluster2", null);
+    consumerThread1.handOff(createBatch(0, 0, 1));
+    consumerThread1.handOff(createBatch(0, 1, 1));
+    consumerThread2.handOff(createBatch(0, 0, 1));
+
+    Assert.assertEquals("cluster1", wrapper.pollBatch(10).getCluster());
+    Assert.assertEquals("cluster2", wrapper.pollBatch(10).getCluster());
+    Assert.assertEquals("cluster1", wrapper.pollBatch(10).getCluster());
+    Assert.assertNull(wrapper.pollBatch(10));
+  }
+
+  @Test
+  @SuppressWarnings("deprecation")
+  public void testPutMessage() throws InterruptedException
+  {
+    KafkaConsumerWrapper wrapper = createWrapper(1024);
+    wrapper.addConsumerThread(CLUSTER, null);
+    ConsumerRecord<byte[], byte[]> record = createRecords(0, 7, 1).get(0);
+    wrapper.putMessage(Pair.of(CLUSTER, record));
+    Assert.assertEquals(1, wrapper.messageSize());
+
+    Pair<String, ConsumerRecord<byte[], byte[]>> message = wrapper.pollMessage();
+    Assert.assertEquals(CLUSTER, message.getLeft());
+    Assert.assertSame(record, message.getRight());
+    Assert.assertEquals(0, wrapper.messageSize());
+    Assert.assertNull(wrapper.pollMessage());
+  }
+
+  private static KafkaConsumerWrapper createWrapper(int holdingBufferSize)
+  {
+    AbstractKafkaInputOperator operator = new AbstractKafkaInputOperator()
+    {
+      @Override
+      public AbstractKafkaConsumer createConsumer(Properties prop)
+      {
+        return null;
+      }
+
+      @Override
+      protected void emitTuple(String cluster, ConsumerRecord<byte[], byte[]> message)
+      {
+      }
+    };
+    operator.setHoldingBufferSize(holdingBufferSize);
+    operator.assign(new HashSet<AbstractKafkaPartitioner.PartitionMeta>());
+
+    KafkaConsumerWrapper wrapper = new KafkaConsumerWrapper();
+    wrapper.create(operator);
+    return wrapper;
+  }
+
+  private static List<ConsumerRecord<byte[], byte[]>> pollAll(KafkaConsumerWrapper wrapper)
+  {
+    List<ConsumerRecord<byte[], byte[]>> messages = new ArrayList<>();
+    KafkaConsumerWrapper.RecordBatch batch;
+    while ((batch = wrapper.pollBatch(Integer.MAX_VALUE)) != null) {
+      messages.addAll(batch.getRecords());
+    }
+    return messages;
+  }
+
+  private static ConsumerRecords<byte[], byte[]> createBatch(int partition, long firstOffset, int count)
+  {
+    Map<TopicPartition, List<ConsumerRecord<byte[], byte[]>>> records = new LinkedHashMap<>();
+    records.put(new TopicPartition(TOPIC, partition), createRecords(partition, firstOffset, count));
+    return new ConsumerRecords<>(records);
+  }
+
+  private static List<ConsumerRecord<byte[], byte[]>> createRecords(int partition, long firstOffset, int count)
+  {
+    List<ConsumerRecord<byte[], byte[]>> records = new ArrayList<>();
+    for (int i = 0; i < count; i++) {
+      long offset = firstOffset + i;
+      records.add(new ConsumerRecord<byte[], byte[]>(TOPIC, partition, offset, null, ("message" + offset).getBytes()));
+    }
+    return records;
+  }
+}
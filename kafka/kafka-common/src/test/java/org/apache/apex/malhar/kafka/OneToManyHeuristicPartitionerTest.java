@@ -0,0 +1,195 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.apex.malhar.kafka;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Properties;
+import java.util.Set;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import org.apache.kafka.clients.consumer.ConsumerRecord;
+import org.apache.kafka.common.PartitionInfo;
+
+import com.datatorrent.api.Partitioner;
+
+public class OneToManyHeuristicPartitionerTest
+{
+  private static final String CLUSTER = "localhost:9092";
+  private static final String TOPIC = "topic";
+
+  @Test
+  public void testAssignByLoad()
+  {
+    OneToManyHeuristicPartitioner partitioner = createPartitioner(2);
+    partitioner.updateLoads(1, new KafkaMetrics.KafkaPartitionStats[] {stats(0, 50), stats(1, 30), stats(2, 20)});
+    partitioner.updateLoads(2, new KafkaMetrics.KafkaPartitionStats[] {stats(3, 10), stats(4, 10)});
+
+    List<Set<AbstractKafkaPartitioner.PartitionMeta>> assignment = partitioner.assign(metadata(5));
+    Assert.assertEquals(2, assignment.size());
+    Assert.assertEquals(partitions(0, 3), assignment.get(0));
+    Assert.assertEquals(partitions(1, 2, 4), assignment.get(1));
+  }
+
+  @Test
+  public void testAssignWithoutStats()
+  {
+    OneToManyHeuristicPartitioner partitioner = createPartitioner(2);
+    partitioner.updateLoads(1, new KafkaMetrics.KafkaPartitionStats[] {stats(0, 30)});
+
+    //the partitions without stats have the average load
+    List<Set<AbstractKafkaPartitioner.PartitionMeta>> assignment = partitioner.assign(metadata(4));
+    Assert.assertEquals(2, assignment.size());
+    Assert.assertEquals(partitions(0, 2), assignment.get(0));
+    Assert.assertEquals(partitions(1, 3), assignment.get(1));
+
+    //there are not more operator partitions than kafka partitions
+    Assert.assertEquals(1, createPartitioner(2).assign(metadata(1)).size());
+  }
+
+  @Test
+  public void testRebalance()
+  {
+    OneToManyHeuristicPartitioner partitioner = createPartitioner(2);
+    partitioned(partitioner, 2);
+    partitioner.updateLoads(1, new KafkaMetrics.KafkaPartitionStats[] {stats(0, 100), stats(1, 100)});
+    Assert.assertFalse("not all operator partitions reported stats", isRepartitionRequired(partitioner));
+
+    partitioner.updateLoads(2, new KafkaMetrics.KafkaPartitionStats[] {stats(2, 10), stats(3, 10)});
+    Assert.assertTrue("skewed load", isRepartitionRequired(partitioner));
+
+    List<Set<AbstractKafkaPartitioner.PartitionMeta>> assignment = partitioner.assign(metadata(4));
+    Assert.assertEquals(partitions(0, 2), assignment.get(0));
+    Assert.assertEquals(partitions(1, 3), assignment.get(1));
+
+    partitioned(partitioner, 2);
+    Assert.assertFalse("stats of the previous assignment", isRepartitionRequired(partitioner));
+    partitioner.updateLoads(1, new KafkaMetrics.KafkaPartitionStats[] {stats(0, 100), stats(2, 10)});
+    partitioner.updateLoads(2, new KafkaMetrics.KafkaPartitionStats[] {stats(1, 100), stats(3, 10)});
+    Assert.assertFalse("balanced load", isRepartitionRequired(partitioner));
+  }
+
+  @Test
+  public void testDominatingPartition()
+  {
+    OneToManyHeuristicPartitioner partitioner = createPartitioner(2);
+    partitioned(partitioner, 2);
+    partitioner.updateLoads(1, new KafkaMetrics.KafkaPartitionStats[] {stats(0, 1000)});
+    partitioner.updateLoads(2, new KafkaMetrics.KafkaPartitionStats[] {stats(1, 10), stats(2, 10), stats(3, 10)});
+    Assert.assertFalse("load can't be lowered", isRepartitionRequired(partitioner));
+
+    //the skew never dropped under the balanced skew but the load can be balanced after it changed
+    partitioner.updateLoads(1, new KafkaMetrics.KafkaPartitionStats[] {stats(0, 100)});
+    partitioner.updateLoads(2, new KafkaMetrics.KafkaPartitionStats[] {stats(1, 100), stats(2, 100), stats(3, 150)});
+    Assert.assertTrue("skewed load", isRepartitionRequired(partitioner));
+  }
+
+  @Test
+  public void testHysteresis()
+  {
+    OneToManyHeuristicPartitioner partitioner = createPartitioner(3);
+    partitioned(partitioner, 3);
+    partitioner.updateLoads(1, new KafkaMetrics.KafkaPartitionStats[] {stats(0, 90), stats(1, 30)});
+    partitioner.updateLoads(2, new KafkaMetrics.KafkaPartitionStats[] {stats(2, 30)});
+    partitioner.updateLoads(3, new KafkaMetrics.KafkaPartitionStats[] {stats(3, 10)});
+
+    //the skew 2.25 can be lowered to 1.69
+    partitioner.prototypeOperator.setBalancedLoadSkew(1.2);
+    Assert.assertTrue("skew is lowered enough", isRepartitionRequired(partitioner));
+    partitioner.prototypeOperator.setBalancedLoadSkew(0.5);
+    Assert.assertFalse("skew is not lowered enough", isRepartitionRequired(partitioner));
+    partitioner.prototypeOperator.setMaxLoadSkew(2.5);
+    partitioner.prototypeOperator.setBalancedLoadSkew(1.2);
+    Assert.assertFalse("skew is under the max skew", isRepartitionRequired(partitioner));
+  }
+
+  private static OneToManyHeuristicPartitioner createPartitioner(int partitionCount)
+  {
+    AbstractKafkaInputOperator operator = new AbstractKafkaInputOperator()
+    {
+      @Override
+      public AbstractKafkaConsumer createConsumer(Properties prop)
+      {
+        return null;
+      }
+
+      @Override
+      protected void emitTuple(String cluster, ConsumerRecord<byte[], byte[]> message)
+      {
+      }
+    };
+    operator.setInitialPartitionCount(partitionCount);
+    operator.setMaxLoadSkew(1.5);
+    operator.setBalancedLoadSkew(1.2);
+    operator.setLagDrainTime(1000L);
+    return new OneToManyHeuristicPartitioner(new String[] {CLUSTER}, new String[] {TOPIC}, operator);
+  }
+
+  private static void partitioned(OneToManyHeuristicPartitioner partitioner, int operatorCount)
+  {
+    Map<Integer, Partitioner.Partition<AbstractKafkaInputOperator>> partitions = new HashMap<>();
+    for (int i = 1; i <= operatorCount; i++) {
+      partitions.put(i, null);
+    }
+    partitioner.partitioned(partitions);
+  }
+
+  private static boolean isRepartitionRequired(OneToManyHeuristicPartitioner partitioner)
+  {
+    return partitioner.processStats(null).repartitionRequired;
+  }
+
+  private static KafkaMetrics.KafkaPartitionStats stats(int partitionId, double bytesPerSec)
+  {
+    KafkaMetrics.KafkaPartitionStats stats = new KafkaMetrics.KafkaPartitionStats();
+    stats.cluster = CLUSTER;
+    stats.topic = TOPIC;
+    stats.partitionId = partitionId;
+    stats.bytesPerSec = bytesPerSec;
+    stats.msgsPerSec = bytesPerSec;
+    return stats;
+  }
+
+  private static Map<String, Map<String, List<PartitionInfo>>> metadata(int partitionCount)
+  {
+    List<PartitionInfo> partitionInfos = new ArrayList<>();
+    for (int i = 0; i < partitionCount; i++) {
+      partitionInfos.add(new PartitionInfo(TOPIC, i, null, null, null));
+    }
+    Map<String, List<PartitionInfo>> topics = new HashMap<>();
+    topics.put(TOPIC, partitionInfos);
+    Map<String, Map<String, List<PartitionInfo>>> metadata = new HashMap<>();
+    metadata.put(CLUSTER, topics);
+    return metadata;
+  }
+
+  private static Set<AbstractKafkaPartitioner.PartitionMeta> partitions(int... partitionIds)
+  {
+    Set<AbstractKafkaPartitioner.PartitionMeta> partitions = new HashSet<>();
+    for (int partitionId : partitionIds) {
+      partitions.add(new AbstractKafkaPartitioner.PartitionMeta(CLUSTER, TOPIC, partitionId));
+    }
+    return partitions;
+  }
+}
@@ -0,0 +1,101 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.apex.malhar.kafka;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+public class SpscRingTest
+{
+  @Test
+  public void testCapacity()
+  {
+    Assert.assertEquals(1, new SpscRing<Integer>(1).capacity());
+    Assert.assertEquals(4, new SpscRing<Integer>(3).capacity());
+    Assert.assertEquals(8, new SpscRing<Integer>(8).capacity());
+  }
+
+  @Test
+  public void testFullRing()
+  {
+    SpscRing<Integer> ring = new SpscRing<>(4);
+    for (int i = 0; i < 4; i++) {
+      Assert.assertTrue(ring.offer(i));
+    }
+    Assert.assertFalse("full", ring.offer(4));
+    Assert.assertEquals(4, ring.size());
+
+    Assert.assertEquals(0, (int)ring.poll());
+    Assert.assertTrue(ring.offer(4));
+    Assert.assertFalse("full", ring.offer(5));
+
+    for (int i = 1; i <= 4; i++) {
+      Assert.assertEquals(i, (int)ring.poll());
+    }
+    Assert.assertNull("empty", ring.poll());
+    Assert.assertEquals(0, ring.size());
+  }
+
+  @Test
+  public void testWrapAround()
+  {
+    SpscRing<Integer> ring = new SpscRing<>(4);
+    int next = 0;
+    int expected = 0;
+    for (int round = 0; round < 10; round++) {
+      for (int i = 0; i < 3; i++) {
+        Assert.assertTrue(ring.offer(next++));
+      }
+      for (int i = 0; i < 3; i++) {
+        Assert.assertEquals(expected++, (int)ring.poll());
+      }
+      Assert.assertNull(ring.poll());
+    }
+  }
+
+  @Test
+  public void testConcurrentProducer() throws InterruptedException
+  {
+    final SpscRing<Integer> ring = new SpscRing<>(16);
+    final int count = 100000;
+    Thread producer = new Thread()
+    {
+      @Override
+      public void run()
+      {
+        for (int i = 0; i < count; ) {
+          if (ring.offer(i)) {
+            i++;
+          }
+        }
+      }
+    };
+    producer.start();
+
+    int expected = 0;
+    while (expected < count) {
+      Integer element = ring.poll();
+      if (element != null) {
+        Assert.assertEquals(expected++, (int)element);
+      }
+    }
+    producer.join();
+    Assert.assertNull(ring.poll());
+  }
+}
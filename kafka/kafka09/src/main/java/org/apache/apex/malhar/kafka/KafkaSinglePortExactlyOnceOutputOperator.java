@@ -21,11 +21,17 @@ package org.apache.apex.malhar.kafka;
 
 import java.io.IOException;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Properties;
+import java.util.concurrent.Callable;
 import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import javax.validation.constraints.Min;
 
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -41,10 +47,14 @@ import org.apache.kafka.clients.producer.ProducerRecord;
 import org.apache.kafka.clients.producer.RecordMetadata;
 import org.apache.kafka.common.PartitionInfo;
 import org.apache.kafka.common.TopicPartition;
+import org.apache.kafka.common.serialization.ByteArrayDeserializer;
+import org.apache.kafka.common.serialization.Serializer;
+import org.apache.kafka.common.utils.Utils;
 
 import com.datatorrent.api.Context;
 import com.datatorrent.api.DefaultInputPort;
 import com.datatorrent.api.Operator;
+import com.datatorrent.netlet.util.DTThrowable;
 
 import static org.apache.kafka.clients.consumer.ConsumerConfig.BOOTSTRAP_SERVERS_CONFIG;
 import static org.apache.kafka.clients.consumer.ConsumerConfig.KEY_DESERIALIZER_CLASS_CONFIG;
@@ -78,11 +88,22 @@ import static org.apache.kafka.clients.consumer.ConsumerConfig.VALUE_DESERIALIZE
  * <li> Operator uses the Key in the Kafka message, which is not available for use by the operator users.</li>
  * <li> Key is used to uniquely identify the message written by the particular instance of this operator.</li>
  * This allows multiple writers to same Kafka partitions. Format of the key is "APPLICATTION_ID#OPERATOR_ID".
- * <li>During recovery Kafka partitions are read between the latest offset and the last written offsets.</li>
+ * <li>During recovery Kafka partitions are read between the latest offset and the last written offsets.
+ * Only the partitions which were written after the last completed window are read, in parallel.</li>
  * <li>All the tuples written by the particular instance is kept in the Map</li>
  * </p>
  *
  * <p>
+ * <b>Fingerprint recovery</b>
+ * <li>When {@link #isFingerprintRecovery()} is set, only a 64-bit fingerprint of the serialized value of each tuple
+ * written by the instance is kept with its count. The partial window then needs 12 bytes per distinct tuple and the
+ * values are not deserialized during recovery.</li>
+ * <li>The value serializer has to produce the same bytes for equal tuples, which is used instead of Equals &
+ * HashCodes. The chance that a tuple is skipped because its fingerprint collides with a written tuple is
+ * negligible.</li>
+ * </p>
+ *
+ * <p>
  * <b>Limitations</b>
  * <li> Key in the Kafka message is reserved for Operator's use </li>
  * <li> During recovery, operator needs to read tuples between 2 offsets,
@@ -104,8 +125,14 @@ public class KafkaSinglePortExactlyOnceOutputOperator<T> extends AbstractKafkaOu
   private transient Integer operatorId;
   private transient Long windowId;
   private transient Map<T, Integer> partialWindowTuples = new HashMap<>();
+  private transient TupleFingerprints partialWindowFingerprints = new TupleFingerprints();
+  private transient Serializer<T> valueSerializer;
   private transient KafkaConsumer consumer;
 
+  private boolean fingerprintRecovery = false;
+  @Min(1)
+  private int recoveryThreads = 4;
+
   private WindowDataManager windowDataManager = new FSWindowDataManager();
   private final int KAFKA_CONNECT_ATTEMPT = 10;
   private final String KEY_SEPARATOR = "#";
@@ -140,6 +167,9 @@ public class KafkaSinglePortExactlyOnceOutputOperator<T> extends AbstractKafkaOu
     this.key = appName + KEY_SEPARATOR + (new Integer(operatorId));
 
     this.consumer = KafkaConsumerInit();
+    if (fingerprintRecovery) {
+      this.valueSerializer = createValueSerializer();
+    }
   }
 
   @Override
@@ -176,6 +206,9 @@ public class KafkaSinglePortExactlyOnceOutputOperator<T> extends AbstractKafkaOu
   public void teardown()
   {
     consumer.close();
+    if (valueSerializer != null) {
+      valueSerializer.close();
+    }
     super.teardown();
   }
 
@@ -186,7 +219,7 @@ public class KafkaSinglePortExactlyOnceOutputOperator<T> extends AbstractKafkaOu
       return;
     }
 
-    if (!partialWindowTuples.isEmpty()) {
+    if (!partialWindowTuples.isEmpty() || !partialWindowFingerprints.isEmpty()) {
       throw new RuntimeException("Violates Exactly once. Not all the tuples received after operator reset.");
     }
 
@@ -210,19 +243,31 @@ public class KafkaSinglePortExactlyOnceOutputOperator<T> extends AbstractKafkaOu
     this.windowDataManager = windowDataManager;
   }
 
-  private boolean doesKeyBelongsToThisInstance(int operatorId, String key)
+  /**
+   * Whether the partial window is rebuilt from the fingerprints of the serialized tuples instead of the
+   * deserialized tuples.
+   */
+  public boolean isFingerprintRecovery()
   {
-    String[] split = key.split(KEY_SEPARATOR);
+    return fingerprintRecovery;
+  }
 
-    if (split.length != 2) {
-      return false;
-    }
+  public void setFingerprintRecovery(boolean fingerprintRecovery)
+  {
+    this.fingerprintRecovery = fingerprintRecovery;
+  }
 
-    if ((Integer.parseInt(split[1]) == operatorId) && (split[0].equals(appName))) {
-      return true;
-    }
+  /**
+   * Maximum number of Kafka partitions which are read in parallel to rebuild the partial window.
+   */
+  public int getRecoveryThreads()
+  {
+    return recoveryThreads;
+  }
 
-    return false;
+  public void setRecoveryThreads(int recoveryThreads)
+  {
+    this.recoveryThreads = recoveryThreads;
   }
 
   private boolean alreadyInKafka(T message)
@@ -231,6 +276,11 @@ public class KafkaSinglePortExactlyOnceOutputOperator<T> extends AbstractKafkaOu
       return true;
     }
 
+    if (!partialWindowFingerprints.isEmpty()) {
+      return partialWindowFingerprints.remove(TupleFingerprints.fingerprint(
+          valueSerializer.serialize(getTopic(), message)));
+    }
+
     if (partialWindowTuples.containsKey(message)) {
 
       Integer val = partialWindowTuples.get(message);
@@ -306,79 +356,196 @@ public class KafkaSinglePortExactlyOnceOutputOperator<T> extends AbstractKafkaOu
       }
     }
 
-    List<TopicPartition> topicPartitions = new ArrayList<>();
-
-    for (Map.Entry<Integer, Long> entry : currentOffsets.entrySet()) {
-      topicPartitions.add(new TopicPartition(getTopic(), entry.getKey()));
-    }
-
-    consumer.assign(topicPartitions);
-
+    List<PartitionReader<?>> readers = new ArrayList<>();
     for (Map.Entry<Integer, Long> entry : currentOffsets.entrySet()) {
-      Long storedOffset = 0L;
-      Integer currentPartition = entry.getKey();
-      Long currentOffset = entry.getValue();
-
-      if (storedOffsets.containsKey(currentPartition)) {
-        storedOffset = storedOffsets.get(currentPartition);
+      Long storedOffset = storedOffsets.get(entry.getKey());
+      if (storedOffset == null) {
+        storedOffset = 0L;
       }
-
-      if (storedOffset >= currentOffset) {
-        continue;
+      // only the partitions which were written after the last completed window
+      if (storedOffset < entry.getValue()) {
+        TopicPartition topicPartition = new TopicPartition(getTopic(), entry.getKey());
+        readers.add(fingerprintRecovery ? new FingerprintReader(topicPartition, storedOffset, entry.getValue()) :
+            new TupleReader(topicPartition, storedOffset, entry.getValue()));
       }
+    }
+    if (readers.isEmpty()) {
+      return;
+    }
 
-      try {
-        consumer.seek(new TopicPartition(getTopic(), currentPartition), storedOffset);
-      } catch (Exception ex) {
-        logger.info("Rebuilding of the partial window is not complete, exactly once recovery is not possible.");
-        throw new RuntimeException(ex);
+    ExecutorService executorService = Executors.newFixedThreadPool(Math.min(readers.size(), recoveryThreads));
+    try {
+      List<Future<Void>> futures = executorService.invokeAll(readers);
+      for (Future<Void> future : futures) {
+        future.get();
       }
+    } catch (InterruptedException e) {
+      DTThrowable.rethrow(e);
+    } catch (ExecutionException e) {
+      logger.info("Rebuilding of the partial window is not complete, exactly once recovery is not possible.");
+      throw new RuntimeException(e.getCause());
+    } finally {
+      executorService.shutdownNow();
+    }
+
+    // merge in the operator thread
+    for (PartitionReader<?> reader : readers) {
+      reader.merge();
+    }
+    logger.info("Rebuilt the partial window from {} partitions with {} tuples", readers.size(),
+        fingerprintRecovery ? partialWindowFingerprints.size() : partialWindowTuples.size());
+  }
 
-      int kafkaAttempt = 0;
+  /**
+   * Reads the messages of this instance in a Kafka partition between two offsets with its own consumer.
+   */
+  private abstract class PartitionReader<V> implements Callable<Void>
+  {
+    private final TopicPartition topicPartition;
+    private final long startOffset;
+    private final long endOffset;
 
-      while (true) {
+    PartitionReader(TopicPartition topicPartition, long startOffset, long endOffset)
+    {
+      this.topicPartition = topicPartition;
+      this.startOffset = startOffset;
+      this.endOffset = endOffset;
+    }
 
-        ConsumerRecords<String, T> consumerRecords = consumer.poll(100);
+    @Override
+    public Void call() throws Exception
+    {
+      byte[] keyBytes = key.getBytes("UTF-8");
+      Properties props = new Properties();
+      props.put(BOOTSTRAP_SERVERS_CONFIG, getProperties().get(BOOTSTRAP_SERVERS_CONFIG));
+      props.put(KEY_DESERIALIZER_CLASS_CONFIG, ByteArrayDeserializer.class.getName());
+      props.put(VALUE_DESERIALIZER_CLASS_CONFIG, getValueDeserializer());
+
+      try (KafkaConsumer<byte[], V> partitionConsumer = new KafkaConsumer<>(props)) {
+        partitionConsumer.assign(Arrays.asList(topicPartition));
+        partitionConsumer.seek(topicPartition, startOffset);
+
+        int kafkaAttempt = 0;
+        while (true) {
+          ConsumerRecords<byte[], V> consumerRecords = partitionConsumer.poll(100);
+
+          if (consumerRecords.count() == 0) {
+            if (kafkaAttempt++ == KAFKA_CONNECT_ATTEMPT) {
+              break;
+            }
+          } else {
+            kafkaAttempt = 0;
+          }
 
-        if (consumerRecords.count() == 0) {
-          if (kafkaAttempt++ == KAFKA_CONNECT_ATTEMPT) {
-            break;
+          for (ConsumerRecord<byte[], V> consumerRecord : consumerRecords) {
+            if (consumerRecord.offset() >= endOffset) {
+              return null;
+            }
+            // the key identifies the messages written by this instance
+            if (Arrays.equals(keyBytes, consumerRecord.key())) {
+              add(consumerRecord.value());
+            }
           }
-        } else {
-          kafkaAttempt = 0;
         }
+      }
+      return null;
+    }
 
-        boolean crossedBoundary = false;
+    protected abstract Object getValueDeserializer();
 
-        for (ConsumerRecord<String, T> consumerRecord : consumerRecords) {
+    /**
+     * Called by the reader thread for each message of this instance.
+     */
+    protected abstract void add(V value);
 
-          if (consumerRecord.offset() >= currentOffset) {
-            crossedBoundary = true;
-            break;
-          }
+    /**
+     * Called by the operator thread after the partition is read.
+     */
+    protected abstract void merge();
+  }
 
-          if (!doesKeyBelongsToThisInstance(operatorId, consumerRecord.key())) {
-            continue;
-          }
+  private class TupleReader extends PartitionReader<T>
+  {
+    private final Map<T, Integer> tuples = new HashMap<>();
 
-          T value = consumerRecord.value();
+    TupleReader(TopicPartition topicPartition, long startOffset, long endOffset)
+    {
+      super(topicPartition, startOffset, endOffset);
+    }
 
-          if (partialWindowTuples.containsKey(value)) {
-            Integer count = partialWindowTuples.get(value);
-            partialWindowTuples.put(value, count + 1);
-          } else {
-            partialWindowTuples.put(value, 1);
-          }
+    @Override
+    protected Object getValueDeserializer()
+    {
+      return getProperties().get(VALUE_DESERIALIZER_CLASS_CONFIG);
+    }
 
-        }
+    @Override
+    protected void add(T value)
+    {
+      Integer count = tuples.get(value);
+      tuples.put(value, count == null ? 1 : count + 1);
+    }
 
-        if (crossedBoundary) {
-          break;
-        }
+    @Override
+    protected void merge()
+    {
+      for (Map.Entry<T, Integer> entry : tuples.entrySet()) {
+        Integer count = partialWindowTuples.get(entry.getKey());
+        partialWindowTuples.put(entry.getKey(), count == null ? entry.getValue() : count + entry.getValue());
       }
     }
   }
 
+  private class FingerprintReader extends PartitionReader<byte[]>
+  {
+    private final TupleFingerprints fingerprints = new TupleFingerprints();
+
+    FingerprintReader(TopicPartition topicPartition, long startOffset, long endOffset)
+    {
+      super(topicPartition, startOffset, endOffset);
+    }
+
+    @Override
+    protected Object getValueDeserializer()
+    {
+      return ByteArrayDeserializer.class.getName();
+    }
+
+    @Override
+    protected void add(byte[] value)
+    {
+      fingerprints.add(TupleFingerprints.fingerprint(value));
+    }
+
+    @Override
+    protected void merge()
+    {
+      partialWindowFingerprints.addAll(fingerprints);
+    }
+  }
+
+  @SuppressWarnings("unchecked")
+  private Serializer<T> createValueSerializer()
+  {
+    Object serializerClass = getProperties().get(ProducerConfig.VALUE_SERIALIZER_CLASS_CONFIG);
+    if (serializerClass == null) {
+      throw new IllegalArgumentException("Value serializer needs to be set for the fingerprint recovery.");
+    }
+    Serializer<T> serializer;
+    try {
+      serializer = serializerClass instanceof Class ? (Serializer<T>)Utils.newInstance((Class<?>)serializerClass) :
+          (Serializer<T>)Utils.newInstance(serializerClass.toString(), Serializer.class);
+    } catch (ClassNotFoundException e) {
+      throw new IllegalArgumentException(e);
+    }
+    Map<String, Object> configs = new HashMap<>();
+    for (String name : getProperties().stringPropertyNames()) {
+      configs.put(name, getProperties().get(name));
+    }
+    serializer.configure(configs, false);
+    return serializer;
+  }
+
   private KafkaConsumer KafkaConsumerInit()
   {
     Properties props = new Properties();
@@ -0,0 +1,150 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.apex.malhar.kafka;
+
+import java.util.Arrays;
+
+import com.google.common.hash.HashFunction;
+import com.google.common.hash.Hashing;
+
+/**
+ * A multiset of 64-bit fingerprints of the serialized tuples which were written to Kafka in a partial window. It is
+ * an open addressing hash table of primitive fingerprints and counts, so it takes 12 bytes per distinct tuple
+ * regardless of the size of the tuples.
+ */
+class TupleFingerprints
+{
+  private static final HashFunction HASH_FUNCTION = Hashing.murmur3_128();
+  private static final int EMPTY = -1;
+  private static final int MIN_CAPACITY = 16;
+
+  private long[] fingerprints;
+  // count of a fingerprint; EMPTY if the slot is not used
+  private int[] counts;
+  private int mask;
+  // number of used slots
+  private int used;
+  // sum of the counts
+  private long total;
+
+  TupleFingerprints()
+  {
+    allocate(MIN_CAPACITY);
+  }
+
+  static long fingerprint(byte[] bytes)
+  {
+    return HASH_FUNCTION.hashBytes(bytes == null ? new byte[0] : bytes).asLong();
+  }
+
+  /**
+   * Adds a fingerprint.
+   */
+  void add(long fingerprint)
+  {
+    add(fingerprint, 1);
+  }
+
+  /**
+   * Removes one occurrence of a fingerprint.
+   *
+   * @return true if the fingerprint was present; false otherwise.
+   */
+  boolean remove(long fingerprint)
+  {
+    int slot = find(fingerprint);
+    if (counts[slot] <= 0) {
+      return false;
+    }
+    counts[slot]--;
+    total--;
+    return true;
+  }
+
+  /**
+   * Adds all the fingerprints of another instance.
+   */
+  void addAll(TupleFingerprints other)
+  {
+    for (int i = 0; i < other.counts.length; i++) {
+      if (other.counts[i] > 0) {
+        add(other.fingerprints[i], other.counts[i]);
+      }
+    }
+  }
+
+  boolean isEmpty()
+  {
+    return total == 0;
+  }
+
+  long size()
+  {
+    return total;
+  }
+
+  private void add(long fingerprint, int count)
+  {
+    int slot = find(fingerprint);
+    total += count;
+    if (counts[slot] == EMPTY) {
+      fingerprints[slot] = fingerprint;
+      counts[slot] = count;
+      if (++used > (counts.length >> 1) + (counts.length >> 2)) {
+        rehash();
+      }
+    } else {
+      counts[slot] += count;
+    }
+  }
+
+  /**
+   * @return the slot of the fingerprint or the empty slot where it belongs.
+   */
+  private int find(long fingerprint)
+  {
+    int slot = (int)(fingerprint ^ (fingerprint >>> 32)) & mask;
+    while (counts[slot] != EMPTY && fingerprints[slot] != fingerprint) {
+      slot = (slot + 1) & mask;
+    }
+    return slot;
+  }
+
+  private void rehash()
+  {
+    long[] oldFingerprints = fingerprints;
+    int[] oldCounts = counts;
+    allocate(oldCounts.length << 1);
+    for (int i = 0; i < oldCounts.length; i++) {
+      if (oldCounts[i] > 0) {
+        add(oldFingerprints[i], oldCounts[i]);
+      }
+    }
+  }
+
+  private void allocate(int capacity)
+  {
+    fingerprints = new long[capacity];
+    counts = new int[capacity];
+    Arrays.fill(counts, EMPTY);
+    mask = capacity - 1;
+    used = 0;
+    total = 0;
+  }
+}
@@ -0,0 +1,67 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.apex.malhar.kafka;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+public class TupleFingerprintsTest
+{
+  @Test
+  public void testCounts()
+  {
+    TupleFingerprints fingerprints = new TupleFingerprints();
+    long a = TupleFingerprints.fingerprint("a".getBytes());
+    long b = TupleFingerprints.fingerprint("b".getBytes());
+    Assert.assertNotEquals(a, b);
+    Assert.assertEquals(a, TupleFingerprints.fingerprint("a".getBytes()));
+
+    fingerprints.add(a);
+    fingerprints.add(a);
+    fingerprints.add(b);
+    Assert.assertEquals(3, fingerprints.size());
+
+    Assert.assertTrue(fingerprints.remove(a));
+    Assert.assertTrue(fingerprints.remove(b));
+    Assert.assertFalse(fingerprints.remove(b));
+    Assert.assertTrue(fingerprints.remove(a));
+    Assert.assertFalse(fingerprints.remove(a));
+    Assert.assertTrue(fingerprints.isEmpty());
+  }
+
+  @Test
+  public void testRehashAndMerge()
+  {
+    TupleFingerprints first = new TupleFingerprints();
+    TupleFingerprints second = new TupleFingerprints();
+    for (long i = 0; i < 1000; i++) {
+      first.add(i);
+      second.add(i * 2);
+    }
+    first.addAll(second);
+    Assert.assertEquals(2000, first.size());
+
+    for (long i = 0; i < 1000; i++) {
+      Assert.assertTrue(first.remove(i));
+      Assert.assertTrue(first.remove(i * 2));
+    }
+    Assert.assertTrue(first.isEmpty());
+    Assert.assertFalse(first.remove(1));
+  }
+}
@@ -18,7 +18,7 @@
  */
 package org.apache.apex.malhar.lib.appdata.datastructs;
 
-import java.util.Collections;
+import java.util.Arrays;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
@@ -82,12 +82,27 @@ import com.google.common.collect.Sets;
  * all the key components, then all the data payloads with a matching subset of key components are returned. If
  * all the key components are specified in a search query, then only a single data payload is returned if there
  * is a matching key, otherwise nothing is returned.
+ * <br/>
+ * <br/>
+ * The table is stored by columns. The values of each key component are dictionary encoded and every distinct value
+ * has a {@link RowBitmap} of the rows which have it, so selecting on a subset of the key components intersects the
+ * bitmaps of the selected values instead of scanning the rows. Rows with a complete key are found through an open
+ * addressing hash index of the encoded keys, which takes one int per slot.
  *
  * @param <DATA> The type of the data payload.
  * @since 3.0.0
  */
 public class DimensionalTable<DATA>
 {
+  static final int OBJECT_HEADER_BYTES = 16;
+  static final int REFERENCE_BYTES = 4;
+  static final int INT_BYTES = 4;
+  //a HashMap entry with a boxed Integer value
+  private static final int DICTIONARY_ENTRY_BYTES = 2 * OBJECT_HEADER_BYTES + 3 * REFERENCE_BYTES + 2 * INT_BYTES;
+
+  private static final int INITIAL_CAPACITY = 16;
+  private static final int EMPTY_SLOT = -1;
+
   private static final Logger logger = LoggerFactory.getLogger(DimensionalTable.class);
 
   /**
@@ -101,14 +116,14 @@ public class DimensionalTable<DATA>
   protected final List<DATA> dataColumn = Lists.newArrayList();
 
   /**
-   * These are the columns which hold each component of the key.
+   * These are the dictionary encoded columns which hold each component of the key.
    */
-  protected final List<List<Object>> dimensionColumns = Lists.newArrayList();
+  protected final List<KeyColumn> dimensionColumns = Lists.newArrayList();
 
   /**
-   * A map from a key row to its data payload.
+   * Open addressing hash index of the rows by their encoded keys. A slot holds a row or {@link #EMPTY_SLOT}.
    */
-  protected final Map<List<Object>, DATA> dimensionKeysToData = Maps.newHashMap();
+  private int[] rowSlots;
 
   /**
    * Constructor for Kryo
@@ -135,8 +150,10 @@ public class DimensionalTable<DATA>
   private void initialize()
   {
     for (int columnIndex = 0; columnIndex < dimensionNameToIndex.size(); columnIndex++) {
-      dimensionColumns.add(Lists.newArrayList());
+      dimensionColumns.add(new KeyColumn());
     }
+    rowSlots = new int[INITIAL_CAPACITY];
+    Arrays.fill(rowSlots, EMPTY_SLOT);
   }
 
   /**
@@ -176,24 +193,7 @@ public class DimensionalTable<DATA>
     Preconditions.checkArgument(keys.length == dimensionNameToIndex.size(),
         "All the dimension keys should be specified.");
 
-    List<Object> keysList = Lists.newArrayList();
-
-    for (Object key : keys) {
-      keysList.add(key);
-    }
-
-    DATA prev = dimensionKeysToData.put(keysList, data);
-
-    if (prev != null) {
-      return;
-    }
-
-    dataColumn.add(data);
-
-    for (int index = 0; index < keys.length; index++) {
-      Object key = keys[index];
-      dimensionColumns.get(index).add(key);
-    }
+    appendRow(data, Arrays.asList(keys));
   }
 
   /**
@@ -222,6 +222,62 @@ public class DimensionalTable<DATA>
     appendRow(data, keysArray);
   }
 
+  /**
+   * Appends rows to the table. The storage of the table is grown once for all the rows. If the key combination of a
+   * row is not unique then the existing row is replaced.
+   * @param data The data payloads of the rows.
+   * @param keys The values for the components of the keys of the rows. The key components of a row must be specified
+   * in the same order as their header names.
+   */
+  public void appendRows(List<DATA> data, List<? extends List<?>> keys)
+  {
+    Preconditions.checkNotNull(data);
+    Preconditions.checkNotNull(keys);
+    Preconditions.checkArgument(data.size() == keys.size(), "The number of data payloads and keys differ.");
+
+    int capacity = dataColumn.size() + data.size();
+    ensureIndexCapacity(capacity);
+    for (KeyColumn column : dimensionColumns) {
+      column.ensureCapacity(capacity);
+    }
+
+    for (int rowIndex = 0; rowIndex < data.size(); rowIndex++) {
+      DATA rowData = data.get(rowIndex);
+      List<?> rowKeys = keys.get(rowIndex);
+      Preconditions.checkNotNull(rowData);
+      Preconditions.checkNotNull(rowKeys);
+      Preconditions.checkArgument(rowKeys.size() == dimensionNameToIndex.size(),
+          "All the dimension keys should be specified.");
+
+      appendRow(rowData, rowKeys);
+    }
+  }
+
+  private void appendRow(DATA data, List<?> keys)
+  {
+    int[] codes = new int[keys.size()];
+    for (int index = 0; index < codes.length; index++) {
+      codes[index] = dimensionColumns.get(index).encode(keys.get(index));
+    }
+
+    int slot = findSlot(codes);
+    if (rowSlots[slot] != EMPTY_SLOT) {
+      dataColumn.set(rowSlots[slot], data);
+      return;
+    }
+
+    int row = dataColumn.size();
+    dataColumn.add(data);
+    for (int index = 0; index < codes.length; index++) {
+      dimensionColumns.get(index).append(codes[index]);
+    }
+
+    rowSlots[slot] = row;
+    if (row + 1 > rowSlots.length >> 1) {
+      ensureIndexCapacity(row + 1);
+    }
+  }
+
   /**
    * This method returns a data payload corresponding to the provided key, or null if there is no data payload
    * corresponding to the provided key.
@@ -229,13 +285,22 @@ public class DimensionalTable<DATA>
    * components must be provided in the same order as their header names.
    * @return The data payload corresponding to the given key.
    */
-  @SuppressWarnings("element-type-mismatch")
   public DATA getDataPoint(List<?> keys)
   {
     Preconditions.checkNotNull(keys);
     Preconditions.checkArgument(keys.size() == dimensionNameToIndex.size(), "All the keys must be specified.");
 
-    return dimensionKeysToData.get(keys);
+    int[] codes = new int[keys.size()];
+    for (int index = 0; index < codes.length; index++) {
+      Integer code = dimensionColumns.get(index).getCode(keys.get(index));
+      if (code == null) {
+        return null;
+      }
+      codes[index] = code;
+    }
+
+    int row = rowSlots[findSlot(codes)];
+    return row == EMPTY_SLOT ? null : dataColumn.get(row);
   }
 
   /**
@@ -280,49 +345,28 @@ public class DimensionalTable<DATA>
     Preconditions.checkArgument(dimensionNameToIndex.keySet().containsAll(keys.keySet()),
         "The given keys contain names which are not valid keys.");
 
-    List<Integer> indices = Lists.newArrayList();
-    List<List<Object>> keyColumns = Lists.newArrayList();
+    if (keys.isEmpty()) {
+      return getAllDataPoints();
+    }
 
-    Map<Integer, Object> indexToKey = Maps.newHashMap();
+    List<RowBitmap> bitmaps = Lists.newArrayList();
 
     for (Map.Entry<String, ?> entry : keys.entrySet()) {
-      String dimensionName = entry.getKey();
-      Object value = entry.getValue();
-      Integer index = dimensionNameToIndex.get(dimensionName);
-
-      indices.add(index);
-      indexToKey.put(index, value);
-    }
+      KeyColumn column = dimensionColumns.get(dimensionNameToIndex.get(entry.getKey()));
+      Integer code = column.getCode(entry.getValue());
 
-    Collections.sort(indices);
-    List<Object> tempKeys = Lists.newArrayList();
+      if (code == null) {
+        return Lists.newArrayList();
+      }
 
-    for (Integer index : indices) {
-      tempKeys.add(indexToKey.get(index));
-      keyColumns.add(dimensionColumns.get(index));
+      bitmaps.add(column.getRows(code));
     }
 
-    int numRows = keyColumns.get(0).size();
-    List<DATA> results = Lists.newArrayList();
-
-    for (int rowIndex = 0; rowIndex < numRows; rowIndex++) {
-      boolean allEqual = true;
+    int[] rows = RowBitmap.intersect(bitmaps);
+    List<DATA> results = Lists.newArrayListWithCapacity(rows.length);
 
-      for (int columnIndex = 0; columnIndex < tempKeys.size(); columnIndex++) {
-        Object key = tempKeys.get(columnIndex);
-        Object keyColumn = keyColumns.get(columnIndex).get(rowIndex);
-
-        if ((key == null && keyColumn != null) ||
-            (key != null && keyColumn == null) ||
-            (key != null && !keyColumn.equals(key))) {
-          allEqual = false;
-          break;
-        }
-      }
-
-      if (allEqual) {
-        results.add(dataColumn.get(rowIndex));
-      }
+    for (int row : rows) {
+      results.add(dataColumn.get(row));
     }
 
     return results;
@@ -345,4 +389,265 @@ public class DimensionalTable<DATA>
   {
     return dataColumn.size();
   }
+
+  /**
+   * Estimates the memory taken by the table, excluding the key values and the data payloads themselves.
+   * @return The estimated memory footprint of the columns and the indices of the table.
+   */
+  public MemoryFootprint getMemoryFootprint()
+  {
+    MemoryFootprint footprint = new MemoryFootprint(dataColumn.size(),
+        arrayBytes(dataColumn.size(), REFERENCE_BYTES), arrayBytes(rowSlots.length, INT_BYTES));
+
+    for (Map.Entry<String, Integer> entry : dimensionNameToIndex.entrySet()) {
+      KeyColumn column = dimensionColumns.get(entry.getValue());
+      footprint.columnCardinalities.put(entry.getKey(), column.getCardinality());
+      footprint.columnBytes.put(entry.getKey(), column.getSizeInBytes());
+    }
+
+    logger.debug("{}", footprint);
+    return footprint;
+  }
+
+  static long arrayBytes(int length, int elementBytes)
+  {
+    return OBJECT_HEADER_BYTES + (long)length * elementBytes;
+  }
+
+  /**
+   * @return the slot of the row with the given encoded key or the empty slot where the row belongs.
+   */
+  private int findSlot(int[] codes)
+  {
+    int mask = rowSlots.length - 1;
+    int slot = hash(codes) & mask;
+    while (rowSlots[slot] != EMPTY_SLOT && !rowHasCodes(rowSlots[slot], codes)) {
+      slot = (slot + 1) & mask;
+    }
+    return slot;
+  }
+
+  private boolean rowHasCodes(int row, int[] codes)
+  {
+    for (int index = 0; index < codes.length; index++) {
+      if (dimensionColumns.get(index).getCodeAt(row) != codes[index]) {
+        return false;
+      }
+    }
+    return true;
+  }
+
+  private int rowHash(int row)
+  {
+    int hash = 1;
+    for (KeyColumn column : dimensionColumns) {
+      hash = 31 * hash + column.getCodeAt(row);
+    }
+    return spread(hash);
+  }
+
+  private static int hash(int[] codes)
+  {
+    return spread(Arrays.hashCode(codes));
+  }
+
+  private static int spread(int hash)
+  {
+    int h = hash * 0x9E3779B9;
+    return h ^ (h >>> 16);
+  }
+
+  /**
+   * Grows the row index so that it stays at most half full with the given number of rows.
+   */
+  private void ensureIndexCapacity(int rows)
+  {
+    int capacity = rowSlots.length;
+    while (rows > capacity >> 1) {
+      capacity <<= 1;
+    }
+    if (capacity == rowSlots.length) {
+      return;
+    }
+
+    rowSlots = new int[capacity];
+    Arrays.fill(rowSlots, EMPTY_SLOT);
+    int mask = capacity - 1;
+    for (int row = 0; row < dataColumn.size(); row++) {
+      int slot = rowHash(row) & mask;
+      while (rowSlots[slot] != EMPTY_SLOT) {
+        slot = (slot + 1) & mask;
+      }
+      rowSlots[slot] = row;
+    }
+  }
+
+  /**
+   * A dictionary encoded column of a key component. It holds the distinct values of the component, the code of the
+   * value of each row and a {@link RowBitmap} of the rows of each value.
+   */
+  protected static class KeyColumn
+  {
+    private final Map<Object, Integer> codes = Maps.newHashMap();
+    private final List<Object> values = Lists.newArrayList();
+    private final List<RowBitmap> rows = Lists.newArrayList();
+    private int[] rowCodes = new int[INITIAL_CAPACITY];
+    private int size;
+
+    /**
+     * @return the code of the value, which is added to the dictionary if it is new.
+     */
+    int encode(Object value)
+    {
+      Integer code = codes.get(value);
+      if (code == null) {
+        code = values.size();
+        codes.put(value, code);
+        values.add(value);
+        rows.add(new RowBitmap());
+      }
+      return code;
+    }
+
+    /**
+     * @return the code of the value; null if no row has the value.
+     */
+    Integer getCode(Object value)
+    {
+      return codes.get(value);
+    }
+
+    void append(int code)
+    {
+      ensureCapacity(size + 1);
+      rowCodes[size] = code;
+      rows.get(code).add(size);
+      size++;
+    }
+
+    void ensureCapacity(int capacity)
+    {
+      if (capacity > rowCodes.length) {
+        rowCodes = Arrays.copyOf(rowCodes, Math.max(capacity, rowCodes.length + (rowCodes.length >> 1)));
+      }
+    }
+
+    int getCodeAt(int row)
+    {
+      return rowCodes[row];
+    }
+
+    /**
+     * @return the value of the key component of the given row.
+     */
+    public Object get(int row)
+    {
+      Preconditions.checkElementIndex(row, size);
+      return values.get(rowCodes[row]);
+    }
+
+    RowBitmap getRows(int code)
+    {
+      return rows.get(code);
+    }
+
+    /**
+     * @return the number of rows in the column.
+     */
+    public int size()
+    {
+      return size;
+    }
+
+    /**
+     * @return the number of distinct values in the column.
+     */
+    public int getCardinality()
+    {
+      return values.size();
+    }
+
+    long getSizeInBytes()
+    {
+      long bytes = arrayBytes(rowCodes.length, INT_BYTES) + (long)values.size() *
+          (DICTIONARY_ENTRY_BYTES + 2 * REFERENCE_BYTES);
+      for (RowBitmap bitmap : rows) {
+        bytes += bitmap.getSizeInBytes();
+      }
+      return bytes;
+    }
+  }
+
+  /**
+   * The estimated memory taken by a {@link DimensionalTable}, excluding the key values and the data payloads.
+   */
+  public static class MemoryFootprint
+  {
+    private final int rows;
+    private final long dataColumnBytes;
+    private final long rowIndexBytes;
+    private final Map<String, Long> columnBytes = Maps.newHashMap();
+    private final Map<String, Integer> columnCardinalities = Maps.newHashMap();
+
+    MemoryFootprint(int rows, long dataColumnBytes, long rowIndexBytes)
+    {
+      this.rows = rows;
+      this.dataColumnBytes = dataColumnBytes;
+      this.rowIndexBytes = rowIndexBytes;
+    }
+
+    public int getRows()
+    {
+      return rows;
+    }
+
+    /**
+     * @return the bytes of the references to the data payloads.
+     */
+    public long getDataColumnBytes()
+    {
+      return dataColumnBytes;
+    }
+
+    /**
+     * @return the bytes of the hash index of the complete keys.
+     */
+    public long getRowIndexBytes()
+    {
+      return rowIndexBytes;
+    }
+
+    /**
+     * @return the bytes of the codes, the dictionary and the bitmaps of each key column.
+     */
+    public Map<String, Long> getColumnBytes()
+    {
+      return columnBytes;
+    }
+
+    /**
+     * @return the number of distinct values of each key column.
+     */
+    public Map<String, Integer> getColumnCardinalities()
+    {
+      return columnCardinalities;
+    }
+
+    public long getTotalBytes()
+    {
+      long bytes = dataColumnBytes + rowIndexBytes;
+      for (long columnByte : columnBytes.values()) {
+        bytes += columnByte;
+      }
+      return bytes;
+    }
+
+    @Override
+    public String toString()
+    {
+      return "MemoryFootprint{rows=" + rows + ", totalBytes=" + getTotalBytes() + ", dataColumnBytes=" +
+          dataColumnBytes + ", rowIndexBytes=" + rowIndexBytes + ", columnBytes=" + columnBytes +
+          ", columnCardinalities=" + columnCardinalities + '}';
+    }
+  }
 }
@@ -0,0 +1,218 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.apex.malhar.lib.appdata.datastructs;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+
+import com.google.common.base.Preconditions;
+import com.google.common.collect.Lists;
+
+/**
+ * A compressed set of row indices of a {@link DimensionalTable} in the style of a roaring bitmap. The rows are split
+ * into chunks of 2<sup>16</sup> by their high bits. A chunk with few rows keeps their low bits in a sorted array and
+ * a dense chunk keeps them in a bitmap of 2<sup>16</sup> bits. Rows are appended in increasing order.
+ */
+class RowBitmap
+{
+  //max number of rows in an array container; an array container of this size takes as much memory as a bitmap
+  private static final int MAX_ARRAY_CONTAINER_SIZE = 4096;
+  private static final int BITMAP_CONTAINER_WORDS = 1 << 10;
+  private static final int INITIAL_ARRAY_CONTAINER_SIZE = 4;
+
+  private static final Comparator<RowBitmap> CARDINALITY_COMPARATOR = new Comparator<RowBitmap>()
+  {
+    @Override
+    public int compare(RowBitmap a, RowBitmap b)
+    {
+      return Integer.compare(a.cardinality, b.cardinality);
+    }
+  };
+
+  //high 16 bits of the rows in each container
+  private int[] keys = new int[1];
+  //char[] of the sorted low 16 bits or long[] bitmap of the low 16 bits
+  private Object[] containers = new Object[1];
+  private int[] containerCardinalities = new int[1];
+  private int containerCount;
+  private int cardinality;
+  private int lastRow = -1;
+
+  /**
+   * Adds a row which is greater than all the rows in the bitmap.
+   */
+  void add(int row)
+  {
+    Preconditions.checkArgument(row > lastRow, "rows must be added in increasing order");
+    lastRow = row;
+    int high = row >>> 16;
+    char low = (char)row;
+
+    if (containerCount == 0 || keys[containerCount - 1] != high) {
+      if (containerCount == keys.length) {
+        int capacity = containerCount << 1;
+        keys = Arrays.copyOf(keys, capacity);
+        containers = Arrays.copyOf(containers, capacity);
+        containerCardinalities = Arrays.copyOf(containerCardinalities, capacity);
+      }
+      keys[containerCount] = high;
+      containers[containerCount] = new char[INITIAL_ARRAY_CONTAINER_SIZE];
+      containerCount++;
+    }
+
+    int index = containerCount - 1;
+    int count = containerCardinalities[index];
+    Object container = containers[index];
+    if (container instanceof char[]) {
+      char[] values = (char[])container;
+      if (count < MAX_ARRAY_CONTAINER_SIZE) {
+        if (count == values.length) {
+          values = Arrays.copyOf(values, Math.min(count << 1, MAX_ARRAY_CONTAINER_SIZE));
+          containers[index] = values;
+        }
+        values[count] = low;
+      } else {
+        long[] bitmap = new long[BITMAP_CONTAINER_WORDS];
+        for (int i = 0; i < count; i++) {
+          bitmap[values[i] >>> 6] |= 1L << values[i];
+        }
+        bitmap[low >>> 6] |= 1L << low;
+        containers[index] = bitmap;
+      }
+    } else {
+      ((long[])container)[low >>> 6] |= 1L << low;
+    }
+    containerCardinalities[index] = count + 1;
+    cardinality++;
+  }
+
+  boolean contains(int row)
+  {
+    int index = indexOf(row >>> 16);
+    return index >= 0 && containsLow(containers[index], containerCardinalities[index], (char)row);
+  }
+
+  int getCardinality()
+  {
+    return cardinality;
+  }
+
+  /**
+   * @return estimated number of bytes taken by the bitmap.
+   */
+  long getSizeInBytes()
+  {
+    long bytes = DimensionalTable.OBJECT_HEADER_BYTES + 4 * DimensionalTable.INT_BYTES +
+        3 * DimensionalTable.arrayBytes(keys.length, DimensionalTable.INT_BYTES);
+    for (int i = 0; i < containerCount; i++) {
+      Object container = containers[i];
+      bytes += container instanceof char[] ? DimensionalTable.arrayBytes(((char[])container).length, 2) :
+          DimensionalTable.arrayBytes(BITMAP_CONTAINER_WORDS, 8);
+    }
+    return bytes;
+  }
+
+  /**
+   * Intersects bitmaps. The containers of the bitmap with the least rows are visited and each of their rows is looked
+   * up in the matching containers of the other bitmaps. Chunks which are missing from any bitmap are skipped whole.
+   *
+   * @param bitmaps bitmaps to intersect.
+   * @return the rows in all the bitmaps in increasing order.
+   */
+  static int[] intersect(List<RowBitmap> bitmaps)
+  {
+    Preconditions.checkArgument(!bitmaps.isEmpty());
+    List<RowBitmap> sorted = Lists.newArrayList(bitmaps);
+    Collections.sort(sorted, CARDINALITY_COMPARATOR);
+
+    RowBitmap smallest = sorted.get(0);
+    int others = sorted.size() - 1;
+    Object[] otherContainers = new Object[others];
+    int[] otherCardinalities = new int[others];
+    int[] rows = new int[smallest.cardinality];
+    int count = 0;
+
+    for (int c = 0; c < smallest.containerCount; c++) {
+      int high = smallest.keys[c];
+      boolean present = true;
+      for (int i = 0; i < others && present; i++) {
+        RowBitmap other = sorted.get(i + 1);
+        int index = other.indexOf(high);
+        if (index < 0) {
+          present = false;
+        } else {
+          otherContainers[i] = other.containers[index];
+          otherCardinalities[i] = other.containerCardinalities[index];
+        }
+      }
+      if (!present) {
+        continue;
+      }
+
+      Object container = smallest.containers[c];
+      int base = high << 16;
+      if (container instanceof char[]) {
+        char[] values = (char[])container;
+        for (int v = 0; v < smallest.containerCardinalities[c]; v++) {
+          if (containsAll(otherContainers, otherCardinalities, values[v])) {
+            rows[count++] = base | values[v];
+          }
+        }
+      } else {
+        long[] bitmap = (long[])container;
+        for (int w = 0; w < bitmap.length; w++) {
+          long word = bitmap[w];
+          while (word != 0) {
+            char low = (char)((w << 6) | Long.numberOfTrailingZeros(word));
+            word &= word - 1;
+            if (containsAll(otherContainers, otherCardinalities, low)) {
+              rows[count++] = base | low;
+            }
+          }
+        }
+      }
+    }
+    return count == rows.length ? rows : Arrays.copyOf(rows, count);
+  }
+
+  private static boolean containsAll(Object[] containers, int[] cardinalities, char low)
+  {
+    for (int i = 0; i < containers.length; i++) {
+      if (!containsLow(containers[i], cardinalities[i], low)) {
+        return false;
+      }
+    }
+    return true;
+  }
+
+  private static boolean containsLow(Object container, int count, char low)
+  {
+    if (container instanceof char[]) {
+      return Arrays.binarySearch((char[])container, 0, count, low) >= 0;
+    }
+    return (((long[])container)[low >>> 6] & (1L << low)) != 0;
+  }
+
+  private int indexOf(int high)
+  {
+    return Arrays.binarySearch(keys, 0, containerCount, high);
+  }
+}
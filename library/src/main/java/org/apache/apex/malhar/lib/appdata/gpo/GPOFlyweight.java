@@ -0,0 +1,197 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.apex.malhar.lib.appdata.gpo;
+
+import java.nio.ByteBuffer;
+import java.util.List;
+
+import org.apache.apex.malhar.lib.appdata.schemas.FieldsDescriptor;
+import org.apache.apex.malhar.lib.appdata.schemas.Type;
+
+import com.google.common.base.Preconditions;
+
+import it.unimi.dsi.fastutil.objects.Object2IntLinkedOpenHashMap;
+import it.unimi.dsi.fastutil.objects.Object2IntOpenHashMap;
+
+/**
+ * A read only view of a {@link GPOMutable} which was serialized by a {@link GPOSerializer} or by
+ * {@link GPOUtils#serialize(GPOMutable, GPOByteArrayList)}. The values are read in place from the buffer, so a
+ * field can be read without deserializing the whole object. The offsets of the fixed size fields are computed once
+ * for the {@link FieldsDescriptor}; the offsets of the string fields are computed on the first access to a string
+ * field after each {@link #wrap(ByteBuffer, int)}.
+ * <p/>
+ * A flyweight is meant to be reused for many serialized objects of the same descriptor. It is not thread-safe.
+ */
+public class GPOFlyweight
+{
+  private final FieldsDescriptor fieldsDescriptor;
+  //offset of each fixed size field from the start of the serialized object
+  private final Object2IntOpenHashMap<String> fieldToOffset = new Object2IntOpenHashMap<>();
+  private final Object2IntLinkedOpenHashMap<String> stringFieldToIndex;
+  private final int fixedLength;
+  private final int[] stringOffsets;
+
+  private ByteBuffer buffer;
+  private int offset;
+  private boolean stringOffsetsValid;
+
+  public GPOFlyweight(FieldsDescriptor fieldsDescriptor)
+  {
+    Preconditions.checkArgument(fieldsDescriptor.getCompressedTypes().isEmpty(),
+        "Compressed types are not supported");
+    this.fieldsDescriptor = fieldsDescriptor;
+    fieldToOffset.defaultReturnValue(-1);
+
+    int fieldOffset = 0;
+    for (Type type : GPOSerializer.FIXED_SIZE_TYPES) {
+      List<String> fields = fieldsDescriptor.getTypeToFields().get(type);
+      if (fields == null) {
+        continue;
+      }
+      Object2IntLinkedOpenHashMap<String> fieldToIndex = fieldsDescriptor.getTypeToFieldToIndex().get(type);
+      for (String field : fields) {
+        fieldToOffset.put(field, fieldOffset + fieldToIndex.getInt(field) * type.getByteSize());
+      }
+      fieldOffset += fields.size() * type.getByteSize();
+    }
+    fixedLength = fieldOffset;
+
+    stringFieldToIndex = fieldsDescriptor.getTypeToFieldToIndex().get(Type.STRING);
+    stringOffsets = new int[stringFieldToIndex == null ? 0 : stringFieldToIndex.size() + 1];
+  }
+
+  /**
+   * Points this flyweight at a serialized object.
+   * @param buffer The buffer containing the serialized object.
+   * @param offset The absolute index of the first byte of the serialized object in the buffer.
+   * @return This flyweight.
+   */
+  public GPOFlyweight wrap(ByteBuffer buffer, int offset)
+  {
+    this.buffer = buffer;
+    this.offset = offset;
+    stringOffsetsValid = false;
+    return this;
+  }
+
+  public FieldsDescriptor getFieldsDescriptor()
+  {
+    return fieldsDescriptor;
+  }
+
+  public boolean getFieldBool(String field)
+  {
+    return buffer.get(fieldOffset(field, Type.BOOLEAN)) != 0;
+  }
+
+  public char getFieldChar(String field)
+  {
+    return buffer.getChar(fieldOffset(field, Type.CHAR));
+  }
+
+  public byte getFieldByte(String field)
+  {
+    return buffer.get(fieldOffset(field, Type.BYTE));
+  }
+
+  public short getFieldShort(String field)
+  {
+    return buffer.getShort(fieldOffset(field, Type.SHORT));
+  }
+
+  public int getFieldInt(String field)
+  {
+    return buffer.getInt(fieldOffset(field, Type.INTEGER));
+  }
+
+  public long getFieldLong(String field)
+  {
+    return buffer.getLong(fieldOffset(field, Type.LONG));
+  }
+
+  public float getFieldFloat(String field)
+  {
+    return buffer.getFloat(fieldOffset(field, Type.FLOAT));
+  }
+
+  public double getFieldDouble(String field)
+  {
+    return buffer.getDouble(fieldOffset(field, Type.DOUBLE));
+  }
+
+  public String getFieldString(String field)
+  {
+    throwInvalidField(field, Type.STRING);
+    computeStringOffsets();
+    int index = stringFieldToIndex.getInt(field);
+    int start = stringOffsets[index] + Type.INTEGER.getByteSize();
+    int length = stringOffsets[index + 1] - start;
+
+    if (buffer.hasArray()) {
+      return new String(buffer.array(), buffer.arrayOffset() + start, length);
+    }
+
+    byte[] bytes = new byte[length];
+    ByteBuffer duplicate = buffer.duplicate();
+    duplicate.position(start);
+    duplicate.get(bytes);
+    return new String(bytes);
+  }
+
+  /**
+   * @return The number of bytes of the wrapped object, excluding its object fields.
+   */
+  public int getSerializedLength()
+  {
+    if (stringOffsets.length == 0) {
+      return fixedLength;
+    }
+    computeStringOffsets();
+    return stringOffsets[stringOffsets.length - 1] - offset;
+  }
+
+  private void computeStringOffsets()
+  {
+    if (stringOffsetsValid) {
+      return;
+    }
+
+    int stringOffset = offset + fixedLength;
+    for (int index = 0; index < stringOffsets.length - 1; index++) {
+      stringOffsets[index] = stringOffset;
+      stringOffset += Type.INTEGER.getByteSize() + buffer.getInt(stringOffset);
+    }
+    stringOffsets[stringOffsets.length - 1] = stringOffset;
+    stringOffsetsValid = true;
+  }
+
+  private int fieldOffset(String field, Type type)
+  {
+    throwInvalidField(field, type);
+    return offset + fieldToOffset.getInt(field);
+  }
+
+  private void throwInvalidField(String field, Type type)
+  {
+    Type fieldType = fieldsDescriptor.getType(field);
+    if (fieldType == null || !fieldType.equals(type)) {
+      throw new IllegalArgumentException(field + " is not a valid field of type " + type + " on this object.");
+    }
+  }
+}
@@ -0,0 +1,360 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.apex.malhar.lib.appdata.gpo;
+
+import java.nio.ByteBuffer;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+import org.codehaus.commons.compiler.CompileException;
+import org.codehaus.commons.compiler.CompilerFactoryFactory;
+import org.codehaus.commons.compiler.IClassBodyEvaluator;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import org.apache.apex.malhar.lib.appdata.schemas.FieldsDescriptor;
+import org.apache.apex.malhar.lib.appdata.schemas.Type;
+import org.apache.apex.malhar.lib.utils.serde.SerializationBuffer;
+import org.apache.commons.lang3.mutable.MutableInt;
+
+import com.google.common.base.Preconditions;
+
+/**
+ * A serializer of the {@link GPOMutable} objects of a {@link FieldsDescriptor} which is specialized for the
+ * descriptor. The code which writes and reads the fields is generated and compiled once per layout of the fields, so
+ * it has no loops over the types of the descriptor, no offsets in {@link MutableInt}s and no intermediate byte arrays.
+ * <p/>
+ * The wire format is the same as the one of {@link GPOUtils#serialize(GPOMutable, GPOByteArrayList)}: the values of
+ * the boolean, char, byte, short, integer, long, float and double fields in the order of their types and the order
+ * of their names in big endian order, followed by the length prefixed bytes of the string fields and the bytes of the
+ * object fields written by their {@link Serde}s. The fixed size fields can be read in place with a
+ * {@link GPOFlyweight}.
+ * <p/>
+ * A serializer is created for a descriptor with {@link #create(FieldsDescriptor)} and it is meant to be reused. It is
+ * not thread-safe.
+ */
+public abstract class GPOSerializer
+{
+  /**
+   * The types of the fixed size fields in the order in which they are serialized.
+   */
+  static final Type[] FIXED_SIZE_TYPES = {Type.BOOLEAN, Type.CHAR, Type.BYTE, Type.SHORT, Type.INTEGER, Type.LONG,
+      Type.FLOAT, Type.DOUBLE};
+
+  private static final String[] ARRAY_GETTERS = {"getFieldsBoolean", "getFieldsCharacter", "getFieldsByte",
+      "getFieldsShort", "getFieldsInteger", "getFieldsLong", "getFieldsFloat", "getFieldsDouble"};
+  private static final String[] JAVA_TYPES = {"boolean", "char", "byte", "short", "int", "long", "float", "double"};
+  private static final String[] BUFFER_PUTS = {"put(%s ? (byte)1 : (byte)0)", "putChar(%s)", "put(%s)",
+      "putShort(%s)", "putInt(%s)", "putLong(%s)", "putFloat(%s)", "putDouble(%s)"};
+  private static final String[] BUFFER_GETS = {"get() != 0", "getChar()", "get()", "getShort()", "getInt()",
+      "getLong()", "getFloat()", "getDouble()"};
+  private static final String[] OUTPUT_WRITES = {"writeBoolean(%s)", "writeChar(%s)", "writeByte(%s)",
+      "writeShort(%s)", "writeInt(%s)", "writeLong(%s)", "writeFloat(%s)", "writeDouble(%s)"};
+
+  /**
+   * The generated classes by the layout of the fields, so the descriptors with the same types and numbers of fields
+   * share a class.
+   */
+  private static final ConcurrentMap<String, Class<? extends GPOSerializer>> SERIALIZER_CLASSES =
+      new ConcurrentHashMap<>();
+
+  private FieldsDescriptor fieldsDescriptor;
+
+  protected GPOSerializer()
+  {
+  }
+
+  /**
+   * Creates a serializer for the given {@link FieldsDescriptor}. The serializer class for the layout of the
+   * descriptor is generated the first time.
+   * @param fieldsDescriptor The descriptor of the {@link GPOMutable} objects to serialize.
+   * @return A serializer for the descriptor.
+   */
+  public static GPOSerializer create(FieldsDescriptor fieldsDescriptor)
+  {
+    Preconditions.checkNotNull(fieldsDescriptor);
+    String layout = getLayout(fieldsDescriptor);
+    Class<? extends GPOSerializer> serializerClass = SERIALIZER_CLASSES.get(layout);
+
+    if (serializerClass == null) {
+      serializerClass = generate(fieldsDescriptor);
+      Class<? extends GPOSerializer> existing = SERIALIZER_CLASSES.putIfAbsent(layout, serializerClass);
+      if (existing != null) {
+        serializerClass = existing;
+      }
+    }
+
+    try {
+      GPOSerializer serializer = serializerClass.newInstance();
+      serializer.fieldsDescriptor = fieldsDescriptor;
+      return serializer;
+    } catch (InstantiationException | IllegalAccessException e) {
+      throw new RuntimeException(e);
+    }
+  }
+
+  public FieldsDescriptor getFieldsDescriptor()
+  {
+    return fieldsDescriptor;
+  }
+
+  /**
+   * Serializes the given {@link GPOMutable} to a new byte array.
+   * @param gpo The {@link GPOMutable} to serialize.
+   * @return The serialized {@link GPOMutable}.
+   */
+  public byte[] serialize(GPOMutable gpo)
+  {
+    byte[][] objects = serializeObjects(gpo);
+    int length = serializedLength(gpo);
+    for (byte[] object : objects) {
+      length += object.length;
+    }
+
+    ByteBuffer buffer = ByteBuffer.allocate(length);
+    serializeFields(gpo, buffer);
+    for (byte[] object : objects) {
+      buffer.put(object);
+    }
+    return buffer.array();
+  }
+
+  /**
+   * Serializes the given {@link GPOMutable} at the position of the given buffer and advances the position.
+   * @param gpo The {@link GPOMutable} to serialize.
+   * @param buffer The buffer to write to. It must have {@link #serializedLength(GPOMutable)} bytes remaining plus
+   * the bytes of the object fields.
+   */
+  public void serialize(GPOMutable gpo, ByteBuffer buffer)
+  {
+    serializeFields(gpo, buffer);
+    for (byte[] object : serializeObjects(gpo)) {
+      buffer.put(object);
+    }
+  }
+
+  /**
+   * Serializes the given {@link GPOMutable} to the given {@link SerializationBuffer}.
+   * @param gpo The {@link GPOMutable} to serialize.
+   * @param buffer The buffer to write to.
+   */
+  public void serialize(GPOMutable gpo, SerializationBuffer buffer)
+  {
+    serializeFields(gpo, buffer);
+    for (byte[] object : serializeObjects(gpo)) {
+      buffer.write(object);
+    }
+  }
+
+  /**
+   * Deserializes a {@link GPOMutable} from the position of the given buffer and advances the position.
+   * @param buffer The buffer to read from.
+   * @return The deserialized {@link GPOMutable}.
+   */
+  public GPOMutable deserialize(ByteBuffer buffer)
+  {
+    GPOMutable gpo = new GPOMutable(fieldsDescriptor);
+    deserialize(buffer, gpo);
+    return gpo;
+  }
+
+  /**
+   * Deserializes the values of the fields from the position of the given buffer into an existing {@link GPOMutable}
+   * and advances the position.
+   * @param buffer The buffer to read from.
+   * @param gpo The {@link GPOMutable} of the descriptor of this serializer to set the values of.
+   */
+  public void deserialize(ByteBuffer buffer, GPOMutable gpo)
+  {
+    deserializeFields(buffer, gpo);
+
+    Object[] fieldsObject = gpo.getFieldsObject();
+    if (fieldsObject == null) {
+      return;
+    }
+
+    Serde[] serdes = fieldsDescriptor.getSerdes();
+    byte[] bytes;
+    int start;
+    if (buffer.hasArray()) {
+      bytes = buffer.array();
+      start = buffer.arrayOffset() + buffer.position();
+    } else {
+      bytes = new byte[buffer.remaining()];
+      buffer.duplicate().get(bytes);
+      start = 0;
+    }
+
+    MutableInt offset = new MutableInt(start);
+    for (int index = 0; index < fieldsObject.length; index++) {
+      fieldsObject[index] = serdes[index].deserializeObject(bytes, offset);
+    }
+    buffer.position(buffer.position() + offset.intValue() - start);
+  }
+
+  /**
+   * Computes the number of bytes of the serialized {@link GPOMutable}, excluding its object fields.
+   * @param gpo The {@link GPOMutable}.
+   * @return The serialized size.
+   */
+  public abstract int serializedLength(GPOMutable gpo);
+
+  protected abstract void serializeFields(GPOMutable gpo, ByteBuffer buffer);
+
+  protected abstract void serializeFields(GPOMutable gpo, SerializationBuffer buffer);
+
+  protected abstract void deserializeFields(ByteBuffer buffer, GPOMutable gpo);
+
+  protected static void putString(String value, ByteBuffer buffer)
+  {
+    //the platform charset like GPOUtils.serializeString
+    byte[] bytes = value.getBytes();
+    buffer.putInt(bytes.length);
+    buffer.put(bytes);
+  }
+
+  protected static void writeString(String value, SerializationBuffer buffer)
+  {
+    byte[] bytes = value.getBytes();
+    buffer.writeInt(bytes.length);
+    buffer.writeBytes(bytes);
+  }
+
+  protected static String getString(ByteBuffer buffer)
+  {
+    int length = buffer.getInt();
+    String value;
+    if (buffer.hasArray()) {
+      value = new String(buffer.array(), buffer.arrayOffset() + buffer.position(), length);
+      buffer.position(buffer.position() + length);
+    } else {
+      byte[] bytes = new byte[length];
+      buffer.get(bytes);
+      value = new String(bytes);
+    }
+    return value;
+  }
+
+  protected static int stringLength(String value)
+  {
+    return Type.INTEGER.getByteSize() + value.getBytes().length;
+  }
+
+  private byte[][] serializeObjects(GPOMutable gpo)
+  {
+    Object[] fieldsObject = gpo.getFieldsObject();
+    if (fieldsObject == null) {
+      return new byte[0][];
+    }
+
+    Serde[] serdes = fieldsDescriptor.getSerdes();
+    byte[][] objects = new byte[fieldsObject.length][];
+    for (int index = 0; index < fieldsObject.length; index++) {
+      objects[index] = serdes[index].serializeObject(fieldsObject[index]);
+    }
+    return objects;
+  }
+
+  private static int arraySize(FieldsDescriptor fieldsDescriptor, Type type)
+  {
+    return fieldsDescriptor.getTypeToFields().containsKey(type) ? fieldsDescriptor.getTypeToSize().getInt(type) : 0;
+  }
+
+  private static String getLayout(FieldsDescriptor fieldsDescriptor)
+  {
+    StringBuilder layout = new StringBuilder();
+    for (Type type : FIXED_SIZE_TYPES) {
+      layout.append(arraySize(fieldsDescriptor, type)).append(',');
+    }
+    return layout.append(arraySize(fieldsDescriptor, Type.STRING)).toString();
+  }
+
+  private static Class<? extends GPOSerializer> generate(FieldsDescriptor fieldsDescriptor)
+  {
+    StringBuilder length = new StringBuilder();
+    StringBuilder serializeBuffer = new StringBuilder();
+    StringBuilder serializeOutput = new StringBuilder();
+    StringBuilder deserialize = new StringBuilder();
+    int fixedLength = 0;
+
+    for (int typeIndex = 0; typeIndex < FIXED_SIZE_TYPES.length; typeIndex++) {
+      int size = arraySize(fieldsDescriptor, FIXED_SIZE_TYPES[typeIndex]);
+      if (size == 0) {
+        continue;
+      }
+      fixedLength += size * FIXED_SIZE_TYPES[typeIndex].getByteSize();
+
+      String array = JAVA_TYPES[typeIndex] + "Fields";
+      String declaration = JAVA_TYPES[typeIndex] + "[] " + array + " = gpo." + ARRAY_GETTERS[typeIndex] + "();\n";
+      serializeBuffer.append(declaration);
+      serializeOutput.append(declaration);
+      deserialize.append(declaration);
+
+      for (int index = 0; index < size; index++) {
+        String element = array + "[" + index + "]";
+        serializeBuffer.append("buffer.").append(String.format(BUFFER_PUTS[typeIndex], element)).append(";\n");
+        serializeOutput.append("buffer.").append(String.format(OUTPUT_WRITES[typeIndex], element)).append(";\n");
+        deserialize.append(element).append(" = buffer.").append(BUFFER_GETS[typeIndex]).append(";\n");
+      }
+    }
+
+    length.append("int length = ").append(fixedLength).append(";\n");
+    int strings = arraySize(fieldsDescriptor, Type.STRING);
+    if (strings > 0) {
+      String declaration = "String[] stringFields = gpo.getFieldsString();\n";
+      length.append(declaration);
+      serializeBuffer.append(declaration);
+      serializeOutput.append(declaration);
+      deserialize.append(declaration);
+
+      for (int index = 0; index < strings; index++) {
+        String element = "stringFields[" + index + "]";
+        length.append("length += stringLength(").append(element).append(");\n");
+        serializeBuffer.append("putString(").append(element).append(", buffer);\n");
+        serializeOutput.append("writeString(").append(element).append(", buffer);\n");
+        deserialize.append(element).append(" = getString(buffer);\n");
+      }
+    }
+    length.append("return length;\n");
+
+    String code = "public int serializedLength(GPOMutable gpo)\n{\n" + length + "}\n\n" +
+        "protected void serializeFields(GPOMutable gpo, ByteBuffer buffer)\n{\n" + serializeBuffer + "}\n\n" +
+        "protected void serializeFields(GPOMutable gpo, SerializationBuffer buffer)\n{\n" + serializeOutput +
+        "}\n\n" +
+        "protected void deserializeFields(ByteBuffer buffer, GPOMutable gpo)\n{\n" + deserialize + "}\n";
+    logger.debug("code for {}: {}", fieldsDescriptor, code);
+
+    try {
+      IClassBodyEvaluator evaluator = CompilerFactoryFactory.getDefaultCompilerFactory().newClassBodyEvaluator();
+      evaluator.setExtendedClass(GPOSerializer.class);
+      evaluator.setDefaultImports(new String[] {ByteBuffer.class.getName(), GPOMutable.class.getName(),
+          SerializationBuffer.class.getName()});
+      evaluator.cook(code);
+      @SuppressWarnings("unchecked")
+      Class<? extends GPOSerializer> serializerClass = (Class<? extends GPOSerializer>)evaluator.getClazz();
+      return serializerClass;
+    } catch (CompileException e) {
+      throw new RuntimeException(e);
+    } catch (Exception e) {
+      throw new RuntimeException("compiler not available", e);
+    }
+  }
+
+  private static final Logger logger = LoggerFactory.getLogger(GPOSerializer.class);
+}
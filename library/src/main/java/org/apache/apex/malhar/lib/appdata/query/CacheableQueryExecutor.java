@@ -0,0 +1,59 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.apex.malhar.lib.appdata.query;
+
+/**
+ * A {@link QueryExecutor} whose results can be shared by equivalent queries. Two queries are equivalent when they
+ * have the same cache key, for example when they differ only by their ids, and their results are the same as long
+ * as the data version does not change. This is used by {@link QueryResultCache}.
+ * @param <QUERY_TYPE> The type of the query to execute.
+ * @param <META_QUERY> The type of any additional meta data associated with the query when it was enqueued.
+ * @param <QUEUE_CONTEXT> The type of the queue context of the query.
+ * @param <RESULT> The type of the query's result.
+ */
+public interface CacheableQueryExecutor<QUERY_TYPE, META_QUERY, QUEUE_CONTEXT, RESULT>
+    extends QueryExecutor<QUERY_TYPE, META_QUERY, QUEUE_CONTEXT, RESULT>
+{
+  /**
+   * Returns the normalized form of a query which identifies the equivalent queries. The key must implement equals
+   * and hashCode.
+   * @param query The query.
+   * @param metaQuery Any additional meta data associated with the query.
+   * @param queueContext Additional information required to queue the query properly.
+   * @return The cache key of the query, or null if the result of the query must not be shared.
+   */
+  public Object getCacheKey(QUERY_TYPE query, META_QUERY metaQuery, QUEUE_CONTEXT queueContext);
+
+  /**
+   * Returns the version of the data which the queries are executed against. The version must change whenever the
+   * data changes.
+   * @return The version of the data.
+   */
+  public long getDataVersion();
+
+  /**
+   * Creates the result of a query from the result of an equivalent query.
+   * @param result The result of an equivalent query.
+   * @param query The query.
+   * @param metaQuery Any additional meta data associated with the query.
+   * @param queueContext Additional information required to queue the query properly.
+   * @return The result of the query.
+   */
+  public RESULT reuseResult(RESULT result, QUERY_TYPE query, META_QUERY metaQuery, QUEUE_CONTEXT queueContext);
+}
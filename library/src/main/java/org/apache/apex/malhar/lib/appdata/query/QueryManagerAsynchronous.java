@@ -22,14 +22,22 @@ import java.util.concurrent.Callable;
 import java.util.concurrent.ConcurrentLinkedQueue;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
+import java.util.concurrent.PriorityBlockingQueue;
 import java.util.concurrent.Semaphore;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
 
+import javax.validation.constraints.Min;
 import javax.validation.constraints.NotNull;
 
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import org.apache.apex.malhar.lib.appdata.query.serde.MessageSerializerFactory;
+import org.apache.apex.malhar.lib.appdata.schemas.QRBase;
 import org.apache.apex.malhar.lib.appdata.schemas.Result;
 
 import com.google.common.annotations.VisibleForTesting;
@@ -42,23 +50,56 @@ import com.datatorrent.api.Operator.IdleTimeHandler;
 import com.datatorrent.common.util.NameableThreadFactory;
 
 /**
+ * This component executes the queries of a {@link QueueManager} asynchronously and emits the serialized results
+ * within the operator's windows. The queries are dequeued by a dispatcher thread and executed by a pool of
+ * {@link #getNumWorkers()} workers. The interactive queries, as decided by the {@link QueryPrioritizer}, are executed
+ * before the bulk queries which are waiting for a worker. By default the one time queries are interactive and the
+ * queries with a countdown are bulk queries.
+ * <p/>
+ * The {@link QueryExecutor} must be thread-safe when there is more than one worker. A {@link QueryResultCache} can
+ * be used as the executor to share the results of identical queries.
+ * <p/>
+ * The queue depth and a histogram of the query latencies are available as metrics.
+ *
  * @since 3.1.0
  */
 
 public class QueryManagerAsynchronous<QUERY_TYPE, META_QUERY, QUEUE_CONTEXT, RESULT extends Result> implements Component<OperatorContext>, IdleTimeHandler
 {
+  public static final int DEFAULT_NUM_WORKERS = 1;
+  public static final int DEFAULT_MAX_PENDING_QUERIES = 1000;
+  /**
+   * The upper bounds in milliseconds of the buckets of the latency histogram. The last bucket of the histogram counts
+   * the latencies greater than the last bound.
+   */
+  public static final long[] LATENCY_BUCKET_BOUNDS_MILLIS = {1L, 2L, 5L, 10L, 20L, 50L, 100L, 200L, 500L, 1000L,
+      2000L, 5000L};
+
   private DefaultOutputPort<String> resultPort = null;
 
-  //TODO I believe this semaphore is no longer necessary and can just be straight up deleted.
+  /**
+   * The permits of the queries which may be executed. The permits are only available within the operator's window.
+   */
   private final transient Semaphore inWindowSemaphore = new Semaphore(0);
   private final ConcurrentLinkedQueue<String> queue = new ConcurrentLinkedQueue<String>();
   private QueueManager<QUERY_TYPE, META_QUERY, QUEUE_CONTEXT> queueManager;
   private QueryExecutor<QUERY_TYPE, META_QUERY, QUEUE_CONTEXT, RESULT> queryExecutor;
   private MessageSerializerFactory messageSerializerFactory;
+  private QueryPrioritizer<QUERY_TYPE, META_QUERY, QUEUE_CONTEXT> queryPrioritizer;
+  @Min(1)
+  private int numWorkers = DEFAULT_NUM_WORKERS;
+  @Min(1)
+  private int maxPendingQueries = DEFAULT_MAX_PENDING_QUERIES;
 
   @VisibleForTesting
   protected transient ExecutorService processingThread;
+  @VisibleForTesting
+  protected transient ThreadPoolExecutor workers;
   private transient Thread mainThread;
+  private final transient AtomicInteger pendingQueries = new AtomicInteger();
+  private final transient AtomicLong querySequence = new AtomicLong();
+  private final transient AtomicLongArray latencyHistogram =
+      new AtomicLongArray(LATENCY_BUCKET_BOUNDS_MILLIS.length + 1);
 
   public QueryManagerAsynchronous(DefaultOutputPort<String> resultPort,
       QueueManager<QUERY_TYPE, META_QUERY, QUEUE_CONTEXT> queueManager,
@@ -108,16 +149,93 @@ public class QueryManagerAsynchronous<QUERY_TYPE, META_QUERY, QUEUE_CONTEXT, RES
     this.messageSerializerFactory = Preconditions.checkNotNull(messageSerializerFactory);
   }
 
+  /**
+   * @return The number of workers which execute queries.
+   */
+  public int getNumWorkers()
+  {
+    return numWorkers;
+  }
+
+  /**
+   * Sets the number of workers which execute queries. The {@link QueryExecutor} must be thread-safe when there is
+   * more than one worker.
+   * @param numWorkers The number of workers which execute queries.
+   */
+  public void setNumWorkers(int numWorkers)
+  {
+    Preconditions.checkArgument(numWorkers > 0);
+    this.numWorkers = numWorkers;
+  }
+
+  /**
+   * @return The maximum number of dequeued queries which are waiting for or being executed by the workers.
+   */
+  public int getMaxPendingQueries()
+  {
+    return maxPendingQueries;
+  }
+
+  /**
+   * Sets the maximum number of dequeued queries which are waiting for or being executed by the workers.
+   * @param maxPendingQueries The maximum number of dequeued queries which are waiting for or being executed.
+   */
+  public void setMaxPendingQueries(int maxPendingQueries)
+  {
+    Preconditions.checkArgument(maxPendingQueries > 0);
+    this.maxPendingQueries = maxPendingQueries;
+  }
+
+  public QueryPrioritizer<QUERY_TYPE, META_QUERY, QUEUE_CONTEXT> getQueryPrioritizer()
+  {
+    return queryPrioritizer;
+  }
+
+  /**
+   * Sets the {@link QueryPrioritizer} which decides which queries are interactive. If it is not set, the one time
+   * queries are interactive.
+   * @param queryPrioritizer The {@link QueryPrioritizer} which decides which queries are interactive.
+   */
+  public void setQueryPrioritizer(QueryPrioritizer<QUERY_TYPE, META_QUERY, QUEUE_CONTEXT> queryPrioritizer)
+  {
+    this.queryPrioritizer = queryPrioritizer;
+  }
+
+  /**
+   * @return The number of queries which are queued or are waiting for or being executed by the workers.
+   */
+  public int getQueueDepth()
+  {
+    return queueManager.getNumLeft() + pendingQueries.get();
+  }
+
+  /**
+   * Returns the number of executed queries by latency bucket. The latency of a query is the time from its dequeue to
+   * the serialization of its result. The bucket i counts the latencies which are greater than the bound i - 1 and
+   * less than or equal to the bound i of {@link #LATENCY_BUCKET_BOUNDS_MILLIS}.
+   * @return The number of executed queries by latency bucket.
+   */
+  public long[] getLatencyHistogram()
+  {
+    long[] histogram = new long[latencyHistogram.length()];
+    for (int index = 0; index < histogram.length; index++) {
+      histogram[index] = latencyHistogram.get(index);
+    }
+    return histogram;
+  }
+
   @Override
   public void setup(OperatorContext context)
   {
+    workers = new ThreadPoolExecutor(numWorkers, numWorkers, 0L, TimeUnit.MILLISECONDS,
+        new PriorityBlockingQueue<Runnable>(), new NameableThreadFactory("Query Worker Thread"));
     processingThread = Executors.newSingleThreadScheduledExecutor(new NameableThreadFactory("Query Executor Thread"));
     processingThread.submit(new ProcessingThread(mainThread));
   }
 
   public void beginWindow(long windowID)
   {
-    inWindowSemaphore.release();
+    inWindowSemaphore.release(maxPendingQueries);
     queueManager.resumeEnqueue();
   }
 
@@ -134,13 +252,14 @@ public class QueryManagerAsynchronous<QUERY_TYPE, META_QUERY, QUEUE_CONTEXT, RES
       }
     }
 
-    emptyQueue();
-
+    //Wait for the workers to finish the dispatched queries.
     try {
-      inWindowSemaphore.acquire();
+      inWindowSemaphore.acquire(maxPendingQueries);
     } catch (InterruptedException ex) {
       throw new RuntimeException(ex);
     }
+
+    emptyQueue();
   }
 
   //Dirty hack TODO fix QueManager interface
@@ -165,6 +284,7 @@ public class QueryManagerAsynchronous<QUERY_TYPE, META_QUERY, QUEUE_CONTEXT, RES
   public void teardown()
   {
     processingThread.shutdownNow();
+    workers.shutdownNow();
   }
 
   @Override
@@ -173,6 +293,26 @@ public class QueryManagerAsynchronous<QUERY_TYPE, META_QUERY, QUEUE_CONTEXT, RES
     emptyQueue();
   }
 
+  private boolean isInteractive(QueryBundle<QUERY_TYPE, META_QUERY, QUEUE_CONTEXT> queryBundle)
+  {
+    if (queryPrioritizer != null) {
+      return queryPrioritizer.isInteractive(queryBundle.getQuery(), queryBundle.getMetaQuery(),
+          queryBundle.getQueueContext());
+    }
+
+    QUERY_TYPE query = queryBundle.getQuery();
+    return !(query instanceof QRBase) || ((QRBase)query).isOneTime();
+  }
+
+  private void recordLatency(long latencyMillis)
+  {
+    int bucket = 0;
+    while (bucket < LATENCY_BUCKET_BOUNDS_MILLIS.length && latencyMillis > LATENCY_BUCKET_BOUNDS_MILLIS[bucket]) {
+      bucket++;
+    }
+    latencyHistogram.incrementAndGet(bucket);
+  }
+
   private class ProcessingThread implements Callable<Void>
   {
     private Thread mainThread;
@@ -215,20 +355,72 @@ public class QueryManagerAsynchronous<QUERY_TYPE, META_QUERY, QUEUE_CONTEXT, RES
           throw new RuntimeException(ex);
         }
 
-        //We are gauranteed to be in the operator's window now.
+        //We are gauranteed to be in the operator's window now. The worker releases the permit when the query is
+        //done, which allows the operator to continue to the next window if it wants to.
+        pendingQueries.incrementAndGet();
+        workers.execute(new QueryTask(queryBundle, isInteractive(queryBundle), querySequence.getAndIncrement(),
+            System.currentTimeMillis(), mainThread));
+      }
+    }
+  }
+
+  /**
+   * The execution of a query by a worker. The interactive queries are ordered before the bulk queries, and the
+   * queries of the same priority are ordered by their dequeue.
+   */
+  private class QueryTask implements Runnable, Comparable<QueryTask>
+  {
+    private final QueryBundle<QUERY_TYPE, META_QUERY, QUEUE_CONTEXT> queryBundle;
+    private final boolean interactive;
+    private final long sequence;
+    private final long dequeueTime;
+    private final Thread mainThread;
+
+    QueryTask(QueryBundle<QUERY_TYPE, META_QUERY, QUEUE_CONTEXT> queryBundle, boolean interactive, long sequence,
+        long dequeueTime, Thread mainThread)
+    {
+      this.queryBundle = queryBundle;
+      this.interactive = interactive;
+      this.sequence = sequence;
+      this.dequeueTime = dequeueTime;
+      this.mainThread = mainThread;
+    }
+
+    @Override
+    public void run()
+    {
+      try {
         Result result = queryExecutor.executeQuery(queryBundle.getQuery(), queryBundle.getMetaQuery(),
             queryBundle.getQueueContext());
         if (result != null) {
-          String serializedMessage = messageSerializerFactory.serialize(result);
+          String serializedMessage;
+          //The serializers of the factory are created lazily and are not thread-safe.
+          synchronized (messageSerializerFactory) {
+            serializedMessage = messageSerializerFactory.serialize(result);
+          }
           queue.add(serializedMessage);
         }
+        recordLatency(System.currentTimeMillis() - dequeueTime);
+      } catch (RuntimeException | Error ex) {
+        LOG.error("Exception thrown while processing:", ex);
+        mainThread.interrupt();
 
-        //We are done processing the query allow the operator to continue to the next window if it
-        //wants to
-
+        throw ex;
+      } finally {
+        pendingQueries.decrementAndGet();
         inWindowSemaphore.release();
       }
     }
+
+    @Override
+    public int compareTo(QueryTask other)
+    {
+      if (interactive != other.interactive) {
+        return interactive ? -1 : 1;
+      }
+
+      return sequence < other.sequence ? -1 : (sequence == other.sequence ? 0 : 1);
+    }
   }
 
   private static final Logger LOG = LoggerFactory.getLogger(QueryManagerAsynchronous.class);
@@ -18,6 +18,8 @@
  */
 package org.apache.apex.malhar.lib.appdata.query;
 
+import java.util.Arrays;
+
 import com.google.common.base.Preconditions;
 
 import com.datatorrent.api.Component;
@@ -47,6 +49,11 @@ public class QueryManagerSynchronous<QUERY_TYPE, META_QUERY, QUEUE_CONTEXT, RESU
    * The {@link QueueManager} used to queue queries.
    */
   private QueueManager<QUERY_TYPE, META_QUERY, QUEUE_CONTEXT> queryQueueManager;
+  /**
+   * The number of queries executed in the current window by latency bucket.
+   */
+  private final transient long[] latencyHistogram =
+      new long[QueryManagerAsynchronous.LATENCY_BUCKET_BOUNDS_MILLIS.length + 1];
 
   /**
    *
@@ -111,14 +118,45 @@ public class QueryManagerSynchronous<QUERY_TYPE, META_QUERY, QUEUE_CONTEXT, RESU
         return null;
       }
 
+      long dequeueTime = System.currentTimeMillis();
       result = queryExecutor.executeQuery(queryBundle.getQuery(), queryBundle.getMetaQuery(),
           queryBundle.getQueueContext());
+      recordLatency(System.currentTimeMillis() - dequeueTime);
     }
     while (result == null);
 
     return result;
   }
 
+  /**
+   * @return The number of queries which are left to be processed in the current window.
+   */
+  public int getQueueDepth()
+  {
+    return queryQueueManager.getNumLeft();
+  }
+
+  /**
+   * Returns the number of queries executed in the current window by latency bucket. The latency of a query is the
+   * time from its dequeue to the return of its result by the {@link QueryExecutor}. The buckets are the same as the
+   * buckets of {@link QueryManagerAsynchronous#getLatencyHistogram()}.
+   * @return The number of queries executed in the current window by latency bucket.
+   */
+  public long[] getLatencyHistogram()
+  {
+    return latencyHistogram.clone();
+  }
+
+  private void recordLatency(long latencyMillis)
+  {
+    int bucket = 0;
+    while (bucket < QueryManagerAsynchronous.LATENCY_BUCKET_BOUNDS_MILLIS.length &&
+        latencyMillis > QueryManagerAsynchronous.LATENCY_BUCKET_BOUNDS_MILLIS[bucket]) {
+      bucket++;
+    }
+    latencyHistogram[bucket]++;
+  }
+
   /**
    * This method should be called from the {@link com.datatorrent.api.Operator#setup} method so that the
  QueryManagerSynchronous can correctly initialize its internal state.
@@ -137,6 +175,7 @@ public class QueryManagerSynchronous<QUERY_TYPE, META_QUERY, QUEUE_CONTEXT, RESU
    */
   public void beginWindow(long windowId)
   {
+    Arrays.fill(latencyHistogram, 0L);
     queryQueueManager.beginWindow(windowId);
   }
 
@@ -0,0 +1,37 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.apex.malhar.lib.appdata.query;
+
+/**
+ * This is an interface for deciding whether a query is interactive or bulk. Interactive queries are executed before
+ * the bulk queries which are waiting for a worker of the {@link QueryManagerAsynchronous}.
+ * @param <QUERY_TYPE> The type of the query.
+ * @param <META_QUERY> The type of any additional meta data associated with the query when it was enqueued.
+ * @param <QUEUE_CONTEXT> The type of the queue context of the query.
+ */
+public interface QueryPrioritizer<QUERY_TYPE, META_QUERY, QUEUE_CONTEXT>
+{
+  /**
+   * @param query The query.
+   * @param metaQuery Any additional meta data associated with the query.
+   * @param queueContext Additional information required to queue the query properly.
+   * @return True if the query is interactive, false if it is a bulk query.
+   */
+  public boolean isInteractive(QUERY_TYPE query, META_QUERY metaQuery, QUEUE_CONTEXT queueContext);
+}
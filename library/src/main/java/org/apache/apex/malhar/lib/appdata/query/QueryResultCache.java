@@ -0,0 +1,212 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.apex.malhar.lib.appdata.query;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.atomic.AtomicLong;
+
+import com.google.common.base.Preconditions;
+import com.google.common.base.Throwables;
+import com.google.common.util.concurrent.SettableFuture;
+
+/**
+ * A {@link QueryExecutor} which caches the results of a {@link CacheableQueryExecutor}. The results are cached by
+ * the cache key of the query and the data version. A query with a cached result of the current data version is
+ * answered from the cached result, and a query whose equivalent query of the same data version is being executed by
+ * another thread waits for that execution instead of executing the query again. The least recently used results are
+ * evicted when the cache has {@link #getMaxCachedResults()} results.
+ * <p/>
+ * This class is thread-safe if the wrapped {@link CacheableQueryExecutor} is.
+ * @param <QUERY_TYPE> The type of the query to execute.
+ * @param <META_QUERY> The type of any additional meta data associated with the query when it was enqueued.
+ * @param <QUEUE_CONTEXT> The type of the queue context of the query.
+ * @param <RESULT> The type of the query's result.
+ */
+public class QueryResultCache<QUERY_TYPE, META_QUERY, QUEUE_CONTEXT, RESULT>
+    implements QueryExecutor<QUERY_TYPE, META_QUERY, QUEUE_CONTEXT, RESULT>
+{
+  public static final int DEFAULT_MAX_CACHED_RESULTS = 1000;
+
+  private CacheableQueryExecutor<QUERY_TYPE, META_QUERY, QUEUE_CONTEXT, RESULT> queryExecutor;
+  private int maxCachedResults = DEFAULT_MAX_CACHED_RESULTS;
+
+  private final transient Map<Object, CachedResult<RESULT>> cache = new LinkedHashMap<>(16, 0.75f, true);
+  private final transient ConcurrentMap<Object, SettableFuture<CachedResult<RESULT>>> inFlight =
+      new ConcurrentHashMap<>();
+  private final transient AtomicLong hitCount = new AtomicLong();
+  private final transient AtomicLong missCount = new AtomicLong();
+  private final transient AtomicLong coalescedCount = new AtomicLong();
+
+  private QueryResultCache()
+  {
+    //for kryo
+  }
+
+  public QueryResultCache(CacheableQueryExecutor<QUERY_TYPE, META_QUERY, QUEUE_CONTEXT, RESULT> queryExecutor)
+  {
+    this.queryExecutor = Preconditions.checkNotNull(queryExecutor);
+  }
+
+  @Override
+  public RESULT executeQuery(QUERY_TYPE query, META_QUERY metaQuery, QUEUE_CONTEXT queueContext)
+  {
+    Object key = queryExecutor.getCacheKey(query, metaQuery, queueContext);
+    if (key == null) {
+      return queryExecutor.executeQuery(query, metaQuery, queueContext);
+    }
+
+    long dataVersion = queryExecutor.getDataVersion();
+    CachedResult<RESULT> cachedResult;
+    synchronized (cache) {
+      cachedResult = cache.get(key);
+    }
+    if (cachedResult != null && cachedResult.dataVersion == dataVersion) {
+      hitCount.incrementAndGet();
+      return queryExecutor.reuseResult(cachedResult.result, query, metaQuery, queueContext);
+    }
+
+    SettableFuture<CachedResult<RESULT>> future = SettableFuture.create();
+    SettableFuture<CachedResult<RESULT>> executing;
+    while ((executing = inFlight.putIfAbsent(key, future)) != null) {
+      coalescedCount.incrementAndGet();
+      cachedResult = getUninterruptibly(executing);
+      if (cachedResult.dataVersion == dataVersion) {
+        return cachedResult.result == null ? null :
+            queryExecutor.reuseResult(cachedResult.result, query, metaQuery, queueContext);
+      }
+      //the execution started before the data version of this query, so the query is executed again
+      coalescedCount.decrementAndGet();
+    }
+
+    missCount.incrementAndGet();
+    try {
+      RESULT result = queryExecutor.executeQuery(query, metaQuery, queueContext);
+      cachedResult = new CachedResult<>(dataVersion, result);
+      //a query without a result is executed again, since its result may become available without a new data version
+      if (result != null) {
+        synchronized (cache) {
+          cache.put(key, cachedResult);
+          if (cache.size() > maxCachedResults) {
+            cache.remove(cache.keySet().iterator().next());
+          }
+        }
+      }
+      future.set(cachedResult);
+      return result;
+    } catch (RuntimeException | Error e) {
+      future.setException(e);
+      throw e;
+    } finally {
+      inFlight.remove(key, future);
+    }
+  }
+
+  /**
+   * Removes all the cached results.
+   */
+  public void invalidateAll()
+  {
+    synchronized (cache) {
+      cache.clear();
+    }
+  }
+
+  public CacheableQueryExecutor<QUERY_TYPE, META_QUERY, QUEUE_CONTEXT, RESULT> getQueryExecutor()
+  {
+    return queryExecutor;
+  }
+
+  /**
+   * @return The maximum number of cached results.
+   */
+  public int getMaxCachedResults()
+  {
+    return maxCachedResults;
+  }
+
+  /**
+   * Sets the maximum number of cached results.
+   * @param maxCachedResults The maximum number of cached results.
+   */
+  public void setMaxCachedResults(int maxCachedResults)
+  {
+    Preconditions.checkArgument(maxCachedResults > 0);
+    this.maxCachedResults = maxCachedResults;
+  }
+
+  /**
+   * @return The number of queries which were answered from a cached result.
+   */
+  public long getHitCount()
+  {
+    return hitCount.get();
+  }
+
+  /**
+   * @return The number of queries which were executed.
+   */
+  public long getMissCount()
+  {
+    return missCount.get();
+  }
+
+  /**
+   * @return The number of queries which were answered from the execution of an equivalent query in flight.
+   */
+  public long getCoalescedCount()
+  {
+    return coalescedCount.get();
+  }
+
+  private static <T> T getUninterruptibly(SettableFuture<T> future)
+  {
+    boolean interrupted = false;
+    try {
+      while (true) {
+        try {
+          return future.get();
+        } catch (InterruptedException e) {
+          interrupted = true;
+        } catch (ExecutionException e) {
+          throw Throwables.propagate(e.getCause());
+        }
+      }
+    } finally {
+      if (interrupted) {
+        Thread.currentThread().interrupt();
+      }
+    }
+  }
+
+  private static class CachedResult<RESULT>
+  {
+    final long dataVersion;
+    final RESULT result;
+
+    CachedResult(long dataVersion, RESULT result)
+    {
+      this.dataVersion = dataVersion;
+      this.result = result;
+    }
+  }
+}
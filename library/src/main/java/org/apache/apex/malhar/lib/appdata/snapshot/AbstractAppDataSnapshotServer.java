@@ -19,6 +19,7 @@
 package org.apache.apex.malhar.lib.appdata.snapshot;
 
 import java.io.IOException;
+import java.util.Arrays;
 import java.util.List;
 import java.util.Set;
 import java.util.concurrent.ConcurrentLinkedQueue;
@@ -31,8 +32,10 @@ import org.slf4j.LoggerFactory;
 import org.apache.apex.malhar.lib.appdata.AbstractAppDataServer;
 import org.apache.apex.malhar.lib.appdata.gpo.GPOMutable;
 import org.apache.apex.malhar.lib.appdata.query.AppDataWindowEndQueueManager;
+import org.apache.apex.malhar.lib.appdata.query.CacheableQueryExecutor;
 import org.apache.apex.malhar.lib.appdata.query.QueryExecutor;
 import org.apache.apex.malhar.lib.appdata.query.QueryManagerSynchronous;
+import org.apache.apex.malhar.lib.appdata.query.QueryResultCache;
 import org.apache.apex.malhar.lib.appdata.query.serde.MessageDeserializerFactory;
 import org.apache.apex.malhar.lib.appdata.query.serde.MessageSerializerFactory;
 import org.apache.apex.malhar.lib.appdata.schemas.DataQuerySnapshot;
@@ -51,6 +54,7 @@ import org.apache.commons.lang3.mutable.MutableLong;
 import com.google.common.base.Preconditions;
 import com.google.common.collect.Lists;
 
+import com.datatorrent.api.AutoMetric;
 import com.datatorrent.api.Context.OperatorContext;
 import com.datatorrent.api.DefaultInputPort;
 import com.datatorrent.api.DefaultOutputPort;
@@ -63,6 +67,10 @@ import com.datatorrent.common.experimental.AppData.EmbeddableQueryInfoProvider;
  * in the form of a list of objects. The last list of data sent to the operator is what the operator will serve.
  * Additionally the list of input objects then need to be converted into {@link GPOMutable} objects
  * via an implementation of the {@link #convert} convert method.
+ * <p/>
+ * When many dashboards poll the same snapshot, the results can be cached by enabling {@link #setResultCacheEnabled}.
+ * Identical queries, which differ only in their ids, are then answered from the result of the first such query until
+ * the operator receives new data.
  * @param <INPUT_EVENT> The type of the input events that the operator accepts.
  * @since 3.0.0
  */
@@ -106,6 +114,40 @@ public abstract class AbstractAppDataSnapshotServer<INPUT_EVENT> extends Abstrac
    * The queryExecutor execute the query and return the result.
    */
   protected QueryExecutor<Query, Void, MutableLong, Result> queryExecutor;
+  /**
+   * The cache of the query results, which is null when the cache is not enabled.
+   */
+  protected transient QueryResultCache<Query, Void, MutableLong, Result> resultCache;
+  private boolean resultCacheEnabled;
+  private int maxCachedResults = QueryResultCache.DEFAULT_MAX_CACHED_RESULTS;
+  /**
+   * The version of {@link #currentData}, which is incremented whenever the data changes.
+   */
+  protected transient long dataVersion;
+
+  /**
+   * The number of queries queued at the end of the window.
+   */
+  @AutoMetric
+  protected int queryQueueDepth;
+  /**
+   * The number of queries executed in the window by latency bucket.
+   * @see QueryManagerSynchronous#getLatencyHistogram()
+   */
+  @AutoMetric
+  protected long[] queryLatencyHistogram;
+  /**
+   * The number of queries answered from a cached result in the window.
+   */
+  @AutoMetric
+  protected long resultCacheHits;
+  /**
+   * The number of queries executed by the result cache in the window.
+   */
+  @AutoMetric
+  protected long resultCacheMisses;
+  private transient long lastResultCacheHits;
+  private transient long lastResultCacheMisses;
 
   private Set<String> tags;
 
@@ -167,6 +209,8 @@ public abstract class AbstractAppDataSnapshotServer<INPUT_EVENT> extends Abstrac
       GPOMutable gpoRow = convert(inputEvent);
       currentData.add(gpoRow);
     }
+
+    dataVersion++;
   }
 
   /**
@@ -219,10 +263,21 @@ public abstract class AbstractAppDataSnapshotServer<INPUT_EVENT> extends Abstrac
     }
   }
 
+  @SuppressWarnings("unchecked")
   protected void setupQueryProcessor()
   {
-    queryProcessor = QueryManagerSynchronous.newInstance(queryExecutor == null ? new SnapshotComputer() : queryExecutor,
-        new AppDataWindowEndQueueManager<Query, Void>());
+    QueryExecutor<Query, Void, MutableLong, Result> executor =
+        queryExecutor == null ? new SnapshotComputer() : queryExecutor;
+
+    if (resultCacheEnabled) {
+      Preconditions.checkState(executor instanceof CacheableQueryExecutor,
+          "The result cache requires a CacheableQueryExecutor, but the query executor is a %s", executor.getClass());
+      resultCache = new QueryResultCache<>((CacheableQueryExecutor<Query, Void, MutableLong, Result>)executor);
+      resultCache.setMaxCachedResults(maxCachedResults);
+      executor = resultCache;
+    }
+
+    queryProcessor = QueryManagerSynchronous.newInstance(executor, new AppDataWindowEndQueueManager<Query, Void>());
   }
 
   @Override
@@ -236,6 +291,7 @@ public abstract class AbstractAppDataSnapshotServer<INPUT_EVENT> extends Abstrac
   public void endWindow()
   {
     super.endWindow();
+    queryQueueDepth = queryProcessor.getQueueDepth();
 
     {
       Result result;
@@ -258,6 +314,14 @@ public abstract class AbstractAppDataSnapshotServer<INPUT_EVENT> extends Abstrac
     }
 
     queryProcessor.endWindow();
+
+    queryLatencyHistogram = queryProcessor.getLatencyHistogram();
+    if (resultCache != null) {
+      resultCacheHits = resultCache.getHitCount() - lastResultCacheHits;
+      resultCacheMisses = resultCache.getMissCount() - lastResultCacheMisses;
+      lastResultCacheHits = resultCache.getHitCount();
+      lastResultCacheMisses = resultCache.getMissCount();
+    }
   }
 
   @Override
@@ -316,9 +380,50 @@ public abstract class AbstractAppDataSnapshotServer<INPUT_EVENT> extends Abstrac
   }
 
   /**
-   * The {@link QueryExecutor} which returns the results for queries.
+   * Returns true if the query results are cached.
+   * @return True if the query results are cached.
+   */
+  public boolean isResultCacheEnabled()
+  {
+    return resultCacheEnabled;
+  }
+
+  /**
+   * Sets whether the query results are cached. A cached result is reused for the queries which differ from its query
+   * only in their ids, until the operator receives new data. The cache requires the query executor to be a
+   * {@link CacheableQueryExecutor}, which the default {@link SnapshotComputer} is. The default is false.
+   * @param resultCacheEnabled True if the query results should be cached.
    */
-  public class SnapshotComputer implements QueryExecutor<Query, Void, MutableLong, Result>
+  public void setResultCacheEnabled(boolean resultCacheEnabled)
+  {
+    this.resultCacheEnabled = resultCacheEnabled;
+  }
+
+  /**
+   * Gets the maximum number of cached query results.
+   * @return The maximum number of cached query results.
+   */
+  public int getMaxCachedResults()
+  {
+    return maxCachedResults;
+  }
+
+  /**
+   * Sets the maximum number of cached query results. The default is
+   * {@link QueryResultCache#DEFAULT_MAX_CACHED_RESULTS}.
+   * @param maxCachedResults The maximum number of cached query results.
+   */
+  public void setMaxCachedResults(int maxCachedResults)
+  {
+    Preconditions.checkArgument(maxCachedResults > 0);
+    this.maxCachedResults = maxCachedResults;
+  }
+
+  /**
+   * The {@link QueryExecutor} which returns the results for queries. The results of the queries, which differ only
+   * in their ids, are the same for the same {@link #currentData}, so the results are cacheable.
+   */
+  public class SnapshotComputer implements CacheableQueryExecutor<Query, Void, MutableLong, Result>
   {
     @Override
     public Result executeQuery(Query query, Void metaQuery, MutableLong queueContext)
@@ -327,6 +432,30 @@ public abstract class AbstractAppDataSnapshotServer<INPUT_EVENT> extends Abstrac
                                    currentData,
                                    queueContext.getValue());
     }
+
+    @Override
+    public Object getCacheKey(Query query, Void metaQuery, MutableLong queueContext)
+    {
+      if (!(query instanceof DataQuerySnapshot)) {
+        return null;
+      }
+
+      return Arrays.asList(query.getType(), ((DataQuerySnapshot)query).getFields(), query.getSchemaKeys());
+    }
+
+    @Override
+    public long getDataVersion()
+    {
+      return dataVersion;
+    }
+
+    @Override
+    public Result reuseResult(Result result, Query query, Void metaQuery, MutableLong queueContext)
+    {
+      return new DataResultSnapshot(query,
+                                   ((DataResultSnapshot)result).getValues(),
+                                   queueContext.getValue());
+    }
   }
 
   private static final Logger LOG = LoggerFactory.getLogger(AbstractAppDataSnapshotServer.class);
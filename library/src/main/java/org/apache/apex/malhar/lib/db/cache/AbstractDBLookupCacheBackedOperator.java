@@ -28,6 +28,7 @@ import org.slf4j.LoggerFactory;
 import org.apache.apex.malhar.lib.db.Connectable;
 import org.apache.apex.malhar.lib.util.KeyValPair;
 
+import com.datatorrent.api.AutoMetric;
 import com.datatorrent.api.Context;
 import com.datatorrent.api.DefaultInputPort;
 import com.datatorrent.api.DefaultOutputPort;
@@ -45,6 +46,11 @@ import com.datatorrent.api.Operator;
  * <li>Query to fetch the value of the key from tuple when the value is not present in the cache.</li>
  * </ul>
  * </p>
+ * <p>
+ * When the {@link CacheManager} loads asynchronously, the tuples whose keys are not in the cache don't block the
+ * operator thread. Their key/value pairs are emitted as the values are loaded, in the idle time of the operator and
+ * at the latest in the same window.
+ * </p>
  * @displayName Abstract DB Lookup Cache Backed
  * @category Input
  * @tags cache, key value
@@ -54,13 +60,22 @@ import com.datatorrent.api.Operator;
  * @since 0.9.1
  */
 public abstract class AbstractDBLookupCacheBackedOperator<T, S extends Connectable>
-    implements Operator, CacheManager.Backup
+    implements Operator, Operator.IdleTimeHandler, CacheManager.Backup
 {
   @NotNull
   protected S store;
   @NotNull
   protected CacheManager cacheManager;
 
+  @AutoMetric
+  protected double cacheHitRatio;
+  @AutoMetric
+  protected double averageLoadMillis;
+  @AutoMetric
+  protected long cacheEvictions;
+
+  private transient int spinMillis;
+
   protected AbstractDBLookupCacheBackedOperator()
   {
     cacheManager = new CacheManager();
@@ -81,7 +96,13 @@ public abstract class AbstractDBLookupCacheBackedOperator<T, S extends Connectab
   protected void processTuple(T tuple)
   {
     Object key = getKeyFromTuple(tuple);
-    Object value = cacheManager.get(key);
+    Object value;
+    if (cacheManager.isAsyncLoad()) {
+      value = cacheManager.get(key, emitter);
+      cacheManager.deliverLoads(0);
+    } else {
+      value = cacheManager.get(key);
+    }
 
     if (value != null) {
       output.emit(new KeyValPair<>(key, value));
@@ -90,21 +111,50 @@ public abstract class AbstractDBLookupCacheBackedOperator<T, S extends Connectab
 
   public final transient DefaultOutputPort<KeyValPair<Object, Object>> output = new DefaultOutputPort<>();
 
+  private final transient CacheManager.LoadListener emitter = new CacheManager.LoadListener()
+  {
+    @Override
+    public void loaded(Object key, Object value)
+    {
+      if (value != null) {
+        output.emit(new KeyValPair<>(key, value));
+      }
+    }
+  };
+
   @Override
   public void beginWindow(long l)
   {
     //Do nothing
   }
 
+  @Override
+  public void handleIdleTime()
+  {
+    if (cacheManager.getPendingLoadCount() > 0) {
+      cacheManager.deliverLoads(spinMillis);
+    } else {
+      try {
+        Thread.sleep(spinMillis);
+      } catch (InterruptedException e) {
+        throw new RuntimeException(e);
+      }
+    }
+  }
+
   @Override
   public void endWindow()
   {
-    //Do nothing
+    cacheManager.awaitLoads();
+    cacheHitRatio = cacheManager.getHitRatio();
+    averageLoadMillis = cacheManager.getAverageLoadMillis();
+    cacheEvictions = cacheManager.getEvictionCount();
   }
 
   @Override
   public void setup(Context.OperatorContext context)
   {
+    spinMillis = context.getValue(Context.OperatorContext.SPIN_MILLIS);
     cacheManager.setBackup(this);
     try {
       cacheManager.initialize();
@@ -27,9 +27,16 @@ import java.util.Map;
 import java.util.Set;
 import java.util.Timer;
 import java.util.TimerTask;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
 
 import javax.annotation.Nonnull;
 import javax.annotation.Nullable;
+import javax.validation.constraints.Min;
 import javax.validation.constraints.NotNull;
 
 import org.codehaus.jackson.annotate.JsonIgnore;
@@ -38,8 +45,11 @@ import org.slf4j.LoggerFactory;
 
 import org.apache.apex.malhar.lib.db.KeyValueStore;
 
+import com.google.common.base.Preconditions;
 import com.google.common.base.Strings;
 import com.google.common.collect.Lists;
+import com.google.common.collect.Maps;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
 
 import com.datatorrent.api.Attribute;
 import com.datatorrent.api.Component;
@@ -55,6 +65,12 @@ import com.datatorrent.api.Context;
  * databases.<br/>
  * Store Manager can also refresh the values of keys at a specified time every day.
  * This time is in format HH:mm:ss Z.<br/>
+ * <p/>
+ * When the data is loaded asynchronously, {@link #get(Object, LoadListener)} does not query the backup store on the
+ * caller thread. The missed keys are queued to a loader thread which fetches them with {@link Backup#getAll(List)}
+ * in batches, so concurrent misses of a key and misses which arrive while a batch is in flight are coalesced. The
+ * loaded values are handed to the listeners on the caller thread by {@link #deliverLoads(long)}. The loader thread
+ * also reloads the entries of a {@link TinyLfuStore} which are due for refreshing.<br/>
  * This is not thread-safe.
  *
  * @since 0.9.2
@@ -72,6 +88,24 @@ public class CacheManager implements Closeable
   private boolean readOnlyData = false;
   private int numInitCachedLines = -1;
 
+  private boolean asyncLoad = false;
+  @Min(1)
+  private int maxLoadBatchSize = 100;
+  @Min(1)
+  private int maxPendingLoads = 1000;
+
+  private transient ExecutorService loader;
+  private transient BlockingQueue<Object> missedKeys;
+  private transient BlockingQueue<LoadResult> loadResults;
+  private transient Map<Object, List<LoadListener>> pendingLoads;
+  private transient volatile Throwable loadError;
+
+  private transient long hitCount;
+  private transient long missCount;
+  private final transient AtomicLong loadCount = new AtomicLong();
+  private final transient AtomicLong loadTimeNanos = new AtomicLong();
+  private final transient AtomicLong refreshCount = new AtomicLong();
+
   public CacheManager()
   {
     this.primary = new CacheStore();
@@ -152,6 +186,16 @@ public class CacheManager implements Closeable
       }
       refresher.scheduleAtFixedRate(task, initialDelay, 86400000);
     }
+
+    if (asyncLoad) {
+      missedKeys = new LinkedBlockingQueue<>();
+      loadResults = new LinkedBlockingQueue<>();
+      pendingLoads = Maps.newHashMap();
+      loadError = null;
+      loader = Executors.newSingleThreadExecutor(new ThreadFactoryBuilder().setDaemon(true)
+          .setNameFormat("cache-loader-%d").build());
+      loader.submit(new Loader());
+    }
   }
 
   @Nullable
@@ -159,16 +203,119 @@ public class CacheManager implements Closeable
   {
     Object primaryVal = primary.get(key);
     if (primaryVal != null) {
+      hitCount++;
       return primaryVal;
     }
+    missCount++;
 
+    long start = System.nanoTime();
     Object backupVal = backup.get(key);
+    loadTimeNanos.addAndGet(System.nanoTime() - start);
+    loadCount.incrementAndGet();
     if (backupVal != null) {
       primary.put(key, backupVal);
     }
     return backupVal;
   }
 
+  /**
+   * Gets the value of a key without blocking on the backup store. If the primary store doesn't have the key, the key
+   * is queued for loading and the listener is called with the value by a later {@link #deliverLoads(long)}. When
+   * there are {@link #getMaxPendingLoads()} keys being loaded, this waits for some of them to be delivered first.
+   * <p/>
+   * This requires the data to be loaded asynchronously; see {@link #setAsyncLoad(boolean)}.
+   *
+   * @param key      key
+   * @param listener listener which is called with the value if it is not in the primary store
+   * @return value in the primary store; null if the key is being loaded.
+   */
+  @Nullable
+  public Object get(@Nonnull Object key, @Nonnull LoadListener listener)
+  {
+    Preconditions.checkState(pendingLoads != null, "data is not loaded asynchronously");
+    Object primaryVal = primary.get(key);
+    if (primaryVal != null) {
+      hitCount++;
+      return primaryVal;
+    }
+    missCount++;
+
+    List<LoadListener> listeners = pendingLoads.get(key);
+    if (listeners == null) {
+      while (pendingLoads.size() >= maxPendingLoads) {
+        deliverLoads(Long.MAX_VALUE);
+      }
+      listeners = Lists.newArrayList();
+      pendingLoads.put(key, listeners);
+      missedKeys.add(key);
+    }
+    listeners.add(listener);
+    return null;
+  }
+
+  /**
+   * Saves the values which were loaded in the primary store and calls their listeners.
+   *
+   * @param timeoutMillis time to wait for a value if none is loaded yet and some keys are being loaded
+   * @return number of keys whose values were delivered.
+   */
+  public int deliverLoads(long timeoutMillis)
+  {
+    if (pendingLoads == null) {
+      return 0;
+    }
+    if (loadError != null) {
+      throw new RuntimeException("while loading keys", loadError);
+    }
+    int delivered = 0;
+    LoadResult result = loadResults.poll();
+    if (result == null && timeoutMillis > 0 && !pendingLoads.isEmpty()) {
+      try {
+        result = loadResults.poll(timeoutMillis, TimeUnit.MILLISECONDS);
+      } catch (InterruptedException e) {
+        throw new RuntimeException(e);
+      }
+      if (result == null && loadError != null) {
+        throw new RuntimeException("while loading keys", loadError);
+      }
+    }
+    while (result != null) {
+      if (result == LOAD_FAILED) {
+        throw new RuntimeException("while loading keys", loadError);
+      }
+      if (result.value != null) {
+        primary.put(result.key, result.value);
+      }
+      List<LoadListener> listeners = pendingLoads.remove(result.key);
+      if (listeners != null) {
+        for (LoadListener listener : listeners) {
+          listener.loaded(result.key, result.value);
+        }
+      }
+      delivered++;
+      result = loadResults.poll();
+    }
+    return delivered;
+  }
+
+  /**
+   * Waits for all the keys which are being loaded and delivers their values.
+   */
+  public void awaitLoads()
+  {
+    while (pendingLoads != null && !pendingLoads.isEmpty()) {
+      deliverLoads(Long.MAX_VALUE);
+    }
+  }
+
+  /**
+   * @return number of keys which are being loaded asynchronously.
+   */
+  public int getPendingLoadCount()
+  {
+    return pendingLoads == null ? 0 : pendingLoads.size();
+  }
+
   public void put(@Nonnull Object key, @Nonnull Object value)
   {
     primary.put(key, value);
@@ -181,6 +328,15 @@ public class CacheManager implements Closeable
     if (refresher != null) {
       refresher.cancel();
     }
+    if (loader != null) {
+      loader.shutdownNow();
+      try {
+        loader.awaitTermination(10, TimeUnit.SECONDS);
+      } catch (InterruptedException e) {
+        Thread.currentThread().interrupt();
+      }
+      loader = null;
+    }
     primary.disconnect();
     backup.disconnect();
   }
@@ -249,6 +405,109 @@ public class CacheManager implements Closeable
     readOnlyData = isReadOnly;
   }
 
+  public boolean isAsyncLoad()
+  {
+    return asyncLoad;
+  }
+
+  /**
+   * Sets whether the values of the missed keys are loaded from the backup store by a loader thread.
+   *
+   * @param asyncLoad true to load asynchronously with {@link #get(Object, LoadListener)}; false by default.
+   */
+  public void setAsyncLoad(boolean asyncLoad)
+  {
+    this.asyncLoad = asyncLoad;
+  }
+
+  public int getMaxLoadBatchSize()
+  {
+    return maxLoadBatchSize;
+  }
+
+  /**
+   * Sets the max number of keys which are loaded from the backup store with a single {@link Backup#getAll(List)}.
+   *
+   * @param maxLoadBatchSize max number of keys in a batch.
+   */
+  public void setMaxLoadBatchSize(int maxLoadBatchSize)
+  {
+    this.maxLoadBatchSize = maxLoadBatchSize;
+  }
+
+  public int getMaxPendingLoads()
+  {
+    return maxPendingLoads;
+  }
+
+  /**
+   * Sets the max number of keys which are being loaded asynchronously at a time.
+   *
+   * @param maxPendingLoads max number of keys being loaded.
+   */
+  public void setMaxPendingLoads(int maxPendingLoads)
+  {
+    this.maxPendingLoads = maxPendingLoads;
+  }
+
+  /**
+   * @return number of lookups which found the key in the primary store.
+   */
+  public long getHitCount()
+  {
+    return hitCount;
+  }
+
+  /**
+   * @return number of lookups which didn't find the key in the primary store.
+   */
+  public long getMissCount()
+  {
+    return missCount;
+  }
+
+  /**
+   * @return ratio of the lookups which found the key in the primary store; 1 if there were no lookups.
+   */
+  public double getHitRatio()
+  {
+    long lookups = hitCount + missCount;
+    return lookups == 0 ? 1.0 : (double)hitCount / lookups;
+  }
+
+  /**
+   * @return number of keys which were loaded or refreshed from the backup store.
+   */
+  public long getLoadCount()
+  {
+    return loadCount.get();
+  }
+
+  /**
+   * @return average time in millis which the backup store took to load a key.
+   */
+  public double getAverageLoadMillis()
+  {
+    long loads = loadCount.get();
+    return loads == 0 ? 0 : loadTimeNanos.get() / 1e6 / loads;
+  }
+
+  /**
+   * @return number of entries which were refreshed ahead by the loader thread.
+   */
+  public long getRefreshCount()
+  {
+    return refreshCount.get();
+  }
+
+  /**
+   * @return number of entries which were evicted from the primary store if it counts them; 0 otherwise.
+   */
+  public long getEvictionCount()
+  {
+    return primary instanceof TinyLfuStore ? ((TinyLfuStore)primary).getEvictionCount() : 0;
+  }
+
   /**
    * A primary store should also provide setting the value for a key.
    */
@@ -279,6 +538,90 @@ public class CacheManager implements Closeable
   }
 
 
+  /**
+   * Receives the value of a key which was loaded asynchronously.
+   */
+  public interface LoadListener
+  {
+    /**
+     * Called on the thread which delivers the loads.
+     *
+     * @param key   key
+     * @param value value in the backup store; null if the backup store doesn't have the key.
+     */
+    void loaded(Object key, @Nullable Object value);
+  }
+
+  //the result queued when the loader thread fails
+  private static final LoadResult LOAD_FAILED = new LoadResult(null, null);
+
+  private static class LoadResult
+  {
+    final Object key;
+    final Object value;
+
+    LoadResult(Object key, Object value)
+    {
+      this.key = key;
+      this.value = value;
+    }
+  }
+
+  /**
+   * Fetches the missed keys and the keys due for refreshing from the backup store in batches.
+   */
+  private class Loader implements Runnable
+  {
+    private static final long REFRESH_POLL_MILLIS = 100;
+
+    @Override
+    public void run()
+    {
+      List<Object> keys = Lists.newArrayList();
+      List<Object> refreshedValues = Lists.newArrayList();
+      try {
+        while (!Thread.currentThread().isInterrupted()) {
+          keys.clear();
+          refreshedValues.clear();
+          Object key = missedKeys.poll(REFRESH_POLL_MILLIS, TimeUnit.MILLISECONDS);
+          if (key != null) {
+            keys.add(key);
+            missedKeys.drainTo(keys, maxLoadBatchSize - 1);
+          }
+          int misses = keys.size();
+          if (misses < maxLoadBatchSize && primary instanceof TinyLfuStore) {
+            keys.addAll(((TinyLfuStore)primary).pollKeysToRefresh(maxLoadBatchSize - misses, refreshedValues));
+          }
+          if (keys.isEmpty()) {
+            continue;
+          }
+
+          long start = System.nanoTime();
+          List<Object> values = backup.getAll(keys);
+          loadTimeNanos.addAndGet(System.nanoTime() - start);
+          loadCount.addAndGet(keys.size());
+
+          for (int i = 0; i < keys.size(); i++) {
+            Object value = values == null ? null : values.get(i);
+            if (i < misses) {
+              loadResults.add(new LoadResult(keys.get(i), value));
+            } else if (((TinyLfuStore)primary).refreshed(keys.get(i), refreshedValues.get(i - misses), value) &&
+                value != null) {
+              refreshCount.incrementAndGet();
+            }
+          }
+        }
+      } catch (InterruptedException e) {
+        //closed
+      } catch (Throwable t) {
+        LOG.error("loading keys {}", keys, t);
+        loadError = t;
+        //wakes up the caller waiting for the loads
+        loadResults.add(LOAD_FAILED);
+      }
+    }
+  }
+
   /**
    * Used by {@link CacheManager} to pass properties to its stores which implement {@link Component}.
    */
@@ -326,7 +669,6 @@ public class CacheManager implements Closeable
     }
   }
 
-  @SuppressWarnings("unused")
   private static final Logger LOG = LoggerFactory.getLogger(CacheManager.class);
 
 }
@@ -0,0 +1,568 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.apex.malhar.lib.db.cache;
+
+import java.io.IOException;
+import java.util.ArrayDeque;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import javax.annotation.Nullable;
+import javax.validation.constraints.Min;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.google.common.collect.Lists;
+
+import com.datatorrent.api.Component;
+
+/**
+ * A bounded {@link CacheManager.Primary} which keeps key/value pairs in memory and evicts them with the W-TinyLFU
+ * policy.<br/>
+ * New entries are admitted to a small LRU window. The entries which overflow the window compete with the least
+ * recently used entries of the main segmented LRU and the one which was accessed less frequently is evicted. The
+ * access frequencies are approximated by a count-min sketch of 4-bit counters which are halved periodically, so
+ * the policy keeps the frequently used entries through bursts of one-time keys where a plain LRU would not.
+ * <p/>
+ * Properties of the store:<br/>
+ * <ul>
+ * <li>Transient: It is not checkpointed.</li>
+ * <li>Max Cache Size: the max number of entries.</li>
+ * <li>Max Weight: the max total weight of the entries as given by the {@link Weigher}. 0 means unbounded.</li>
+ * <li>Refresh After Write: the entries which are read after this duration since they were written are reloaded
+ * from the backup store in the background by a {@link CacheManager} which loads asynchronously. 0 disables it.</li>
+ * </ul>
+ * It is thread-safe.
+ */
+public class TinyLfuStore implements CacheManager.Primary, Component<CacheManager.CacheContext>
+{
+  //percentage of the capacity for the window
+  private static final int WINDOW_PERCENT = 1;
+  //percentage of the capacity of the main segment for the protected entries
+  private static final int PROTECTED_PERCENT = 80;
+
+  @Min(1)
+  protected long maxCacheSize = 2000;
+
+  @Min(0)
+  protected long maxWeight = 0;
+
+  @Min(0)
+  protected long refreshAfterWriteMillis = 0;
+
+  protected Weigher weigher;
+
+  private transient Map<Object, Node> data;
+  private transient AccessQueue window;
+  private transient AccessQueue probation;
+  private transient AccessQueue protectedQueue;
+  private transient FrequencySketch sketch;
+  private transient ArrayDeque<Object> keysToRefresh;
+  private transient boolean open;
+
+  private transient long evictionCount;
+  private transient long evictionWeight;
+
+  private transient int numInitCacheLines = -1;
+
+  private static final Logger logger = LoggerFactory.getLogger(TinyLfuStore.class);
+
+  @Override
+  public synchronized Object get(Object key)
+  {
+    sketch.increment(key);
+    Node node = data.get(key);
+    if (node == null) {
+      return null;
+    }
+    onAccess(node);
+    if (refreshAfterWriteMillis > 0 && !node.refreshPending &&
+        System.currentTimeMillis() - node.writeTime >= refreshAfterWriteMillis) {
+      node.refreshPending = true;
+      keysToRefresh.add(key);
+    }
+    return node.value;
+  }
+
+  @Override
+  public synchronized List<Object> getAll(List<Object> keys)
+  {
+    List<Object> values = Lists.newArrayList();
+    for (Object key : keys) {
+      values.add(get(key));
+    }
+    return values;
+  }
+
+  @Override
+  public synchronized void put(Object key, Object value)
+  {
+    int weight = weigh(key, value);
+    Node node = data.get(key);
+    if (node != null) {
+      node.queue.weight += weight - node.weight;
+      node.value = value;
+      node.weight = weight;
+      node.writeTime = System.currentTimeMillis();
+      node.refreshPending = false;
+      onAccess(node);
+    } else {
+      node = new Node(key, value, weight);
+      data.put(key, node);
+      window.add(node);
+    }
+    evict();
+  }
+
+  @Override
+  public synchronized void putAll(Map<Object, Object> m)
+  {
+    for (Map.Entry<Object, Object> entry : m.entrySet()) {
+      put(entry.getKey(), entry.getValue());
+    }
+  }
+
+  @Override
+  public synchronized void remove(Object key)
+  {
+    Node node = data.remove(key);
+    if (node != null) {
+      node.queue.remove(node);
+    }
+  }
+
+  @Override
+  public synchronized Set<Object> getKeys()
+  {
+    return new HashSet<>(data.keySet());
+  }
+
+  /**
+   * Removes the keys which became due for refreshing when they were read.
+   *
+   * @param max    max number of keys to return.
+   * @param values the current values of the returned keys are added to it.
+   * @return keys to reload from the backup store.
+   */
+  synchronized List<Object> pollKeysToRefresh(int max, List<Object> values)
+  {
+    List<Object> keys = Lists.newArrayList();
+    while (keys.size() < max && !keysToRefresh.isEmpty()) {
+      Object key = keysToRefresh.poll();
+      Node node = data.get(key);
+      if (node != null && node.refreshPending) {
+        keys.add(key);
+        values.add(node.value);
+      }
+    }
+    return keys;
+  }
+
+  /**
+   * Replaces the value of a key which was reloaded, unless the key was written or evicted while it was reloaded.
+   *
+   * @param key            key
+   * @param refreshedValue value of the key when it was polled by {@link #pollKeysToRefresh(int, List)}.
+   * @param value          reloaded value; null to remove the key.
+   * @return whether the entry was updated.
+   */
+  synchronized boolean refreshed(Object key, Object refreshedValue, @Nullable Object value)
+  {
+    Node node = data.get(key);
+    if (node == null || node.value != refreshedValue) {
+      return false;
+    }
+    if (value == null) {
+      remove(key);
+    } else {
+      put(key, value);
+    }
+    return true;
+  }
+
+  @Override
+  public synchronized void connect() throws IOException
+  {
+    if (numInitCacheLines > maxCacheSize) {
+      logger.warn("numInitCacheLines = {} is greater than maxCacheSize = {}, maxCacheSize was set to {}",
+          numInitCacheLines, maxCacheSize, numInitCacheLines);
+      maxCacheSize = numInitCacheLines;
+    }
+    data = new HashMap<>();
+    window = new AccessQueue();
+    probation = new AccessQueue();
+    protectedQueue = new AccessQueue();
+    sketch = new FrequencySketch(maxCacheSize);
+    keysToRefresh = new ArrayDeque<>();
+    open = true;
+  }
+
+  @Override
+  public synchronized boolean isConnected()
+  {
+    return open;
+  }
+
+  @Override
+  public synchronized void disconnect() throws IOException
+  {
+    open = false;
+  }
+
+  @Override
+  public void setup(CacheManager.CacheContext context)
+  {
+    if (context != null) {
+      numInitCacheLines = context.getValue(CacheManager.CacheContext.NUM_INIT_CACHED_LINES_ATTR);
+      if (context.getValue(CacheManager.CacheContext.READ_ONLY_ATTR)) {
+        refreshAfterWriteMillis = 0;
+      }
+    }
+  }
+
+  @Override
+  public void teardown()
+  {
+  }
+
+  private int weigh(Object key, Object value)
+  {
+    if (weigher == null) {
+      return 1;
+    }
+    int weight = weigher.weigh(key, value);
+    if (weight < 0) {
+      throw new IllegalArgumentException("negative weight " + weight + " of " + key);
+    }
+    return weight;
+  }
+
+  private void onAccess(Node node)
+  {
+    if (node.queue == probation) {
+      probation.remove(node);
+      protectedQueue.add(node);
+      while (isOver(protectedQueue, (100 - WINDOW_PERCENT) * PROTECTED_PERCENT) && protectedQueue.size > 1) {
+        Node demoted = protectedQueue.head.next;
+        protectedQueue.remove(demoted);
+        probation.add(demoted);
+      }
+    } else {
+      node.queue.moveToTail(node);
+    }
+  }
+
+  /**
+   * Moves the entries which overflow the window to the main segment and then evicts the entry which was accessed less
+   * frequently out of the newest and the oldest probation entries till the store is within its bounds.
+   */
+  private void evict()
+  {
+    while (isOver(window, WINDOW_PERCENT * 100) && window.size > 1) {
+      Node candidate = window.head.next;
+      window.remove(candidate);
+      probation.add(candidate);
+    }
+
+    while (data.size() > maxCacheSize || (maxWeight > 0 && getWeight() > maxWeight)) {
+      Node victim;
+      if (probation.size > 1) {
+        Node oldest = probation.head.next;
+        Node newest = probation.head.prev;
+        victim = sketch.frequency(newest.key) > sketch.frequency(oldest.key) ? oldest : newest;
+      } else if (probation.size == 1) {
+        victim = probation.head.next;
+      } else if (protectedQueue.size > 0) {
+        victim = protectedQueue.head.next;
+      } else {
+        victim = window.head.next;
+      }
+      data.remove(victim.key);
+      victim.queue.remove(victim);
+      evictionCount++;
+      evictionWeight += victim.weight;
+    }
+  }
+
+  /**
+   * @param queue            a queue
+   * @param tenThousandths   share of the bounds allotted to the queue in ten thousandths
+   * @return whether the queue exceeds its share of the bounds.
+   */
+  private boolean isOver(AccessQueue queue, long tenThousandths)
+  {
+    if (queue.size > Math.max(1, maxCacheSize * tenThousandths / 10000)) {
+      return true;
+    }
+    return maxWeight > 0 && queue.weight > Math.max(1, maxWeight * tenThousandths / 10000);
+  }
+
+  /**
+   * @return number of entries in the store.
+   */
+  public synchronized int getSize()
+  {
+    return data == null ? 0 : data.size();
+  }
+
+  /**
+   * @return total weight of the entries in the store.
+   */
+  public synchronized long getWeight()
+  {
+    return data == null ? 0 : window.weight + probation.weight + protectedQueue.weight;
+  }
+
+  /**
+   * @return number of entries which were evicted because the store exceeded its bounds.
+   */
+  public synchronized long getEvictionCount()
+  {
+    return evictionCount;
+  }
+
+  /**
+   * @return total weight of the entries which were evicted because the store exceeded its bounds.
+   */
+  public synchronized long getEvictionWeight()
+  {
+    return evictionWeight;
+  }
+
+  public long getMaxCacheSize()
+  {
+    return maxCacheSize;
+  }
+
+  /**
+   * Sets the max number of entries.
+   *
+   * @param maxCacheSize the max number of entries in memory.
+   */
+  public void setMaxCacheSize(long maxCacheSize)
+  {
+    this.maxCacheSize = maxCacheSize;
+  }
+
+  public long getMaxWeight()
+  {
+    return maxWeight;
+  }
+
+  /**
+   * Sets the max total weight of the entries. The weight of an entry is 1 when there is no {@link Weigher}.
+   *
+   * @param maxWeight the max total weight of entries in memory; 0 means unbounded.
+   */
+  public void setMaxWeight(long maxWeight)
+  {
+    this.maxWeight = maxWeight;
+  }
+
+  public long getRefreshAfterWriteMillis()
+  {
+    return refreshAfterWriteMillis;
+  }
+
+  /**
+   * Sets the duration after which an entry which is read is reloaded from the backup store.
+   *
+   * @param refreshAfterWriteMillis the duration since the entry was written; 0 disables refreshing.
+   */
+  public void setRefreshAfterWriteMillis(long refreshAfterWriteMillis)
+  {
+    this.refreshAfterWriteMillis = refreshAfterWriteMillis;
+  }
+
+  public Weigher getWeigher()
+  {
+    return weigher;
+  }
+
+  public void setWeigher(Weigher weigher)
+  {
+    this.weigher = weigher;
+  }
+
+  /**
+   * Computes the weight of an entry, for eg. its approximate size in bytes.
+   */
+  public interface Weigher
+  {
+    int weigh(Object key, Object value);
+  }
+
+  private static class Node
+  {
+    final Object key;
+    Object value;
+    int weight;
+    long writeTime;
+    boolean refreshPending;
+
+    AccessQueue queue;
+    Node prev;
+    Node next;
+
+    Node(Object key, Object value, int weight)
+    {
+      this.key = key;
+      this.value = value;
+      this.weight = weight;
+      this.writeTime = System.currentTimeMillis();
+    }
+  }
+
+  /**
+   * A doubly linked list of nodes from the least recently used to the most recently used.
+   */
+  private static class AccessQueue
+  {
+    final Node head = new Node(null, null, 0);
+    int size;
+    long weight;
+
+    AccessQueue()
+    {
+      head.prev = head;
+      head.next = head;
+    }
+
+    void add(Node node)
+    {
+      node.queue = this;
+      node.prev = head.prev;
+      node.next = head;
+      head.prev.next = node;
+      head.prev = node;
+      size++;
+      weight += node.weight;
+    }
+
+    void remove(Node node)
+    {
+      node.prev.next = node.next;
+      node.next.prev = node.prev;
+      node.prev = null;
+      node.next = null;
+      node.queue = null;
+      size--;
+      weight -= node.weight;
+    }
+
+    void moveToTail(Node node)
+    {
+      remove(node);
+      add(node);
+    }
+  }
+
+  /**
+   * A count-min sketch of the access frequencies of the keys with 4 hash functions and 4-bit counters which are packed
+   * 16 to a long. Every counter is halved once the number of increments reaches 10 times the number of longs, so that
+   * the old accesses are forgotten.
+   */
+  static class FrequencySketch
+  {
+    private static final long[] SEEDS = {0xc3a5c85c97cb3127L, 0xb492b66fbe98f273L, 0x9ae16a3b2f90404fL,
+        0xcbf29ce484222325L};
+    private static final long RESET_MASK = 0x7777777777777777L;
+    private static final int MAX_TABLE_SIZE = 1 << 22;
+
+    private final long[] table;
+    private final int mask;
+    private final int sampleSize;
+    private int additions;
+
+    FrequencySketch(long capacity)
+    {
+      int minSize = (int)Math.min(Math.max(capacity, 16), MAX_TABLE_SIZE);
+      int size = Integer.highestOneBit(minSize);
+      if (size < minSize) {
+        size <<= 1;
+      }
+      table = new long[size];
+      mask = size - 1;
+      sampleSize = 10 * size;
+    }
+
+    int frequency(Object key)
+    {
+      int hash = spread(key);
+      int frequency = 15;
+      for (int i = 0; i < SEEDS.length; i++) {
+        int index = indexOf(hash, i);
+        frequency = Math.min(frequency, (int)((table[index & mask] >>> counterOffset(index)) & 15L));
+      }
+      return frequency;
+    }
+
+    void increment(Object key)
+    {
+      int hash = spread(key);
+      boolean added = false;
+      for (int i = 0; i < SEEDS.length; i++) {
+        int index = indexOf(hash, i);
+        int offset = counterOffset(index);
+        long counter = (table[index & mask] >>> offset) & 15L;
+        if (counter < 15) {
+          table[index & mask] += 1L << offset;
+          added = true;
+        }
+      }
+      if (added && ++additions == sampleSize) {
+        reset();
+      }
+    }
+
+    private void reset()
+    {
+      for (int i = 0; i < table.length; i++) {
+        table[i] = (table[i] >>> 1) & RESET_MASK;
+      }
+      additions >>>= 1;
+    }
+
+    private static int spread(Object key)
+    {
+      int hash = key == null ? 0 : key.hashCode();
+      hash ^= hash >>> 17;
+      hash *= 0xed5ad4bb;
+      hash ^= hash >>> 11;
+      return hash;
+    }
+
+    private static int indexOf(int hash, int i)
+    {
+      long h = (hash + SEEDS[i]) * SEEDS[i];
+      h += h >>> 32;
+      return (int)h;
+    }
+
+    //the low bits of an index select the long and its top 4 bits the counter in the long
+    private static int counterOffset(int index)
+    {
+      return (index >>> 28) << 2;
+    }
+  }
+}
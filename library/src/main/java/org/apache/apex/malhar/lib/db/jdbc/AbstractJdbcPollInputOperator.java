@@ -19,6 +19,7 @@
 package org.apache.apex.malhar.lib.db.jdbc;
 
 import java.io.IOException;
+import java.math.BigInteger;
 import java.sql.PreparedStatement;
 import java.sql.ResultSet;
 import java.sql.SQLException;
@@ -30,6 +31,7 @@ import java.util.concurrent.Executors;
 import java.util.concurrent.LinkedBlockingQueue;
 import java.util.concurrent.ScheduledExecutorService;
 import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.Semaphore;
 import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicBoolean;
 import java.util.concurrent.atomic.AtomicReference;
@@ -40,6 +42,10 @@ import javax.validation.constraints.NotNull;
 import org.jooq.Condition;
 import org.jooq.DSLContext;
 import org.jooq.Field;
+import org.jooq.Record;
+import org.jooq.Record2;
+import org.jooq.SelectLimitStep;
+import org.jooq.SelectSelectStep;
 import org.jooq.conf.ParamType;
 import org.jooq.impl.DSL;
 import org.jooq.tools.jdbc.JDBCUtils;
@@ -83,6 +89,13 @@ import static org.jooq.impl.DSL.field;
  * Only newly added data will be fetched by the polling jdbc partition, also
  * assumption is rows won't be added or deleted in middle during scan.
  *
+ * With {@link #setKeysetPagination(boolean) keyset pagination} the static partitions get non-overlapping ranges of
+ * the key values instead of the row offsets and all the partitions read pages which seek by the last read key
+ * (WHERE key &gt; ? ORDER BY key LIMIT n), so that the cost of a page doesn't grow with the position in the table.
+ * The next page is fetched while the current page is emitted. The fetched rows which are not emitted yet are bounded
+ * by the {@link #setQueueCapacity(int) queue capacity}, the pages have at most half of the queue capacity rows.
+ * The windows are recovered by their key ranges.
+ *
  * The operator uses jOOQ to build the SQL queries based on the discovered {@link org.jooq.SQLDialect}.
  * Note that some of the dialects (including Oracle) are only available in commercial
  * jOOQ distributions. If the dialect is not available, a generic translation is applied,
@@ -106,6 +119,7 @@ public abstract class AbstractJdbcPollInputOperator<T> extends AbstractStoreInpu
   private static int DEFAULT_BATCH_SIZE = 2000;
   private static int DEFAULT_SLEEP_TIME = 100;
   private static int DEFAULT_RESULT_LIMIT = 100000;
+  private static final int ROW_WIDTH_SAMPLE_INTERVAL = 1024;
   private int pollInterval = DEFAULT_POLL_INTERVAL; //in milliseconds
   private int queueCapacity = DEFAULT_QUEUE_CAPACITY;
   private int fetchSize = DEFAULT_FETCH_SIZE;
@@ -128,9 +142,22 @@ public abstract class AbstractJdbcPollInputOperator<T> extends AbstractStoreInpu
   private WindowDataManager windowManager;
   protected WindowData currentWindowRecoveryState;
   private boolean rebaseOffset;
+  private boolean keysetPagination;
+  @Min(0)
+  private int fetchSizeBytes = 0;
 
   protected KeyValPair<Integer, Integer> rangeQueryPair;
   protected Integer lastEmittedRow;
+  /**
+   * With keyset pagination, the key of the last emitted row, which is the exclusive lower bound of the rows which are
+   * not emitted yet. Null if no row was emitted and the range of the partition has no lower bound.
+   */
+  protected Object lastEmittedKey;
+  /**
+   * With keyset pagination, the inclusive upper bound of the keys of a static partition. Null for the poller
+   * partition.
+   */
+  protected Object rangeUpperKey;
   protected transient DSLContext dslContext;
   private transient volatile boolean execute;
   private transient ScheduledExecutorService scanService;
@@ -143,6 +170,16 @@ public abstract class AbstractJdbcPollInputOperator<T> extends AbstractStoreInpu
   private transient Object prevKey;
   private transient Object lastKey;
 
+  private transient LinkedBlockingQueue<Page<T>> pageQueue;
+  // permits for the rows of the fetched pages which are not emitted yet, bounded by the queue capacity
+  private transient Semaphore pageRowPermits;
+  private transient Page<T> currentPage;
+  private transient int pagePosition;
+  // the last key which was fetched by the fetch thread
+  private transient Object lastFetchedKey;
+  // moving average of the observed width of the rows in bytes
+  private transient volatile int rowWidth;
+
   /**
    * The candidate key/offset pair identified by the poller thread
    * that, once emitted, can be used to rebase the lower bound for subsequent queries.
@@ -170,6 +207,8 @@ public abstract class AbstractJdbcPollInputOperator<T> extends AbstractStoreInpu
     }
     execute = true;
     emitQueue = new LinkedBlockingQueue<>(queueCapacity);
+    pageQueue = new LinkedBlockingQueue<>();
+    pageRowPermits = new Semaphore(queueCapacity);
     windowManager.setup(context);
   }
 
@@ -210,6 +249,10 @@ public abstract class AbstractJdbcPollInputOperator<T> extends AbstractStoreInpu
 
   protected void initializePreparedStatement()
   {
+    if (keysetPagination) {
+      lastFetchedKey = lastEmittedKey;
+      return;
+    }
     try {
       if (currentWindowRecoveryState.lowerBound == 0 && currentWindowRecoveryState.key == null) {
         lastOffset = rangeQueryPair.getKey();
@@ -241,6 +284,11 @@ public abstract class AbstractJdbcPollInputOperator<T> extends AbstractStoreInpu
       }
     }
 
+    if (keysetPagination) {
+      currentWindowRecoveryState = WindowData.of(lastEmittedKey, lastEmittedRow, 0);
+      return;
+    }
+
     currentWindowRecoveryState = WindowData.of(currentWindowRecoveryState.key, lastEmittedRow, 0);
     if (isPollerPartition) {
       MutablePair<Object, Integer> keyOffset = fetchedKeyAndOffset.get();
@@ -263,6 +311,11 @@ public abstract class AbstractJdbcPollInputOperator<T> extends AbstractStoreInpu
       return;
     }
 
+    if (keysetPagination) {
+      emitPages();
+      return;
+    }
+
     int pollSize = (emitQueue.size() < batchSize) ? emitQueue.size() : batchSize;
     while (pollSize-- > 0) {
       T obj = emitQueue.poll();
@@ -273,8 +326,39 @@ public abstract class AbstractJdbcPollInputOperator<T> extends AbstractStoreInpu
     }
   }
 
+  private void emitPages()
+  {
+    for (int count = 0; count < batchSize; count++) {
+      if (currentPage == null || pagePosition == currentPage.keys.size()) {
+        if (currentPage != null) {
+          pageRowPermits.release(currentPage.keys.size());
+        }
+        currentPage = pageQueue.poll();
+        pagePosition = 0;
+        if (currentPage == null) {
+          return;
+        }
+      }
+      T tuple = currentPage.tuples.get(pagePosition);
+      if (tuple != null) {
+        emitTuple(tuple);
+      }
+      lastEmittedKey = currentPage.keys.get(pagePosition++);
+      lastEmittedRow++;
+    }
+  }
+
   protected abstract void emitTuple(T tuple);
 
+  /**
+   * Rows which were fetched with one keyset query together with their keys.
+   */
+  private static class Page<T>
+  {
+    final List<T> tuples = new ArrayList<>();
+    final List<Object> keys = new ArrayList<>();
+  }
+
   /**
    * Visible to subclasses to allow for custom offset saving and initialization.
    */
@@ -284,6 +368,11 @@ public abstract class AbstractJdbcPollInputOperator<T> extends AbstractStoreInpu
     public Object key;
     public int lowerBound;
     public int upperBound;
+    /**
+     * With keyset pagination, the key of the last row which was emitted in the window; the rows of the window are
+     * those with a key greater than {@link #key} and less than or equal to this key.
+     */
+    public Object upperKey;
 
     public static WindowData of(Object key, int lowerBound, int upperBound)
     {
@@ -307,7 +396,8 @@ public abstract class AbstractJdbcPollInputOperator<T> extends AbstractStoreInpu
 
       if (isPollerPartition) {
         throw new IllegalStateException("poller task terminated");
-      } else {
+      } else if (!keysetPagination || (pageQueue.isEmpty() && (currentPage == null ||
+          pagePosition == currentPage.keys.size()))) {
         // exit static query partition
         BaseOperator.shutdown();
       }
@@ -316,6 +406,7 @@ public abstract class AbstractJdbcPollInputOperator<T> extends AbstractStoreInpu
     try {
       if (currentWindowId > windowManager.getLargestCompletedWindow()) {
         currentWindowRecoveryState.upperBound = lastEmittedRow;
+        currentWindowRecoveryState.upperKey = lastEmittedKey;
         windowManager.save(currentWindowRecoveryState, currentWindowId);
       }
     } catch (IOException e) {
@@ -378,7 +469,9 @@ public abstract class AbstractJdbcPollInputOperator<T> extends AbstractStoreInpu
   protected void pollRecords()
   {
     try {
-      if (isPollerPartition) {
+      if (keysetPagination) {
+        fetchPages();
+      } else if (isPollerPartition) {
         if (adjustKeyAndOffset.get()) {
           LOG.debug("lastOffset {} lastKey {} rebase {}", lastOffset, lastKey, fetchedKeyAndOffset.get());
           lastOffset -= fetchedKeyAndOffset.get().getRight();
@@ -407,12 +500,105 @@ public abstract class AbstractJdbcPollInputOperator<T> extends AbstractStoreInpu
     }
   }
 
+  /**
+   * Fetches the pages after the last fetched key until a page is not full and transfers them to the page queue. The
+   * rows of a page are reserved before the page is fetched and released when the page is emitted, so that the fetched
+   * rows which are not emitted yet don't exceed the queue capacity.
+   */
+  private void fetchPages() throws SQLException, InterruptedException
+  {
+    int pageSize = getPageSize();
+    while (execute) {
+      while (execute && !pageRowPermits.tryAcquire(pageSize, DEFAULT_SLEEP_TIME, TimeUnit.MILLISECONDS)) {
+        LOG.debug("waiting for the page queue");
+      }
+      if (!execute) {
+        return;
+      }
+      Page<T> page = new Page<>();
+      try (PreparedStatement preparedStatement = store.getConnection().prepareStatement(
+          buildKeysetQuery(lastFetchedKey, null, pageSize), TYPE_FORWARD_ONLY, CONCUR_READ_ONLY)) {
+        preparedStatement.setFetchSize(getAdaptiveFetchSize());
+        try (ResultSet result = preparedStatement.executeQuery()) {
+          while (execute && result.next()) {
+            if ((page.keys.size() & (ROW_WIDTH_SAMPLE_INTERVAL - 1)) == 0) {
+              sampleRowWidth(result);
+            }
+            page.tuples.add(getTuple(result));
+            page.keys.add(extractKey(result));
+          }
+        }
+      }
+      pageRowPermits.release(pageSize - page.keys.size());
+      if (page.keys.isEmpty()) {
+        return;
+      }
+      pageQueue.add(page);
+      lastFetchedKey = page.keys.get(page.keys.size() - 1);
+      if (page.keys.size() < pageSize) {
+        return;
+      }
+    }
+  }
+
+  /**
+   * @return the number of rows of a keyset page, the result limit if at least two pages fit into the queue capacity,
+   * so that the next page can be fetched while the current page is emitted.
+   */
+  private int getPageSize()
+  {
+    return Math.max(1, Math.min(resultLimit, queueCapacity / 2));
+  }
+
+  /**
+   * Updates the moving average of the width of the rows with the size of the column values of the current row.
+   */
+  private void sampleRowWidth(ResultSet result) throws SQLException
+  {
+    if (fetchSizeBytes == 0) {
+      return;
+    }
+    int width = 0;
+    int columnCount = result.getMetaData().getColumnCount();
+    for (int i = 1; i <= columnCount; i++) {
+      Object value = result.getObject(i);
+      if (value == null) {
+        width += 1;
+      } else if (value instanceof CharSequence) {
+        width += 2 * ((CharSequence)value).length();
+      } else if (value instanceof byte[]) {
+        width += ((byte[])value).length;
+      } else {
+        width += 8;
+      }
+    }
+    rowWidth = rowWidth == 0 ? width : (7 * rowWidth + width) / 8;
+    result.setFetchSize(getAdaptiveFetchSize());
+  }
+
+  /**
+   * @return the number of rows which fit into {@link #getFetchSizeBytes()} with the observed row width; the fetch
+   * size if it is not set or no row was observed yet.
+   */
+  private int getAdaptiveFetchSize()
+  {
+    int width = rowWidth;
+    if (fetchSizeBytes == 0 || width == 0) {
+      return getFetchSize();
+    }
+    return Math.max(1, Math.min(getPageSize(), fetchSizeBytes / width));
+  }
+
   public abstract T getTuple(ResultSet result);
 
   protected void replay(long windowId) throws SQLException
   {
     try {
       WindowData wd = (WindowData)windowManager.retrieve(windowId);
+      if (keysetPagination) {
+        replayKeyRange(wd);
+        return;
+      }
       if (wd != null && wd.upperBound - wd.lowerBound > 0) {
         LOG.debug("[Recovering Window ID - {} for key: {} record range: {}, {}]", windowId, wd.key,
             wd.lowerBound, wd.upperBound);
@@ -434,6 +620,23 @@ public abstract class AbstractJdbcPollInputOperator<T> extends AbstractStoreInpu
 
   }
 
+  private void replayKeyRange(WindowData wd) throws SQLException
+  {
+    if (wd != null && wd.upperKey != null && !wd.upperKey.equals(wd.key)) {
+      LOG.debug("[Recovering Window ID - {} for key range: ({}, {}]]", currentWindowId, wd.key, wd.upperKey);
+      ps = store.getConnection().prepareStatement(buildKeysetQuery(wd.key, wd.upperKey, 0), TYPE_FORWARD_ONLY,
+          CONCUR_READ_ONLY);
+      emitReplayedTuples(ps);
+      lastEmittedKey = wd.upperKey;
+    }
+
+    if (currentWindowId == windowManager.getLargestCompletedWindow()) {
+      currentWindowRecoveryState = WindowData.of(lastEmittedKey, lastEmittedRow, lastEmittedRow);
+      initializePreparedStatement();
+      schedulePollTask();
+    }
+  }
+
   /**
    * Replays the tuples in sync mode for replayed windows
    */
@@ -481,6 +684,9 @@ public abstract class AbstractJdbcPollInputOperator<T> extends AbstractStoreInpu
     }
 
     KryoCloneUtils<AbstractJdbcPollInputOperator<T>> cloneUtils = KryoCloneUtils.createCloneUtils(this);
+    if (keysetPagination) {
+      return defineKeyRangePartitions(cloneUtils);
+    }
     int pollOffset = 0;
 
     // The n given partitions are for range queries and n + 1 partition is for polling query
@@ -503,6 +709,46 @@ public abstract class AbstractJdbcPollInputOperator<T> extends AbstractStoreInpu
     return newPartitions;
   }
 
+  private Collection<Partition<AbstractJdbcPollInputOperator<T>>> defineKeyRangePartitions(
+      KryoCloneUtils<AbstractJdbcPollInputOperator<T>> cloneUtils)
+  {
+    List<Partition<AbstractJdbcPollInputOperator<T>>> newPartitions = new ArrayList<>(getPartitionCount() + 1);
+
+    final List<Object> upperKeys;
+    try {
+      store.connect();
+      dslContext = createDSLContext();
+      upperKeys = getPartitionedKeyRanges(getPartitionCount());
+    } catch (SQLException e) {
+      LOG.error("Exception in initializing the partition range", e);
+      throw new RuntimeException(e);
+    } finally {
+      store.disconnect();
+    }
+
+    // partition i reads the keys in (upperKeys[i - 1], upperKeys[i]]
+    Object lowerKey = null;
+    for (Object upperKey : upperKeys) {
+      AbstractJdbcPollInputOperator<T> jdbcPoller = cloneUtils.getClone();
+      jdbcPoller.lastEmittedKey = lowerKey;
+      jdbcPoller.rangeUpperKey = upperKey;
+      jdbcPoller.lastEmittedRow = 0;
+      jdbcPoller.isPollerPartition = false;
+      newPartitions.add(new DefaultPartition<>(jdbcPoller));
+      lowerKey = upperKey;
+    }
+
+    // the poller partition reads the keys after the largest key of the static partitions
+    AbstractJdbcPollInputOperator<T> jdbcPoller = cloneUtils.getClone();
+    jdbcPoller.lastEmittedKey = lowerKey;
+    jdbcPoller.rangeUpperKey = null;
+    jdbcPoller.lastEmittedRow = 0;
+    jdbcPoller.isPollerPartition = true;
+    newPartitions.add(new DefaultPartition<>(jdbcPoller));
+
+    return newPartitions;
+  }
+
   @Override
   public void partitioned(
       Map<Integer, com.datatorrent.api.Partitioner.Partition<AbstractJdbcPollInputOperator<T>>> partitions)
@@ -535,6 +781,73 @@ public abstract class AbstractJdbcPollInputOperator<T> extends AbstractStoreInpu
     return partitionToQueryList;
   }
 
+  /**
+   * Splits the keys into ranges for the static partitions. Integral keys are split into ranges of equal width
+   * between the smallest and the largest key, other keys at equal row counts.
+   *
+   * @return the inclusive upper bounds of the ranges; empty if the table has no rows.
+   */
+  private List<Object> getPartitionedKeyRanges(int partitions) throws SQLException
+  {
+    List<Object> upperKeys = new ArrayList<>();
+    if (partitions == 0) {
+      return upperKeys;
+    }
+
+    Condition condition = getWhereCondition() != null ? DSL.condition(getWhereCondition()) : DSL.trueCondition();
+    Record2<Object, Object> minMax = dslContext.select(DSL.min(field(getKey())), DSL.max(field(getKey())))
+        .from(getTableName()).where(condition).fetchOne();
+    Object min = minMax.value1();
+    Object max = minMax.value2();
+    if (max == null) {
+      LOG.info("No rows to partition, only the poller partition is created");
+      return upperKeys;
+    }
+
+    if (isIntegral(min) && isIntegral(max)) {
+      BigInteger lower = new BigInteger(min.toString());
+      BigInteger width = new BigInteger(max.toString()).subtract(lower);
+      for (int i = 1; i < partitions; i++) {
+        upperKeys.add(toKeyType(lower.add(width.multiply(BigInteger.valueOf(i)).divide(BigInteger.valueOf(partitions))),
+            max));
+      }
+    } else {
+      int rowCount = getRecordsCount(null);
+      for (int i = 1; i < partitions; i++) {
+        int offset = (int)((long)rowCount * i / partitions) - 1;
+        upperKeys.add(dslContext.select(field(getKey())).from(getTableName()).where(condition)
+            .orderBy(field(getKey())).limit(1).offset(Math.max(offset, 0)).fetchOne(0));
+      }
+    }
+    upperKeys.add(max);
+    LOG.info("Partition key ranges - " + upperKeys);
+    return upperKeys;
+  }
+
+  private static boolean isIntegral(Object key)
+  {
+    return key instanceof Long || key instanceof Integer || key instanceof Short || key instanceof Byte ||
+        key instanceof BigInteger;
+  }
+
+  /**
+   * Converts the split value to the type of the given key, the split value is between the integral min and max keys
+   * and hence fits into the type.
+   */
+  private static Object toKeyType(BigInteger value, Object key)
+  {
+    if (key instanceof BigInteger) {
+      return value;
+    } else if (key instanceof Integer) {
+      return value.intValue();
+    } else if (key instanceof Short) {
+      return value.shortValue();
+    } else if (key instanceof Byte) {
+      return value.byteValue();
+    }
+    return value.longValue();
+  }
+
   protected Condition andLowerBoundKeyCondition(Condition c, Object lowerBoundKey)
   {
     return c.and(this.key + " > ?", lowerBoundKey);
@@ -590,6 +903,45 @@ public abstract class AbstractJdbcPollInputOperator<T> extends AbstractStoreInpu
     return sqlQuery;
   }
 
+  /**
+   * Builds the query of a page with keyset pagination.
+   *
+   * @param afterKey exclusive lower bound of the keys; null for the start of the range of the partition
+   * @param toKey    inclusive upper bound of the keys; null for the end of the range of the partition
+   * @param limit    maximum number of rows; 0 for no limit
+   */
+  protected String buildKeysetQuery(Object afterKey, Object toKey, int limit)
+  {
+    Condition condition = DSL.trueCondition();
+    if (getWhereCondition() != null) {
+      condition = condition.and(getWhereCondition());
+    }
+    if (afterKey != null) {
+      condition = condition.and(getKey() + " > ?", afterKey);
+    }
+    if (toKey != null) {
+      condition = condition.and(getKey() + " <= ?", toKey);
+    }
+    if (rangeUpperKey != null) {
+      condition = condition.and(getKey() + " <= ?", rangeUpperKey);
+    }
+
+    SelectSelectStep<Record> select;
+    if (getColumnsExpression() != null) {
+      Collection<Field<?>> columns = new ArrayList<>();
+      for (String column : getColumnsExpression().split(",")) {
+        columns.add(field(column));
+      }
+      select = dslContext.select(columns);
+    } else {
+      select = dslContext.select();
+    }
+    SelectLimitStep<Record> query = select.from(getTableName()).where(condition).orderBy(field(getKey()));
+    String sqlQuery = limit > 0 ? query.limit(limit).getSQL(ParamType.INLINED) : query.getSQL(ParamType.INLINED);
+    LOG.debug("DSL Query: " + sqlQuery);
+    return sqlQuery;
+  }
+
   @VisibleForTesting
   protected void setScheduledExecutorService(ScheduledExecutorService service)
   {
@@ -728,7 +1080,7 @@ public abstract class AbstractJdbcPollInputOperator<T> extends AbstractStoreInpu
   }
 
   /**
-   * Sets the capacity of the emit queue
+   * Sets the capacity of the emit queue, the maximum number of the fetched rows which are not emitted yet
    *
    * @param queueCapacity
    */
@@ -835,4 +1187,34 @@ public abstract class AbstractJdbcPollInputOperator<T> extends AbstractStoreInpu
     this.rebaseOffset = rebaseOffset;
   }
 
+  public boolean isKeysetPagination()
+  {
+    return keysetPagination;
+  }
+
+  /**
+   * Whether the partitions are split by key ranges and read in pages of {@link #getResultLimit()} rows, at most half
+   * of the {@link #getQueueCapacity() queue capacity}, which seek by the last read key, instead of row offsets. The
+   * key has to be unique.
+   */
+  public void setKeysetPagination(boolean keysetPagination)
+  {
+    this.keysetPagination = keysetPagination;
+  }
+
+  public int getFetchSizeBytes()
+  {
+    return fetchSizeBytes;
+  }
+
+  /**
+   * Target size in bytes of the rows which are fetched from the database in one round trip with keyset
+   * pagination. The fetch size is adapted to the observed width of the rows. When set to 0, the fetch size is
+   * used as it is.
+   */
+  public void setFetchSizeBytes(int fetchSizeBytes)
+  {
+    this.fetchSizeBytes = fetchSizeBytes;
+  }
+
 }
@@ -205,6 +205,11 @@ public abstract class AbstractJdbcTransactionableOutputOperator<T>
     this.batchSize = batchSize;
   }
 
+  public int getBatchSize()
+  {
+    return batchSize;
+  }
+
   /**
    * Gets the statement which insert/update the table in the database.
    *
@@ -0,0 +1,244 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.apex.malhar.lib.db.jdbc;
+
+import java.math.BigDecimal;
+import java.sql.Date;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.sql.Time;
+import java.sql.Timestamp;
+import java.sql.Types;
+import java.util.Arrays;
+import java.util.List;
+
+import org.apache.apex.malhar.lib.util.PojoUtils;
+
+/**
+ * A fixed-capacity buffer of the column values of the tuples of {@link JdbcPOJOInsertOutputOperator} in bulk write
+ * mode. The values are extracted with the typed getters on the operator thread into one primitive or object array
+ * per column, so that the writer thread binds them to the insert statements without touching the tuples.
+ */
+class ColumnarBatch
+{
+  private final int[] types;
+  private final long[][] longs;
+  private final double[][] doubles;
+  private final Object[][] objects;
+  private final int capacity;
+  private int size;
+
+  ColumnarBatch(int[] types, int capacity)
+  {
+    this.types = types;
+    this.capacity = capacity;
+    longs = new long[types.length][];
+    doubles = new double[types.length][];
+    objects = new Object[types.length][];
+    for (int i = 0; i < types.length; i++) {
+      switch (types[i]) {
+        case Types.BOOLEAN:
+        case Types.TINYINT:
+        case Types.SMALLINT:
+        case Types.INTEGER:
+        case Types.BIGINT:
+          longs[i] = new long[capacity];
+          break;
+
+        case Types.FLOAT:
+        case Types.DOUBLE:
+          doubles[i] = new double[capacity];
+          break;
+
+        case Types.CHAR:
+        case Types.VARCHAR:
+        case Types.DECIMAL:
+        case Types.TIMESTAMP:
+        case Types.TIME:
+        case Types.DATE:
+          objects[i] = new Object[capacity];
+          break;
+
+        default:
+          throw new IllegalArgumentException("unsupported data type " + types[i]);
+      }
+    }
+  }
+
+  /**
+   * Whether the values of a column of the type can be buffered. The other types are left to
+   * {@link AbstractJdbcPOJOOutputOperator#handleUnknownDataType}, which binds them per row.
+   *
+   * @param type SQL type of the column
+   */
+  static boolean isSupported(int type)
+  {
+    switch (type) {
+      case Types.BOOLEAN:
+      case Types.TINYINT:
+      case Types.SMALLINT:
+      case Types.INTEGER:
+      case Types.BIGINT:
+      case Types.FLOAT:
+      case Types.DOUBLE:
+      case Types.CHAR:
+      case Types.VARCHAR:
+      case Types.DECIMAL:
+      case Types.TIMESTAMP:
+      case Types.TIME:
+      case Types.DATE:
+        return true;
+
+      default:
+        return false;
+    }
+  }
+
+  /**
+   * Extracts the column values of a tuple.
+   *
+   * @param tuple   tuple
+   * @param getters getters of the columns which were created for the types of the columns
+   */
+  @SuppressWarnings("unchecked")
+  void add(Object tuple, List<AbstractJdbcPOJOOutputOperator.ActiveFieldInfo> getters)
+  {
+    for (int i = 0; i < types.length; i++) {
+      Object getter = getters.get(i).setterOrGetter;
+      switch (types[i]) {
+        case Types.BOOLEAN:
+          longs[i][size] = ((PojoUtils.GetterBoolean<Object>)getter).get(tuple) ? 1 : 0;
+          break;
+
+        case Types.TINYINT:
+          longs[i][size] = ((PojoUtils.GetterByte<Object>)getter).get(tuple);
+          break;
+
+        case Types.SMALLINT:
+          longs[i][size] = ((PojoUtils.GetterShort<Object>)getter).get(tuple);
+          break;
+
+        case Types.INTEGER:
+          longs[i][size] = ((PojoUtils.GetterInt<Object>)getter).get(tuple);
+          break;
+
+        case Types.BIGINT:
+          longs[i][size] = ((PojoUtils.GetterLong<Object>)getter).get(tuple);
+          break;
+
+        case Types.FLOAT:
+          doubles[i][size] = ((PojoUtils.GetterFloat<Object>)getter).get(tuple);
+          break;
+
+        case Types.DOUBLE:
+          doubles[i][size] = ((PojoUtils.GetterDouble<Object>)getter).get(tuple);
+          break;
+
+        default:
+          objects[i][size] = ((PojoUtils.Getter<Object, Object>)getter).get(tuple);
+          break;
+      }
+    }
+    size++;
+  }
+
+  /**
+   * Binds the column values of a row to the parameters of a statement.
+   *
+   * @param statement       insert statement
+   * @param row             row in the batch
+   * @param parameterOffset number of parameters of the statement before the ones of the row
+   */
+  void bind(PreparedStatement statement, int row, int parameterOffset) throws SQLException
+  {
+    for (int i = 0; i < types.length; i++) {
+      int parameter = parameterOffset + i + 1;
+      switch (types[i]) {
+        case Types.CHAR:
+        case Types.VARCHAR:
+          statement.setString(parameter, (String)objects[i][row]);
+          break;
+
+        case Types.BOOLEAN:
+          statement.setBoolean(parameter, longs[i][row] != 0);
+          break;
+
+        case Types.TINYINT:
+          statement.setByte(parameter, (byte)longs[i][row]);
+          break;
+
+        case Types.SMALLINT:
+          statement.setShort(parameter, (short)longs[i][row]);
+          break;
+
+        case Types.INTEGER:
+          statement.setInt(parameter, (int)longs[i][row]);
+          break;
+
+        case Types.BIGINT:
+          statement.setLong(parameter, longs[i][row]);
+          break;
+
+        case Types.FLOAT:
+          statement.setFloat(parameter, (float)doubles[i][row]);
+          break;
+
+        case Types.DOUBLE:
+          statement.setDouble(parameter, doubles[i][row]);
+          break;
+
+        case Types.DECIMAL:
+          statement.setBigDecimal(parameter, (BigDecimal)objects[i][row]);
+          break;
+
+        case Types.TIMESTAMP:
+          statement.setTimestamp(parameter, (Timestamp)objects[i][row]);
+          break;
+
+        case Types.TIME:
+          statement.setTime(parameter, (Time)objects[i][row]);
+          break;
+
+        default:
+          statement.setDate(parameter, (Date)objects[i][row]);
+          break;
+      }
+    }
+  }
+
+  int size()
+  {
+    return size;
+  }
+
+  boolean isFull()
+  {
+    return size == capacity;
+  }
+
+  void clear()
+  {
+    for (Object[] values : objects) {
+      if (values != null) {
+        Arrays.fill(values, 0, size, null);
+      }
+    }
+    size = 0;
+  }
+}
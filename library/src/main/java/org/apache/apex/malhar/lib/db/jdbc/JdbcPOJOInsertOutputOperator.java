@@ -20,11 +20,20 @@ package org.apache.apex.malhar.lib.db.jdbc;
 
 import java.lang.reflect.Field;
 import java.sql.DatabaseMetaData;
+import java.sql.PreparedStatement;
 import java.sql.ResultSet;
 import java.sql.SQLException;
 import java.sql.Types;
+import java.util.ArrayDeque;
 import java.util.HashSet;
 import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import javax.validation.constraints.Min;
 
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -32,6 +41,7 @@ import org.slf4j.LoggerFactory;
 import org.apache.apex.malhar.lib.util.FieldInfo;
 
 import com.google.common.collect.Lists;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
 
 import com.datatorrent.api.Context.OperatorContext;
 
@@ -39,6 +49,14 @@ import com.datatorrent.api.Context.OperatorContext;
  * <p>
  * JdbcPOJOInsertOutputOperator class.</p>
  * An implementation of AbstractJdbcTransactionableOutputOperator which takes in any POJO.
+ * <p>
+ * In {@link #setBulkWrite(boolean) bulk write} mode the column values of the tuples are extracted into columnar
+ * batches of {@link #getBatchSize()} rows. The full batches are inserted by a writer thread with statements of
+ * {@link #getRowsPerStatement()} rows, while the operator thread fills the next batches. At the end of the window
+ * the operator waits for the batches in flight and commits them with the window id in one transaction of the
+ * {@link JdbcTransactionalStore}, so the tuples are still written exactly once. The tuples of a failed batch are
+ * not emitted on the error port, the failure fails the operator instead.
+ * </p>
  *
  * @displayName Jdbc Output Operator
  * @category Output
@@ -54,6 +72,22 @@ public class JdbcPOJOInsertOutputOperator extends AbstractJdbcPOJOOutputOperator
   String columnString;
   String valueString;
 
+  private boolean bulkWrite = false;
+  @Min(1)
+  private int rowsPerStatement = 1;
+  @Min(1)
+  private int maxBatchesInFlight = 2;
+
+  private transient boolean bulkWriting;
+  private transient int[] columnTypes;
+  private transient String multiRowInsertStatement;
+  private transient PreparedStatement singleRowCommand;
+  private transient PreparedStatement multiRowCommand;
+  private transient ExecutorService writer;
+  private transient ColumnarBatch currentBatch;
+  private transient ArrayDeque<Future<ColumnarBatch>> batchesInFlight;
+  private transient ArrayDeque<ColumnarBatch> freeBatches;
+
   @Override
   public void setup(OperatorContext context)
   {
@@ -142,7 +176,168 @@ public class JdbcPOJOInsertOutputOperator extends AbstractJdbcPOJOOutputOperator
             + " VALUES (" + values.toString() + ")";
     LOG.debug("insert statement is {}", insertStatement);
 
+    bulkWriting = bulkWrite && isBulkWriteSupported();
+    if (bulkWriting && rowsPerStatement > 1) {
+      StringBuilder rows = new StringBuilder();
+      for (int i = 0; i < rowsPerStatement; i++) {
+        rows.append(i == 0 ? "(" : ",(").append(values).append(")");
+      }
+      multiRowInsertStatement = "INSERT INTO " + getTablename() + " (" + columns.toString() + ") VALUES " + rows;
+    }
+
     super.activate(context);
+
+    if (bulkWriting) {
+      activateBulkWrite();
+    }
+  }
+
+  private boolean isBulkWriteSupported()
+  {
+    for (int i = 0; i < columnDataTypes.size(); i++) {
+      if (!ColumnarBatch.isSupported(columnDataTypes.get(i))) {
+        LOG.warn("column {} of type {} is bound by handleUnknownDataType, the tuples are not written in bulk",
+            columnNames.get(i), columnDataTypes.get(i));
+        return false;
+      }
+    }
+    return true;
+  }
+
+  private void activateBulkWrite()
+  {
+    columnTypes = new int[columnDataTypes.size()];
+    for (int i = 0; i < columnTypes.length; i++) {
+      columnTypes[i] = columnDataTypes.get(i);
+    }
+    try {
+      singleRowCommand = store.getConnection().prepareStatement(insertStatement);
+      if (multiRowInsertStatement != null) {
+        multiRowCommand = store.getConnection().prepareStatement(multiRowInsertStatement);
+      }
+    } catch (SQLException e) {
+      throw new RuntimeException(e);
+    }
+    currentBatch = null;
+    batchesInFlight = new ArrayDeque<>();
+    freeBatches = new ArrayDeque<>();
+    writer = Executors.newSingleThreadExecutor(new ThreadFactoryBuilder().setDaemon(true)
+        .setNameFormat("jdbc-writer-" + getTablename() + "-%d").build());
+  }
+
+  @Override
+  public void processTuple(Object tuple)
+  {
+    if (!bulkWriting) {
+      super.processTuple(tuple);
+      return;
+    }
+    if (currentBatch == null) {
+      currentBatch = freeBatches.isEmpty() ? new ColumnarBatch(columnTypes, getBatchSize()) : freeBatches.pop();
+    }
+    currentBatch.add(tuple, columnFieldGetters);
+    if (currentBatch.isFull()) {
+      submitCurrentBatch();
+    }
+  }
+
+  @Override
+  public void endWindow()
+  {
+    if (bulkWriting) {
+      if (currentBatch != null && currentBatch.size() > 0) {
+        submitCurrentBatch();
+      }
+      // everything of the window has to be written before it is committed
+      while (!batchesInFlight.isEmpty()) {
+        completeOldestBatch();
+      }
+    }
+    super.endWindow();
+  }
+
+  @Override
+  public void deactivate()
+  {
+    if (writer != null) {
+      writer.shutdownNow();
+      writer = null;
+    }
+    //the statements are closed before the store closes the connection in teardown
+    try {
+      if (singleRowCommand != null) {
+        singleRowCommand.close();
+        singleRowCommand = null;
+      }
+      if (multiRowCommand != null) {
+        multiRowCommand.close();
+        multiRowCommand = null;
+      }
+    } catch (SQLException e) {
+      throw new RuntimeException(e);
+    }
+    super.deactivate();
+  }
+
+  private void submitCurrentBatch()
+  {
+    if (batchesInFlight.size() >= maxBatchesInFlight) {
+      completeOldestBatch();
+    }
+    batchesInFlight.add(writer.submit(new BatchWriter(currentBatch)));
+    currentBatch = null;
+  }
+
+  private void completeOldestBatch()
+  {
+    try {
+      ColumnarBatch batch = batchesInFlight.poll().get();
+      setTuplesWrittenSuccessfully(getTuplesWrittenSuccessfully() + batch.size());
+      batch.clear();
+      freeBatches.push(batch);
+    } catch (InterruptedException e) {
+      throw new RuntimeException(e);
+    } catch (ExecutionException e) {
+      throw new RuntimeException("writing batch", e.getCause());
+    }
+  }
+
+  /**
+   * Inserts a batch with the multi-row statement and the remaining rows with the single row statement.
+   */
+  private class BatchWriter implements Callable<ColumnarBatch>
+  {
+    private final ColumnarBatch batch;
+
+    BatchWriter(ColumnarBatch batch)
+    {
+      this.batch = batch;
+    }
+
+    @Override
+    public ColumnarBatch call() throws SQLException
+    {
+      int row = 0;
+      if (multiRowCommand != null && batch.size() >= rowsPerStatement) {
+        for (; batch.size() - row >= rowsPerStatement; row += rowsPerStatement) {
+          for (int i = 0; i < rowsPerStatement; i++) {
+            batch.bind(multiRowCommand, row + i, i * columnTypes.length);
+          }
+          multiRowCommand.addBatch();
+        }
+        multiRowCommand.executeBatch();
+        multiRowCommand.clearBatch();
+      }
+      if (row < batch.size()) {
+        for (; row < batch.size(); row++) {
+          batch.bind(singleRowCommand, row, 0);
+          singleRowCommand.addBatch();
+        }
+        singleRowCommand.executeBatch();
+        singleRowCommand.clearBatch();
+      }
+      return batch;
+    }
   }
 
   private String getMatchingField(Field[] fields, String columnName)
@@ -198,5 +393,49 @@ public class JdbcPOJOInsertOutputOperator extends AbstractJdbcPOJOOutputOperator
     return insertStatement;
   }
 
+  public boolean isBulkWrite()
+  {
+    return bulkWrite;
+  }
+
+  /**
+   * Whether the tuples are buffered in columnar batches and inserted by a writer thread while the next batches are
+   * filled. The error port is not used in this mode. The batches hold the column types which
+   * {@link #setStatementParameters} binds itself; when a column has another type, which is bound by
+   * {@link #handleUnknownDataType}, the tuples are written row by row as if this was not set.
+   */
+  public void setBulkWrite(boolean bulkWrite)
+  {
+    this.bulkWrite = bulkWrite;
+  }
+
+  public int getRowsPerStatement()
+  {
+    return rowsPerStatement;
+  }
+
+  /**
+   * Number of rows which are inserted with one multi-row INSERT ... VALUES (...),(...) statement in bulk write mode.
+   * When set to 1, every row is a statement of the JDBC batch.
+   */
+  public void setRowsPerStatement(int rowsPerStatement)
+  {
+    this.rowsPerStatement = rowsPerStatement;
+  }
+
+  public int getMaxBatchesInFlight()
+  {
+    return maxBatchesInFlight;
+  }
+
+  /**
+   * Maximum number of full batches which are waiting for the writer thread in bulk write mode. The operator thread
+   * blocks when it fills another batch.
+   */
+  public void setMaxBatchesInFlight(int maxBatchesInFlight)
+  {
+    this.maxBatchesInFlight = maxBatchesInFlight;
+  }
+
   private static final Logger LOG = LoggerFactory.getLogger(JdbcPOJOInsertOutputOperator.class);
 }
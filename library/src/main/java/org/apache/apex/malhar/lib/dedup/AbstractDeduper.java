@@ -18,12 +18,14 @@
  */
 package org.apache.apex.malhar.lib.dedup;
 
-import java.util.Iterator;
+import java.util.List;
 import java.util.Map;
-import java.util.Map.Entry;
+import java.util.Set;
 import java.util.concurrent.ExecutionException;
 import java.util.concurrent.Future;
 
+import javax.validation.constraints.Max;
+import javax.validation.constraints.Min;
 import javax.validation.constraints.NotNull;
 
 import org.slf4j.Logger;
@@ -34,11 +36,16 @@ import org.apache.apex.malhar.lib.state.BucketedState;
 import org.apache.apex.malhar.lib.state.managed.AbstractManagedStateImpl;
 import org.apache.apex.malhar.lib.state.managed.ManagedTimeUnifiedStateImpl;
 import org.apache.apex.malhar.lib.state.managed.MovingBoundaryTimeBucketAssigner;
+import org.apache.apex.malhar.lib.state.managed.TimeBucketAssigner;
+import org.apache.apex.malhar.lib.utils.serde.SliceUtils;
 import org.apache.hadoop.classification.InterfaceStability.Evolving;
 import org.apache.hadoop.fs.Path;
 
+import com.google.common.base.Function;
 import com.google.common.base.Preconditions;
+import com.google.common.collect.Lists;
 import com.google.common.collect.Maps;
+import com.google.common.collect.Sets;
 import com.google.common.util.concurrent.Futures;
 
 import com.datatorrent.api.AutoMetric;
@@ -50,6 +57,7 @@ import com.datatorrent.api.DefaultOutputPort;
 import com.datatorrent.api.Operator;
 import com.datatorrent.api.Operator.ActivationListener;
 import com.datatorrent.api.annotation.OperatorAnnotation;
+import com.datatorrent.api.annotation.Stateless;
 import com.datatorrent.netlet.util.Slice;
 
 /**
@@ -61,6 +69,18 @@ import com.datatorrent.netlet.util.Slice;
  * 2. If the tuple is a valid event, it is checked in the store whether the same key already exists in the
  * time bucket identified by the event time. If, so, the tuple is a duplicate.
  * 3. Otherwise the tuple is a unique tuple.
+ * <p/>
+ * The tuples whose lookups are in flight are kept in arrival order in a ring of {@link #getPipelineCapacity()} tuples.
+ * The tuples at the head of the ring whose lookups have completed are decided and emitted together, when the operator
+ * is idle, after a batch of lookups and at the end of the window. When the ring is full, the operator waits for the
+ * lookup of the oldest tuple before it accepts a new one.
+ * <p/>
+ * When {@link #getPreFilterExpectedKeys()} is set, the keys are also added to in-memory bloom filters per time
+ * bucket. A tuple whose key is certainly not in the filters is unique without a lookup; it is decided in order with the
+ * other tuples and its key is stored in the managed state. A time bucket gets a larger filter with a lower false
+ * positive rate when its last filter has the expected number of keys, up to {@link #getPreFilterMaxFilters()} filters.
+ * The filters are checkpointed with the operator and dropped when their time buckets are purged by
+ * {@link MovingBoundaryTimeBucketAssigner}.
  *
  * @param <T> type of events
  *
@@ -74,6 +94,11 @@ public abstract class AbstractDeduper<T>
 
   private static final String BUCKET_DIR = "bucket_data";
 
+  /**
+   * Result of the lookup of the tuples whose keys are not in the pre-filter.
+   */
+  protected static final Future<Slice> NEW_KEY = Futures.immediateFuture(null);
+
   /**
    * The input port on which events are received.
    */
@@ -107,17 +132,50 @@ public abstract class AbstractDeduper<T>
    */
   private boolean preserveTupleOrder = true;
 
+  /**
+   * Maximum number of tuples whose keys are looked up together. The keys of a batch which are not in memory are read
+   * by a single task per bucket instead of a task per tuple. 1, the default, disables batching.
+   */
+  @Min(1)
+  private int lookupBatchSize = 1;
+
+  /**
+   * Maximum number of tuples which are waiting for their lookups or for the tuples before them.
+   */
+  @Min(1)
+  private int pipelineCapacity = 64 * 1024;
+
+  /**
+   * Expected number of distinct keys of a filter of the pre-filter which sizes the filters. 0 disables the pre-filter.
+   */
+  @Min(0)
+  private long preFilterExpectedKeys;
+
+  @Min(1)
+  private int preFilterBitsPerKey = 10;
+
+  @Min(1)
+  @Max(DedupPreFilter.MAX_FILTERS_PER_TIME_BUCKET)
+  private int preFilterMaxFilters = 4;
+
+  private DedupPreFilter preFilter;
+
   @NotNull
   protected AbstractManagedStateImpl managedState;
 
   /**
-   * Map to hold the result of a tuple processing (unique, duplicate, expired or error) until previous
-   * tuples get processed. This is used only when {@link #preserveTupleOrder} is true.
+   * Tuples which are waiting for their lookups and, when {@link #preserveTupleOrder} is true, the decided tuples which
+   * are waiting for the tuples before them.
    */
-  private transient Map<T, Decision> decisions;
-  private transient Map<T, Future<Slice>> waitingEvents = Maps.newLinkedHashMap();
+  private transient LookupRing<T> pipeline;
   private transient Map<Slice, Long> asyncEvents = Maps.newLinkedHashMap();
 
+  /**
+   * Tuples which are waiting to be looked up in a batch and their distinct keys.
+   */
+  private transient List<T> lookupBatch = Lists.newArrayList();
+  private transient Set<Slice> lookupBatchKeys = Sets.newHashSet();
+
   // Metrics
   @AutoMetric
   private transient long uniqueEvents;
@@ -125,6 +183,15 @@ public abstract class AbstractDeduper<T>
   private transient long duplicateEvents;
   @AutoMetric
   private transient long expiredEvents;
+  @AutoMetric
+  private transient long pipelineStalls;
+  @AutoMetric
+  private transient long preFilterHits;
+  @AutoMetric
+  private transient long preFilterFalsePositives;
+  @AutoMetric
+  private transient double preFilterHitRate;
+  private transient long preFilterChecks;
 
   @Override
   public void setup(OperatorContext context)
@@ -132,9 +199,17 @@ public abstract class AbstractDeduper<T>
     ((FileAccessFSImpl)managedState.getFileAccess()).setBasePath(context.getValue(DAG.APPLICATION_PATH)
         + Path.SEPARATOR + BUCKET_DIR);
     managedState.setup(context);
-
-    if (preserveTupleOrder) {
-      decisions = Maps.newLinkedHashMap();
+    pipeline = new LookupRing<>(pipelineCapacity);
+
+    if (preFilterExpectedKeys == 0) {
+      preFilter = null;
+    } else if (preFilter == null) {
+      //the filter has to see all the keys of the managed state, so it can only be created with the state.
+      if (context.getValue(OperatorContext.ACTIVATION_WINDOW_ID) == Stateless.WINDOW_ID) {
+        preFilter = new DedupPreFilter(preFilterExpectedKeys, preFilterBitsPerKey, preFilterMaxFilters);
+      } else {
+        logger.warn("pre-filter is not enabled because the operator was not started with it");
+      }
     }
   }
 
@@ -145,6 +220,11 @@ public abstract class AbstractDeduper<T>
     uniqueEvents = 0;
     duplicateEvents = 0;
     expiredEvents = 0;
+    pipelineStalls = 0;
+    preFilterHits = 0;
+    preFilterFalsePositives = 0;
+    preFilterHitRate = 0;
+    preFilterChecks = 0;
 
     managedState.beginWindow(l);
   }
@@ -160,19 +240,92 @@ public abstract class AbstractDeduper<T>
    */
   protected void processTuple(T tuple)
   {
-    Future<Slice> valFuture = getAsyncManagedState(tuple);
+    if (lookupBatchSize > 1) {
+      //keys of a batch are distinct so that a tuple is never looked up before the tuples with the same key which
+      //arrived earlier are processed.
+      if (!lookupBatchKeys.add(SliceUtils.toBufferSlice(getKey(tuple)))) {
+        processLookupBatch();
+        lookupBatchKeys.add(SliceUtils.toBufferSlice(getKey(tuple)));
+      }
+      lookupBatch.add(tuple);
+      if (lookupBatch.size() >= lookupBatchSize) {
+        processLookupBatch();
+      }
+      return;
+    }
+    processLookup(tuple, getAsyncManagedState(tuple));
+  }
 
-    if (valFuture.isDone()) {
-      try {
-        processEvent(tuple, valFuture.get());
-      } catch (InterruptedException | ExecutionException e) {
-        throw new RuntimeException(e);
+  /**
+   * Checks a key against the pre-filter and adds it to the pre-filter. The implementations call this with the time
+   * bucket of a tuple when it is looked up and use {@link #NEW_KEY} instead of reading the key when this returns true.
+   *
+   * @param timeBucket time bucket of the tuple; -1 if the tuple is expired.
+   * @param key        key of the tuple
+   * @return true if the key is certainly not in the managed state; false otherwise.
+   */
+  protected boolean isNewKey(long timeBucket, Slice key)
+  {
+    if (preFilter == null || timeBucket < 0) {
+      return false;
+    }
+    preFilterChecks++;
+    if (preFilter.put(timeBucket, key)) {
+      preFilterHits++;
+      return true;
+    }
+    return false;
+  }
+
+  /**
+   * Looks up the tuples of the current batch together and processes them in order.
+   */
+  protected void processLookupBatch()
+  {
+    if (lookupBatch.isEmpty()) {
+      return;
+    }
+    List<Future<Slice>> valFutures = getAsyncManagedState(lookupBatch);
+    for (int i = 0; i < lookupBatch.size(); i++) {
+      T tuple = lookupBatch.get(i);
+      Future<Slice> valFuture = valFutures.get(i);
+      if (valFuture.isDone() && getValue(valFuture) == BucketedState.EXPIRED) {
+        processInvalid(tuple);
+      } else {
+        // the keys of the unique tuples of this window may not be visible to the lookups yet, so the tuples of a batch
+        // are decided like the waiting events against the keys in asyncEvents.
+        processWaitingEvent(tuple, valFuture);
       }
+    }
+    lookupBatch.clear();
+    lookupBatchKeys.clear();
+    drainPipeline(false, false);
+  }
+
+  /**
+   * Processes a tuple with the future of its lookup.
+   *
+   * @param tuple     the incoming tuple
+   * @param valFuture future of the looked up key of the tuple
+   */
+  private void processLookup(T tuple, Future<Slice> valFuture)
+  {
+    if (valFuture.isDone()) {
+      processEvent(tuple, getValue(valFuture));
     } else {
       processWaitingEvent(tuple, valFuture);
     }
   }
 
+  private static Slice getValue(Future<Slice> valFuture)
+  {
+    try {
+      return valFuture.get();
+    } catch (InterruptedException | ExecutionException e) {
+      throw new RuntimeException(e);
+    }
+  }
+
   /**
    * Processes a looked-up event
    *
@@ -196,10 +349,7 @@ public abstract class AbstractDeduper<T>
    */
   protected void processWaitingEvent(T tuple, Future<Slice> future)
   {
-    waitingEvents.put(tuple, future);
-    if (preserveTupleOrder) {
-      recordDecision(tuple, Decision.UNKNOWN);
-    }
+    enqueue(tuple, future, Decision.UNKNOWN);
   }
 
   /**
@@ -212,7 +362,7 @@ public abstract class AbstractDeduper<T>
    */
   protected void processValid(T tuple, Slice value)
   {
-    if (!preserveTupleOrder || waitingEvents.isEmpty()) {
+    if (!preserveTupleOrder || pipeline.isEmpty()) {
       if (value == null) {
         putManagedState(tuple);
         processUnique(tuple);
@@ -231,7 +381,7 @@ public abstract class AbstractDeduper<T>
    */
   protected void processInvalid(T tuple)
   {
-    if (preserveTupleOrder && !decisions.isEmpty()) {
+    if (preserveTupleOrder && !pipeline.isEmpty()) {
       recordDecision(tuple, Decision.EXPIRED);
     } else {
       processExpired(tuple);
@@ -257,7 +407,7 @@ public abstract class AbstractDeduper<T>
    */
   protected void processDuplicate(T tuple)
   {
-    if (preserveTupleOrder && !decisions.isEmpty()) {
+    if (preserveTupleOrder && !pipeline.isEmpty()) {
       recordDecision(tuple, Decision.DUPLICATE);
     } else {
       duplicateEvents++;
@@ -273,7 +423,7 @@ public abstract class AbstractDeduper<T>
    */
   protected void processUnique(T tuple)
   {
-    if (preserveTupleOrder && !decisions.isEmpty()) {
+    if (preserveTupleOrder && !pipeline.isEmpty()) {
       recordDecision(tuple, Decision.UNIQUE);
     } else {
       uniqueEvents++;
@@ -287,109 +437,178 @@ public abstract class AbstractDeduper<T>
   @Override
   public void handleIdleTime()
   {
-    if (preserveTupleOrder) {
-      emitProcessedTuples();
-    }
+    processLookupBatch();
     processAuxiliary(false);
   }
 
   /**
    * Does any auxiliary processing in the idle time of the operator.
-   * Processes any tuples which are waiting for the lookup to return.
+   * Processes the tuples at the head of the pipeline whose lookups have returned.
    *
-   * @param finalize Whether or not to wait for future to return
+   * @param finalize Whether or not to wait for all the lookups to return
    */
   protected void processAuxiliary(boolean finalize)
   {
-    if (waitingEvents.size() > 0) {
-      Iterator<Map.Entry<T, Future<Slice>>> waitIterator = waitingEvents.entrySet().iterator();
-      while (waitIterator.hasNext()) {
-        Map.Entry<T, Future<Slice>> waitingEvent = waitIterator.next();
-        T tuple = waitingEvent.getKey();
-        Slice tupleKey = getKey(tuple);
-        long tupleTime = getTime(tuple);
-        Future<Slice> future = waitingEvent.getValue();
-        if (future.isDone() || finalize ) {
-          try {
-            Long asyncEventsTupleTime = asyncEvents.get(tupleKey);
-            if (future.get() == null && (asyncEventsTupleTime == null || asyncEventsTupleTime < tupleTime) ) {
-              putManagedState(tuple);
-              asyncEvents.put(tupleKey, tupleTime);
-              processUnique(tuple);
-            } else {
-              processDuplicate(tuple);
-            }
-          } catch (InterruptedException | ExecutionException e) {
-            throw new RuntimeException("handle idle time", e);
-          }
-          waitIterator.remove();
-        }
-        if (!finalize) {
+    drainPipeline(finalize, false);
+  }
+
+  /**
+   * Adds a tuple to the pipeline. If the pipeline is full, the lookup of the oldest tuple is waited for first.
+   */
+  private void enqueue(T tuple, Future<Slice> future, Decision decision)
+  {
+    if (pipeline.isFull()) {
+      pipelineStalls++;
+      drainPipeline(false, true);
+    }
+    pipeline.add(tuple, future, decision);
+  }
+
+  /**
+   * Decides and emits the tuples from the head of the pipeline till a tuple whose lookup has not returned. The tuples
+   * are decided in arrival order so a tuple sees the keys of the unique tuples before it.
+   *
+   * @param finalize  whether to wait for all the lookups
+   * @param awaitHead whether to wait for the lookup of the oldest tuple
+   */
+  private void drainPipeline(boolean finalize, boolean awaitHead)
+  {
+    boolean await = awaitHead;
+    while (!pipeline.isEmpty()) {
+      T tuple = pipeline.peekTuple();
+      Decision decision = pipeline.peekDecision();
+      if (decision == Decision.UNKNOWN) {
+        Future<Slice> future = pipeline.peekFuture();
+        if (!future.isDone() && !finalize && !await) {
           break;
         }
+        decision = decideWaitingEvent(tuple, future);
+      }
+      await = false;
+      pipeline.remove();
+
+      switch (decision) {
+        case UNIQUE:
+          uniqueEvents++;
+          emitUnique(tuple);
+          break;
+        case DUPLICATE:
+          duplicateEvents++;
+          emitDuplicate(tuple);
+          break;
+        case EXPIRED:
+          expiredEvents++;
+          emitExpired(tuple);
+          break;
+        default:
+          throw new IllegalStateException("undecided tuple " + tuple);
+      }
+    }
+  }
+
+  /**
+   * Decides a waiting tuple whose lookup has returned.
+   *
+   * @param tuple  the waiting tuple
+   * @param future future of the looked up key of the tuple
+   * @return {@link Decision#UNIQUE} or {@link Decision#DUPLICATE}
+   */
+  private Decision decideWaitingEvent(T tuple, Future<Slice> future)
+  {
+    Slice tupleKey = getKey(tuple);
+    long tupleTime = getTime(tuple);
+    try {
+      Long asyncEventsTupleTime = asyncEvents.get(tupleKey);
+      if (future.get() == null && (asyncEventsTupleTime == null || asyncEventsTupleTime < tupleTime) ) {
+        putManagedState(tuple);
+        asyncEvents.put(tupleKey, tupleTime);
+        return Decision.UNIQUE;
       }
+      return Decision.DUPLICATE;
+    } catch (InterruptedException | ExecutionException e) {
+      throw new RuntimeException("handle idle time", e);
     }
   }
 
   @Override
   public void endWindow()
   {
+    processLookupBatch();
     processAuxiliary(true);
-    if (preserveTupleOrder) {
-      emitProcessedTuples();
-    }
-    Preconditions.checkArgument(waitingEvents.isEmpty());
+    Preconditions.checkArgument(pipeline.isEmpty());
     asyncEvents.clear();
     managedState.endWindow();
+
+    if (preFilter != null) {
+      //all the tuples of the window are decided, so the unique tuples which were looked up passed the filter falsely.
+      preFilterFalsePositives = Math.max(0, uniqueEvents - preFilterHits);
+      preFilterHitRate = preFilterChecks == 0 ? 0 : (double)preFilterHits / preFilterChecks;
+      TimeBucketAssigner timeBucketAssigner = managedState.getTimeBucketAssigner();
+      if (timeBucketAssigner instanceof MovingBoundaryTimeBucketAssigner) {
+        long purgeableTimeBucket = ((MovingBoundaryTimeBucketAssigner)timeBucketAssigner).getLowestPurgeableTimeBucket();
+        if (purgeableTimeBucket >= 0) {
+          preFilter.purgeTimeBucketsLessThanEqualTo(purgeableTimeBucket);
+        }
+      }
+    }
   }
 
   protected abstract Future<Slice> getAsyncManagedState(T tuple);
 
+  /**
+   * Looks up a batch of tuples whose keys are distinct. The default implementation looks up every tuple with
+   * {@link #getAsyncManagedState(Object)}; the implementations override it to look up the keys of a bucket together.
+   *
+   * @param tuples tuples of the batch
+   * @return futures of the looked up keys of the tuples in the order of the tuples
+   */
+  protected List<Future<Slice>> getAsyncManagedState(List<T> tuples)
+  {
+    List<Future<Slice>> valFutures = Lists.newArrayListWithCapacity(tuples.size());
+    for (T tuple : tuples) {
+      valFutures.add(getAsyncManagedState(tuple));
+    }
+    return valFutures;
+  }
+
+  /**
+   * @param values future of the values of a batch of keys
+   * @param key    key
+   * @return future of the value of the key
+   */
+  protected static Future<Slice> getAsyncValue(Future<Map<Slice, Slice>> values, final Slice key)
+  {
+    return Futures.lazyTransform(values, new Function<Map<Slice, Slice>, Slice>()
+    {
+      @Override
+      public Slice apply(Map<Slice, Slice> input)
+      {
+        return input.get(key);
+      }
+    });
+  }
+
   protected abstract void putManagedState(T tuple);
 
   /**
    * Records a decision for use later. This is needed to ensure that the order of incoming tuples is maintained.
+   * The tuple is added to the pipeline and is emitted after the tuples before it.
    *
    * @param tuple the incoming tuple
    * @param d The decision for the tuple
    */
   protected void recordDecision(T tuple, Decision d)
   {
-    decisions.put(tuple, d);
+    enqueue(tuple, null, d);
   }
 
   /**
-   * Processes tuples for which the decision (unique / duplicate / expired) has been made.
+   * Processes tuples for which the decision (unique / duplicate / expired) has been made or whose lookup has returned.
    * Breaks once an undecided tuple is found, as we don't want to emit out of order
    */
   protected void emitProcessedTuples()
   {
-    Iterator<Entry<T, Decision>> entries = decisions.entrySet().iterator();
-    while (entries.hasNext()) {
-      Entry<T, Decision> td = entries.next();
-      switch (td.getValue()) {
-        case UNIQUE:
-          uniqueEvents++;
-          emitUnique(td.getKey());
-          entries.remove();
-          break;
-        case DUPLICATE:
-          duplicateEvents++;
-          emitDuplicate(td.getKey());
-          entries.remove();
-          break;
-        case EXPIRED:
-          expiredEvents++;
-          emitExpired(td.getKey());
-          entries.remove();
-          break;
-        default:
-          /*
-           * Decision for this is still UNKNOWN. Tuple is still waiting for bucket to be loaded. Break.
-           */
-          break;
-      }
-    }
+    drainPipeline(false, false);
   }
 
   @Override
@@ -451,6 +670,110 @@ public abstract class AbstractDeduper<T>
     this.preserveTupleOrder = preserveTupleOrder;
   }
 
+  /**
+   * @return maximum number of tuples whose keys are looked up together.
+   */
+  public int getLookupBatchSize()
+  {
+    return lookupBatchSize;
+  }
+
+  /**
+   * Sets the maximum number of tuples whose keys are looked up together. The keys of the tuples which are not in
+   * memory are read from the data files of a bucket in one pass. A batch is also looked up when the operator is idle
+   * and at the end of a window. By default this is 1, which looks up every tuple on its own.
+   *
+   * @param lookupBatchSize batch size
+   */
+  public void setLookupBatchSize(int lookupBatchSize)
+  {
+    this.lookupBatchSize = lookupBatchSize;
+  }
+
+  /**
+   * @return maximum number of tuples which are waiting for their lookups or for the tuples before them.
+   */
+  public int getPipelineCapacity()
+  {
+    return pipelineCapacity;
+  }
+
+  /**
+   * Sets the maximum number of tuples which are waiting for their lookups or, when the order of the tuples is
+   * preserved, for the tuples before them. When the pipeline is full, the operator waits for the lookup of the oldest
+   * tuple. The capacity is rounded up to a power of 2.
+   *
+   * @param pipelineCapacity capacity of the pipeline
+   */
+  public void setPipelineCapacity(int pipelineCapacity)
+  {
+    this.pipelineCapacity = pipelineCapacity;
+  }
+
+  /**
+   * @return expected number of distinct keys of the first filter of a time bucket; 0 if the pre-filter is disabled.
+   */
+  public long getPreFilterExpectedKeys()
+  {
+    return preFilterExpectedKeys;
+  }
+
+  /**
+   * Enables the pre-filter of the keys and sets the expected number of distinct keys of the first bloom filter of a
+   * time bucket. When the last filter of a time bucket has its expected keys, a filter for 4 times as many keys is
+   * added to the time bucket. The bounded deduper keeps all the keys in a single time bucket, so this should be about
+   * the number of its distinct keys divided by 4^({@link #getPreFilterMaxFilters()} - 1). The pre-filter is not used if the
+   * operator is restored from a checkpoint which was taken without it, because it would not contain the keys which are
+   * already stored. By default this is 0 which disables the pre-filter.
+   *
+   * @param preFilterExpectedKeys expected number of keys of the first filter of a time bucket
+   */
+  public void setPreFilterExpectedKeys(long preFilterExpectedKeys)
+  {
+    this.preFilterExpectedKeys = preFilterExpectedKeys;
+  }
+
+  /**
+   * @return bits per key of the bloom filters of the pre-filter.
+   */
+  public int getPreFilterBitsPerKey()
+  {
+    return preFilterBitsPerKey;
+  }
+
+  /**
+   * Sets the bits per key of the bloom filters of the pre-filter. 10 bits give about 1% false positives. By default
+   * this is 10.
+   *
+   * @param preFilterBitsPerKey bits per key
+   */
+  public void setPreFilterBitsPerKey(int preFilterBitsPerKey)
+  {
+    this.preFilterBitsPerKey = preFilterBitsPerKey;
+  }
+
+  /**
+   * @return maximum number of the bloom filters of a time bucket of the pre-filter.
+   */
+  public int getPreFilterMaxFilters()
+  {
+    return preFilterMaxFilters;
+  }
+
+  /**
+   * Sets the maximum number of the bloom filters of a time bucket, which bounds the memory of the pre-filter per time
+   * bucket. Every next filter of a time bucket is for 4 times as many keys with 4 more bits per key, so that the total
+   * false positive rate of the filters stays within about twice the rate of the first filter. When a time bucket has
+   * the maximum number of filters, the keys are added to its last filter and the false positives grow with the keys.
+   * By default this is 4, at most 8.
+   *
+   * @param preFilterMaxFilters maximum number of filters per time bucket
+   */
+  public void setPreFilterMaxFilters(int preFilterMaxFilters)
+  {
+    this.preFilterMaxFilters = preFilterMaxFilters;
+  }
+
   /**
    * Enum for holding all possible values for a decision for a tuple
    */
@@ -19,6 +19,8 @@
 package org.apache.apex.malhar.lib.dedup;
 
 import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
 import java.util.concurrent.Future;
 
 import javax.validation.constraints.NotNull;
@@ -29,6 +31,9 @@ import org.apache.apex.malhar.lib.util.PojoUtils;
 import org.apache.apex.malhar.lib.util.PojoUtils.Getter;
 import org.apache.hadoop.classification.InterfaceStability.Evolving;
 
+import com.google.common.collect.Lists;
+import com.google.common.collect.Maps;
+
 import com.datatorrent.api.Context;
 import com.datatorrent.api.Context.OperatorContext;
 import com.datatorrent.api.Context.PortContext;
@@ -147,10 +152,48 @@ public class BoundedDedupOperator extends AbstractDeduper<Object>
   protected Future<Slice> getAsyncManagedState(Object tuple)
   {
     Slice key = getKey(tuple);
+    if (isNewKey(DEFAULT_CONSTANT_TIME, key)) {
+      return NEW_KEY;
+    }
     Future<Slice> valFuture = ((ManagedTimeStateImpl)managedState).getAsync(getBucketId(key), key);
     return valFuture;
   }
 
+  @Override
+  protected List<Future<Slice>> getAsyncManagedState(List<Object> tuples)
+  {
+    Map<Integer, List<Slice>> keysPerBucket = Maps.newHashMap();
+    List<Slice> keys = Lists.newArrayListWithCapacity(tuples.size());
+    for (Object tuple : tuples) {
+      Slice key = getKey(tuple);
+      //the keys never expire, so the pre-filter has a single time bucket which gets larger filters as the keys grow.
+      if (isNewKey(DEFAULT_CONSTANT_TIME, key)) {
+        keys.add(null);
+        continue;
+      }
+      keys.add(key);
+      int bucketId = getBucketId(key);
+      List<Slice> bucketKeys = keysPerBucket.get(bucketId);
+      if (bucketKeys == null) {
+        bucketKeys = Lists.newArrayList();
+        keysPerBucket.put(bucketId, bucketKeys);
+      }
+      bucketKeys.add(key);
+    }
+
+    Map<Integer, Future<Map<Slice, Slice>>> valuesPerBucket = Maps.newHashMap();
+    for (Map.Entry<Integer, List<Slice>> entry : keysPerBucket.entrySet()) {
+      valuesPerBucket.put(entry.getKey(), ((ManagedTimeStateImpl)managedState).getAllAsync(entry.getKey(),
+          entry.getValue()));
+    }
+
+    List<Future<Slice>> valFutures = Lists.newArrayListWithCapacity(tuples.size());
+    for (Slice key : keys) {
+      valFutures.add(key == null ? NEW_KEY : getAsyncValue(valuesPerBucket.get(getBucketId(key)), key));
+    }
+    return valFutures;
+  }
+
   @Override
   protected void putManagedState(Object tuple)
   {
@@ -0,0 +1,195 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.apex.malhar.lib.dedup;
+
+import java.util.List;
+import java.util.TreeMap;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import org.apache.apex.malhar.lib.state.managed.BlockedSliceBloomFilter;
+
+import com.google.common.base.Preconditions;
+import com.google.common.collect.Lists;
+
+import com.datatorrent.netlet.util.Slice;
+
+/**
+ * An in-memory filter of the keys which were seen by {@link AbstractDeduper}, with blocked bloom filters per time
+ * bucket. A key which is not in the filters of its time bucket was never stored in the managed state, so its tuple is
+ * unique without a lookup. The filters are checkpointed with the operator so that they stay consistent with the
+ * managed state after a failure.<br/>
+ * <p/>
+ * When the last filter of a time bucket has its expected number of keys, a filter for {@link #GROWTH_FACTOR} times as
+ * many keys with {@link #BITS_PER_KEY_INCREMENT} more bits per key is added to the time bucket. A key is checked
+ * against all the filters of its time bucket, so the false positive rates of the filters add up. The rate of the
+ * second filter is about a third of the rate of the first one and the rates of the later filters are about 0.1%,
+ * which is the lowest rate of the blocked filters, so with 10 bits per key the total rate of
+ * {@link #MAX_FILTERS_PER_TIME_BUCKET} filters stays within about twice the rate of the first filter. When a time
+ * bucket has the maximum number of filters, the keys are added to its last filter and the false positives of the time
+ * bucket grow with the keys, which keeps the memory of a time bucket bounded.<br/>
+ * <p/>
+ * The filters of the time buckets which are purged by the time bucket assigner are dropped.
+ */
+class DedupPreFilter
+{
+  /**
+   * Factor of the expected keys of every next filter of a time bucket.
+   */
+  static final int GROWTH_FACTOR = 4;
+  /**
+   * Bits per key which are added to every next filter of a time bucket.
+   */
+  static final int BITS_PER_KEY_INCREMENT = 4;
+  static final int MAX_FILTERS_PER_TIME_BUCKET = 8;
+
+  private final long expectedKeysPerFilter;
+  private final int bitsPerKey;
+  private final int maxFiltersPerTimeBucket;
+  private final TreeMap<Long, List<BlockedSliceBloomFilter>> filters = new TreeMap<>();
+
+  @SuppressWarnings("unused")
+  private DedupPreFilter()
+  {
+    //for kryo
+    expectedKeysPerFilter = 0;
+    bitsPerKey = 0;
+    maxFiltersPerTimeBucket = 0;
+  }
+
+  /**
+   * @param expectedKeysPerFilter   expected number of keys of the first filter of a time bucket
+   * @param bitsPerKey              bits per key of the first filter of a time bucket
+   * @param maxFiltersPerTimeBucket maximum number of filters of a time bucket
+   */
+  DedupPreFilter(long expectedKeysPerFilter, int bitsPerKey, int maxFiltersPerTimeBucket)
+  {
+    Preconditions.checkArgument(expectedKeysPerFilter > 0, "expected keys");
+    Preconditions.checkArgument(bitsPerKey > 0, "bits per key");
+    Preconditions.checkArgument(maxFiltersPerTimeBucket > 0 && maxFiltersPerTimeBucket <= MAX_FILTERS_PER_TIME_BUCKET,
+        "max filters per time bucket");
+    this.expectedKeysPerFilter = expectedKeysPerFilter;
+    this.bitsPerKey = bitsPerKey;
+    this.maxFiltersPerTimeBucket = maxFiltersPerTimeBucket;
+  }
+
+  /**
+   * Adds a key to the filters of a time bucket.
+   *
+   * @param timeBucket time bucket of the key
+   * @param key        key
+   * @return true if the key was certainly not added to the time bucket before; false if it may have been.
+   */
+  boolean put(long timeBucket, Slice key)
+  {
+    if (mightContain(timeBucket, key)) {
+      return false;
+    }
+    List<BlockedSliceBloomFilter> timeBucketFilters = filters.get(timeBucket);
+    if (timeBucketFilters == null) {
+      timeBucketFilters = Lists.newArrayList();
+      filters.put(timeBucket, timeBucketFilters);
+    }
+
+    int numFilters = timeBucketFilters.size();
+    BlockedSliceBloomFilter filter = numFilters == 0 ? null : timeBucketFilters.get(numFilters - 1);
+    if (filter == null || filter.getNumberOfKeys() >= getExpectedKeys(numFilters - 1)) {
+      if (numFilters < maxFiltersPerTimeBucket) {
+        filter = new BlockedSliceBloomFilter(getExpectedKeys(numFilters),
+            bitsPerKey + numFilters * BITS_PER_KEY_INCREMENT);
+        timeBucketFilters.add(filter);
+      } else if (filter.getNumberOfKeys() == getExpectedKeys(numFilters - 1)) {
+        logger.warn("time bucket {} has {} filters, the false positives of the pre-filter grow with its keys", timeBucket,
+            numFilters);
+      }
+    }
+    filter.put(key);
+    return true;
+  }
+
+  /**
+   * @return true if the key may have been added to the time bucket; false if it certainly was not.
+   */
+  boolean mightContain(long timeBucket, Slice key)
+  {
+    List<BlockedSliceBloomFilter> timeBucketFilters = filters.get(timeBucket);
+    if (timeBucketFilters != null) {
+      for (BlockedSliceBloomFilter filter : timeBucketFilters) {
+        if (filter.mightContain(key)) {
+          return true;
+        }
+      }
+    }
+    return false;
+  }
+
+  /**
+   * @return expected number of keys of the filter of a time bucket with the given index.
+   */
+  private long getExpectedKeys(int index)
+  {
+    long expectedKeys = expectedKeysPerFilter;
+    for (int i = 0; i < index; i++) {
+      expectedKeys *= GROWTH_FACTOR;
+    }
+    return expectedKeys;
+  }
+
+  /**
+   * Drops the filters of the time buckets which are less than or equal to the given time bucket.
+   */
+  void purgeTimeBucketsLessThanEqualTo(long timeBucket)
+  {
+    filters.headMap(timeBucket, true).clear();
+  }
+
+  /**
+   * @return number of time buckets which have a filter.
+   */
+  int getNumTimeBuckets()
+  {
+    return filters.size();
+  }
+
+  /**
+   * @return number of the filters of a time bucket.
+   */
+  int getNumFilters(long timeBucket)
+  {
+    List<BlockedSliceBloomFilter> timeBucketFilters = filters.get(timeBucket);
+    return timeBucketFilters == null ? 0 : timeBucketFilters.size();
+  }
+
+  /**
+   * @return size of the bits of all the filters in bytes.
+   */
+  long getSizeInBytes()
+  {
+    long size = 0;
+    for (List<BlockedSliceBloomFilter> timeBucketFilters : filters.values()) {
+      for (BlockedSliceBloomFilter filter : timeBucketFilters) {
+        size += filter.getSizeInBytes();
+      }
+    }
+    return size;
+  }
+
+  private static final Logger logger = LoggerFactory.getLogger(DedupPreFilter.class);
+}
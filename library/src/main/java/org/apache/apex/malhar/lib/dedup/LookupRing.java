@@ -0,0 +1,137 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.apex.malhar.lib.dedup;
+
+import java.util.NoSuchElementException;
+import java.util.concurrent.Future;
+
+import com.google.common.base.Preconditions;
+
+import com.datatorrent.netlet.util.Slice;
+
+/**
+ * A fixed-capacity ring of the tuples of {@link AbstractDeduper} which are waiting for their lookup or for the
+ * tuples before them to be emitted. The tuples are kept in arrival order together with the future of their lookup and
+ * their decision in parallel arrays, so nothing is allocated per tuple and equal tuples don't share an entry.
+ *
+ * @param <T> type of events
+ */
+class LookupRing<T>
+{
+  private final Object[] tuples;
+  private final Future<?>[] futures;
+  private final AbstractDeduper.Decision[] decisions;
+  private final int mask;
+
+  private long head;
+  private long tail;
+
+  /**
+   * @param capacity minimum capacity which is rounded up to a power of 2.
+   */
+  LookupRing(int capacity)
+  {
+    Preconditions.checkArgument(capacity > 0 && capacity <= 1 << 30, "capacity");
+    int size = Integer.highestOneBit(capacity);
+    if (size < capacity) {
+      size <<= 1;
+    }
+    tuples = new Object[size];
+    futures = new Future<?>[size];
+    decisions = new AbstractDeduper.Decision[size];
+    mask = size - 1;
+  }
+
+  /**
+   * Adds a tuple at the tail.
+   *
+   * @param tuple    tuple
+   * @param future   future of the lookup of the tuple; null if the tuple is decided
+   * @param decision decision of the tuple; {@link AbstractDeduper.Decision#UNKNOWN} if the lookup has to be resolved
+   */
+  void add(T tuple, Future<Slice> future, AbstractDeduper.Decision decision)
+  {
+    Preconditions.checkState(!isFull(), "ring is full");
+    int slot = (int)(tail & mask);
+    tuples[slot] = tuple;
+    futures[slot] = future;
+    decisions[slot] = decision;
+    tail++;
+  }
+
+  @SuppressWarnings("unchecked")
+  T peekTuple()
+  {
+    checkNotEmpty();
+    return (T)tuples[(int)(head & mask)];
+  }
+
+  @SuppressWarnings("unchecked")
+  Future<Slice> peekFuture()
+  {
+    checkNotEmpty();
+    return (Future<Slice>)futures[(int)(head & mask)];
+  }
+
+  AbstractDeduper.Decision peekDecision()
+  {
+    checkNotEmpty();
+    return decisions[(int)(head & mask)];
+  }
+
+  /**
+   * Removes the tuple at the head.
+   */
+  void remove()
+  {
+    checkNotEmpty();
+    int slot = (int)(head & mask);
+    tuples[slot] = null;
+    futures[slot] = null;
+    decisions[slot] = null;
+    head++;
+  }
+
+  boolean isEmpty()
+  {
+    return head == tail;
+  }
+
+  boolean isFull()
+  {
+    return tail - head == tuples.length;
+  }
+
+  int size()
+  {
+    return (int)(tail - head);
+  }
+
+  int capacity()
+  {
+    return tuples.length;
+  }
+
+  private void checkNotEmpty()
+  {
+    if (head == tail) {
+      throw new NoSuchElementException();
+    }
+  }
+}
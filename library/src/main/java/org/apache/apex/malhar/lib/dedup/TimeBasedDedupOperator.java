@@ -18,6 +18,8 @@
  */
 package org.apache.apex.malhar.lib.dedup;
 
+import java.util.List;
+import java.util.Map;
 import java.util.concurrent.Future;
 
 import javax.validation.constraints.NotNull;
@@ -30,6 +32,9 @@ import org.apache.apex.malhar.lib.util.PojoUtils;
 import org.apache.apex.malhar.lib.util.PojoUtils.Getter;
 import org.apache.hadoop.classification.InterfaceStability.Evolving;
 
+import com.google.common.collect.Lists;
+import com.google.common.collect.Maps;
+
 import com.datatorrent.api.Context;
 import com.datatorrent.api.Context.OperatorContext;
 import com.datatorrent.api.Context.PortContext;
@@ -178,11 +183,55 @@ public class TimeBasedDedupOperator extends AbstractDeduper<Object> implements A
   @Override
   protected Future<Slice> getAsyncManagedState(Object tuple)
   {
-    Future<Slice> valFuture = ((ManagedTimeUnifiedStateImpl)managedState).getAsync(getTime(tuple),
-        getKey(tuple));
+    Slice key = getKey(tuple);
+    if (isNewKey(managedState.getTimeBucketAssigner().getTimeBucket(getTime(tuple)), key)) {
+      return NEW_KEY;
+    }
+    Future<Slice> valFuture = ((ManagedTimeUnifiedStateImpl)managedState).getAsync(getTime(tuple), key);
     return valFuture;
   }
 
+  @Override
+  protected List<Future<Slice>> getAsyncManagedState(List<Object> tuples)
+  {
+    //the time buckets are the buckets of the unified state so the keys are grouped by time bucket. The time buckets
+    //are assigned in the order of the tuples as the boundaries of the time buckets move with the time of the tuples.
+    //The keys which are not in the pre-filter are not read.
+    Map<Long, List<Slice>> keysPerTimeBucket = Maps.newHashMap();
+    List<Slice> keys = Lists.newArrayListWithCapacity(tuples.size());
+    List<Long> timeBuckets = Lists.newArrayListWithCapacity(tuples.size());
+    for (Object tuple : tuples) {
+      Slice key = getKey(tuple);
+      long timeBucket = managedState.getTimeBucketAssigner().getTimeBucket(getTime(tuple));
+      if (isNewKey(timeBucket, key)) {
+        keys.add(null);
+        timeBuckets.add(timeBucket);
+        continue;
+      }
+      keys.add(key);
+      timeBuckets.add(timeBucket);
+      List<Slice> timeBucketKeys = keysPerTimeBucket.get(timeBucket);
+      if (timeBucketKeys == null) {
+        timeBucketKeys = Lists.newArrayList();
+        keysPerTimeBucket.put(timeBucket, timeBucketKeys);
+      }
+      timeBucketKeys.add(key);
+    }
+
+    Map<Long, Future<Map<Slice, Slice>>> valuesPerTimeBucket = Maps.newHashMap();
+    for (Map.Entry<Long, List<Slice>> entry : keysPerTimeBucket.entrySet()) {
+      valuesPerTimeBucket.put(entry.getKey(),
+          ((ManagedTimeUnifiedStateImpl)managedState).getAllAsyncFromTimeBucket(entry.getKey(), entry.getValue()));
+    }
+
+    List<Future<Slice>> valFutures = Lists.newArrayListWithCapacity(tuples.size());
+    for (int i = 0; i < keys.size(); i++) {
+      Slice key = keys.get(i);
+      valFutures.add(key == null ? NEW_KEY : getAsyncValue(valuesPerTimeBucket.get(timeBuckets.get(i)), key));
+    }
+    return valFutures;
+  }
+
   @Override
   protected void putManagedState(Object tuple)
   {
@@ -0,0 +1,251 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.apex.malhar.lib.dimensions.aggregator;
+
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+import org.codehaus.commons.compiler.CompileException;
+import org.codehaus.commons.compiler.CompilerFactoryFactory;
+import org.codehaus.commons.compiler.IClassBodyEvaluator;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import org.apache.apex.malhar.lib.appdata.gpo.GPOMutable;
+import org.apache.apex.malhar.lib.appdata.gpo.GPOUtils.IndexSubset;
+import org.apache.apex.malhar.lib.appdata.schemas.Type;
+import org.apache.apex.malhar.lib.dimensions.DimensionsConversionContext;
+
+import com.google.common.base.Preconditions;
+
+/**
+ * The aggregation of an input event by all the {@link IncrementalAggregator}s of a dimensions combination in a
+ * single pass. The code is generated for the aggregators and fields of the combination: every measure of every
+ * {@link AggregatorSum}, {@link AggregatorCount}, {@link AggregatorMin}, {@link AggregatorMax},
+ * {@link AggregatorFirst} and {@link AggregatorLast} is updated by one statement on the primitive arrays of the
+ * {@link GPOMutable}s, without virtual calls, loops over the types or index subset lookups.
+ * <p/>
+ * The other aggregators, including subclasses of the aggregators above, are not fused and are reported by
+ * {@link #isFused(int)}, so the caller aggregates them with {@link IncrementalAggregator#aggregate}.
+ */
+public abstract class FusedAggregation
+{
+  private static final Type[] FUSED_TYPES = {Type.BOOLEAN, Type.CHAR, Type.STRING, Type.BYTE, Type.SHORT,
+      Type.INTEGER, Type.LONG, Type.FLOAT, Type.DOUBLE};
+  private static final String[] JAVA_TYPES = {"boolean", "char", "String", "byte", "short", "int", "long", "float",
+      "double"};
+  private static final String[] ARRAY_GETTERS = {"getFieldsBoolean", "getFieldsCharacter", "getFieldsString",
+      "getFieldsByte", "getFieldsShort", "getFieldsInteger", "getFieldsLong", "getFieldsFloat", "getFieldsDouble"};
+
+  /**
+   * The generated classes by their code, so the combinations with the same aggregators and fields share a class.
+   */
+  private static final ConcurrentMap<String, Class<? extends FusedAggregation>> AGGREGATION_CLASSES =
+      new ConcurrentHashMap<>();
+
+  private boolean[] fused;
+
+  protected FusedAggregation()
+  {
+  }
+
+  /**
+   * Creates the aggregation of the given aggregators of a dimensions combination.
+   * @param aggregators The {@link IncrementalAggregator}s of the dimensions combination.
+   * @param contexts The conversion contexts of the aggregators, in the same order.
+   * @return The aggregation.
+   */
+  public static FusedAggregation create(List<IncrementalAggregator> aggregators,
+      List<DimensionsConversionContext> contexts)
+  {
+    Preconditions.checkArgument(aggregators.size() == contexts.size());
+    boolean[] fused = new boolean[aggregators.size()];
+    String code = generate(aggregators, contexts, fused);
+
+    Class<? extends FusedAggregation> aggregationClass = AGGREGATION_CLASSES.get(code);
+    if (aggregationClass == null) {
+      aggregationClass = compile(code);
+      Class<? extends FusedAggregation> existing = AGGREGATION_CLASSES.putIfAbsent(code, aggregationClass);
+      if (existing != null) {
+        aggregationClass = existing;
+      }
+    }
+
+    try {
+      FusedAggregation aggregation = aggregationClass.newInstance();
+      aggregation.fused = fused;
+      return aggregation;
+    } catch (InstantiationException | IllegalAccessException e) {
+      throw new RuntimeException(e);
+    }
+  }
+
+  /**
+   * Aggregates the values of an input event into the aggregates of all the fused aggregators.
+   * @param input The values of the input event.
+   * @param aggregates The aggregates of the aggregators, in the order of the aggregators given to
+   * {@link #create(List, List)}. The aggregates of the aggregators which are not fused are ignored.
+   */
+  public abstract void aggregate(GPOMutable input, GPOMutable[] aggregates);
+
+  /**
+   * @param aggregatorIndex The index of an aggregator in the list given to {@link #create(List, List)}.
+   * @return True if the aggregator is applied by {@link #aggregate(GPOMutable, GPOMutable[])}.
+   */
+  public boolean isFused(int aggregatorIndex)
+  {
+    return fused[aggregatorIndex];
+  }
+
+  private static String generate(List<IncrementalAggregator> aggregators, List<DimensionsConversionContext> contexts,
+      boolean[] fused)
+  {
+    StringBuilder declarations = new StringBuilder();
+    StringBuilder statements = new StringBuilder();
+    boolean[] inputDeclared = new boolean[FUSED_TYPES.length];
+
+    for (int aggregatorIndex = 0; aggregatorIndex < aggregators.size(); aggregatorIndex++) {
+      Class<?> aggregatorClass = aggregators.get(aggregatorIndex).getClass();
+      DimensionsConversionContext context = contexts.get(aggregatorIndex);
+      Map<Type, List<String>> typeToFields = context.aggregateDescriptor.getTypeToFields();
+
+      if (aggregatorClass == AggregatorFirst.class) {
+        //the first value is set by getGroup
+        fused[aggregatorIndex] = true;
+        continue;
+      }
+
+      if (aggregatorClass == AggregatorCount.class) {
+        List<String> fields = typeToFields.get(Type.LONG);
+        fused[aggregatorIndex] = true;
+        if (fields != null) {
+          String array = declareAggregates(declarations, aggregatorIndex, Type.LONG);
+          for (int index = 0; index < fields.size(); index++) {
+            statements.append(array).append('[').append(index).append("]++;\n");
+          }
+        }
+        continue;
+      }
+
+      boolean sum = aggregatorClass == AggregatorSum.class;
+      boolean min = aggregatorClass == AggregatorMin.class;
+      boolean max = aggregatorClass == AggregatorMax.class;
+      boolean last = aggregatorClass == AggregatorLast.class;
+      if (!(sum || min || max || last) || typeToFields.containsKey(Type.OBJECT) ||
+          !context.aggregateDescriptor.getCompressedTypes().isEmpty()) {
+        continue;
+      }
+      fused[aggregatorIndex] = true;
+
+      for (int typeIndex = 0; typeIndex < FUSED_TYPES.length; typeIndex++) {
+        Type type = FUSED_TYPES[typeIndex];
+        List<String> fields = typeToFields.get(type);
+        if (fields == null) {
+          continue;
+        }
+        if (!inputDeclared[typeIndex]) {
+          declarations.append(JAVA_TYPES[typeIndex]).append("[] in").append(typeIndex).append(" = input.")
+              .append(ARRAY_GETTERS[typeIndex]).append("();\n");
+          inputDeclared[typeIndex] = true;
+        }
+
+        String array = declareAggregates(declarations, aggregatorIndex, type);
+        int[] srcIndices = getIndices(context.indexSubsetAggregates, type);
+        for (int index = 0; index < fields.size(); index++) {
+          String dest = array + "[" + index + "]";
+          String src = "in" + typeIndex + "[" + srcIndices[index] + "]";
+          if (last) {
+            statements.append(dest).append(" = ").append(src).append(";\n");
+          } else if (sum) {
+            String cast = type == Type.BYTE || type == Type.SHORT ? "(" + JAVA_TYPES[typeIndex] + ")" : "";
+            statements.append(dest).append(" = ").append(cast).append('(').append(dest).append(" + ").append(src)
+                .append(");\n");
+          } else {
+            statements.append("if (").append(src).append(min ? " < " : " > ").append(dest).append(") {\n")
+                .append(dest).append(" = ").append(src).append(";\n}\n");
+          }
+        }
+      }
+    }
+
+    return "public void aggregate(GPOMutable input, GPOMutable[] aggregates)\n{\n" + declarations + statements +
+        "}\n";
+  }
+
+  private static String declareAggregates(StringBuilder declarations, int aggregatorIndex, Type type)
+  {
+    int typeIndex = 0;
+    while (FUSED_TYPES[typeIndex] != type) {
+      typeIndex++;
+    }
+    String array = "agg" + aggregatorIndex + "_" + typeIndex;
+    declarations.append(JAVA_TYPES[typeIndex]).append("[] ").append(array).append(" = aggregates[")
+        .append(aggregatorIndex).append("].").append(ARRAY_GETTERS[typeIndex]).append("();\n");
+    return array;
+  }
+
+  private static int[] getIndices(IndexSubset indexSubset, Type type)
+  {
+    switch (type) {
+      case BOOLEAN:
+        return indexSubset.fieldsBooleanIndexSubset;
+      case CHAR:
+        return indexSubset.fieldsCharacterIndexSubset;
+      case STRING:
+        return indexSubset.fieldsStringIndexSubset;
+      case BYTE:
+        return indexSubset.fieldsByteIndexSubset;
+      case SHORT:
+        return indexSubset.fieldsShortIndexSubset;
+      case INTEGER:
+        return indexSubset.fieldsIntegerIndexSubset;
+      case LONG:
+        return indexSubset.fieldsLongIndexSubset;
+      case FLOAT:
+        return indexSubset.fieldsFloatIndexSubset;
+      case DOUBLE:
+        return indexSubset.fieldsDoubleIndexSubset;
+      default:
+        throw new UnsupportedOperationException("Type " + type);
+    }
+  }
+
+  private static Class<? extends FusedAggregation> compile(String code)
+  {
+    logger.debug("fused aggregation code: {}", code);
+
+    try {
+      IClassBodyEvaluator evaluator = CompilerFactoryFactory.getDefaultCompilerFactory().newClassBodyEvaluator();
+      evaluator.setExtendedClass(FusedAggregation.class);
+      evaluator.setDefaultImports(new String[] {GPOMutable.class.getName()});
+      evaluator.cook(code);
+      @SuppressWarnings("unchecked")
+      Class<? extends FusedAggregation> aggregationClass = (Class<? extends FusedAggregation>)evaluator.getClazz();
+      return aggregationClass;
+    } catch (CompileException e) {
+      throw new RuntimeException(e);
+    } catch (Exception e) {
+      throw new RuntimeException("compiler not available", e);
+    }
+  }
+
+  private static final Logger logger = LoggerFactory.getLogger(FusedAggregation.class);
+}
@@ -0,0 +1,289 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.apex.malhar.lib.dimensions.aggregator;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import org.apache.apex.malhar.lib.appdata.gpo.GPOMutable;
+import org.apache.apex.malhar.lib.appdata.gpo.GPOUtils;
+import org.apache.apex.malhar.lib.appdata.schemas.DimensionalConfigurationSchema;
+import org.apache.apex.malhar.lib.appdata.schemas.FieldsDescriptor;
+import org.apache.apex.malhar.lib.appdata.schemas.Type;
+import org.apache.apex.malhar.lib.dimensions.DimensionsConversionContext;
+import org.apache.apex.malhar.lib.dimensions.DimensionsDescriptor;
+import org.apache.apex.malhar.lib.dimensions.DimensionsEvent.Aggregate;
+import org.apache.apex.malhar.lib.dimensions.DimensionsEvent.InputEvent;
+import org.apache.apex.malhar.lib.util.KryoCloneUtils;
+
+import com.google.common.collect.Lists;
+
+import it.unimi.dsi.fastutil.ints.Int2ObjectMap;
+import it.unimi.dsi.fastutil.ints.IntArrayList;
+import it.unimi.dsi.fastutil.objects.Object2IntLinkedOpenHashMap;
+
+/**
+ * Computes the incremental aggregations of all the dimensions combinations of a
+ * {@link DimensionalConfigurationSchema} for a window. Each dimensions combination has a {@link FusedAggregation}
+ * which updates all its measures in a single pass and an open addressing table of its aggregates keyed by the
+ * hash of the {@link org.apache.apex.malhar.lib.dimensions.DimensionsEvent.EventKey} of the input event, so an input
+ * event costs one table lookup and one generated call per dimensions combination.
+ * <p/>
+ * The {@link InputEvent}s have the keys of {@link DimensionalConfigurationSchema#getKeyDescriptorWithTime()} and
+ * the values of {@link DimensionalConfigurationSchema#getInputValuesDescriptor()}. The first {@link InputEvent} of
+ * each key is kept by the table until the end of the window, like with
+ * {@link IncrementalAggregator#getGroup(Object, int)}. The aggregates of a window are the deltas returned by
+ * {@link #flush()}, which also empties the tables for the next window.
+ * <p/>
+ * This class is not thread-safe.
+ */
+public class FusedDimensionsAggregator
+{
+  private static final int INITIAL_CAPACITY = 16;
+  private static final int EMPTY_SLOT = -1;
+
+  private final List<Combination> combinations = Lists.newArrayList();
+
+  /**
+   * Creates an aggregator of the incremental aggregations of the given schema.
+   * @param configurationSchema The schema.
+   * @param schemaID The schema ID of the emitted {@link Aggregate}s.
+   */
+  public FusedDimensionsAggregator(DimensionalConfigurationSchema configurationSchema, int schemaID)
+  {
+    FieldsDescriptor keyDescriptorWithTime = configurationSchema.getKeyDescriptorWithTime();
+    FieldsDescriptor inputValuesDescriptor = configurationSchema.getInputValuesDescriptor();
+    List<DimensionsDescriptor> dimensionsDescriptors =
+        configurationSchema.getDimensionsDescriptorIDToDimensionsDescriptor();
+
+    for (int ddID = 0; ddID < dimensionsDescriptors.size(); ddID++) {
+      DimensionsDescriptor dd = dimensionsDescriptors.get(ddID);
+      FieldsDescriptor keyDescriptor = configurationSchema.getDimensionsDescriptorIDToKeyDescriptor().get(ddID);
+      IntArrayList aggregatorIDs = configurationSchema.getDimensionsDescriptorIDToIncrementalAggregatorIDs().get(ddID);
+      Int2ObjectMap<FieldsDescriptor> inputDescriptors =
+          configurationSchema.getDimensionsDescriptorIDToAggregatorIDToInputAggregatorDescriptor().get(ddID);
+      Int2ObjectMap<FieldsDescriptor> outputDescriptors =
+          configurationSchema.getDimensionsDescriptorIDToAggregatorIDToOutputAggregatorDescriptor().get(ddID);
+
+      if (aggregatorIDs.isEmpty()) {
+        continue;
+      }
+
+      List<IncrementalAggregator> aggregators = Lists.newArrayList();
+      List<DimensionsConversionContext> contexts = Lists.newArrayList();
+      for (int aggregatorID : aggregatorIDs) {
+        DimensionsConversionContext context = new DimensionsConversionContext();
+        context.customTimeBucketRegistry = configurationSchema.getCustomTimeBucketRegistry();
+        context.schemaID = schemaID;
+        context.dimensionsDescriptorID = ddID;
+        context.aggregatorID = aggregatorID;
+        context.dd = dd;
+        context.keyDescriptor = keyDescriptor;
+        context.aggregateDescriptor = outputDescriptors.get(aggregatorID);
+        context.inputTimestampIndex = dd.getCustomTimeBucket() == null ? -1 :
+            getIndex(keyDescriptorWithTime, DimensionsDescriptor.DIMENSION_TIME, Type.LONG);
+        context.outputTimestampIndex = getIndex(keyDescriptor, DimensionsDescriptor.DIMENSION_TIME, Type.LONG);
+        context.outputTimebucketIndex = getIndex(keyDescriptor, DimensionsDescriptor.DIMENSION_TIME_BUCKET,
+            Type.INTEGER);
+        context.indexSubsetKeys = GPOUtils.computeSubIndices(keyDescriptor, keyDescriptorWithTime);
+        context.indexSubsetAggregates = GPOUtils.computeSubIndices(inputDescriptors.get(aggregatorID),
+            inputValuesDescriptor);
+
+        //the aggregators of the registry are shared, so each combination gets its own copy with its own context
+        IncrementalAggregator aggregator = KryoCloneUtils.cloneObject(
+            configurationSchema.getAggregatorRegistry().getIncrementalAggregatorIDToAggregator().get(aggregatorID));
+        aggregator.setDimensionsConversionContext(context);
+        aggregators.add(aggregator);
+        contexts.add(context);
+      }
+
+      combinations.add(new Combination(ddID, aggregatorIDs.toIntArray(), aggregators,
+          FusedAggregation.create(aggregators, contexts)));
+    }
+  }
+
+  /**
+   * Aggregates an input event into all the dimensions combinations.
+   * @param inputEvent The input event.
+   */
+  public void aggregate(InputEvent inputEvent)
+  {
+    for (int index = 0; index < combinations.size(); index++) {
+      combinations.get(index).aggregate(inputEvent);
+    }
+  }
+
+  /**
+   * Returns the aggregates of all the dimensions combinations since the last flush and empties the tables.
+   * @return The aggregates.
+   */
+  public List<Aggregate> flush()
+  {
+    List<Aggregate> aggregates = Lists.newArrayList();
+    for (Combination combination : combinations) {
+      combination.flush(aggregates);
+    }
+    return aggregates;
+  }
+
+  /**
+   * @return The number of keys aggregated since the last flush, over all the dimensions combinations.
+   */
+  public int getKeyCount()
+  {
+    int keyCount = 0;
+    for (Combination combination : combinations) {
+      keyCount += combination.rowCount;
+    }
+    return keyCount;
+  }
+
+  /**
+   * Returns the {@link IncrementalAggregator}s of a dimensions combination with their conversion contexts set.
+   * @param dimensionsDescriptorID The ID of the dimensions combination.
+   * @return The aggregators, or an empty list if the combination has no incremental aggregators.
+   */
+  public List<IncrementalAggregator> getIncrementalAggregators(int dimensionsDescriptorID)
+  {
+    for (Combination combination : combinations) {
+      if (combination.dimensionsDescriptorID == dimensionsDescriptorID) {
+        return Collections.unmodifiableList(Arrays.asList(combination.aggregators));
+      }
+    }
+    return Collections.emptyList();
+  }
+
+  private static int getIndex(FieldsDescriptor fieldsDescriptor, String field, Type type)
+  {
+    Object2IntLinkedOpenHashMap<String> fieldToIndex = fieldsDescriptor.getTypeToFieldToIndex().get(type);
+    return fieldToIndex == null || !fieldToIndex.containsKey(field) ? -1 : fieldToIndex.getInt(field);
+  }
+
+  /**
+   * The aggregates of a dimensions combination. A row holds the aggregates of all the aggregators for a key.
+   */
+  private static class Combination
+  {
+    private final int dimensionsDescriptorID;
+    private final int[] aggregatorIDs;
+    private final IncrementalAggregator[] aggregators;
+    private final FusedAggregation aggregation;
+    //the hashCode and equals of all the aggregators of a combination are the same
+    private final IncrementalAggregator keyAggregator;
+
+    private InputEvent[] rowEvents = new InputEvent[INITIAL_CAPACITY];
+    private int[] rowHashes = new int[INITIAL_CAPACITY];
+    private Aggregate[][] rowAggregates = new Aggregate[INITIAL_CAPACITY][];
+    private GPOMutable[][] rowValues = new GPOMutable[INITIAL_CAPACITY][];
+    private int rowCount;
+    private int[] slots;
+
+    Combination(int dimensionsDescriptorID, int[] aggregatorIDs, List<IncrementalAggregator> aggregators,
+        FusedAggregation aggregation)
+    {
+      this.dimensionsDescriptorID = dimensionsDescriptorID;
+      this.aggregatorIDs = aggregatorIDs;
+      this.aggregators = aggregators.toArray(new IncrementalAggregator[aggregators.size()]);
+      this.aggregation = aggregation;
+      keyAggregator = this.aggregators[0];
+      slots = new int[INITIAL_CAPACITY << 1];
+      Arrays.fill(slots, EMPTY_SLOT);
+    }
+
+    void aggregate(InputEvent inputEvent)
+    {
+      int hash = keyAggregator.hashCode(inputEvent);
+      int mask = slots.length - 1;
+      int slot = (hash ^ (hash >>> 16)) & mask;
+      int row;
+      while ((row = slots[slot]) != EMPTY_SLOT &&
+          (rowHashes[row] != hash || !keyAggregator.equals(rowEvents[row], inputEvent))) {
+        slot = (slot + 1) & mask;
+      }
+
+      if (row == EMPTY_SLOT) {
+        row = addRow(inputEvent, hash);
+        slots[slot] = row;
+        if (rowCount > slots.length >> 1) {
+          rehash();
+        }
+      }
+
+      aggregation.aggregate(inputEvent.getAggregates(), rowValues[row]);
+      for (int index = 0; index < aggregators.length; index++) {
+        if (!aggregation.isFused(index)) {
+          aggregators[index].aggregate(rowAggregates[row][index], inputEvent);
+        }
+      }
+    }
+
+    void flush(List<Aggregate> aggregates)
+    {
+      for (int row = 0; row < rowCount; row++) {
+        Collections.addAll(aggregates, rowAggregates[row]);
+        rowEvents[row] = null;
+        rowAggregates[row] = null;
+        rowValues[row] = null;
+      }
+      rowCount = 0;
+      Arrays.fill(slots, EMPTY_SLOT);
+    }
+
+    private int addRow(InputEvent inputEvent, int hash)
+    {
+      if (rowCount == rowEvents.length) {
+        int capacity = rowCount << 1;
+        rowEvents = Arrays.copyOf(rowEvents, capacity);
+        rowHashes = Arrays.copyOf(rowHashes, capacity);
+        rowAggregates = Arrays.copyOf(rowAggregates, capacity);
+        rowValues = Arrays.copyOf(rowValues, capacity);
+      }
+
+      Aggregate[] aggregates = new Aggregate[aggregators.length];
+      GPOMutable[] values = new GPOMutable[aggregators.length];
+      for (int index = 0; index < aggregators.length; index++) {
+        aggregates[index] = aggregators[index].getGroup(inputEvent, aggregatorIDs[index]);
+        values[index] = aggregates[index].getAggregates();
+      }
+
+      int row = rowCount++;
+      rowEvents[row] = inputEvent;
+      rowHashes[row] = hash;
+      rowAggregates[row] = aggregates;
+      rowValues[row] = values;
+      return row;
+    }
+
+    private void rehash()
+    {
+      slots = new int[slots.length << 1];
+      Arrays.fill(slots, EMPTY_SLOT);
+      int mask = slots.length - 1;
+      for (int row = 0; row < rowCount; row++) {
+        int hash = rowHashes[row];
+        int slot = (hash ^ (hash >>> 16)) & mask;
+        while (slots[slot] != EMPTY_SLOT) {
+          slot = (slot + 1) & mask;
+        }
+        slots[slot] = row;
+      }
+    }
+  }
+}
@@ -30,6 +30,7 @@ import org.apache.hadoop.fs.FSDataInputStream;
 
 import com.datatorrent.api.Context.OperatorContext;
 import com.datatorrent.api.DefaultOutputPort;
+import com.datatorrent.netlet.util.Slice;
 
 /**
  * This operator can be used for reading records/tuples from Filesystem in
@@ -119,15 +120,27 @@ public class FSRecordReader extends FSSliceReader
 
       counters.getCounter(ReaderCounterKeys.BYTES).add(entity.getUsedBytes());
 
-      byte[] record = entity.getRecord();
+      Slice record = entity.getRecordSlice();
 
       if (record != null) {
         counters.getCounter(ReaderCounterKeys.RECORDS).increment();
-        records.emit(record);
+        records.emit(toByteArray(record));
       }
     }
   }
 
+  /**
+   * The record is a view of the read buffer which is shared by other records, so only a view which spans the whole
+   * buffer is emitted without a copy.
+   */
+  private static byte[] toByteArray(Slice record)
+  {
+    if (record.offset == 0 && record.length == record.buffer.length) {
+      return record.buffer;
+    }
+    return record.toByteArray();
+  }
+
   /**
    * Criteria for record split : FIXED_WIDTH_RECORD or DELIMITED_RECORD
    *
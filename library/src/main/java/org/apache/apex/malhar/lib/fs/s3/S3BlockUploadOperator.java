@@ -287,7 +287,7 @@ public class S3BlockUploadOperator implements Operator, Operator.CheckpointNotif
     }
     long partSize = tuple.getRecord().length;
     PartETag partETag = null;
-    ByteArrayInputStream bis = new ByteArrayInputStream(tuple.getRecord().buffer);
+    ByteArrayInputStream bis = new ByteArrayInputStream(tuple.getRecord().buffer, tuple.getRecord().offset, (int)partSize);
     // Check if it is a Single block of a file
     if (metaData.isLastBlock && metaData.partNo == 1) {
       ObjectMetadata omd = createObjectMetadata();
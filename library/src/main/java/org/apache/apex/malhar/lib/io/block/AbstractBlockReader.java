@@ -37,6 +37,11 @@ import org.apache.apex.malhar.lib.util.KryoCloneUtils;
 import org.apache.commons.lang.mutable.MutableLong;
 import org.apache.hadoop.fs.PositionedReadable;
 
+import com.esotericsoftware.kryo.Kryo;
+import com.esotericsoftware.kryo.Serializer;
+import com.esotericsoftware.kryo.io.Input;
+import com.esotericsoftware.kryo.io.Output;
+import com.esotericsoftware.kryo.serializers.FieldSerializer;
 import com.google.common.collect.Lists;
 import com.google.common.collect.Maps;
 
@@ -50,6 +55,7 @@ import com.datatorrent.api.Partitioner;
 import com.datatorrent.api.Stats;
 import com.datatorrent.api.StatsListener;
 import com.datatorrent.common.util.BaseOperator;
+import com.datatorrent.netlet.util.Slice;
 
 /**
  * AbstractBlockReader processes a block of data from a stream.<br/>
@@ -254,7 +260,7 @@ public abstract class AbstractBlockReader<R, B extends BlockMetadata, STREAM ext
       counters.getCounter(ReaderCounterKeys.BYTES).add(entity.getUsedBytes());
       bytesRead += entity.getUsedBytes();
 
-      R record = convertToRecord(entity.getRecord());
+      R record = convertToRecord(entity.getRecordSlice());
 
       //If the record is partial then ignore the record.
       if (record != null) {
@@ -450,6 +456,25 @@ public abstract class AbstractBlockReader<R, B extends BlockMetadata, STREAM ext
    */
   protected abstract R convertToRecord(byte[] bytes);
 
+  /**
+   * Converts the bytes of an entity, which are a view of the bytes read by the reader context, into a record. This
+   * copies the bytes unless they are a complete byte-array and delegates to {@link #convertToRecord(byte[])}.
+   * Readers which can use the view directly should override this.
+   *
+   * @param bytes bytes
+   * @return record
+   */
+  protected R convertToRecord(Slice bytes)
+  {
+    if (bytes == null) {
+      return convertToRecord((byte[])null);
+    }
+    if (bytes.offset == 0 && bytes.length == bytes.buffer.length) {
+      return convertToRecord(bytes.buffer);
+    }
+    return convertToRecord(bytes.toByteArray());
+  }
+
   /**
    * Sets the maximum number of block readers.
    *
@@ -544,6 +569,7 @@ public abstract class AbstractBlockReader<R, B extends BlockMetadata, STREAM ext
   public static class ReaderRecord<R>
   {
     private final long blockId;
+    @FieldSerializer.Bind(RecordSerializer.class)
     private final R record;
 
     @SuppressWarnings("unused")
@@ -571,6 +597,36 @@ public abstract class AbstractBlockReader<R, B extends BlockMetadata, STREAM ext
 
   }
 
+  /**
+   * Serializes a record of a {@link ReaderRecord}. A {@link Slice} record is usually a view of a larger read buffer,
+   * so only the bytes of the view are written instead of the whole buffer. Records of other types are serialized by
+   * the serializer registered for their type.
+   */
+  public static class RecordSerializer extends Serializer<Object>
+  {
+    @Override
+    public void write(Kryo kryo, Output output, Object object)
+    {
+      if (object.getClass() == Slice.class) {
+        Slice slice = (Slice)object;
+        output.writeInt(slice.length, true);
+        output.writeBytes(slice.buffer, slice.offset, slice.length);
+      } else {
+        //the reference of the record is already written by kryo
+        kryo.getSerializer(object.getClass()).write(kryo, output, object);
+      }
+    }
+
+    @Override
+    public Object read(Kryo kryo, Input input, Class<Object> type)
+    {
+      if (Slice.class.equals(type)) {
+        return new Slice(input.readBytes(input.readInt(true)));
+      }
+      return kryo.getSerializer(type).read(kryo, input, type);
+    }
+  }
+
   public enum ReaderCounterKeys
   {
     RECORDS, BLOCKS, BYTES, TIME
@@ -134,7 +134,11 @@ public class BlockWriter extends AbstractFileOutputOperator<AbstractBlockReader.
   @Override
   protected byte[] getBytesForTuple(AbstractBlockReader.ReaderRecord<Slice> tuple)
   {
-    return tuple.getRecord().buffer;
+    Slice record = tuple.getRecord();
+    if (record.offset == 0 && record.length == record.buffer.length) {
+      return record.buffer;
+    }
+    return record.toByteArray();
   }
 
 
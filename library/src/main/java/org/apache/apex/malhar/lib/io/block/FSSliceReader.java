@@ -55,4 +55,11 @@ public class FSSliceReader extends AbstractFSBlockReader<Slice>
   {
     return new Slice(bytes);
   }
+
+  @Override
+  protected Slice convertToRecord(Slice bytes)
+  {
+    //only the bytes of the view are serialized when the record leaves the container, see RecordSerializer
+    return bytes;
+  }
 }
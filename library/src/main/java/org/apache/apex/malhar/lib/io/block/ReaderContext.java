@@ -18,9 +18,10 @@
  */
 package org.apache.apex.malhar.lib.io.block;
 
-import java.io.ByteArrayOutputStream;
 import java.io.IOException;
 import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
 
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -28,6 +29,8 @@ import org.slf4j.LoggerFactory;
 import org.apache.hadoop.conf.Configuration;
 import org.apache.hadoop.fs.PositionedReadable;
 
+import com.datatorrent.netlet.util.Slice;
+
 /**
  * This controls how an {@link AbstractBlockReader} reads a {@link BlockMetadata}.
  *
@@ -57,27 +60,53 @@ public interface ReaderContext<STREAM extends InputStream & PositionedReadable>
 
   /**
    * Represents the total bytes used to construct the record.<br/>
-   * Used bytes can be different from the bytes in the record.
+   * Used bytes can be different from the bytes in the record.<br/>
+   * The record is either a byte-array or a {@link Slice} view of the bytes which were read. A byte-array is only
+   * copied from the view when {@link #getRecord()} is called.
    */
   class Entity
   {
     private byte[] record;
+    private Slice recordSlice;
     private long usedBytes;
 
     public void clear()
     {
       record = null;
+      recordSlice = null;
       usedBytes = -1;
     }
 
     public byte[] getRecord()
     {
+      if (record == null && recordSlice != null) {
+        record = recordSlice.toByteArray();
+      }
       return record;
     }
 
     public void setRecord(byte[] record)
     {
       this.record = record;
+      this.recordSlice = null;
+    }
+
+    /**
+     * @return the record as a view of the bytes which were read. The bytes of the view are never overwritten by the
+     * reader context.
+     */
+    public Slice getRecordSlice()
+    {
+      if (recordSlice == null && record != null) {
+        recordSlice = new Slice(record);
+      }
+      return recordSlice;
+    }
+
+    public void setRecordSlice(Slice recordSlice)
+    {
+      this.recordSlice = recordSlice;
+      this.record = null;
     }
 
     public long getUsedBytes()
@@ -136,14 +165,19 @@ public interface ReaderContext<STREAM extends InputStream & PositionedReadable>
   }
 
   /**
-   * This reader context splits the block into entities on '\n' or '\r'.<br/>
+   * This reader context splits the block into entities on '\n' or '\r' or on a configured delimiter.<br/>
    * It will not read ahead of the block boundary if the last entity was completely contained in the block.<br/>
-   * Any records formed using this context will need a way to validate the start of the record.
+   * Any records formed using this context will need a way to validate the start of the record.<br/>
+   * <p/>
+   * The bytes are scanned in the read buffer without decoding them. A record which is contained in a read buffer is
+   * returned as a {@link Slice} view of that buffer and the buffer is not reused once a view of it was returned, so
+   * the views stay valid after the next records are read. Only the records which span two reads are copied.
    *
    * @param <STREAM> type of stream.
    */
   class LineReaderContext<STREAM extends InputStream & PositionedReadable> extends AbstractReaderContext<STREAM>
   {
+    private static final byte[] EMPTY_RECORD = new byte[0];
 
     protected int bufferSize;
     /**
@@ -152,31 +186,41 @@ public interface ReaderContext<STREAM extends InputStream & PositionedReadable>
     */
     protected int overflowBufferSize;
 
-    private final transient ByteArrayOutputStream lineBuilder;
-    private final transient ByteArrayOutputStream emptyBuilder;
-    private final transient ByteArrayOutputStream tmpBuilder;
+    /**
+     * Delimiter of the records which is encoded with UTF-8. When it is null, records are split on '\n' or '\r' and
+     * the consecutive line endings are skipped.
+     */
+    private String delimiter;
 
     protected transient byte[] buffer;
-    private transient String bufferStr;
-    private transient int posInStr;
+    private transient byte[] delimiterBytes;
+    private transient int bufferLength;
+    private transient int posInBuffer;
+    private transient boolean bufferShared;
     private transient boolean overflowBlockRead;
 
+    //bytes of the record which were read before the last read
+    private transient byte[] lineBytes;
+    private transient int lineLength;
+
     public LineReaderContext()
     {
       super();
       bufferSize = 8192;
       overflowBufferSize = 8192;
-      lineBuilder = new ByteArrayOutputStream();
-      emptyBuilder = new ByteArrayOutputStream();
-      tmpBuilder = new ByteArrayOutputStream();
+      lineBytes = new byte[256];
     }
 
     @Override
     public void initialize(STREAM stream, BlockMetadata blockMetadata, boolean consecutiveBlock)
     {
       overflowBlockRead = false;
-      posInStr = 0;
+      posInBuffer = 0;
+      bufferLength = 0;
       offset = blockMetadata.getOffset();
+      if (delimiter != null && delimiterBytes == null) {
+        delimiterBytes = delimiter.getBytes(StandardCharsets.UTF_8);
+      }
       super.initialize(stream, blockMetadata, consecutiveBlock);
     }
 
@@ -192,7 +236,7 @@ public interface ReaderContext<STREAM extends InputStream & PositionedReadable>
      */
     protected int readData(final long bytesFromCurrentOffset, final int bytesToFetch) throws IOException
     {
-      if (buffer == null) {
+      if (buffer == null || buffer.length < bytesToFetch) {
         buffer = new byte[bytesToFetch];
       }
       return stream.read(offset + bytesFromCurrentOffset, buffer, 0, bytesToFetch);
@@ -233,68 +277,192 @@ public interface ReaderContext<STREAM extends InputStream & PositionedReadable>
       boolean foundEOL = false;
       int bytesRead = 0;
       long usedBytes = 0;
+      int recordStart = posInBuffer;
+      int recordEnd = posInBuffer;
+      lineLength = 0;
 
       while (!foundEOL) {
-        tmpBuilder.reset();
-        if (posInStr == 0) {
+        if (posInBuffer == 0) {
           int bytesToFetch = calculateBytesToFetch();
           overflowBlockRead = true;
+          if (bufferShared) {
+            //the records which were returned are views of the buffer
+            buffer = null;
+            bufferShared = false;
+          }
           bytesRead = readData(usedBytes, bytesToFetch);
           if (bytesRead == -1) {
             break;
           }
-          bufferStr = new String(buffer,0, bytesRead);
-        }
-
-        while (posInStr < bufferStr.length()) {
-          char c = bufferStr.charAt(posInStr);
-          if (c != '\r' && c != '\n') {
-            tmpBuilder.write(c);
-            posInStr++;
-          } else {
-            foundEOL = true;
-            break;
+          bufferLength = bytesRead;
+          recordStart = 0;
+          if (delimiterBytes != null && lineLength > 0) {
+            int delimiterBytesInBuffer = findSplitDelimiter();
+            if (delimiterBytesInBuffer > 0) {
+              usedBytes += delimiterBytesInBuffer;
+              posInBuffer = delimiterBytesInBuffer;
+              recordEnd = 0;
+              foundEOL = true;
+              break;
+            }
           }
         }
-        byte[] subLine = tmpBuilder.toByteArray();
-        usedBytes += subLine.length;
-        lineBuilder.write(subLine);
-
-        if (foundEOL) {
-          while (posInStr < bufferStr.length()) {
-            char c = bufferStr.charAt(posInStr);
-            if (c == '\r' || c == '\n') {
-              emptyBuilder.write(c);
-              posInStr++;
-            } else {
-              break;
+
+        int end = delimiterBytes == null ? indexOfEndOfLine(posInBuffer) : indexOfDelimiter(posInBuffer);
+        usedBytes += end - posInBuffer;
+        posInBuffer = end;
+        recordEnd = end;
+
+        if (end < bufferLength) {
+          foundEOL = true;
+          if (delimiterBytes == null) {
+            while (posInBuffer < bufferLength && (buffer[posInBuffer] == '\r' || buffer[posInBuffer] == '\n')) {
+              posInBuffer++;
+              usedBytes++;
             }
+          } else {
+            posInBuffer += delimiterBytes.length;
+            usedBytes += delimiterBytes.length;
           }
-          usedBytes += emptyBuilder.toByteArray().length;
         } else {
+          //the record continues after this read
+          appendToLine(recordStart, recordEnd);
+          recordStart = recordEnd;
           //end of stream reached
           if (checkEndOfStream(usedBytes)) {
             break;
           }
           //read more bytes from the input stream
-          posInStr = 0;
+          posInBuffer = 0;
         }
       }
-      //when end of stream is reached then bytesRead is -1
-      if (bytesRead == -1) {
-        lineBuilder.reset();
-        emptyBuilder.reset();
+      //when end of stream is reached then bytesRead is -1. The bytes read before are the last record of the stream.
+      if (bytesRead == -1 && lineLength == 0) {
         return null;
       }
       entity.clear();
-      entity.record = lineBuilder.toByteArray();
+      if (lineLength == 0) {
+        if (recordEnd == recordStart) {
+          entity.recordSlice = new Slice(EMPTY_RECORD);
+        } else {
+          entity.recordSlice = new Slice(buffer, recordStart, recordEnd - recordStart);
+          bufferShared = true;
+        }
+      } else {
+        appendToLine(recordStart, recordEnd);
+        entity.recordSlice = new Slice(Arrays.copyOf(lineBytes, lineLength));
+      }
       entity.usedBytes = usedBytes;
-
-      lineBuilder.reset();
-      emptyBuilder.reset();
       return entity;
     }
 
+    /**
+     * Finds the first '\n' or '\r' in the buffer. Both are less than or equal to '\r', so the other bytes are skipped
+     * with a single comparison.
+     *
+     * @return position of the line ending; the length of the buffer if there is none.
+     */
+    private int indexOfEndOfLine(int from)
+    {
+      final byte[] bytes = buffer;
+      for (int i = from; i < bufferLength; i++) {
+        int b = bytes[i] & 0xff;
+        if (b <= '\r' && (b == '\r' || b == '\n')) {
+          return i;
+        }
+      }
+      return bufferLength;
+    }
+
+    /**
+     * Finds the first delimiter which is completely in the buffer.
+     *
+     * @return position of the delimiter; the length of the buffer if there is none.
+     */
+    private int indexOfDelimiter(int from)
+    {
+      final byte[] bytes = buffer;
+      final byte first = delimiterBytes[0];
+      int last = bufferLength - delimiterBytes.length;
+      for (int i = from; i <= last; i++) {
+        if (bytes[i] == first) {
+          int j = 1;
+          while (j < delimiterBytes.length && bytes[i + j] == delimiterBytes[j]) {
+            j++;
+          }
+          if (j == delimiterBytes.length) {
+            return i;
+          }
+        }
+      }
+      return bufferLength;
+    }
+
+    /**
+     * Checks whether a delimiter starts at the end of the previous read and ends in the buffer. The bytes of the
+     * delimiter which were read before are removed from the record.
+     *
+     * @return number of bytes of the delimiter in the buffer; 0 if the delimiter is not split.
+     */
+    private int findSplitDelimiter()
+    {
+      for (int bytesBefore = Math.min(delimiterBytes.length - 1, lineLength); bytesBefore > 0; bytesBefore--) {
+        int bytesAfter = delimiterBytes.length - bytesBefore;
+        if (bytesAfter > bufferLength) {
+          continue;
+        }
+        boolean matches = true;
+        for (int i = 0; i < bytesBefore && matches; i++) {
+          matches = lineBytes[lineLength - bytesBefore + i] == delimiterBytes[i];
+        }
+        for (int i = 0; i < bytesAfter && matches; i++) {
+          matches = buffer[i] == delimiterBytes[bytesBefore + i];
+        }
+        if (matches) {
+          lineLength -= bytesBefore;
+          return bytesAfter;
+        }
+      }
+      return 0;
+    }
+
+    private void appendToLine(int from, int to)
+    {
+      int length = to - from;
+      if (length <= 0) {
+        return;
+      }
+      if (lineLength + length > lineBytes.length) {
+        lineBytes = Arrays.copyOf(lineBytes, Math.max(lineBytes.length * 2, lineLength + length));
+      }
+      System.arraycopy(buffer, from, lineBytes, lineLength, length);
+      lineLength += length;
+    }
+
+    /**
+     * Sets the delimiter of the records. It is encoded with UTF-8 and can have multiple bytes. A record ends before
+     * the first delimiter after its start, so consecutive delimiters create empty records. When it is null, which is
+     * the default, records are split on '\n' or '\r' and the consecutive line endings are skipped.
+     *
+     * @param delimiter delimiter of the records
+     */
+    public void setDelimiter(String delimiter)
+    {
+      if (delimiter != null && delimiter.isEmpty()) {
+        throw new IllegalArgumentException("empty delimiter");
+      }
+      this.delimiter = delimiter;
+      this.delimiterBytes = null;
+    }
+
+    /**
+     * @return the delimiter of the records; null if records are split on '\n' or '\r'.
+     */
+    public String getDelimiter()
+    {
+      return delimiter;
+    }
+
     /**
      * Sets the buffer size of read.
      *
@@ -18,9 +18,11 @@
  */
 package org.apache.apex.malhar.lib.join;
 
+import java.util.ArrayList;
 import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
 import java.util.concurrent.ExecutionException;
 import java.util.concurrent.Future;
 
@@ -32,7 +34,13 @@ import org.apache.apex.malhar.lib.state.managed.ManagedTimeStateMultiValue;
 import org.apache.apex.malhar.lib.state.managed.MovingBoundaryTimeBucketAssigner;
 import org.apache.apex.malhar.lib.state.spillable.Spillable;
 import org.apache.hadoop.fs.Path;
+import org.apache.hadoop.io.file.tfile.CacheManager;
+import com.google.common.collect.HashMultiset;
+import com.google.common.collect.Lists;
 import com.google.common.collect.Maps;
+import com.google.common.collect.Multiset;
+import com.google.common.collect.Sets;
+import com.datatorrent.api.AutoMetric;
 import com.datatorrent.api.Context;
 import com.datatorrent.api.DAG;
 import com.datatorrent.api.Operator;
@@ -44,6 +52,22 @@ import com.datatorrent.api.Operator;
  * <b>Properties:</b><br>
  * <b>noOfBuckets</b>: Number of buckets required for Managed state. <br>
  * <b>bucketSpanTime</b>: Indicates the length of the time bucket. <br>
+ * <b>lookupBatchSize</b>: Maximum number of tuples whose keys are looked up together in the store of the other
+ * stream. 1, the default, looks up every tuple on its own. <br>
+ * <b>hotKeyThreshold</b>: Number of lookups of a key in a window after which its values are kept in memory for the
+ * rest of the window. 0 disables it. <br>
+ * <b>maxHotKeys</b>: Maximum number of keys per stream whose values are kept in memory. <br>
+ *
+ * The values of the hot keys are the build side of skewed keys: they are read from the store once and updated with
+ * the tuples which are put in the store afterwards, so the tuples of the other stream with those keys are joined
+ * without a lookup and don't split the lookup batches. They are dropped at the end of the window. <br>
+ *
+ * <b>Metrics:</b><br>
+ * <b>blockCacheHits</b>: Number of file blocks found in the block cache in the window. <br>
+ * <b>blockCacheMisses</b>: Number of file blocks read from the file system in the window. <br>
+ * The block cache is shared by all the operators of a container so these include the reads of the other operators
+ * of the container. <br>
+ * <b>hotKeyJoins</b>: Number of tuples which were joined with the values of hot keys in the window. <br>
  *
  * @since 3.5.0
  */
@@ -57,9 +81,37 @@ public abstract class AbstractManagedStateInnerJoinOperator<K,T> extends Abstrac
   private transient Map<JoinEvent<K,T>, Future<List>> waitingEvents = Maps.newLinkedHashMap();
   private int noOfBuckets = 1;
   private Long bucketSpanTime;
+  private int lookupBatchSize = 1;
+  private int hotKeyThreshold;
+  private int maxHotKeys = 1024;
   protected ManagedTimeStateImpl stream1Store;
   protected ManagedTimeStateImpl stream2Store;
 
+  @AutoMetric
+  private transient long blockCacheHits;
+  @AutoMetric
+  private transient long blockCacheMisses;
+  private transient long windowStartBlockCacheHits;
+  private transient long windowStartBlockCacheMisses;
+  @AutoMetric
+  private transient long hotKeyJoins;
+
+  /**
+   * Tuples which are put in their store and wait for the lookup of their keys in the store of the other stream.
+   */
+  private transient List<JoinEvent<K,T>> lookupBatch = Lists.newArrayList();
+  private transient Set<K> stream1LookupKeys = Sets.newHashSet();
+  private transient Set<K> stream2LookupKeys = Sets.newHashSet();
+
+  /**
+   * Lookups of the keys in the window by the tuples of each stream and the values of the hot keys in the store of
+   * each stream.
+   */
+  private transient Multiset<K> stream1Lookups = HashMultiset.create();
+  private transient Multiset<K> stream2Lookups = HashMultiset.create();
+  private transient Map<K, List<T>> stream1HotValues = Maps.newHashMap();
+  private transient Map<K, List<T>> stream2HotValues = Maps.newHashMap();
+
   /**
    * Create Managed states and stores for both the streams.
    */
@@ -87,7 +139,8 @@ public abstract class AbstractManagedStateInnerJoinOperator<K,T> extends Abstrac
    * 1) Extract key from the given tuple
    * 2) Insert <key,tuple> into the store where store is the stream1Data if the tuple
    * receives from stream1 or viceversa.
-   * 3) Get the values of the key in asynchronous if found it in opposite store
+   * 3) Get the values of the key in asynchronous if found it in opposite store. The values of the hot keys
+   *    are taken from memory.
    * 4) If the future is done then Merge the given tuple and values found from step (3) otherwise
    *    put it in waitingEvents
    * @param tuple given tuple
@@ -99,14 +152,38 @@ public abstract class AbstractManagedStateInnerJoinOperator<K,T> extends Abstrac
     Spillable.SpillableListMultimap<K,T> store = isStream1Data ? stream1Data : stream2Data;
     K key = extractKey(tuple,isStream1Data);
     long timeBucket = extractTime(tuple,isStream1Data);
+    if (lookupBatchSize > 1 && (isStream1Data ? stream2LookupKeys : stream1LookupKeys).contains(key)) {
+      // tuples of the other stream with this key must not see this tuple, so they are looked up before it is put.
+      processLookupBatch();
+    }
     if (!((ManagedTimeStateMultiValue)store).put(key, tuple,timeBucket)) {
       return;
     }
+    updateHotValues(key, tuple, isStream1Data);
+    List<T> hotValues = (isStream1Data ? stream2HotValues : stream1HotValues).get(key);
+    if (hotValues != null) {
+      hotKeyJoins++;
+      joinStream(tuple, isStream1Data, hotValues.isEmpty() ? null : hotValues);
+      return;
+    }
+    if (hotKeyThreshold > 0) {
+      (isStream1Data ? stream1Lookups : stream2Lookups).add(key);
+    }
+    if (lookupBatchSize > 1) {
+      lookupBatch.add(new JoinEvent<>(key, tuple, isStream1Data));
+      (isStream1Data ? stream1LookupKeys : stream2LookupKeys).add(key);
+      if (lookupBatch.size() >= lookupBatchSize) {
+        processLookupBatch();
+      }
+      return;
+    }
     Spillable.SpillableListMultimap<K, T> valuestore = isStream1Data ? stream2Data : stream1Data;
     Future<List> future = ((ManagedTimeStateMultiValue)valuestore).getAsync(key);
     if (future.isDone()) {
       try {
-        joinStream(tuple,isStream1Data, future.get());
+        List values = future.get();
+        addHotValues(key, values, isStream1Data);
+        joinStream(tuple,isStream1Data, values);
       } catch (InterruptedException | ExecutionException e) {
         throw new RuntimeException(e);
       }
@@ -115,9 +192,77 @@ public abstract class AbstractManagedStateInnerJoinOperator<K,T> extends Abstrac
     }
   }
 
+  /**
+   * Looks up the keys of the batched tuples in the store of the other stream together. The tuples whose values are
+   * available are joined right away and the others wait like the tuples which are looked up on their own.
+   */
+  private void processLookupBatch()
+  {
+    if (lookupBatch.isEmpty()) {
+      return;
+    }
+    Map<K, ManagedTimeStateMultiValue.CompositeFuture> stream1Futures = stream1LookupKeys.isEmpty() ?
+        null : ((ManagedTimeStateMultiValue)stream2Data).getAllAsync(stream1LookupKeys);
+    Map<K, ManagedTimeStateMultiValue.CompositeFuture> stream2Futures = stream2LookupKeys.isEmpty() ?
+        null : ((ManagedTimeStateMultiValue)stream1Data).getAllAsync(stream2LookupKeys);
+    for (JoinEvent<K,T> event : lookupBatch) {
+      Future<List> future = (event.isStream1Data ? stream1Futures : stream2Futures).get(event.key);
+      if (future.isDone()) {
+        try {
+          List values = future.get();
+          addHotValues(event.key, values, event.isStream1Data);
+          joinStream(event.value, event.isStream1Data, values);
+        } catch (InterruptedException | ExecutionException e) {
+          throw new RuntimeException(e);
+        }
+      } else {
+        waitingEvents.put(event, future);
+      }
+    }
+    lookupBatch.clear();
+    stream1LookupKeys.clear();
+    stream2LookupKeys.clear();
+  }
+
+  /**
+   * Keeps the values of a key in the store of the other stream in memory when the key is hot. This is only called with
+   * the values which were read before any tuple with the key was put in that store afterwards, so the values stay the
+   * same as the values in the store when they are updated with the tuples which are put.
+   *
+   * @param key           looked up key
+   * @param values        values of the key in the store of the other stream; null if there are none.
+   * @param isStream1Data Specifies whether the looked up tuple belongs to stream1 or not.
+   */
+  private void addHotValues(K key, List values, boolean isStream1Data)
+  {
+    if (hotKeyThreshold <= 0 || (isStream1Data ? stream1Lookups : stream2Lookups).count(key) < hotKeyThreshold) {
+      return;
+    }
+    Map<K, List<T>> hotValues = isStream1Data ? stream2HotValues : stream1HotValues;
+    if (hotValues.size() < maxHotKeys && !hotValues.containsKey(key)) {
+      hotValues.put(key, values == null ? new ArrayList<T>() : new ArrayList<T>(values));
+    }
+  }
+
+  /**
+   * Updates the values of a hot key with a tuple which is put in the store of its stream.
+   */
+  private void updateHotValues(K key, T tuple, boolean isStream1Data)
+  {
+    List<T> values = (isStream1Data ? stream1HotValues : stream2HotValues).get(key);
+    if (values != null) {
+      if (isStream1Data ? isLeftKeyPrimary() : isRightKeyPrimary()) {
+        //the tuple replaces the value of a primary key.
+        values.clear();
+      }
+      values.add(tuple);
+    }
+  }
+
   @Override
   public void handleIdleTime()
   {
+    processLookupBatch();
     if (waitingEvents.size() > 0) {
       processWaitEvents(false);
     }
@@ -161,11 +306,15 @@ public abstract class AbstractManagedStateInnerJoinOperator<K,T> extends Abstrac
   {
     stream1Store.beginWindow(windowId);
     stream2Store.beginWindow(windowId);
+    windowStartBlockCacheHits = CacheManager.getHitCount();
+    windowStartBlockCacheMisses = CacheManager.getMissCount();
+    hotKeyJoins = 0;
     super.beginWindow(windowId);
   }
 
   /**
-   * Process the waiting events
+   * Process the waiting events. The events whose futures are done are joined and the others keep waiting unless
+   * finalize is set.
    * @param finalize finalize Whether or not to wait for future to return
    */
   private void processWaitEvents(boolean finalize)
@@ -182,9 +331,6 @@ public abstract class AbstractManagedStateInnerJoinOperator<K,T> extends Abstrac
           throw new RuntimeException("end window", e);
         }
         waitIterator.remove();
-        if (!finalize) {
-          break;
-        }
       }
     }
   }
@@ -192,9 +338,16 @@ public abstract class AbstractManagedStateInnerJoinOperator<K,T> extends Abstrac
   @Override
   public void endWindow()
   {
+    processLookupBatch();
     processWaitEvents(true);
+    stream1Lookups.clear();
+    stream2Lookups.clear();
+    stream1HotValues.clear();
+    stream2HotValues.clear();
     stream1Store.endWindow();
     stream2Store.endWindow();
+    blockCacheHits = CacheManager.getHitCount() - windowStartBlockCacheHits;
+    blockCacheMisses = CacheManager.getMissCount() - windowStartBlockCacheMisses;
     super.endWindow();
   }
 
@@ -242,6 +395,64 @@ public abstract class AbstractManagedStateInnerJoinOperator<K,T> extends Abstrac
     this.bucketSpanTime = bucketSpanTime;
   }
 
+  /**
+   * Return the maximum number of tuples whose keys are looked up together
+   * @return the lookupBatchSize
+   */
+  public int getLookupBatchSize()
+  {
+    return lookupBatchSize;
+  }
+
+  /**
+   * Sets the maximum number of tuples whose keys are looked up together in the store of the other stream.
+   * The batch is also looked up when the operator is idle and at the end of the window. By default this is 1,
+   * which looks up every tuple on its own.
+   * @param lookupBatchSize given lookupBatchSize
+   */
+  public void setLookupBatchSize(int lookupBatchSize)
+  {
+    this.lookupBatchSize = lookupBatchSize;
+  }
+
+  /**
+   * Return the number of lookups of a key in a window after which its values are kept in memory
+   * @return the hotKeyThreshold
+   */
+  public int getHotKeyThreshold()
+  {
+    return hotKeyThreshold;
+  }
+
+  /**
+   * Sets the number of lookups of a key in a window after which the values of the key in the store of the other
+   * stream are kept in memory till the end of the window. This avoids the lookups of skewed keys. 0 disables it which
+   * is the default.
+   * @param hotKeyThreshold given hotKeyThreshold
+   */
+  public void setHotKeyThreshold(int hotKeyThreshold)
+  {
+    this.hotKeyThreshold = hotKeyThreshold;
+  }
+
+  /**
+   * Return the maximum number of hot keys per stream
+   * @return the maxHotKeys
+   */
+  public int getMaxHotKeys()
+  {
+    return maxHotKeys;
+  }
+
+  /**
+   * Sets the maximum number of keys per stream whose values are kept in memory in a window.
+   * @param maxHotKeys given maxHotKeys
+   */
+  public void setMaxHotKeys(int maxHotKeys)
+  {
+    this.maxHotKeys = maxHotKeys;
+  }
+
   public static class JoinEvent<K,T>
   {
     public K key;
@@ -19,9 +19,18 @@
 package org.apache.apex.malhar.lib.join;
 
 import java.lang.reflect.Array;
+import java.lang.reflect.Field;
+import java.lang.reflect.Method;
+import java.lang.reflect.Modifier;
 import java.util.HashMap;
 import java.util.Map;
 
+import org.codehaus.commons.compiler.CompileException;
+import org.codehaus.commons.compiler.CompilerFactoryFactory;
+import org.codehaus.commons.compiler.IScriptEvaluator;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
 import org.apache.apex.malhar.lib.util.PojoUtils;
 import org.apache.apex.malhar.lib.window.impl.KeyedWindowedMergeOperatorImpl;
 import org.apache.apex.malhar.lib.window.impl.WindowedMergeOperatorImpl;
@@ -37,6 +46,8 @@ import com.datatorrent.api.annotation.OutputPortFieldAnnotation;
 
 /**
  * Concrete implementation of AbstractManagedStateInnerJoinOperator and receives objects from both streams.
+ * The output tuples are created by a merge function which is compiled for the include fields when the classes of the
+ * tuples and their fields are accessible, otherwise the fields are copied with the getters and setters of the fields.
  *
  * @displayName POJO Inner Join Operator
  * @tags join
@@ -53,6 +64,7 @@ public class POJOInnerJoinOperator extends AbstractManagedStateInnerJoinOperator
   private transient long timeIncrement;
   private transient FieldObjectMap[] inputFieldObjects = (FieldObjectMap[])Array.newInstance(FieldObjectMap.class, 2);
   protected transient Class<?> outputClass;
+  private transient TupleMerger tupleMerger;
   private long time = System.currentTimeMillis();
 
   @OutputPortFieldAnnotation(schemaRequired = true)
@@ -161,6 +173,136 @@ public class POJOInnerJoinOperator extends AbstractManagedStateInnerJoinOperator
     }
   }
 
+  /**
+   * Compiles a merge function which creates the output tuple and copies the include fields of both the tuples with
+   * direct field accesses or accessor calls and without boxing the primitive fields.
+   * @return the merge function or null if a class, constructor or field cannot be accessed by the generated code.
+   */
+  private TupleMerger generateTupleMerger()
+  {
+    if (!isAccessible(outputClass)) {
+      return null;
+    }
+    try {
+      if (!Modifier.isPublic(outputClass.getConstructor().getModifiers())) {
+        return null;
+      }
+    } catch (NoSuchMethodException e) {
+      return null;
+    }
+    StringBuilder code = new StringBuilder();
+    code.append(outputClass.getName()).append(" output = new ").append(outputClass.getName()).append("();\n");
+    for (int i = 0; i < 2; i++) {
+      Class<?> inputClass = inputFieldObjects[i].inputClass;
+      if (!isAccessible(inputClass)) {
+        return null;
+      }
+      String input = "((" + inputClass.getName() + ")tuple" + (i + 1) + ")";
+      for (int j = 0; j < includeFields[i].length; j++) {
+        String fieldName = includeFields[i][j];
+        Class<?> fieldType;
+        try {
+          fieldType = inputClass.getDeclaredField(fieldName).getType();
+          Class<?> outputFieldType = outputClass.getDeclaredField(fieldName).getType();
+          if (ClassUtils.primitiveToWrapper(fieldType) != ClassUtils.primitiveToWrapper(outputFieldType)) {
+            //not copied like by the setters
+            continue;
+          }
+          if (fieldType != outputFieldType) {
+            return null;
+          }
+        } catch (NoSuchFieldException e) {
+          throw new RuntimeException(e);
+        }
+        String value = getReadExpression(inputClass, input, fieldName, fieldType);
+        String assignment = getWriteStatement(outputClass, "output", fieldName, fieldType, value);
+        if (value == null || assignment == null) {
+          return null;
+        }
+        code.append(assignment).append("\n");
+      }
+    }
+    code.append("return output;");
+
+    try {
+      IScriptEvaluator se = CompilerFactoryFactory.getDefaultCompilerFactory().newScriptEvaluator();
+      LOG.debug("merge code: {}", code);
+      return (TupleMerger)se.createFastEvaluator(code.toString(), TupleMerger.class, new String[] {"tuple1", "tuple2"});
+    } catch (CompileException e) {
+      LOG.warn("merge function cannot be compiled, the fields are copied with setters", e);
+      return null;
+    } catch (Exception e) {
+      throw new RuntimeException(e);
+    }
+  }
+
+  /**
+   * @return true if the class and the classes which enclose it are public and it is not an inner class.
+   */
+  private static boolean isAccessible(Class<?> clazz)
+  {
+    if (clazz == null || clazz.isLocalClass() || clazz.isAnonymousClass()) {
+      return false;
+    }
+    for (Class<?> c = clazz; c != null; c = c.getEnclosingClass()) {
+      if (!Modifier.isPublic(c.getModifiers()) || (c.isMemberClass() && !Modifier.isStatic(c.getModifiers()))) {
+        return false;
+      }
+    }
+    return true;
+  }
+
+  /**
+   * @return the expression which reads a field with a public field access or getter; null if there is none.
+   */
+  private static String getReadExpression(Class<?> clazz, String object, String fieldName, Class<?> fieldType)
+  {
+    try {
+      Field field = clazz.getField(fieldName);
+      if (field.getType() == fieldType && !Modifier.isStatic(field.getModifiers())) {
+        return object + "." + fieldName;
+      }
+    } catch (NoSuchFieldException e) {
+      //use getter
+    }
+    String suffix = Character.toUpperCase(fieldName.charAt(0)) + fieldName.substring(1);
+    for (String prefix : new String[] {"get", "is"}) {
+      try {
+        Method method = clazz.getMethod(prefix + suffix);
+        if (method.getReturnType() == fieldType) {
+          return object + "." + method.getName() + "()";
+        }
+      } catch (NoSuchMethodException e) {
+        //try next
+      }
+    }
+    return null;
+  }
+
+  /**
+   * @return the statement which writes a field with a public field access or setter; null if there is none.
+   */
+  private static String getWriteStatement(Class<?> clazz, String object, String fieldName, Class<?> fieldType,
+      String value)
+  {
+    try {
+      Field field = clazz.getField(fieldName);
+      if (field.getType() == fieldType && !Modifier.isStatic(field.getModifiers()) &&
+          !Modifier.isFinal(field.getModifiers())) {
+        return object + "." + fieldName + " = " + value + ";";
+      }
+    } catch (NoSuchFieldException e) {
+      //use setter
+    }
+    try {
+      Method method = clazz.getMethod("set" + Character.toUpperCase(fieldName.charAt(0)) + fieldName.substring(1),
+          fieldType);
+      return object + "." + method.getName() + "(" + value + ");";
+    } catch (NoSuchMethodException e) {
+      return null;
+    }
+  }
+
   /**
    * Extract the key value from the given tuple
    * @param tuple given tuple
@@ -183,6 +325,9 @@ public class POJOInnerJoinOperator extends AbstractManagedStateInnerJoinOperator
   @Override
   public Object mergeTuples(Object tuple1, Object tuple2)
   {
+    if (tupleMerger != null) {
+      return tupleMerger.merge(tuple1, tuple2);
+    }
     Object o;
     try {
       o = outputClass.newInstance();
@@ -212,6 +357,7 @@ public class POJOInnerJoinOperator extends AbstractManagedStateInnerJoinOperator
   public void activate(Context context)
   {
     generateSettersAndGetters();
+    tupleMerger = generateTupleMerger();
   }
 
   @Override
@@ -239,6 +385,14 @@ public class POJOInnerJoinOperator extends AbstractManagedStateInnerJoinOperator
     return new JoinStreamCodec(getRightKeyExpression());
   }
 
+  /**
+   * Creates an output tuple from a tuple of each stream.
+   */
+  public interface TupleMerger
+  {
+    Object merge(Object tuple1, Object tuple2);
+  }
+
   private class FieldObjectMap
   {
     public Class<?> inputClass;
@@ -251,4 +405,6 @@ public class POJOInnerJoinOperator extends AbstractManagedStateInnerJoinOperator
       fieldMap = new HashMap<>();
     }
   }
+
+  private static final Logger LOG = LoggerFactory.getLogger(POJOInnerJoinOperator.class);
 }
@@ -19,8 +19,10 @@
 package org.apache.apex.malhar.lib.state.managed;
 
 import java.io.IOException;
+import java.util.Collection;
 import java.util.Comparator;
 import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
 import java.util.concurrent.Callable;
 import java.util.concurrent.ExecutorService;
@@ -37,7 +39,9 @@ import org.slf4j.LoggerFactory;
 
 import org.apache.apex.malhar.lib.fileaccess.FileAccess;
 import org.apache.apex.malhar.lib.fileaccess.TFileImpl;
+import org.apache.apex.malhar.lib.state.BucketedState;
 import org.apache.apex.malhar.lib.util.comparator.SliceComparator;
+import org.apache.apex.malhar.lib.utils.serde.BlockPool;
 
 import com.esotericsoftware.kryo.serializers.FieldSerializer;
 import com.esotericsoftware.kryo.serializers.JavaSerializer;
@@ -46,6 +50,7 @@ import com.google.common.base.Preconditions;
 import com.google.common.base.Throwables;
 import com.google.common.collect.ArrayListMultimap;
 import com.google.common.collect.ListMultimap;
+import com.google.common.collect.Lists;
 import com.google.common.collect.Maps;
 import com.google.common.collect.Multimaps;
 import com.google.common.util.concurrent.Futures;
@@ -130,6 +135,10 @@ public abstract class AbstractManagedStateImpl
 {
   private long maxMemorySize;
 
+  private boolean offHeapBucketMemory;
+
+  private boolean pooledBucketBlocks;
+
   protected long numBuckets;
 
   @NotNull
@@ -169,8 +178,8 @@ public abstract class AbstractManagedStateImpl
   //accessible to StateTracker
   final transient Object commitLock = new Object();
 
-  protected final transient ListMultimap<Long, ValueFetchTask> tasksPerBucketId =
-      Multimaps.synchronizedListMultimap(ArrayListMultimap.<Long, ValueFetchTask>create());
+  protected final transient ListMultimap<Long, Callable<?>> tasksPerBucketId =
+      Multimaps.synchronizedListMultimap(ArrayListMultimap.<Long, Callable<?>>create());
 
   @Override
   public void setup(OperatorContext context)
@@ -316,6 +325,52 @@ public abstract class AbstractManagedStateImpl
     }
   }
 
+  /**
+   * Returns the future of the values of multiple keys of a bucket. The keys which are not in memory are fetched by a
+   * single task which searches each time-bucket reader once for all of them.
+   *
+   * @param bucketId   bucket id
+   * @param timeBucket time bucket of the keys if known; -1 otherwise.
+   * @param keys       keys
+   * @return future of the values of the keys which are found. The map is ordered by the key comparator.
+   */
+  @SuppressWarnings("SynchronizationOnLocalVariableOrMethodParameter")
+  protected Future<Map<Slice, Slice>> getValuesFromBucketAsync(long bucketId, long timeBucket,
+      @NotNull Collection<Slice> keys)
+  {
+    Preconditions.checkNotNull(keys, "keys");
+    long bucketIdx = prepareBucket(bucketId);
+    Bucket bucket = buckets.get(bucketIdx);
+    synchronized (bucket) {
+      Map<Slice, Slice> cachedValues = bucket.getAll(keys, timeBucket, Bucket.ReadSource.MEMORY);
+      List<Slice> keysToRead = Lists.newArrayList();
+      for (Slice key : keys) {
+        if (!cachedValues.containsKey(key)) {
+          keysToRead.add(key);
+        }
+      }
+      if (keysToRead.isEmpty()) {
+        return Futures.immediateFuture(cachedValues);
+      }
+      ValuesFetchTask valuesFetchTask = new ValuesFetchTask(bucket, keysToRead, timeBucket, cachedValues, this);
+      tasksPerBucketId.put(bucket.getBucketId(), valuesFetchTask);
+      return readerService.submit(valuesFetchTask);
+    }
+  }
+
+  /**
+   * @param keys keys
+   * @return future of values where every key is {@link BucketedState#EXPIRED}.
+   */
+  protected Future<Map<Slice, Slice>> getExpiredValues(@NotNull Collection<Slice> keys)
+  {
+    Map<Slice, Slice> values = Maps.newTreeMap(keyComparator);
+    for (Slice key : keys) {
+      values.put(key, BucketedState.EXPIRED);
+    }
+    return Futures.immediateFuture(values);
+  }
+
   protected void handleBucketConflict(long bucketIdx, long newBucketId)
   {
     throw new IllegalArgumentException("bucket conflict " + buckets.get(bucketIdx).getBucketId() + " " + newBucketId);
@@ -346,7 +401,10 @@ public abstract class AbstractManagedStateImpl
 
   protected Bucket newBucket(long bucketId)
   {
-    return new Bucket.DefaultBucket(bucketId);
+    Bucket.DefaultBucket bucket = new Bucket.DefaultBucket(bucketId);
+    bucket.setOffHeapMemory(offHeapBucketMemory);
+    bucket.setPooledBlocks(pooledBucketBlocks);
+    return bucket;
   }
 
   public void endWindow()
@@ -466,6 +524,45 @@ public abstract class AbstractManagedStateImpl
     return maxMemorySize;
   }
 
+  /**
+   * @return true if the data of the buckets in memory is kept off-heap.
+   */
+  public boolean isOffHeapBucketMemory()
+  {
+    return offHeapBucketMemory;
+  }
+
+  /**
+   * When true, the buckets keep their data in memory in direct memory instead of the java heap. The max memory size
+   * then applies to the direct memory used by the buckets. See {@link Bucket.DefaultBucket#setOffHeapMemory(boolean)}.
+   *
+   * @param offHeapBucketMemory true to keep the data of the buckets in memory off-heap.
+   */
+  public void setOffHeapBucketMemory(boolean offHeapBucketMemory)
+  {
+    this.offHeapBucketMemory = offHeapBucketMemory;
+  }
+
+  /**
+   * @return true if the buffers of the key and value streams of the buckets are pooled.
+   */
+  public boolean isPooledBucketBlocks()
+  {
+    return pooledBucketBlocks;
+  }
+
+  /**
+   * When true, the buckets allocate the buffers of their key and value streams from the {@link BlockPool} shared by
+   * the container and return them to the pool when the windows are freed instead of leaving them to the GC.
+   * See {@link Bucket.DefaultBucket#setPooledBlocks(boolean)}.
+   *
+   * @param pooledBucketBlocks true to pool the buffers of the buckets.
+   */
+  public void setPooledBucketBlocks(boolean pooledBucketBlocks)
+  {
+    this.pooledBucketBlocks = pooledBucketBlocks;
+  }
+
   /**
    * Sets the {@link FileAccess} implementation.
    * @param fileAccess specific implementation of FileAccess.
@@ -618,6 +715,44 @@ public abstract class AbstractManagedStateImpl
     }
   }
 
+  static class ValuesFetchTask implements Callable<Map<Slice, Slice>>
+  {
+    private final Bucket bucket;
+    private final long timeBucketId;
+    private final Collection<Slice> keys;
+    private final Map<Slice, Slice> cachedValues;
+    private final AbstractManagedStateImpl managedState;
+
+    ValuesFetchTask(@NotNull Bucket bucket, @NotNull Collection<Slice> keys, long timeBucketId,
+        @NotNull Map<Slice, Slice> cachedValues, AbstractManagedStateImpl managedState)
+    {
+      this.bucket = Preconditions.checkNotNull(bucket);
+      this.timeBucketId = timeBucketId;
+      this.keys = Preconditions.checkNotNull(keys);
+      this.cachedValues = Preconditions.checkNotNull(cachedValues);
+      this.managedState = Preconditions.checkNotNull(managedState);
+    }
+
+    @Override
+    public Map<Slice, Slice> call() throws Exception
+    {
+      try {
+        synchronized (bucket) {
+          //the keys are searched in memory again because the values may have been put after the task was created.
+          Map<Slice, Slice> values = bucket.getAll(keys, timeBucketId, Bucket.ReadSource.ALL);
+          for (Map.Entry<Slice, Slice> entry : cachedValues.entrySet()) {
+            values.put(entry.getKey(), entry.getValue());
+          }
+          managedState.tasksPerBucketId.remove(bucket.getBucketId(), this);
+          return values;
+        }
+      } catch (Throwable t) {
+        managedState.throwable.set(t);
+        throw Throwables.propagate(t);
+      }
+    }
+  }
+
   @VisibleForTesting
   void setStateTracker(@NotNull StateTracker stateTracker)
   {
@@ -0,0 +1,162 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.apex.malhar.lib.state.managed;
+
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+
+import com.google.common.base.Preconditions;
+import com.google.common.primitives.Longs;
+
+import com.datatorrent.netlet.util.Slice;
+
+/**
+ * A bloom filter of the keys of a run file of a time bucket. The filter is sized from the number of keys in the run
+ * when the run is written and is persisted next to the run by {@link BucketsFileSystem}.<br/>
+ * <p/>
+ * The bits are organized in blocks of 512 bits (8 longs, a cache line) and all the bits of a key are set in a single
+ * block which is selected by the hash of the key. So a lookup touches a single cache line.
+ * <p/>
+ * The format of the persisted filter is:
+ * <ol>
+ * <li>number of hash functions (int)</li>
+ * <li>number of blocks (int)</li>
+ * <li>number of keys added (long)</li>
+ * <li>words of the blocks (long[])</li>
+ * </ol>
+ */
+public class BlockedSliceBloomFilter
+{
+  private static final int WORDS_PER_BLOCK = 8;
+  private static final int BITS_PER_BLOCK = WORDS_PER_BLOCK * Long.SIZE;
+  private static final int MAX_HASHES = 16;
+  private static final SliceBloomFilter.HashFunction HASHER = new SliceBloomFilter.HashFunction();
+
+  private final int numberOfHashes;
+  private final int numberOfBlocks;
+  private final long[] words;
+  private long numberOfKeys;
+
+  /**
+   * @param expectedNumberOfKeys expected number of keys in the filter.
+   * @param bitsPerKey           bits allocated per key.
+   */
+  public BlockedSliceBloomFilter(long expectedNumberOfKeys, int bitsPerKey)
+  {
+    Preconditions.checkArgument(bitsPerKey > 0, "bits per key");
+    long blocks = (Math.max(expectedNumberOfKeys, 1) * bitsPerKey + BITS_PER_BLOCK - 1) / BITS_PER_BLOCK;
+    this.numberOfBlocks = (int)Math.min(blocks, Integer.MAX_VALUE / WORDS_PER_BLOCK);
+    this.numberOfHashes = Math.max(1, Math.min(MAX_HASHES, (int)Math.round(bitsPerKey * Math.log(2))));
+    this.words = new long[numberOfBlocks * WORDS_PER_BLOCK];
+  }
+
+  @SuppressWarnings("unused")
+  private BlockedSliceBloomFilter()
+  {
+    //for kryo
+    numberOfHashes = 0;
+    numberOfBlocks = 0;
+    words = null;
+  }
+
+  private BlockedSliceBloomFilter(int numberOfHashes, int numberOfBlocks, long numberOfKeys, long[] words)
+  {
+    this.numberOfHashes = numberOfHashes;
+    this.numberOfBlocks = numberOfBlocks;
+    this.numberOfKeys = numberOfKeys;
+    this.words = words;
+  }
+
+  public void put(Slice key)
+  {
+    long hash = HASHER.hash(key);
+    int base = blockOffset(hash);
+    int hash1 = (int)hash;
+    int hash2 = Integer.rotateLeft(hash1, 16) | 1;
+    for (int i = 0; i < numberOfHashes; i++) {
+      int bit = (hash1 + i * hash2) & (BITS_PER_BLOCK - 1);
+      words[base + (bit >>> 6)] |= 1L << bit;
+    }
+    numberOfKeys++;
+  }
+
+  public boolean mightContain(Slice key)
+  {
+    long hash = HASHER.hash(key);
+    int base = blockOffset(hash);
+    int hash1 = (int)hash;
+    int hash2 = Integer.rotateLeft(hash1, 16) | 1;
+    for (int i = 0; i < numberOfHashes; i++) {
+      int bit = (hash1 + i * hash2) & (BITS_PER_BLOCK - 1);
+      if ((words[base + (bit >>> 6)] & (1L << bit)) == 0) {
+        return false;
+      }
+    }
+    return true;
+  }
+
+  /**
+   * The block is selected by the upper 32 bits of the hash and the bits within the block by the lower 32 bits.
+   */
+  private int blockOffset(long hash)
+  {
+    return (int)(((hash >>> 32) * numberOfBlocks) >>> 32) * WORDS_PER_BLOCK;
+  }
+
+  public long getNumberOfKeys()
+  {
+    return numberOfKeys;
+  }
+
+  public int getNumberOfHashes()
+  {
+    return numberOfHashes;
+  }
+
+  /**
+   * @return size of the bits of the filter in bytes.
+   */
+  public long getSizeInBytes()
+  {
+    return (long)words.length * Longs.BYTES;
+  }
+
+  public void writeTo(DataOutputStream dos) throws IOException
+  {
+    dos.writeInt(numberOfHashes);
+    dos.writeInt(numberOfBlocks);
+    dos.writeLong(numberOfKeys);
+    for (long word : words) {
+      dos.writeLong(word);
+    }
+  }
+
+  public static BlockedSliceBloomFilter readFrom(DataInputStream dis) throws IOException
+  {
+    int numberOfHashes = dis.readInt();
+    int numberOfBlocks = dis.readInt();
+    long numberOfKeys = dis.readLong();
+    long[] words = new long[numberOfBlocks * WORDS_PER_BLOCK];
+    for (int i = 0; i < words.length; i++) {
+      words[i] = dis.readLong();
+    }
+    return new BlockedSliceBloomFilter(numberOfHashes, numberOfBlocks, numberOfKeys, words);
+  }
+}
@@ -18,8 +18,13 @@
  */
 package org.apache.apex.malhar.lib.state.managed;
 
+import java.io.Closeable;
 import java.io.IOException;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
 import java.util.Iterator;
+import java.util.List;
 import java.util.Map;
 import java.util.Objects;
 import java.util.Set;
@@ -34,12 +39,14 @@ import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import org.apache.apex.malhar.lib.fileaccess.FileAccess;
+import org.apache.apex.malhar.lib.utils.serde.BlockPool;
 import org.apache.apex.malhar.lib.utils.serde.KeyValueByteStreamProvider;
 import org.apache.apex.malhar.lib.utils.serde.SliceUtils;
 import org.apache.apex.malhar.lib.utils.serde.WindowedBlockStream;
 
 import com.google.common.annotations.VisibleForTesting;
 import com.google.common.base.Preconditions;
+import com.google.common.collect.Lists;
 import com.google.common.collect.Maps;
 import com.google.common.collect.Sets;
 import com.google.common.primitives.Longs;
@@ -74,6 +81,18 @@ public interface Bucket extends ManagedStateComponent, KeyValueByteStreamProvide
    */
   Slice get(Slice key, long timeBucket, ReadSource source);
 
+  /**
+   * Get values of multiple keys. The keys which are not in memory are sorted and each time-bucket reader is searched
+   * once for all of them.
+   *
+   * @param keys       keys.
+   * @param timeBucket time bucket of the keys if known; -1 otherwise.
+   * @param source     source to read from
+   * @return values of the keys which are found. The map is ordered by the key comparator so it can be queried with
+   * any {@link Slice}.
+   */
+  Map<Slice, Slice> getAll(Collection<Slice> keys, long timeBucket, ReadSource source);
+
   /**
    * Set value of a key.
    *
@@ -212,15 +231,13 @@ public interface Bucket extends ManagedStateComponent, KeyValueByteStreamProvide
     //Data serialized/deserialized from bucket data files: key -> value from latest time bucket on file
     private final transient Map<Slice, BucketedValue> fileCache = Maps.newConcurrentMap();
 
-    //TimeBucket -> FileReaders
-    private final transient Map<Long, FileAccess.FileReader> readers = Maps.newTreeMap();
+    //TimeBucket -> readers of the runs of the time bucket
+    private final transient Map<Long, TimeBucketReader> readers = Maps.newTreeMap();
 
     protected transient ManagedStateContext managedStateContext;
 
     private AtomicLong sizeInBytes = new AtomicLong(0);
 
-    private final transient Slice dummyGetKey = new Slice(null, 0, 0);
-
     private transient TreeMap<Long, BucketsFileSystem.TimeBucketMeta> cachedBucketMetas;
 
     /**
@@ -238,6 +255,10 @@ public interface Bucket extends ManagedStateComponent, KeyValueByteStreamProvide
     private SliceBloomFilter bloomFilter = null;
     private int bloomFilterBitSize = bloomFilterDefaultBitSize;
 
+    private boolean offHeapMemory;
+
+    private boolean pooledBlocks;
+
     private DefaultBucket()
     {
       //for kryo
@@ -253,6 +274,13 @@ public interface Bucket extends ManagedStateComponent, KeyValueByteStreamProvide
     public void setup(@NotNull ManagedStateContext managedStateContext)
     {
       this.managedStateContext = Preconditions.checkNotNull(managedStateContext, "managed state context");
+      if (offHeapMemory && flash.isEmpty()) {
+        flash = newMemoryTier();
+      }
+      if (pooledBlocks) {
+        keyStream.setBlockPool(BlockPool.getSharedPool());
+        valueStream.setBlockPool(BlockPool.getSharedPool());
+      }
       if (!disableBloomFilter && bloomFilter == null) {
         bloomFilter = new SliceBloomFilter(bloomFilterBitSize, 0.99);
       }
@@ -362,6 +390,103 @@ public interface Bucket extends ManagedStateComponent, KeyValueByteStreamProvide
       }
     }
 
+    @Override
+    public Map<Slice, Slice> getAll(Collection<Slice> keys, long timeBucket, ReadSource readSource)
+    {
+      // This call is lightweight
+      releaseMemory();
+      Map<Slice, Slice> values = Maps.newTreeMap(managedStateContext.getKeyComparator());
+      List<Slice> keysToRead = Lists.newArrayListWithCapacity(keys.size());
+      for (Slice key : keys) {
+        key = SliceUtils.toBufferSlice(key);
+        Slice value = readSource == ReadSource.READERS ? null : getFromMemory(key);
+        if (value != null) {
+          values.put(key, value);
+        } else if (readSource != ReadSource.MEMORY) {
+          keysToRead.add(key);
+        }
+      }
+      if (!keysToRead.isEmpty()) {
+        Collections.sort(keysToRead, managedStateContext.getKeyComparator());
+        getAllFromReaders(keysToRead, timeBucket, values);
+      }
+      return values;
+    }
+
+    /**
+     * Reads the values of sorted keys from the time-bucket readers.
+     *
+     * @param sortedKeys keys sorted by the key comparator.
+     * @param timeBucket time bucket of the keys if known; -1 otherwise.
+     * @param values     values of the keys which are found are added to it.
+     */
+    private void getAllFromReaders(List<Slice> sortedKeys, long timeBucket, Map<Slice, Slice> values)
+    {
+      try {
+        if (cachedBucketMetas == null) {
+          cachedBucketMetas = managedStateContext.getBucketsFileSystem().getAllTimeBuckets(bucketId);
+        }
+        //the bloom filter of the bucket is checked once per key, not once per time bucket
+        List<Slice> keysToRead = Lists.newArrayListWithCapacity(sortedKeys.size());
+        for (Slice key : sortedKeys) {
+          if (mightContain(key)) {
+            keysToRead.add(key);
+          }
+        }
+        if (keysToRead.isEmpty()) {
+          return;
+        }
+        sortedKeys = keysToRead;
+        Map<Slice, Slice> timeBucketValues = Maps.newTreeMap(managedStateContext.getKeyComparator());
+        if (timeBucket != -1) {
+          getAllFromTimeBucketReader(sortedKeys, timeBucket, timeBucketValues);
+          //same as getFromReaders, only the values of the latest time bucket on file are put in the file cache.
+          boolean latestTimeBucket = !cachedBucketMetas.isEmpty() && timeBucket == cachedBucketMetas.firstKey();
+          for (Map.Entry<Slice, Slice> entry : timeBucketValues.entrySet()) {
+            if (latestTimeBucket) {
+              fileCache.put(entry.getKey(), new BucketedValue(timeBucket, entry.getValue()));
+            }
+            values.put(entry.getKey(), entry.getValue());
+          }
+        } else {
+          //search all the time buckets from the newest to the oldest for the keys which are not found yet
+          List<Slice> remainingKeys = sortedKeys;
+          for (BucketsFileSystem.TimeBucketMeta immutableTimeBucketMeta : cachedBucketMetas.values()) {
+            int start = 0;
+            while (start < remainingKeys.size() && managedStateContext.getKeyComparator().compare(
+                remainingKeys.get(start), immutableTimeBucketMeta.getFirstKey()) < 0) {
+              start++;
+            }
+            if (start == remainingKeys.size()) {
+              continue;
+            }
+            timeBucketValues.clear();
+            getAllFromTimeBucketReader(remainingKeys.subList(start, remainingKeys.size()),
+                immutableTimeBucketMeta.getTimeBucketId(), timeBucketValues);
+            if (timeBucketValues.isEmpty()) {
+              continue;
+            }
+            List<Slice> notFound = Lists.newArrayListWithCapacity(remainingKeys.size() - timeBucketValues.size());
+            for (Slice key : remainingKeys) {
+              Slice value = timeBucketValues.get(key);
+              if (value == null) {
+                notFound.add(key);
+              } else {
+                fileCache.put(key, new BucketedValue(immutableTimeBucketMeta.getTimeBucketId(), value));
+                values.put(key, value);
+              }
+            }
+            if (notFound.isEmpty()) {
+              break;
+            }
+            remainingKeys = notFound;
+          }
+        }
+      } catch (IOException e) {
+        throw new RuntimeException("get time-buckets " + bucketId, e);
+      }
+    }
+
 
     private int filteredCount = 0;
     private int unfilteredCount = 0;
@@ -398,64 +523,106 @@ public interface Bucket extends ManagedStateComponent, KeyValueByteStreamProvide
      */
     private BucketedValue getValueFromTimeBucketReader(Slice key, long timeBucket)
     {
-      if (managedStateContext.getTimeBucketAssigner() instanceof MovingBoundaryTimeBucketAssigner &&
-          timeBucket <= ((MovingBoundaryTimeBucketAssigner)managedStateContext.getTimeBucketAssigner()).getLowestPurgeableTimeBucket()) {
+      if (isPurgeable(timeBucket) || !mightContain(key)) {
         return null;
       }
 
-      if (bloomFilter != null) {
-        boolean mightContain = bloomFilter.mightContain(key);
-
-        verifyBloomFilter(mightContain);
-
-        if (!mightContain) {
+      try {
+        TimeBucketReader timeBucketReader = getTimeBucketReader(timeBucket);
+        if (timeBucketReader == null) {
           return null;
         }
+        Slice value = timeBucketReader.get(key);
+        return value == null ? null : new BucketedValue(timeBucket, value);
+      } catch (IOException e) {
+        throw new RuntimeException("reading " + bucketId + ", " + timeBucket, e);
       }
+    }
 
-      FileAccess.FileReader fileReader = readers.get(timeBucket);
-      if (fileReader != null) {
-        return readValue(fileReader, key, timeBucket);
+    /**
+     * Adds the values of the sorted keys which are found in a valid time-bucket reader to the values.
+     *
+     * @param sortedKeys keys sorted by the key comparator which passed the bloom filter of the bucket
+     * @param timeBucket time bucket
+     * @param values     values of the keys which are found are added to it
+     */
+    private void getAllFromTimeBucketReader(List<Slice> sortedKeys, long timeBucket, Map<Slice, Slice> values)
+    {
+      if (isPurgeable(timeBucket)) {
+        return;
       }
-      //file reader is not loaded and is null
+
       try {
-        if (loadFileReader(timeBucket)) {
-          return readValue(readers.get(timeBucket), key, timeBucket);
+        TimeBucketReader timeBucketReader = getTimeBucketReader(timeBucket);
+        if (timeBucketReader != null) {
+          timeBucketReader.getAll(sortedKeys, values);
         }
-        return null;
       } catch (IOException e) {
-        throw new RuntimeException("while loading " + bucketId + ", " + timeBucket, e);
+        throw new RuntimeException("reading " + bucketId + ", " + timeBucket, e);
       }
     }
 
-    private BucketedValue readValue(FileAccess.FileReader fileReader, Slice key, long timeBucket)
+    private boolean isPurgeable(long timeBucket)
     {
-      Slice valSlice = new Slice(null, 0, 0);
-      try {
-        if (fileReader.seek(key)) {
-          fileReader.next(dummyGetKey, valSlice);
-          return new BucketedValue(timeBucket, valSlice);
-        } else {
-          return null;
-        }
-      } catch (IOException e) {
-        throw new RuntimeException("reading " + bucketId + ", " + timeBucket, e);
+      return managedStateContext.getTimeBucketAssigner() instanceof MovingBoundaryTimeBucketAssigner &&
+          timeBucket <= ((MovingBoundaryTimeBucketAssigner)managedStateContext.getTimeBucketAssigner()).getLowestPurgeableTimeBucket();
+    }
+
+    private boolean mightContain(Slice key)
+    {
+      if (bloomFilter != null) {
+        boolean mightContain = bloomFilter.mightContain(key);
+
+        verifyBloomFilter(mightContain);
+
+        return mightContain;
+      }
+      return true;
+    }
+
+    private TimeBucketReader getTimeBucketReader(long timeBucket) throws IOException
+    {
+      TimeBucketReader timeBucketReader = readers.get(timeBucket);
+      if (timeBucketReader == null) {
+        //time bucket reader is not loaded
+        timeBucketReader = loadTimeBucketReader(timeBucket);
       }
+      return timeBucketReader;
     }
 
-    private boolean loadFileReader(long timeBucketId) throws IOException
+    private TimeBucketReader loadTimeBucketReader(long timeBucketId) throws IOException
     {
       BucketsFileSystem.TimeBucketMeta tbm = managedStateContext.getBucketsFileSystem()
           .getTimeBucketMeta(bucketId, timeBucketId);
 
       if (tbm != null) {
-        FileAccess.FileReader reader = managedStateContext.getBucketsFileSystem().getReader(bucketId,
-            BucketsFileSystem.getFileName(timeBucketId));
-        readers.put(timeBucketId, reader);
+        TimeBucketReader timeBucketReader = new TimeBucketReader(tbm, managedStateContext);
+        readers.put(timeBucketId, timeBucketReader);
         sizeInBytes.getAndAdd(tbm.getSizeInBytes());
-        return true;
+        return timeBucketReader;
       }
-      return false;
+      return null;
+    }
+
+    /**
+     * Closes the reader of a time bucket.
+     *
+     * @param timeBucketId time bucket id
+     * @return memory freed in bytes.
+     */
+    private long closeTimeBucketReader(long timeBucketId)
+    {
+      TimeBucketReader timeBucketReader = readers.remove(timeBucketId);
+      if (timeBucketReader == null) {
+        return 0;
+      }
+      LOG.debug("closing reader {} {}", bucketId, timeBucketId);
+      try {
+        timeBucketReader.close();
+      } catch (IOException e) {
+        throw new RuntimeException("closing reader " + bucketId + ", " + timeBucketId, e);
+      }
+      return timeBucketReader.getTimeBucketMeta().getSizeInBytes();
     }
 
     @Override
@@ -468,20 +635,38 @@ public interface Bucket extends ManagedStateComponent, KeyValueByteStreamProvide
       value = SliceUtils.toBufferSlice(value);
 
       BucketedValue bucketedValue = flash.get(key);
+      long inc;
       if (bucketedValue == null) {
         bucketedValue = new BucketedValue(timeBucket, value);
-        flash.put(key, bucketedValue);
-        sizeInBytes.getAndAdd(key.length + value.length + Longs.BYTES);
+        inc = key.length + value.length + Longs.BYTES;
       } else {
         if (timeBucket >= bucketedValue.getTimeBucket()) {
-          int inc = null == bucketedValue.getValue() ? value.length : value.length - bucketedValue.getValue().length;
-          sizeInBytes.getAndAdd(inc);
+          inc = null == bucketedValue.getValue() ? value.length : value.length - bucketedValue.getValue().length;
           bucketedValue.setTimeBucket(timeBucket);
           bucketedValue.setValue(value);
         } else {
           throw new AssertionError("newer entry exists for " + key);
         }
       }
+      if (offHeapMemory) {
+        //the values returned by an off-heap tier are copies so the updated value is put again and the size of the
+        //bucket is accounted by the direct memory allocated for the tier
+        OffHeapBucketedValueMap offHeapFlash = (OffHeapBucketedValueMap)flash;
+        long allocatedBytes = offHeapFlash.getAllocatedBytes();
+        flash.put(key, bucketedValue);
+        inc = offHeapFlash.getAllocatedBytes() - allocatedBytes;
+      } else {
+        flash.put(key, bucketedValue);
+      }
+      sizeInBytes.getAndAdd(inc);
+    }
+
+    /**
+     * @return a new map for the data of a window in memory.
+     */
+    private Map<Slice, BucketedValue> newMemoryTier()
+    {
+      return offHeapMemory ? new OffHeapBucketedValueMap() : Maps.<Slice, BucketedValue>newHashMap();
     }
 
     /**
@@ -506,6 +691,16 @@ public interface Bucket extends ManagedStateComponent, KeyValueByteStreamProvide
         Map<Slice, BucketedValue> windowData = bucketEntry.getValue();
         entryIter.remove();
 
+        if (windowData instanceof OffHeapBucketedValueMap) {
+          if (bloomFilter != null) {
+            for (Slice key : windowData.keySet()) {
+              bloomFilter.put(key);
+            }
+          }
+          memoryFreed += ((OffHeapBucketedValueMap)windowData).getAllocatedBytes();
+          continue;
+        }
+
         for (Map.Entry<Slice, BucketedValue> entry : windowData.entrySet()) {
           /**
            * The data still in memory and reachable before the memory released
@@ -520,15 +715,8 @@ public interface Bucket extends ManagedStateComponent, KeyValueByteStreamProvide
       }
 
       fileCache.clear();
-      if (cachedBucketMetas != null) {
-
-        for (BucketsFileSystem.TimeBucketMeta tbm : cachedBucketMetas.values()) {
-          FileAccess.FileReader reader = readers.remove(tbm.getTimeBucketId());
-          if (reader != null) {
-            memoryFreed += tbm.getSizeInBytes();
-            reader.close();
-          }
-        }
+      for (Long timeBucketId : Sets.newHashSet(readers.keySet())) {
+        memoryFreed += closeTimeBucketReader(timeBucketId);
       }
       sizeInBytes.getAndAdd(-memoryFreed);
 
@@ -572,7 +760,7 @@ public interface Bucket extends ManagedStateComponent, KeyValueByteStreamProvide
         return flash;
       } finally {
         checkpointedData.put(windowId, flash);
-        flash = Maps.newHashMap();
+        flash = newMemoryTier();
       }
     }
 
@@ -597,22 +785,9 @@ public interface Bucket extends ManagedStateComponent, KeyValueByteStreamProvide
           long memoryFreed = 0;
 
           for (BucketedValue bucketedValue : bucketData.values()) {
-            FileAccess.FileReader reader = readers.get(bucketedValue.getTimeBucket());
-            if (reader != null) {
-              //closing the file reader for the time bucket if it is in memory because the time-bucket is modified
-              //so it will be re-written by BucketsDataManager
-              try {
-                BucketsFileSystem.TimeBucketMeta tbm = cachedBucketMetas.get(bucketedValue.getTimeBucket());
-                if (tbm != null) {
-                  memoryFreed += tbm.getSizeInBytes();
-                }
-                LOG.debug("closing reader {} {}", bucketId, bucketedValue.getTimeBucket());
-                reader.close();
-              } catch (IOException e) {
-                throw new RuntimeException("closing reader " + bucketId + ", " + bucketedValue.getTimeBucket(), e);
-              }
-              readers.remove(bucketedValue.getTimeBucket());
-            }
+            //closing the reader for the time bucket if it is in memory because the time-bucket is modified
+            //so a new run will be added to it by BucketsFileSystem
+            memoryFreed += closeTimeBucketReader(bucketedValue.getTimeBucket());
             if (readers.isEmpty()) {
               break;
             }
@@ -627,9 +802,30 @@ public interface Bucket extends ManagedStateComponent, KeyValueByteStreamProvide
         }
       }
 
+      closeCompactedTimeBucketReaders();
       cachedBucketMetas = null;
     }
 
+    /**
+     * Closes the readers of time buckets whose runs were merged since the readers were loaded.
+     */
+    private void closeCompactedTimeBucketReaders()
+    {
+      long memoryFreed = 0;
+      try {
+        for (Long timeBucketId : Sets.newHashSet(readers.keySet())) {
+          //meta is immutable and a new instance is created when the time bucket is changed
+          if (readers.get(timeBucketId).getTimeBucketMeta() !=
+              managedStateContext.getBucketsFileSystem().getTimeBucketMeta(bucketId, timeBucketId)) {
+            memoryFreed += closeTimeBucketReader(timeBucketId);
+          }
+        }
+      } catch (IOException e) {
+        throw new RuntimeException("time-buckets of " + bucketId, e);
+      }
+      sizeInBytes.getAndAdd(-memoryFreed);
+    }
+
     @Override
     public void recoveredData(long recoveredWindow, Map<Slice, BucketedValue> data)
     {
@@ -640,7 +836,7 @@ public interface Bucket extends ManagedStateComponent, KeyValueByteStreamProvide
     public void teardown()
     {
       Set<Long> failureBuckets = Sets.newHashSet();
-      for (Map.Entry<Long, FileAccess.FileReader> entry : readers.entrySet()) {
+      for (Map.Entry<Long, TimeBucketReader> entry : readers.entrySet()) {
         try {
           LOG.debug("closing reader {} {}", bucketId, entry.getKey());
           entry.getValue().close();
@@ -661,7 +857,7 @@ public interface Bucket extends ManagedStateComponent, KeyValueByteStreamProvide
     }
 
     @VisibleForTesting
-    Map<Long, FileAccess.FileReader> getReaders()
+    Map<Long, TimeBucketReader> getReaders()
     {
       return readers;
     }
@@ -732,7 +928,211 @@ public interface Bucket extends ManagedStateComponent, KeyValueByteStreamProvide
       this.unloadBloomFilter();
     }
 
+    public boolean isOffHeapMemory()
+    {
+      return offHeapMemory;
+    }
+
+    /**
+     * When true, the un-checkpointed, checkpointed and committed data of the bucket is kept in direct memory by
+     * {@link OffHeapBucketedValueMap}s instead of the java heap. The size of the bucket is then measured by the direct
+     * memory allocated for this data. This should be set before the bucket is setup.
+     *
+     * @param offHeapMemory true to keep the data in memory off-heap.
+     */
+    public void setOffHeapMemory(boolean offHeapMemory)
+    {
+      this.offHeapMemory = offHeapMemory;
+    }
+
+    public boolean isPooledBlocks()
+    {
+      return pooledBlocks;
+    }
+
+    /**
+     * When true, the blocks of the key and value streams are allocated from the shared {@link BlockPool} and returned
+     * to it when the memory of the committed windows is released. This should be set before the bucket is setup.
+     *
+     * @param pooledBlocks true to pool the buffers of the key and value streams.
+     */
+    public void setPooledBlocks(boolean pooledBlocks)
+    {
+      this.pooledBlocks = pooledBlocks;
+    }
+
 
     private static final Logger LOG = LoggerFactory.getLogger(DefaultBucket.class);
   }
+
+  /**
+   * Reads the runs of a time bucket. The runs are searched from newest to oldest so that the latest value of a key is
+   * returned. The file reader of a run is opened when it is searched for the first time.<br/>
+   * Not thread-safe.
+   */
+  class TimeBucketReader implements Closeable
+  {
+    private final BucketsFileSystem.TimeBucketMeta timeBucketMeta;
+    private final ManagedStateContext managedStateContext;
+    private final FileAccess.FileReader[] runReaders;
+    private final BlockedSliceBloomFilter[] runBloomFilters;
+    private final boolean[] runBloomFiltersLoaded;
+
+    private final Slice dummyGetKey = new Slice(null, 0, 0);
+
+    TimeBucketReader(@NotNull BucketsFileSystem.TimeBucketMeta timeBucketMeta,
+        @NotNull ManagedStateContext managedStateContext)
+    {
+      this.timeBucketMeta = Preconditions.checkNotNull(timeBucketMeta, "time bucket meta");
+      this.managedStateContext = Preconditions.checkNotNull(managedStateContext, "managed state context");
+      this.runReaders = new FileAccess.FileReader[timeBucketMeta.getRuns().size()];
+      this.runBloomFilters = new BlockedSliceBloomFilter[runReaders.length];
+      this.runBloomFiltersLoaded = new boolean[runReaders.length];
+    }
+
+    /**
+     * @param key key
+     * @return value of the key in the newest run which has the key; null if no run has the key.
+     * @throws IOException
+     */
+    Slice get(Slice key) throws IOException
+    {
+      if (!timeBucketMeta.mightContainKey(key, managedStateContext.getKeyComparator())) {
+        return null;
+      }
+      for (int i = 0; i < runReaders.length; i++) {
+        Slice value = getFromRun(i, key);
+        if (value != null) {
+          return value;
+        }
+      }
+      return null;
+    }
+
+    /**
+     * Searches the runs from the newest to the oldest for keys. The keys are sorted so every run is searched in a
+     * single forward pass.
+     *
+     * @param sortedKeys keys sorted by the key comparator
+     * @param values     values of the keys which are found are added to it
+     * @throws IOException
+     */
+    void getAll(List<Slice> sortedKeys, Map<Slice, Slice> values) throws IOException
+    {
+      List<Slice> remainingKeys = Lists.newArrayListWithCapacity(sortedKeys.size());
+      for (Slice key : sortedKeys) {
+        if (timeBucketMeta.mightContainKey(key, managedStateContext.getKeyComparator())) {
+          remainingKeys.add(key);
+        }
+      }
+      for (int i = 0; i < runReaders.length && !remainingKeys.isEmpty(); i++) {
+        List<Slice> notFound = Lists.newArrayListWithCapacity(remainingKeys.size());
+        getAllFromRun(i, remainingKeys, values, notFound);
+        remainingKeys = notFound;
+      }
+    }
+
+    /**
+     * Merges the sorted keys with the entries of a run in one forward pass of its reader. The reader seeks only to a
+     * key which is ahead of its position; a key which is before its position is not in the run.
+     */
+    private void getAllFromRun(int runIndex, List<Slice> sortedKeys, Map<Slice, Slice> values, List<Slice> notFound)
+        throws IOException
+    {
+      Comparator<Slice> comparator = managedStateContext.getKeyComparator();
+      boolean positioned = false;
+      Slice readerKey = new Slice(null, 0, 0);
+      Slice readerValue = new Slice(null, 0, 0);
+      for (Slice key : sortedKeys) {
+        if (!mightContainKeyInRun(runIndex, key)) {
+          notFound.add(key);
+          continue;
+        }
+        FileAccess.FileReader reader = getRunReader(runIndex);
+        boolean found;
+        if (!positioned) {
+          //the reader may have been left anywhere by an earlier lookup
+          found = reader.seek(key);
+          positioned = true;
+        } else if (!reader.peek(readerKey, readerValue)) {
+          found = false;
+        } else {
+          int cmp = comparator.compare(readerKey, key);
+          found = cmp == 0 || (cmp < 0 && reader.seek(key));
+        }
+        if (found) {
+          Slice valSlice = new Slice(null, 0, 0);
+          reader.next(dummyGetKey, valSlice);
+          values.put(key, valSlice);
+        } else {
+          notFound.add(key);
+        }
+      }
+    }
+
+    private Slice getFromRun(int runIndex, Slice key) throws IOException
+    {
+      if (!mightContainKeyInRun(runIndex, key)) {
+        return null;
+      }
+      FileAccess.FileReader reader = getRunReader(runIndex);
+      if (reader.seek(key)) {
+        Slice valSlice = new Slice(null, 0, 0);
+        reader.next(dummyGetKey, valSlice);
+        return valSlice;
+      }
+      return null;
+    }
+
+    private boolean mightContainKeyInRun(int runIndex, Slice key) throws IOException
+    {
+      BucketsFileSystem.RunMeta run = timeBucketMeta.getRuns().get(runIndex);
+      if (!run.mightContainKey(key, managedStateContext.getKeyComparator())) {
+        //keys in a run are sorted so the key cannot be in a run whose key range doesn't include it
+        return false;
+      }
+      if (!runBloomFiltersLoaded[runIndex]) {
+        runBloomFilters[runIndex] = managedStateContext.getBucketsFileSystem().readBloomFilter(
+            timeBucketMeta.getBucketId(), timeBucketMeta.getTimeBucketId(), run.getRunId());
+        runBloomFiltersLoaded[runIndex] = true;
+      }
+      //the run doesn't have the key if its bloom filter says so and then it is not opened
+      return runBloomFilters[runIndex] == null || runBloomFilters[runIndex].mightContain(key);
+    }
+
+    private FileAccess.FileReader getRunReader(int runIndex) throws IOException
+    {
+      if (runReaders[runIndex] == null) {
+        BucketsFileSystem.RunMeta run = timeBucketMeta.getRuns().get(runIndex);
+        runReaders[runIndex] = managedStateContext.getBucketsFileSystem().getReader(timeBucketMeta.getBucketId(),
+            BucketsFileSystem.getFileName(timeBucketMeta.getTimeBucketId(), run.getRunId()));
+      }
+      return runReaders[runIndex];
+    }
+
+    BucketsFileSystem.TimeBucketMeta getTimeBucketMeta()
+    {
+      return timeBucketMeta;
+    }
+
+    @Override
+    public void close() throws IOException
+    {
+      IOException exception = null;
+      for (int i = 0; i < runReaders.length; i++) {
+        if (runReaders[i] != null) {
+          try {
+            runReaders[i].close();
+          } catch (IOException e) {
+            //will try to close all readers
+            exception = e;
+          }
+          runReaders[i] = null;
+        }
+      }
+      if (exception != null) {
+        throw exception;
+      }
+    }
+  }
 }
@@ -18,16 +18,25 @@
  */
 package org.apache.apex.malhar.lib.state.managed;
 
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
 import java.io.DataInputStream;
 import java.io.DataOutputStream;
 import java.io.IOException;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.List;
 import java.util.Map;
 import java.util.Objects;
+import java.util.PriorityQueue;
 import java.util.Set;
 import java.util.TreeMap;
 import java.util.concurrent.ConcurrentSkipListSet;
 
 import javax.annotation.Nullable;
+import javax.validation.constraints.Min;
 import javax.validation.constraints.NotNull;
 
 import org.slf4j.Logger;
@@ -38,8 +47,13 @@ import org.apache.hadoop.fs.LocatedFileStatus;
 import org.apache.hadoop.fs.RemoteIterator;
 
 import com.google.common.base.Preconditions;
+import com.google.common.collect.ArrayListMultimap;
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.Lists;
 import com.google.common.collect.Maps;
+import com.google.common.collect.Multimap;
 import com.google.common.collect.Ordering;
+import com.google.common.collect.Sets;
 import com.google.common.collect.Table;
 import com.google.common.collect.TreeBasedTable;
 
@@ -49,6 +63,12 @@ import com.datatorrent.netlet.util.Slice;
  * Persists bucket data on disk and maintains meta information about the buckets.
  * <p/>
  *
+ * The data of a time-bucket is stored in one or more immutable sorted runs. Every transfer of a window creates a new
+ * run which contains just the keys of that window, so the cost of a transfer is proportional to the size of the
+ * window's data and not to the size of the time-bucket. Runs are merged later by {@link #compactTimeBuckets(long)}
+ * which keeps the number of runs that a reader needs to search bounded.
+ * <p/>
+ *
  * Each bucket has a meta-data file and the format of that is :<br/>
  * <ol>
  * <li>version of the meta data (int)</li>
@@ -56,13 +76,41 @@ import com.datatorrent.netlet.util.Slice;
  * <li>For each time bucket
  * <ol>
  * <li>time bucket key (long)</li>
- * <li>size of data (sum of bytes) (long)</li>
  * <li>last transferred window id (long)</li>
- * <li>length of the first key in the time-bucket file (int)</li>
- * <li>first key in the time-bucket file (byte[])</li>
+ * <li>number of runs (int)</li>
+ * <li>For each run, newest to oldest
+ * <ol>
+ * <li>run id (long)</li>
+ * <li>size of data (sum of bytes) (long)</li>
+ * <li>number of keys (long)</li>
+ * <li>length of the first key in the run file (int)</li>
+ * <li>first key in the run file (byte[])</li>
+ * <li>length of the last key in the run file (int); -1 if it is not known</li>
+ * <li>last key in the run file (byte[])</li>
  * </ol>
  * </li>
+ * <li>number of obsolete runs (int)</li>
+ * <li>For each obsolete run, its run id (long)</li>
  * </ol>
+ * </li>
+ * </ol>
+ * Meta files of version 1 which describe a single file per time-bucket are still readable. Such a file is treated as
+ * the run with id 0. Meta files of version 2 are also readable. Their runs have only the run id, the size of data
+ * and the first key, so the number of keys and the last key of those runs are not known. Meta files of version 3
+ * don't have the obsolete runs.
+ * <p/>
+ *
+ * The obsolete runs of a time bucket are the runs which were replaced by compaction but whose files are not deleted
+ * yet. They are recorded in the same meta file update which replaces them, so their files are deleted after a failure
+ * as well. See {@link #deleteObsoleteRunFiles()}.
+ * <p/>
+ *
+ * The first and last keys of the runs are fence pointers: a run (or a whole time bucket) whose key range cannot
+ * contain a key is not searched for it. See {@link TimeBucketMeta#mightContainKey(Slice, Comparator)}.
+ * <p/>
+ *
+ * A {@link BlockedSliceBloomFilter} of the keys of a run is written next to the run file. It is sized from the number
+ * of keys in the run and lets the readers skip the runs which do not have a key without opening them.
  * <p/>
  * Meta data information is updated by {@link IncrementalCheckpointManager}. Any updates are restricted to the package.
  *
@@ -71,13 +119,36 @@ import com.datatorrent.netlet.util.Slice;
 public class BucketsFileSystem implements ManagedStateComponent
 {
   static final String META_FILE_NAME = "_META";
-  private static final int META_FILE_VERSION = 1;
+  static final String BLOOM_FILTER_FILE_SUFFIX = ".bloom";
+  private static final int META_FILE_VERSION = 4;
+  private static final int RUN_STATS_META_FILE_VERSION = 3;
+  private static final int RUNS_META_FILE_VERSION = 2;
+  private static final int SINGLE_RUN_META_FILE_VERSION = 1;
 
   private final transient TreeBasedTable<Long, Long, MutableTimeBucketMeta> timeBucketsMeta = TreeBasedTable.create();
 
   //Check-pointed set of all buckets this instance has written to.
   protected final Set<Long> bucketNamesOnFS = new ConcurrentSkipListSet<>();
 
+  //Time buckets which may need compaction. Accessed only by the writer thread of the checkpoint manager.
+  private final transient Set<MutableTimeBucketMeta> compactionCandidates = Sets.newLinkedHashSet();
+
+  //time bucket -> ids of the runs replaced by compaction which are deleted after two more window transfers. These are
+  //guarded by the lock on timeBucketsMeta because the runs of a meta file which is loaded are added as well.
+  private transient Multimap<MutableTimeBucketMeta, Long> obsoleteRuns = ArrayListMultimap.create();
+  private transient Multimap<MutableTimeBucketMeta, Long> retiredRuns = ArrayListMultimap.create();
+
+  @Min(2)
+  private int minRunsToCompact = 4;
+
+  @Min(2)
+  private int maxRunsPerTimeBucket = 10;
+
+  private double compactionSizeRatio = 1.0;
+
+  @Min(0)
+  private int bloomFilterBitsPerKey = 10;
+
   protected transient ManagedStateContext managedStateContext;
 
   @Override
@@ -132,7 +203,8 @@ public class BucketsFileSystem implements ManagedStateComponent
   }
 
   /**
-   * Saves data to a bucket. The data consists of key/values of all time-buckets of a particular bucket.
+   * Saves data to a bucket. The data consists of key/values of all time-buckets of a particular bucket. The data of
+   * every time-bucket is written to a new sorted run of that time-bucket.
    *
    * @param windowId        window id
    * @param bucketId        bucket id
@@ -162,57 +234,302 @@ public class BucketsFileSystem implements ManagedStateComponent
 
       long dataSize = 0;
       Slice firstKey = null;
+      Slice lastKey = null;
 
-      FileAccess.FileWriter fileWriter;
+      long runId = tbm.getNextRunId();
       String tmpFileName = getTmpFileName();
-      if (tbm.getLastTransferredWindowId() == -1) {
-        //A new time bucket so we append all the key/values to the new file
-        fileWriter = getWriter(bucketId, tmpFileName);
+      FileAccess.FileWriter fileWriter = getWriter(bucketId, tmpFileName);
 
-        for (Map.Entry<Slice, Bucket.BucketedValue> entry : timeBucketedKeys.row(timeBucket).entrySet()) {
-          Slice key = entry.getKey();
-          Slice value = entry.getValue().getValue();
+      Map<Slice, Bucket.BucketedValue> timeBucketData = timeBucketedKeys.row(timeBucket);
+      BlockedSliceBloomFilter bloomFilter = newBloomFilter(timeBucketData.size());
+      for (Map.Entry<Slice, Bucket.BucketedValue> entry : timeBucketData.entrySet()) {
+        Slice key = entry.getKey();
+        Slice value = entry.getValue().getValue();
 
-          dataSize += key.length;
-          dataSize += value.length;
+        dataSize += key.length;
+        dataSize += value.length;
 
-          fileWriter.append(key, value);
-          if (firstKey == null) {
-            firstKey = key;
-          }
+        fileWriter.append(key, value);
+        if (bloomFilter != null) {
+          bloomFilter.put(key);
         }
-      } else {
-        //the time bucket existed so we need to read the file and then re-write it
-        TreeMap<Slice, Slice> fileData = new TreeMap<>(managedStateContext.getKeyComparator());
-        FileAccess.FileReader fileReader = getReader(bucketId, getFileName(timeBucket));
-        fileReader.readFully(fileData);
-        fileReader.close();
-
-        for (Map.Entry<Slice, Bucket.BucketedValue> entry : timeBucketedKeys.row(timeBucket).entrySet()) {
-          fileData.put(entry.getKey(), entry.getValue().getValue());
+        if (firstKey == null) {
+          firstKey = key;
         }
+        lastKey = key;
+      }
+      fileWriter.close();
+      rename(bucketId, tmpFileName, getFileName(timeBucket, runId));
+      writeBloomFilter(bucketId, timeBucket, runId, bloomFilter);
 
-        fileWriter = getWriter(bucketId, tmpFileName);
-        for (Map.Entry<Slice, Slice> entry : fileData.entrySet()) {
-          Slice key = entry.getKey();
-          Slice value = entry.getValue();
+      List<RunMeta> runs = Lists.newArrayList(tbm.getRuns());
+      runs.add(0, new RunMeta(runId, dataSize, timeBucketData.size(), firstKey, lastKey));
+      tbm.updateTimeBucketMeta(windowId, runs, managedStateContext.getKeyComparator());
+      updateTimeBuckets(tbm);
 
-          dataSize += key.length;
-          dataSize += value.length;
+      if (runs.size() >= minRunsToCompact) {
+        compactionCandidates.add(tbm);
+      }
+    }
 
-          fileWriter.append(key, value);
-          if (firstKey == null) {
-            firstKey = key;
+    updateBucketMetaFile(bucketId);
+  }
+
+  /**
+   * Compacts the runs of a time bucket which was marked by {@link #writeBucketData} as a candidate for compaction.
+   * This is called by the writer thread of {@link IncrementalCheckpointManager} when there are no windows to transfer
+   * so compaction never delays the transfer of committed windows. A single time bucket is compacted per call.
+   *
+   * @param latestPurgedTimeBucket latest purged time bucket
+   * @return true if a time bucket was compacted; false otherwise.
+   * @throws IOException
+   */
+  protected boolean compactTimeBuckets(long latestPurgedTimeBucket) throws IOException
+  {
+    Iterator<MutableTimeBucketMeta> iterator = compactionCandidates.iterator();
+    while (iterator.hasNext()) {
+      MutableTimeBucketMeta tbm = iterator.next();
+      iterator.remove();
+
+      if (tbm.getTimeBucketId() <= latestPurgedTimeBucket ||
+          getMutableTimeBucketMeta(tbm.getBucketId(), tbm.getTimeBucketId()) != tbm) {
+        //time bucket was purged
+        continue;
+      }
+      List<RunMeta> runsToMerge = selectRunsToCompact(tbm.getRuns());
+      if (runsToMerge.size() > 1) {
+        mergeRuns(tbm, runsToMerge);
+        return true;
+      }
+    }
+    return false;
+  }
+
+  /**
+   * Size-tiered selection of runs. The newest run is grouped with the next older runs as long as an older run is not
+   * larger than {@link #compactionSizeRatio} times the size of the group. The group is merged when it has at least
+   * {@link #minRunsToCompact} runs. When there are more than {@link #maxRunsPerTimeBucket} runs, all the runs are
+   * merged.
+   *
+   * @param runs runs of a time bucket, newest to oldest.
+   * @return the newest runs which should be merged.
+   */
+  protected List<RunMeta> selectRunsToCompact(List<RunMeta> runs)
+  {
+    if (runs.size() > maxRunsPerTimeBucket) {
+      return runs;
+    }
+    long tierSize = runs.get(0).getSizeInBytes();
+    int numRuns = 1;
+    while (numRuns < runs.size() && runs.get(numRuns).getSizeInBytes() <= compactionSizeRatio * tierSize) {
+      tierSize += runs.get(numRuns).getSizeInBytes();
+      numRuns++;
+    }
+    if (numRuns >= minRunsToCompact) {
+      return runs.subList(0, numRuns);
+    }
+    return Collections.emptyList();
+  }
+
+  /**
+   * Merges the newest runs of a time bucket into a single run. When a key is present in multiple runs, the value from
+   * the newest run is retained.
+   *
+   * @param tbm         time bucket meta
+   * @param runsToMerge newest runs of the time bucket
+   * @throws IOException
+   */
+  private void mergeRuns(MutableTimeBucketMeta tbm, List<RunMeta> runsToMerge) throws IOException
+  {
+    long bucketId = tbm.getBucketId();
+    long timeBucket = tbm.getTimeBucketId();
+    LOG.debug("merging {} runs of bucket {} time-bucket {}", runsToMerge.size(), bucketId, timeBucket);
+
+    final Comparator<Slice> keyComparator = managedStateContext.getKeyComparator();
+    PriorityQueue<RunCursor> cursors = new PriorityQueue<>(runsToMerge.size(), new Comparator<RunCursor>()
+    {
+      @Override
+      public int compare(RunCursor o1, RunCursor o2)
+      {
+        int result = keyComparator.compare(o1.key, o2.key);
+        //newer run first
+        return result != 0 ? result : Integer.compare(o1.age, o2.age);
+      }
+    });
+
+    long runId = tbm.getNextRunId();
+    long dataSize = 0;
+    long numberOfKeys = 0;
+    Slice firstKey = null;
+    Slice lastKey = null;
+    String tmpFileName = getTmpFileName();
+    BlockedSliceBloomFilter bloomFilter = null;
+
+    List<FileAccess.FileReader> fileReaders = Lists.newArrayList();
+    try {
+      //the number of keys in the merged run is at most the sum of the keys in the runs
+      long maxNumberOfKeys = 0;
+      for (int i = 0; i < runsToMerge.size(); i++) {
+        RunMeta run = runsToMerge.get(i);
+        FileAccess.FileReader fileReader = getReader(bucketId, getFileName(timeBucket, run.getRunId()));
+        fileReaders.add(fileReader);
+        maxNumberOfKeys += run.getNumberOfKeys() >= 0 ? run.getNumberOfKeys() : countKeys(fileReader);
+        RunCursor cursor = new RunCursor(fileReader, i);
+        if (cursor.advance()) {
+          cursors.add(cursor);
+        }
+      }
+      bloomFilter = newBloomFilter(maxNumberOfKeys);
+
+      FileAccess.FileWriter fileWriter = getWriter(bucketId, tmpFileName);
+      while (!cursors.isEmpty()) {
+        RunCursor newest = cursors.poll();
+        fileWriter.append(newest.key, newest.value);
+        dataSize += newest.key.length + newest.value.length;
+        numberOfKeys++;
+        if (bloomFilter != null) {
+          bloomFilter.put(newest.key);
+        }
+        if (firstKey == null) {
+          firstKey = new Slice(newest.key.toByteArray());
+        }
+
+        //skip the stale values of the key in older runs
+        while (!cursors.isEmpty() && keyComparator.compare(cursors.peek().key, newest.key) == 0) {
+          RunCursor older = cursors.poll();
+          if (older.advance()) {
+            cursors.add(older);
           }
         }
+        Slice writtenKey = newest.key;
+        if (newest.advance()) {
+          cursors.add(newest);
+        }
+        if (cursors.isEmpty()) {
+          lastKey = new Slice(writtenKey.toByteArray());
+        }
       }
       fileWriter.close();
-      rename(bucketId, tmpFileName, getFileName(timeBucket));
-      tbm.updateTimeBucketMeta(windowId, dataSize, firstKey);
-      updateTimeBuckets(tbm);
+    } finally {
+      for (FileAccess.FileReader fileReader : fileReaders) {
+        fileReader.close();
+      }
     }
-
+    rename(bucketId, tmpFileName, getFileName(timeBucket, runId));
+    writeBloomFilter(bucketId, timeBucket, runId, bloomFilter);
+
+    List<RunMeta> runs = Lists.newArrayList(tbm.getRuns().subList(runsToMerge.size(), tbm.getRuns().size()));
+    runs.add(0, new RunMeta(runId, dataSize, numberOfKeys, firstKey, lastKey));
+    List<Long> obsoleteRunIds = Lists.newArrayListWithCapacity(runsToMerge.size());
+    for (RunMeta run : runsToMerge) {
+      obsoleteRunIds.add(run.getRunId());
+    }
+    tbm.updateTimeBucketMeta(tbm.getLastTransferredWindowId(), runs, keyComparator);
+    tbm.addObsoleteRunIds(obsoleteRunIds);
+    updateTimeBuckets(tbm);
     updateBucketMetaFile(bucketId);
+
+    synchronized (timeBucketsMeta) {
+      obsoleteRuns.putAll(tbm, obsoleteRunIds);
+    }
+  }
+
+  /**
+   * Counts the keys of a run whose number of keys is not in the meta file. The reader is reset after counting.
+   */
+  private static long countKeys(FileAccess.FileReader fileReader) throws IOException
+  {
+    long numberOfKeys = 0;
+    Slice key = new Slice(null, 0, 0);
+    Slice value = new Slice(null, 0, 0);
+    while (fileReader.next(key, value)) {
+      numberOfKeys++;
+    }
+    fileReader.reset();
+    return numberOfKeys;
+  }
+
+  @Nullable
+  private BlockedSliceBloomFilter newBloomFilter(long numberOfKeys)
+  {
+    return bloomFilterBitsPerKey > 0 ? new BlockedSliceBloomFilter(numberOfKeys, bloomFilterBitsPerKey) : null;
+  }
+
+  private void writeBloomFilter(long bucketId, long timeBucket, long runId,
+      @Nullable BlockedSliceBloomFilter bloomFilter) throws IOException
+  {
+    if (bloomFilter == null) {
+      return;
+    }
+    String tmpFileName = getTmpFileName();
+    try (DataOutputStream dos = new DataOutputStream(new BufferedOutputStream(getOutputStream(bucketId,
+        tmpFileName)))) {
+      bloomFilter.writeTo(dos);
+    }
+    rename(bucketId, tmpFileName, getBloomFilterFileName(timeBucket, runId));
+  }
+
+  /**
+   * Reads the bloom filter of a run.
+   *
+   * @param bucketId   bucket id
+   * @param timeBucket time bucket id
+   * @param runId      run id
+   * @return bloom filter of the run; null if the run doesn't have a bloom filter.
+   * @throws IOException
+   */
+  @Nullable
+  protected BlockedSliceBloomFilter readBloomFilter(long bucketId, long timeBucket, long runId) throws IOException
+  {
+    String fileName = getBloomFilterFileName(timeBucket, runId);
+    if (!exists(bucketId, fileName)) {
+      return null;
+    }
+    try (DataInputStream dis = new DataInputStream(new BufferedInputStream(getInputStream(bucketId, fileName)))) {
+      return BlockedSliceBloomFilter.readFrom(dis);
+    }
+  }
+
+  /**
+   * Deletes run files which were replaced by compaction. This is called before a window is transferred.
+   * <p/>
+   * A run file is deleted only at the second window transfer after its compaction. Compaction runs only when there
+   * are no windows to transfer, so the window of the second transfer was committed after the compaction, and the
+   * buckets release the readers of the compacted time buckets when they are committed. The obsolete runs of a meta
+   * file which is loaded after a failure are not referenced by any reader and are deleted the same way.
+   * <p/>
+   * The deleted runs are removed from the meta file afterwards. A run which is deleted again because the operator
+   * failed before that is ignored.
+   *
+   * @throws IOException
+   */
+  protected void deleteObsoleteRunFiles() throws IOException
+  {
+    Multimap<MutableTimeBucketMeta, Long> runsToDelete;
+    synchronized (timeBucketsMeta) {
+      runsToDelete = retiredRuns;
+      retiredRuns = obsoleteRuns;
+      obsoleteRuns = ArrayListMultimap.create();
+    }
+    Set<Long> changedBuckets = Sets.newHashSet();
+    for (Map.Entry<MutableTimeBucketMeta, Collection<Long>> entry : runsToDelete.asMap().entrySet()) {
+      MutableTimeBucketMeta tbm = entry.getKey();
+      for (long runId : entry.getValue()) {
+        LOG.debug("deleting run {} of bucket {} time-bucket {}", runId, tbm.getBucketId(), tbm.getTimeBucketId());
+        delete(tbm.getBucketId(), getFileName(tbm.getTimeBucketId(), runId));
+        delete(tbm.getBucketId(), getBloomFilterFileName(tbm.getTimeBucketId(), runId));
+      }
+      tbm.removeObsoleteRunIds(entry.getValue());
+      synchronized (timeBucketsMeta) {
+        if (timeBucketsMeta.get(tbm.getBucketId(), tbm.getTimeBucketId()) == tbm) {
+          //the time bucket was not purged
+          changedBuckets.add(tbm.getBucketId());
+        }
+      }
+    }
+    for (long bucketId : changedBuckets) {
+      updateBucketMetaFile(bucketId);
+    }
   }
 
   /**
@@ -225,7 +542,7 @@ public class BucketsFileSystem implements ManagedStateComponent
    * @throws IOException
    */
   @NotNull
-  private MutableTimeBucketMeta getMutableTimeBucketMeta(long bucketId, long timeBucketId) throws IOException
+  MutableTimeBucketMeta getMutableTimeBucketMeta(long bucketId, long timeBucketId) throws IOException
   {
     synchronized (timeBucketsMeta) {
       return timeBucketMetaHelper(bucketId, timeBucketId);
@@ -328,7 +645,7 @@ public class BucketsFileSystem implements ManagedStateComponent
     LOG.debug("Loading bucket meta-file {}", bucketId);
     int metaDataVersion = dis.readInt();
 
-    if (metaDataVersion == META_FILE_VERSION) {
+    if (metaDataVersion == SINGLE_RUN_META_FILE_VERSION) {
       int numberOfEntries = dis.readInt();
 
       for (int i = 0; i < numberOfEntries; i++) {
@@ -338,16 +655,72 @@ public class BucketsFileSystem implements ManagedStateComponent
 
         MutableTimeBucketMeta tbm = new MutableTimeBucketMeta(bucketId, timeBucketId);
 
-        int sizeOfFirstKey = dis.readInt();
-        byte[] firstKeyBytes = new byte[sizeOfFirstKey];
-        dis.readFully(firstKeyBytes, 0, firstKeyBytes.length);
-        tbm.updateTimeBucketMeta(lastTransferredWindow, dataSize, new Slice(firstKeyBytes));
+        tbm.updateTimeBucketMeta(lastTransferredWindow, dataSize, readKey(dis));
+
+        timeBucketsMeta.put(bucketId, timeBucketId, tbm);
+      }
+    } else if (metaDataVersion == RUNS_META_FILE_VERSION || metaDataVersion == RUN_STATS_META_FILE_VERSION ||
+        metaDataVersion == META_FILE_VERSION) {
+      int numberOfEntries = dis.readInt();
+
+      for (int i = 0; i < numberOfEntries; i++) {
+        long timeBucketId = dis.readLong();
+        long lastTransferredWindow = dis.readLong();
+
+        MutableTimeBucketMeta tbm = new MutableTimeBucketMeta(bucketId, timeBucketId);
+
+        int numberOfRuns = dis.readInt();
+        List<RunMeta> runs = Lists.newArrayListWithCapacity(numberOfRuns);
+        for (int j = 0; j < numberOfRuns; j++) {
+          long runId = dis.readLong();
+          long dataSize = dis.readLong();
+          if (metaDataVersion == RUNS_META_FILE_VERSION) {
+            runs.add(new RunMeta(runId, dataSize, -1, readKey(dis), null));
+          } else {
+            long numberOfKeys = dis.readLong();
+            Slice firstKey = readKey(dis);
+            runs.add(new RunMeta(runId, dataSize, numberOfKeys, firstKey, readKey(dis)));
+          }
+        }
+        tbm.updateTimeBucketMeta(lastTransferredWindow, runs, managedStateContext.getKeyComparator());
+
+        if (metaDataVersion == META_FILE_VERSION) {
+          int numberOfObsoleteRuns = dis.readInt();
+          List<Long> obsoleteRunIds = Lists.newArrayListWithCapacity(numberOfObsoleteRuns);
+          for (int j = 0; j < numberOfObsoleteRuns; j++) {
+            obsoleteRunIds.add(dis.readLong());
+          }
+          //the files of the obsolete runs may not have been deleted before a failure
+          tbm.addObsoleteRunIds(obsoleteRunIds);
+          obsoleteRuns.putAll(tbm, obsoleteRunIds);
+        }
 
         timeBucketsMeta.put(bucketId, timeBucketId, tbm);
       }
     }
   }
 
+  private static Slice readKey(DataInputStream dis) throws IOException
+  {
+    int sizeOfKey = dis.readInt();
+    if (sizeOfKey < 0) {
+      return null;
+    }
+    byte[] keyBytes = new byte[sizeOfKey];
+    dis.readFully(keyBytes, 0, keyBytes.length);
+    return new Slice(keyBytes);
+  }
+
+  private static void writeKey(DataOutputStream dos, @Nullable Slice key) throws IOException
+  {
+    if (key == null) {
+      dos.writeInt(-1);
+      return;
+    }
+    dos.writeInt(key.length);
+    dos.write(key.buffer, key.offset, key.length);
+  }
+
   /**
    * Saves the updated bucket meta on disk.
    *
@@ -369,10 +742,20 @@ public class BucketsFileSystem implements ManagedStateComponent
         for (Map.Entry<Long, MutableTimeBucketMeta> entry : timeBuckets.entrySet()) {
           MutableTimeBucketMeta tbm = entry.getValue();
           dos.writeLong(tbm.getTimeBucketId());
-          dos.writeLong(tbm.getSizeInBytes());
           dos.writeLong(tbm.getLastTransferredWindowId());
-          dos.writeInt(tbm.getFirstKey().length);
-          dos.write(tbm.getFirstKey().toByteArray());
+          dos.writeInt(tbm.getRuns().size());
+          for (RunMeta run : tbm.getRuns()) {
+            dos.writeLong(run.getRunId());
+            dos.writeLong(run.getSizeInBytes());
+            dos.writeLong(run.getNumberOfKeys());
+            writeKey(dos, run.getFirstKey());
+            writeKey(dos, run.getLastKey());
+          }
+          List<Long> obsoleteRunIds = tbm.getObsoleteRunIds();
+          dos.writeInt(obsoleteRunIds.size());
+          for (long runId : obsoleteRunIds) {
+            dos.writeLong(runId);
+          }
         }
 
       }
@@ -387,6 +770,7 @@ public class BucketsFileSystem implements ManagedStateComponent
     for (long bucketName : bucketNamesOnFS) {
       RemoteIterator<LocatedFileStatus> timeBucketsIterator = listFiles(bucketName);
       boolean emptyBucket = true;
+      Set<Long> expiredTimeBuckets = Sets.newTreeSet();
       while (timeBucketsIterator.hasNext()) {
         LocatedFileStatus timeBucketStatus = timeBucketsIterator.next();
 
@@ -395,11 +779,13 @@ public class BucketsFileSystem implements ManagedStateComponent
           //ignoring meta and tmp files
           continue;
         }
-        long timeBucket = Long.parseLong(timeBucketStr);
+        long timeBucket = getTimeBucket(timeBucketStr);
 
         if (timeBucket <= latestExpiredTimeBucket) {
           LOG.debug("deleting bucket {} time-bucket {}", timeBucket);
-          invalidateTimeBucket(bucketName, timeBucket);
+          if (expiredTimeBuckets.add(timeBucket)) {
+            invalidateTimeBucket(bucketName, timeBucket);
+          }
           delete(bucketName, timeBucketStatus.getPath().getName());
         } else {
           emptyBucket = false;
@@ -425,6 +811,175 @@ public class BucketsFileSystem implements ManagedStateComponent
   {
   }
 
+  /**
+   * @return minimum number of runs of similar size which are merged by compaction.
+   */
+  public int getMinRunsToCompact()
+  {
+    return minRunsToCompact;
+  }
+
+  /**
+   * Sets the minimum number of runs of similar size that are merged together by compaction.
+   *
+   * @param minRunsToCompact minimum number of runs of similar size which are merged by compaction.
+   */
+  public void setMinRunsToCompact(int minRunsToCompact)
+  {
+    this.minRunsToCompact = minRunsToCompact;
+  }
+
+  /**
+   * @return maximum number of runs of a time bucket after which all the runs are merged.
+   */
+  public int getMaxRunsPerTimeBucket()
+  {
+    return maxRunsPerTimeBucket;
+  }
+
+  /**
+   * Sets the maximum number of runs of a time bucket. When a time bucket has more runs, all of them are merged into
+   * one. This bounds the number of files that are searched for a key in a time bucket.
+   *
+   * @param maxRunsPerTimeBucket maximum number of runs of a time bucket.
+   */
+  public void setMaxRunsPerTimeBucket(int maxRunsPerTimeBucket)
+  {
+    this.maxRunsPerTimeBucket = maxRunsPerTimeBucket;
+  }
+
+  /**
+   * @return ratio which decides whether an older run is of similar size as the newer runs.
+   */
+  public double getCompactionSizeRatio()
+  {
+    return compactionSizeRatio;
+  }
+
+  /**
+   * Sets the ratio which decides whether an older run is merged with the newer runs. An older run is merged when its
+   * size is not more than this ratio times the total size of the newer runs.
+   *
+   * @param compactionSizeRatio size ratio
+   */
+  public void setCompactionSizeRatio(double compactionSizeRatio)
+  {
+    this.compactionSizeRatio = compactionSizeRatio;
+  }
+
+  /**
+   * @return number of bits per key of the bloom filters of the runs.
+   */
+  public int getBloomFilterBitsPerKey()
+  {
+    return bloomFilterBitsPerKey;
+  }
+
+  /**
+   * Sets the number of bits per key of the bloom filters which are written with the runs. About 10 bits per key give
+   * a false positive rate of about 1%. 0 disables writing bloom filters.
+   *
+   * @param bloomFilterBitsPerKey bits per key
+   */
+  public void setBloomFilterBitsPerKey(int bloomFilterBitsPerKey)
+  {
+    this.bloomFilterBitsPerKey = bloomFilterBitsPerKey;
+  }
+
+  /**
+   * Iterates over the key/values of a run while merging runs.
+   */
+  private static class RunCursor
+  {
+    private final FileAccess.FileReader fileReader;
+    //0 is the newest run
+    private final int age;
+    private Slice key;
+    private Slice value;
+
+    RunCursor(FileAccess.FileReader fileReader, int age)
+    {
+      this.fileReader = fileReader;
+      this.age = age;
+    }
+
+    boolean advance() throws IOException
+    {
+      key = new Slice(null, 0, 0);
+      value = new Slice(null, 0, 0);
+      return fileReader.next(key, value);
+    }
+  }
+
+  /**
+   * Meta information of an immutable sorted run of a time bucket.
+   */
+  public static class RunMeta
+  {
+    private final long runId;
+    private final long sizeInBytes;
+    private final long numberOfKeys;
+    private final Slice firstKey;
+    private final Slice lastKey;
+
+    private RunMeta()
+    {
+      //for kryo
+      this(-1, 0, -1, null, null);
+    }
+
+    RunMeta(long runId, long sizeInBytes, long numberOfKeys, Slice firstKey, @Nullable Slice lastKey)
+    {
+      this.runId = runId;
+      this.sizeInBytes = sizeInBytes;
+      this.numberOfKeys = numberOfKeys;
+      this.firstKey = firstKey;
+      this.lastKey = lastKey;
+    }
+
+    public long getRunId()
+    {
+      return runId;
+    }
+
+    public long getSizeInBytes()
+    {
+      return sizeInBytes;
+    }
+
+    /**
+     * @return number of keys in the run; -1 if not known.
+     */
+    public long getNumberOfKeys()
+    {
+      return numberOfKeys;
+    }
+
+    public Slice getFirstKey()
+    {
+      return firstKey;
+    }
+
+    /**
+     * @return last key in the run; null if not known.
+     */
+    @Nullable
+    public Slice getLastKey()
+    {
+      return lastKey;
+    }
+
+    /**
+     * @param key           key
+     * @param keyComparator key comparator
+     * @return false if the key is outside the key range of the run; true otherwise.
+     */
+    public boolean mightContainKey(Slice key, Comparator<Slice> keyComparator)
+    {
+      return keyComparator.compare(key, firstKey) >= 0 && (lastKey == null || keyComparator.compare(key, lastKey) <= 0);
+    }
+  }
+
   /**
    * This serves the readers - {@link Bucket.DefaultBucket}.
    * It is immutable and accessible outside the package unlike {@link MutableTimeBucketMeta}.
@@ -436,6 +991,8 @@ public class BucketsFileSystem implements ManagedStateComponent
     private long lastTransferredWindowId = -1;
     private long sizeInBytes;
     private Slice firstKey;
+    private Slice lastKey;
+    private List<RunMeta> runs = Collections.emptyList();
 
     private TimeBucketMeta()
     {
@@ -475,6 +1032,33 @@ public class BucketsFileSystem implements ManagedStateComponent
       return firstKey;
     }
 
+    /**
+     * @return largest key in the time bucket; null if not known.
+     */
+    @Nullable
+    public Slice getLastKey()
+    {
+      return lastKey;
+    }
+
+    /**
+     * @param key           key
+     * @param keyComparator key comparator
+     * @return false if the key is outside the key range of the time bucket; true otherwise.
+     */
+    public boolean mightContainKey(Slice key, Comparator<Slice> keyComparator)
+    {
+      return keyComparator.compare(key, firstKey) >= 0 && (lastKey == null || keyComparator.compare(key, lastKey) <= 0);
+    }
+
+    /**
+     * @return runs of the time bucket ordered from newest to oldest.
+     */
+    public List<RunMeta> getRuns()
+    {
+      return runs;
+    }
+
     @Override
     public boolean equals(Object o)
     {
@@ -529,17 +1113,82 @@ public class BucketsFileSystem implements ManagedStateComponent
 
     private volatile boolean changed;
 
+    private final transient List<Long> obsoleteRunIds = Lists.newArrayList();
+
     public MutableTimeBucketMeta(long bucketId, long timeBucketId)
     {
       super(bucketId, timeBucketId);
     }
 
+    /**
+     * Updates the meta of a time bucket which has a single run with id 0.
+     */
     synchronized void updateTimeBucketMeta(long lastTransferredWindow, long bytes, @NotNull Slice firstKey)
     {
       changed = true;
       super.lastTransferredWindowId = lastTransferredWindow;
       super.sizeInBytes = bytes;
       super.firstKey = Preconditions.checkNotNull(firstKey, "first key");
+      super.lastKey = null;
+      super.runs = ImmutableList.of(new RunMeta(0, bytes, -1, firstKey, null));
+    }
+
+    /**
+     * Updates the meta of a time bucket with its runs.
+     *
+     * @param lastTransferredWindow last transferred window id
+     * @param runs                  runs of the time bucket ordered from newest to oldest.
+     * @param keyComparator         key comparator
+     */
+    synchronized void updateTimeBucketMeta(long lastTransferredWindow, @NotNull List<RunMeta> runs,
+        @NotNull Comparator<Slice> keyComparator)
+    {
+      Preconditions.checkArgument(!runs.isEmpty(), "no runs");
+      long bytes = 0;
+      Slice smallestKey = null;
+      Slice largestKey = null;
+      boolean largestKeyKnown = true;
+      for (RunMeta run : runs) {
+        bytes += run.getSizeInBytes();
+        if (smallestKey == null || keyComparator.compare(run.getFirstKey(), smallestKey) < 0) {
+          smallestKey = run.getFirstKey();
+        }
+        if (run.getLastKey() == null) {
+          largestKeyKnown = false;
+        } else if (largestKey == null || keyComparator.compare(run.getLastKey(), largestKey) > 0) {
+          largestKey = run.getLastKey();
+        }
+      }
+      changed = true;
+      super.lastTransferredWindowId = lastTransferredWindow;
+      super.sizeInBytes = bytes;
+      super.firstKey = smallestKey;
+      super.lastKey = largestKeyKnown ? largestKey : null;
+      super.runs = ImmutableList.copyOf(runs);
+    }
+
+    synchronized void addObsoleteRunIds(Collection<Long> runIds)
+    {
+      obsoleteRunIds.addAll(runIds);
+    }
+
+    synchronized void removeObsoleteRunIds(Collection<Long> runIds)
+    {
+      obsoleteRunIds.removeAll(runIds);
+    }
+
+    /**
+     * @return ids of the runs which were replaced by compaction and whose files may not be deleted yet.
+     */
+    synchronized List<Long> getObsoleteRunIds()
+    {
+      return ImmutableList.copyOf(obsoleteRunIds);
+    }
+
+    synchronized long getNextRunId()
+    {
+      List<RunMeta> runs = getRuns();
+      return runs.isEmpty() ? 0 : runs.get(0).getRunId() + 1;
     }
 
     synchronized TimeBucketMeta getImmutableTimeBucketMeta()
@@ -550,6 +1199,8 @@ public class BucketsFileSystem implements ManagedStateComponent
         immutableTimeBucketMeta.lastTransferredWindowId = getLastTransferredWindowId();
         immutableTimeBucketMeta.sizeInBytes = getSizeInBytes();
         immutableTimeBucketMeta.firstKey = getFirstKey();
+        immutableTimeBucketMeta.lastKey = getLastKey();
+        immutableTimeBucketMeta.runs = getRuns();
         changed = false;
       }
       return immutableTimeBucketMeta;
@@ -562,6 +1213,34 @@ public class BucketsFileSystem implements ManagedStateComponent
     return Long.toString(timeBucketId);
   }
 
+  /**
+   * The first run of a time bucket is named after the time bucket so that the files written by older versions are
+   * the run 0 of their time bucket.
+   *
+   * @param timeBucketId time bucket id
+   * @param runId        run id
+   * @return name of the run file
+   */
+  protected static String getFileName(long timeBucketId, long runId)
+  {
+    return runId == 0 ? getFileName(timeBucketId) : timeBucketId + "." + runId;
+  }
+
+  protected static String getBloomFilterFileName(long timeBucketId, long runId)
+  {
+    return getFileName(timeBucketId, runId) + BLOOM_FILTER_FILE_SUFFIX;
+  }
+
+  /**
+   * @param fileName name of a file of a time bucket
+   * @return time bucket id
+   */
+  protected static long getTimeBucket(String fileName)
+  {
+    int separator = fileName.indexOf('.');
+    return Long.parseLong(separator == -1 ? fileName : fileName.substring(0, separator));
+  }
+
   protected static String getTmpFileName()
   {
     return System.currentTimeMillis() + ".tmp";
@@ -134,6 +134,7 @@ public class IncrementalCheckpointManager extends FSWindowDataManager
           //bucket id => bucket data(key => value, time-buckets)
           Map<Long, Map<Slice, Bucket.BucketedValue>> buckets = savedWindows.remove(windowId);
 
+          managedStateContext.getBucketsFileSystem().deleteObsoleteRunFiles();
           for (Map.Entry<Long, Map<Slice, Bucket.BucketedValue>> singleBucket : buckets.entrySet()) {
             long bucketId = singleBucket.getKey();
             managedStateContext.getBucketsFileSystem().writeBucketData(windowId, bucketId, singleBucket.getValue(), latestPurgedTimeBucket);
@@ -145,7 +146,7 @@ public class IncrementalCheckpointManager extends FSWindowDataManager
         }
 
         this.lastTransferredWindow = windowId;
-      } else {
+      } else if (!compactTimeBuckets()) {
         Thread.sleep(waitMillis);
       }
     } catch (InterruptedException ex) {
@@ -154,6 +155,22 @@ public class IncrementalCheckpointManager extends FSWindowDataManager
     }
   }
 
+  /**
+   * Compacts the runs of time buckets when there are no windows to transfer.
+   *
+   * @return true if a time bucket was compacted; false otherwise.
+   */
+  private boolean compactTimeBuckets()
+  {
+    try {
+      return managedStateContext.getBucketsFileSystem().compactTimeBuckets(latestPurgedTimeBucket);
+    } catch (Throwable t) {
+      throwable.set(t);
+      LOG.debug("compaction", t);
+      throw Throwables.propagate(t);
+    }
+  }
+
   @Override
   public void save(Object object, long windowId) throws IOException
   {
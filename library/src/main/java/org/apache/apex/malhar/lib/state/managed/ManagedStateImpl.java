@@ -18,6 +18,8 @@
  */
 package org.apache.apex.malhar.lib.state.managed;
 
+import java.util.Collection;
+import java.util.Map;
 import java.util.concurrent.Future;
 
 import javax.validation.constraints.Min;
@@ -79,6 +81,20 @@ public class ManagedStateImpl extends AbstractManagedStateImpl implements Bucket
     return getValueFromBucketAsync(bucketId, -1, key);
   }
 
+  /**
+   * Returns the future of the values of multiple keys in a bucket.<br/>
+   * The keys which are not in the bucket cache are looked up together so that every data file of the bucket is
+   * searched once for all of them.
+   *
+   * @param keys keys
+   * @return values of the keys which are found. The map is ordered by the key comparator so it can be queried with any
+   * {@link Slice}.
+   */
+  public Future<Map<Slice, Slice>> getAllAsync(long bucketId, @NotNull Collection<Slice> keys)
+  {
+    return getValuesFromBucketAsync(bucketId, -1, keys);
+  }
+
   @Override
   public void endWindow()
   {
@@ -18,6 +18,8 @@
  */
 package org.apache.apex.malhar.lib.state.managed;
 
+import java.util.Collection;
+import java.util.Map;
 import java.util.concurrent.Future;
 
 import javax.validation.constraints.Min;
@@ -87,6 +89,44 @@ public class ManagedTimeStateImpl extends AbstractManagedStateImpl implements Ti
     return getValueFromBucketAsync(bucketId, timeBucket, key);
   }
 
+  /**
+   * Returns the future of the values of multiple keys in the bucket identified by bucketId.<br/>
+   * The keys which are not in the bucket cache are looked up together and the time buckets on disk are searched once
+   * for all of them, from the newest to the oldest.
+   *
+   * @param bucketId identifier of the bucket.
+   * @param keys     keys (not null)
+   *
+   * @return values of the keys which are found. The map is ordered by the key comparator so it can be queried with any
+   * {@link Slice}.
+   */
+  public Future<Map<Slice, Slice>> getAllAsync(long bucketId, @NotNull Collection<Slice> keys)
+  {
+    return getValuesFromBucketAsync(bucketId, -1, keys);
+  }
+
+  /**
+   * Returns the future of the values of multiple keys in the bucket identified by bucketId which have the same
+   * time.<br/>
+   * The keys which are not in the bucket cache are looked up together in a single pass over the time bucket file.
+   *
+   * @param bucketId identifier of the bucket.
+   * @param time     time associated with the keys.
+   * @param keys     keys (not null)
+   *
+   * @return values of the keys which are found; all the keys are mapped to {@link BucketedState#EXPIRED} if the time
+   * is very old.
+   */
+  public Future<Map<Slice, Slice>> getAllAsync(long bucketId, long time, @NotNull Collection<Slice> keys)
+  {
+    long timeBucket = timeBucketAssigner.getTimeBucket(time);
+    if (timeBucket == -1) {
+      //time is expired so no point in looking further.
+      return getExpiredValues(keys);
+    }
+    return getValuesFromBucketAsync(bucketId, timeBucket, keys);
+  }
+
   @Min(1)
   @Override
   public long getNumBuckets()
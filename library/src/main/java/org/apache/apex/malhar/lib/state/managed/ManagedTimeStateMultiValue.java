@@ -34,9 +34,12 @@ import javax.validation.constraints.NotNull;
 import org.apache.apex.malhar.lib.codec.KryoSerializableStreamCodec;
 import org.apache.apex.malhar.lib.state.spillable.Spillable;
 
+import com.google.common.base.Function;
 import com.google.common.base.Preconditions;
+import com.google.common.collect.Maps;
 import com.google.common.collect.Multimap;
 import com.google.common.collect.Multiset;
+import com.google.common.util.concurrent.Futures;
 
 import com.datatorrent.api.StreamCodec;
 import com.datatorrent.netlet.util.Slice;
@@ -105,6 +108,45 @@ public class ManagedTimeStateMultiValue<K,V> implements Spillable.SpillableListM
     return new CompositeFuture(store.getAsync(getBucketId(k), streamCodec.toByteArray(k)));
   }
 
+  /**
+   * Returns the Futures of multiple keys from the store. The keys of a bucket are looked up together.
+   * @param keys given keys
+   * @return future of every distinct key
+   */
+  public Map<K, CompositeFuture> getAllAsync(Collection<K> keys)
+  {
+    Map<Long, Map<K, Slice>> keysPerBucket = Maps.newHashMap();
+    for (K k : keys) {
+      long bucketId = getBucketId(k);
+      Map<K, Slice> bucketKeys = keysPerBucket.get(bucketId);
+      if (bucketKeys == null) {
+        bucketKeys = Maps.newHashMap();
+        keysPerBucket.put(bucketId, bucketKeys);
+      }
+      if (!bucketKeys.containsKey(k)) {
+        bucketKeys.put(k, streamCodec.toByteArray(k));
+      }
+    }
+
+    Map<K, CompositeFuture> futures = Maps.newHashMap();
+    for (Map.Entry<Long, Map<K, Slice>> bucketEntry : keysPerBucket.entrySet()) {
+      Future<Map<Slice, Slice>> values = store.getAllAsync(bucketEntry.getKey(), bucketEntry.getValue().values());
+      for (Map.Entry<K, Slice> keyEntry : bucketEntry.getValue().entrySet()) {
+        final Slice keySlice = keyEntry.getValue();
+        futures.put(keyEntry.getKey(), new CompositeFuture(Futures.lazyTransform(values,
+            new Function<Map<Slice, Slice>, Slice>()
+            {
+              @Override
+              public Slice apply(Map<Slice, Slice> input)
+              {
+                return input.get(keySlice);
+              }
+            })));
+      }
+    }
+    return futures;
+  }
+
   @Override
   public Set<K> keySet()
   {
@@ -21,7 +21,9 @@ package org.apache.apex.malhar.lib.state.managed;
 import java.io.DataInputStream;
 import java.io.DataOutputStream;
 import java.io.IOException;
+import java.util.Collection;
 import java.util.Iterator;
+import java.util.Map;
 import java.util.Set;
 import java.util.concurrent.Future;
 import java.util.concurrent.LinkedBlockingQueue;
@@ -94,6 +96,43 @@ public class ManagedTimeUnifiedStateImpl extends AbstractManagedStateImpl implem
     return getValueFromBucketAsync(timeBucket, timeBucket, key);
   }
 
+  /**
+   * Returns the future of the values of multiple keys which have the same time.<br/>
+   * The keys which are not in the bucket cache are looked up together in a single pass over the time bucket file.
+   *
+   * @param time time associated with the keys.
+   * @param keys keys (not null)
+   * @return values of the keys which are found; all the keys are mapped to {@link BucketedState#EXPIRED} if the time
+   * is very old.
+   */
+  public Future<Map<Slice, Slice>> getAllAsync(long time, @NotNull Collection<Slice> keys)
+  {
+    long timeBucket = timeBucketAssigner.getTimeBucket(time);
+    if (timeBucket == -1) {
+      //time is expired so return expired slices.
+      return getExpiredValues(keys);
+    }
+    return getValuesFromBucketAsync(timeBucket, timeBucket, keys);
+  }
+
+  /**
+   * Returns the future of the values of multiple keys of a time bucket which was assigned earlier by the time bucket
+   * assigner. This is used by the callers which group keys by time bucket before looking them up, as the time
+   * boundaries may have moved since the time bucket of a key was assigned.
+   *
+   * @param timeBucket time bucket of the keys; -1 if the keys are expired.
+   * @param keys       keys (not null)
+   * @return values of the keys which are found; all the keys are mapped to {@link BucketedState#EXPIRED} if the
+   * time bucket is -1.
+   */
+  public Future<Map<Slice, Slice>> getAllAsyncFromTimeBucket(long timeBucket, @NotNull Collection<Slice> keys)
+  {
+    if (timeBucket == -1) {
+      return getExpiredValues(keys);
+    }
+    return getValuesFromBucketAsync(timeBucket, timeBucket, keys);
+  }
+
   @Override
   public void endWindow()
   {
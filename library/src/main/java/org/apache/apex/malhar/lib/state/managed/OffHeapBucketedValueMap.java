@@ -0,0 +1,464 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.apex.malhar.lib.state.managed;
+
+import java.nio.ByteBuffer;
+import java.util.AbstractCollection;
+import java.util.AbstractMap;
+import java.util.AbstractSet;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.Set;
+
+import com.google.common.base.Preconditions;
+import com.google.common.collect.Lists;
+import com.google.common.primitives.Ints;
+import com.google.common.primitives.Longs;
+
+import com.datatorrent.netlet.util.Slice;
+
+/**
+ * A map of keys to {@link Bucket.BucketedValue}s which keeps the keys and values in direct memory instead of the java
+ * heap.<br/>
+ * <p/>
+ * Records are appended to an arena of direct byte buffers. The format of a record is:
+ * <ol>
+ * <li>length of the key (int)</li>
+ * <li>length of the value (int)</li>
+ * <li>time bucket (long)</li>
+ * <li>key (byte[])</li>
+ * <li>value (byte[])</li>
+ * </ol>
+ * The records are indexed by an open-addressing hash table of primitive arrays which holds the hash of the key and
+ * the address of the record. So the heap footprint of the map does not grow with the number of entries apart from
+ * the two index arrays.
+ * <p/>
+ * Keys and values returned by the map are copies of the records. An update of a key appends a new record and the
+ * older record remains in the arena till the map is discarded. This suits the in-memory tiers of
+ * {@link Bucket.DefaultBucket} whose maps hold the data of a single checkpoint window.
+ * <p/>
+ * The map is thread-safe. Its iterators are not fail-fast and may skip entries which are added during iteration.
+ */
+public class OffHeapBucketedValueMap extends AbstractMap<Slice, Bucket.BucketedValue>
+{
+  private static final int HEADER_SIZE = Ints.BYTES + Ints.BYTES + Longs.BYTES;
+  private static final int INITIAL_CHUNK_SIZE = 4096;
+  private static final int MAX_CHUNK_SIZE = 1 << 20;
+  private static final int INITIAL_CAPACITY = 64;
+
+  private static final long FREE = -1;
+  private static final long REMOVED = -2;
+
+  //buffers to which records are appended
+  private final List<ByteBuffer> chunks = Lists.newArrayList();
+  //views of the chunks which are used for reading so that the position of the chunks is not disturbed
+  private final List<ByteBuffer> chunkViews = Lists.newArrayList();
+  private ByteBuffer currentChunk;
+
+  //index: address of a record is (chunk index << 32 | offset in chunk)
+  private long[] addresses;
+  private int[] hashes;
+
+  private int size;
+  //live and removed slots
+  private int usedSlots;
+
+  private long sizeInBytes;
+  private long allocatedBytes;
+
+  public OffHeapBucketedValueMap()
+  {
+    addresses = newAddresses(INITIAL_CAPACITY);
+    hashes = new int[INITIAL_CAPACITY];
+  }
+
+  @Override
+  public synchronized int size()
+  {
+    return size;
+  }
+
+  @Override
+  public synchronized boolean containsKey(Object key)
+  {
+    return key instanceof Slice && findSlot((Slice)key, hash((Slice)key)) >= 0;
+  }
+
+  @Override
+  public synchronized Bucket.BucketedValue get(Object key)
+  {
+    if (!(key instanceof Slice)) {
+      return null;
+    }
+    int slot = findSlot((Slice)key, hash((Slice)key));
+    return slot < 0 ? null : readBucketedValue(addresses[slot]);
+  }
+
+  @Override
+  public synchronized Bucket.BucketedValue put(Slice key, Bucket.BucketedValue bucketedValue)
+  {
+    Preconditions.checkNotNull(key, "key");
+    Preconditions.checkNotNull(bucketedValue.getValue(), "value");
+
+    int hash = hash(key);
+    int slot = findSlot(key, hash);
+    long address = append(key, bucketedValue);
+
+    if (slot >= 0) {
+      Bucket.BucketedValue previous = readBucketedValue(addresses[slot]);
+      addresses[slot] = address;
+      return previous;
+    }
+
+    slot = -slot - 1;
+    if (addresses[slot] == FREE) {
+      usedSlots++;
+    }
+    addresses[slot] = address;
+    hashes[slot] = hash;
+    size++;
+
+    if (usedSlots > (addresses.length >> 1) + (addresses.length >> 2)) {
+      rehash();
+    }
+    return null;
+  }
+
+  @Override
+  public synchronized Bucket.BucketedValue remove(Object key)
+  {
+    if (!(key instanceof Slice)) {
+      return null;
+    }
+    int slot = findSlot((Slice)key, hash((Slice)key));
+    if (slot < 0) {
+      return null;
+    }
+    Bucket.BucketedValue previous = readBucketedValue(addresses[slot]);
+    removeSlot(slot);
+    return previous;
+  }
+
+  @Override
+  public synchronized void clear()
+  {
+    chunks.clear();
+    chunkViews.clear();
+    currentChunk = null;
+    addresses = newAddresses(INITIAL_CAPACITY);
+    hashes = new int[INITIAL_CAPACITY];
+    size = 0;
+    usedSlots = 0;
+    sizeInBytes = 0;
+    allocatedBytes = 0;
+  }
+
+  @Override
+  public Set<Slice> keySet()
+  {
+    return new AbstractSet<Slice>()
+    {
+      @Override
+      public Iterator<Slice> iterator()
+      {
+        return new SlotIterator<Slice>()
+        {
+          @Override
+          Slice read(long address)
+          {
+            return readKey(address);
+          }
+        };
+      }
+
+      @Override
+      public int size()
+      {
+        return OffHeapBucketedValueMap.this.size();
+      }
+    };
+  }
+
+  @Override
+  public Collection<Bucket.BucketedValue> values()
+  {
+    return new AbstractCollection<Bucket.BucketedValue>()
+    {
+      @Override
+      public Iterator<Bucket.BucketedValue> iterator()
+      {
+        return new SlotIterator<Bucket.BucketedValue>()
+        {
+          @Override
+          Bucket.BucketedValue read(long address)
+          {
+            return readBucketedValue(address);
+          }
+        };
+      }
+
+      @Override
+      public int size()
+      {
+        return OffHeapBucketedValueMap.this.size();
+      }
+    };
+  }
+
+  @Override
+  public Set<Map.Entry<Slice, Bucket.BucketedValue>> entrySet()
+  {
+    return new AbstractSet<Map.Entry<Slice, Bucket.BucketedValue>>()
+    {
+      @Override
+      public Iterator<Map.Entry<Slice, Bucket.BucketedValue>> iterator()
+      {
+        return new SlotIterator<Map.Entry<Slice, Bucket.BucketedValue>>()
+        {
+          @Override
+          Map.Entry<Slice, Bucket.BucketedValue> read(long address)
+          {
+            return new SimpleImmutableEntry<>(readKey(address), readBucketedValue(address));
+          }
+        };
+      }
+
+      @Override
+      public int size()
+      {
+        return OffHeapBucketedValueMap.this.size();
+      }
+    };
+  }
+
+  /**
+   * @return bytes of the records which were appended to the arena.
+   */
+  public synchronized long getSizeInBytes()
+  {
+    return sizeInBytes;
+  }
+
+  /**
+   * @return bytes of direct memory which are allocated by the arena.
+   */
+  public synchronized long getAllocatedBytes()
+  {
+    return allocatedBytes;
+  }
+
+  private static long[] newAddresses(int capacity)
+  {
+    long[] newAddresses = new long[capacity];
+    Arrays.fill(newAddresses, FREE);
+    return newAddresses;
+  }
+
+  private static int hash(Slice key)
+  {
+    int hash = key.hashCode() * 0x9E3779B9;
+    return hash ^ (hash >>> 16);
+  }
+
+  /**
+   * @return slot of the key if the key is present; -(insertion slot + 1) otherwise.
+   */
+  private int findSlot(Slice key, int hash)
+  {
+    int mask = addresses.length - 1;
+    int insertionSlot = -1;
+    int slot = hash & mask;
+    while (addresses[slot] != FREE) {
+      long address = addresses[slot];
+      if (address == REMOVED) {
+        if (insertionSlot == -1) {
+          insertionSlot = slot;
+        }
+      } else if (hashes[slot] == hash && keyEquals(address, key)) {
+        return slot;
+      }
+      slot = (slot + 1) & mask;
+    }
+    return -((insertionSlot == -1 ? slot : insertionSlot) + 1);
+  }
+
+  private void removeSlot(int slot)
+  {
+    addresses[slot] = REMOVED;
+    size--;
+  }
+
+  private void rehash()
+  {
+    long[] oldAddresses = addresses;
+    int[] oldHashes = hashes;
+
+    int capacity = oldAddresses.length;
+    if (size > capacity >> 2) {
+      capacity <<= 1;
+    }
+    addresses = newAddresses(capacity);
+    hashes = new int[capacity];
+    usedSlots = size;
+
+    int mask = capacity - 1;
+    for (int i = 0; i < oldAddresses.length; i++) {
+      if (oldAddresses[i] >= 0) {
+        int slot = oldHashes[i] & mask;
+        while (addresses[slot] != FREE) {
+          slot = (slot + 1) & mask;
+        }
+        addresses[slot] = oldAddresses[i];
+        hashes[slot] = oldHashes[i];
+      }
+    }
+  }
+
+  private long append(Slice key, Bucket.BucketedValue bucketedValue)
+  {
+    Slice value = bucketedValue.getValue();
+    int recordSize = HEADER_SIZE + key.length + value.length;
+    if (currentChunk == null || currentChunk.remaining() < recordSize) {
+      int chunkSize = currentChunk == null ? INITIAL_CHUNK_SIZE : Math.min(currentChunk.capacity() << 1,
+          MAX_CHUNK_SIZE);
+      currentChunk = ByteBuffer.allocateDirect(Math.max(chunkSize, recordSize));
+      chunks.add(currentChunk);
+      chunkViews.add(currentChunk.duplicate());
+      allocatedBytes += currentChunk.capacity();
+    }
+
+    long address = ((long)(chunks.size() - 1) << 32) | currentChunk.position();
+    currentChunk.putInt(key.length);
+    currentChunk.putInt(value.length);
+    currentChunk.putLong(bucketedValue.getTimeBucket());
+    currentChunk.put(key.buffer, key.offset, key.length);
+    currentChunk.put(value.buffer, value.offset, value.length);
+    sizeInBytes += recordSize;
+    return address;
+  }
+
+  private ByteBuffer chunkView(long address)
+  {
+    return chunkViews.get((int)(address >>> 32));
+  }
+
+  private static int offset(long address)
+  {
+    return (int)address;
+  }
+
+  private boolean keyEquals(long address, Slice key)
+  {
+    ByteBuffer view = chunkView(address);
+    int offset = offset(address);
+    if (view.getInt(offset) != key.length) {
+      return false;
+    }
+    int keyStart = offset + HEADER_SIZE;
+    for (int i = 0; i < key.length; i++) {
+      if (view.get(keyStart + i) != key.buffer[key.offset + i]) {
+        return false;
+      }
+    }
+    return true;
+  }
+
+  private Slice readKey(long address)
+  {
+    ByteBuffer view = chunkView(address);
+    int offset = offset(address);
+    byte[] key = new byte[view.getInt(offset)];
+    view.position(offset + HEADER_SIZE);
+    view.get(key);
+    return new Slice(key);
+  }
+
+  private Bucket.BucketedValue readBucketedValue(long address)
+  {
+    ByteBuffer view = chunkView(address);
+    int offset = offset(address);
+    int keyLength = view.getInt(offset);
+    byte[] value = new byte[view.getInt(offset + Ints.BYTES)];
+    long timeBucket = view.getLong(offset + Ints.BYTES + Ints.BYTES);
+    view.position(offset + HEADER_SIZE + keyLength);
+    view.get(value);
+    return new Bucket.BucketedValue(timeBucket, new Slice(value));
+  }
+
+  /**
+   * Iterates over the live slots of the index. The iterator is not fail-fast.
+   */
+  private abstract class SlotIterator<T> implements Iterator<T>
+  {
+    private int nextSlot = -1;
+    private int lastSlot = -1;
+
+    SlotIterator()
+    {
+      synchronized (OffHeapBucketedValueMap.this) {
+        advance();
+      }
+    }
+
+    private void advance()
+    {
+      do {
+        nextSlot++;
+      } while (nextSlot < addresses.length && addresses[nextSlot] < 0);
+    }
+
+    abstract T read(long address);
+
+    @Override
+    public boolean hasNext()
+    {
+      synchronized (OffHeapBucketedValueMap.this) {
+        return nextSlot < addresses.length;
+      }
+    }
+
+    @Override
+    public T next()
+    {
+      synchronized (OffHeapBucketedValueMap.this) {
+        if (nextSlot >= addresses.length) {
+          throw new NoSuchElementException();
+        }
+        T element = read(addresses[nextSlot]);
+        lastSlot = nextSlot;
+        advance();
+        return element;
+      }
+    }
+
+    @Override
+    public void remove()
+    {
+      synchronized (OffHeapBucketedValueMap.this) {
+        Preconditions.checkState(lastSlot != -1 && addresses[lastSlot] >= 0, "no element to remove");
+        removeSlot(lastSlot);
+        lastSlot = -1;
+      }
+    }
+  }
+}
@@ -0,0 +1,345 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.apex.malhar.lib.state.spillable;
+
+import java.util.AbstractSet;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+import java.util.Set;
+
+import org.apache.hadoop.classification.InterfaceStability;
+
+import com.google.common.base.Preconditions;
+
+/**
+ * A {@link WindowBoundedCache} which keeps the entries in an open addressing table of arrays. The changed and removed
+ * keys of a window are flags of the entries, so no collections are allocated per window, and the keys which are
+ * removed are kept in the table without a value until the end of the window.<br/>
+ * <p/>
+ * At the end of the window the excess entries are evicted with a CLOCK sweep: an entry which is accessed sets its
+ * reference bit and the sweep evicts the first entry whose bit is not set, clearing the bits on its way.
+ *
+ * @param <K> The type of the keys.
+ * @param <V> The type of the values.
+ */
+@InterfaceStability.Evolving
+public class ClockWindowBoundedMapCache<K, V> implements WindowBoundedCache<K, V>
+{
+  static final byte REFERENCED = 1;
+  static final byte CHANGED = 1 << 1;
+  static final byte REMOVED = 1 << 2;
+
+  static final int INITIAL_CAPACITY = 16;
+
+  private final int maxSize;
+
+  private Object[] keys = new Object[INITIAL_CAPACITY];
+  private Object[] values = new Object[INITIAL_CAPACITY];
+  private byte[] flags = new byte[INITIAL_CAPACITY];
+  private int mask = INITIAL_CAPACITY - 1;
+
+  /**
+   * Number of occupied slots, including the removed keys.
+   */
+  private int occupied;
+  private int size;
+  private int changedCount;
+  private int removedCount;
+  private int clockHand;
+
+  private final Set<K> changedKeys = new FlaggedKeys(CHANGED);
+  private final Set<K> removedKeys = new FlaggedKeys(REMOVED);
+
+  public ClockWindowBoundedMapCache()
+  {
+    this(WindowBoundedMapCache.DEFAULT_MAX_SIZE);
+  }
+
+  public ClockWindowBoundedMapCache(int maxSize)
+  {
+    Preconditions.checkArgument(maxSize > 0);
+    this.maxSize = maxSize;
+  }
+
+  @Override
+  public void put(K key, V value)
+  {
+    Preconditions.checkNotNull(key);
+    Preconditions.checkNotNull(value);
+
+    int slot = indexOf(key);
+    if (slot < 0) {
+      slot = insert(key);
+      size++;
+    } else if ((flags[slot] & REMOVED) != 0) {
+      flags[slot] &= ~REMOVED;
+      removedCount--;
+      size++;
+    }
+    if ((flags[slot] & CHANGED) == 0) {
+      flags[slot] |= CHANGED;
+      changedCount++;
+    }
+    flags[slot] |= REFERENCED;
+    values[slot] = value;
+  }
+
+  @Override
+  @SuppressWarnings("unchecked")
+  public V get(K key)
+  {
+    Preconditions.checkNotNull(key);
+
+    int slot = indexOf(key);
+    if (slot < 0) {
+      return null;
+    }
+    flags[slot] |= REFERENCED;
+    return (V)values[slot];
+  }
+
+  @Override
+  public boolean contains(K key)
+  {
+    int slot = indexOf(key);
+    return slot >= 0 && values[slot] != null;
+  }
+
+  @Override
+  public void remove(K key)
+  {
+    Preconditions.checkNotNull(key);
+
+    int slot = indexOf(key);
+    if (slot < 0) {
+      slot = insert(key);
+    } else if ((flags[slot] & REMOVED) != 0) {
+      return;
+    } else {
+      if ((flags[slot] & CHANGED) != 0) {
+        changedCount--;
+      }
+      values[slot] = null;
+      size--;
+    }
+    flags[slot] = REMOVED;
+    removedCount++;
+  }
+
+  @Override
+  public Set<K> getChangedKeys()
+  {
+    return changedKeys;
+  }
+
+  @Override
+  public Set<K> getRemovedKeys()
+  {
+    return removedKeys;
+  }
+
+  public int size()
+  {
+    return size;
+  }
+
+  @Override
+  public void endWindow()
+  {
+    if (removedCount > 0 || changedCount > 0) {
+      for (int slot = 0; slot < flags.length; slot++) {
+        // deleting a slot shifts a later entry into it, so the slot is checked again
+        while (keys[slot] != null && (flags[slot] & REMOVED) != 0) {
+          delete(slot);
+        }
+        flags[slot] &= ~CHANGED;
+      }
+      removedCount = 0;
+      changedCount = 0;
+    }
+
+    int count = size - maxSize;
+    while (count > 0) {
+      if (keys[clockHand] == null) {
+        clockHand = (clockHand + 1) & mask;
+      } else if ((flags[clockHand] & REFERENCED) != 0) {
+        flags[clockHand] &= ~REFERENCED;
+        clockHand = (clockHand + 1) & mask;
+      } else {
+        delete(clockHand);
+        size--;
+        count--;
+      }
+    }
+  }
+
+  private int indexOf(Object key)
+  {
+    int slot = hash(key) & mask;
+    Object slotKey;
+    while ((slotKey = keys[slot]) != null) {
+      if (slotKey.equals(key)) {
+        return slot;
+      }
+      slot = (slot + 1) & mask;
+    }
+    return -1;
+  }
+
+  private int insert(K key)
+  {
+    if ((occupied + 1) * 4 > keys.length * 3) {
+      resize(keys.length << 1);
+    }
+    int slot = hash(key) & mask;
+    while (keys[slot] != null) {
+      slot = (slot + 1) & mask;
+    }
+    keys[slot] = key;
+    flags[slot] = 0;
+    occupied++;
+    return slot;
+  }
+
+  /**
+   * Deletes the entry of a slot and shifts back the entries of the probe sequence so that no tombstones are needed.
+   */
+  private void delete(int slot)
+  {
+    int hole = slot;
+    int next = (hole + 1) & mask;
+    while (keys[next] != null) {
+      int home = hash(keys[next]) & mask;
+      // the entry can move to the hole if its home slot is not cyclically in (hole, next]
+      if (((next - home) & mask) >= ((next - hole) & mask)) {
+        keys[hole] = keys[next];
+        values[hole] = values[next];
+        flags[hole] = flags[next];
+        hole = next;
+      }
+      next = (next + 1) & mask;
+    }
+    keys[hole] = null;
+    values[hole] = null;
+    flags[hole] = 0;
+    occupied--;
+  }
+
+  private void resize(int capacity)
+  {
+    Object[] oldKeys = keys;
+    Object[] oldValues = values;
+    byte[] oldFlags = flags;
+
+    keys = new Object[capacity];
+    values = new Object[capacity];
+    flags = new byte[capacity];
+    mask = capacity - 1;
+    clockHand = 0;
+
+    for (int i = 0; i < oldKeys.length; i++) {
+      if (oldKeys[i] != null) {
+        int slot = hash(oldKeys[i]) & mask;
+        while (keys[slot] != null) {
+          slot = (slot + 1) & mask;
+        }
+        keys[slot] = oldKeys[i];
+        values[slot] = oldValues[i];
+        flags[slot] = oldFlags[i];
+      }
+    }
+  }
+
+  private static int hash(Object key)
+  {
+    int h = key.hashCode() * 0x9E3779B9;
+    return h ^ (h >>> 16);
+  }
+
+  /**
+   * A view of the keys with a flag. It is backed by the table and its iteration scans the table.
+   */
+  private class FlaggedKeys extends AbstractSet<K>
+  {
+    private final byte flag;
+
+    FlaggedKeys(byte flag)
+    {
+      this.flag = flag;
+    }
+
+    @Override
+    public boolean contains(Object key)
+    {
+      if (key == null) {
+        return false;
+      }
+      int slot = indexOf(key);
+      return slot >= 0 && (flags[slot] & flag) != 0;
+    }
+
+    @Override
+    public int size()
+    {
+      return flag == CHANGED ? changedCount : removedCount;
+    }
+
+    @Override
+    public Iterator<K> iterator()
+    {
+      return new Iterator<K>()
+      {
+        private int slot = advance(0);
+
+        private int advance(int from)
+        {
+          int next = from;
+          while (next < flags.length && (keys[next] == null || (flags[next] & flag) == 0)) {
+            next++;
+          }
+          return next;
+        }
+
+        @Override
+        public boolean hasNext()
+        {
+          return slot < flags.length;
+        }
+
+        @Override
+        @SuppressWarnings("unchecked")
+        public K next()
+        {
+          if (!hasNext()) {
+            throw new NoSuchElementException();
+          }
+          K key = (K)keys[slot];
+          slot = advance(slot + 1);
+          return key;
+        }
+
+        @Override
+        public void remove()
+        {
+          throw new UnsupportedOperationException();
+        }
+      };
+    }
+  }
+}
@@ -0,0 +1,352 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.apex.malhar.lib.state.spillable;
+
+import java.util.AbstractSet;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+import java.util.Set;
+
+import org.apache.hadoop.classification.InterfaceStability;
+
+import com.google.common.base.Preconditions;
+
+/**
+ * A {@link ClockWindowBoundedMapCache} for long keys. The keys are kept in a primitive array and the methods which take
+ * a primitive key do not box it.
+ *
+ * @param <V> The type of the values.
+ */
+@InterfaceStability.Evolving
+public class LongKeyClockWindowBoundedMapCache<V> implements WindowBoundedCache<Long, V>
+{
+  private static final byte OCCUPIED = 1 << 3;
+  private static final byte REFERENCED = ClockWindowBoundedMapCache.REFERENCED;
+  private static final byte CHANGED = ClockWindowBoundedMapCache.CHANGED;
+  private static final byte REMOVED = ClockWindowBoundedMapCache.REMOVED;
+  private static final int INITIAL_CAPACITY = ClockWindowBoundedMapCache.INITIAL_CAPACITY;
+
+  private final int maxSize;
+
+  private long[] keys = new long[INITIAL_CAPACITY];
+  private Object[] values = new Object[INITIAL_CAPACITY];
+  private byte[] flags = new byte[INITIAL_CAPACITY];
+  private int mask = INITIAL_CAPACITY - 1;
+
+  /**
+   * Number of occupied slots, including the removed keys.
+   */
+  private int occupied;
+  private int size;
+  private int changedCount;
+  private int removedCount;
+  private int clockHand;
+
+  private final Set<Long> changedKeys = new FlaggedKeys(CHANGED);
+  private final Set<Long> removedKeys = new FlaggedKeys(REMOVED);
+
+  public LongKeyClockWindowBoundedMapCache()
+  {
+    this(WindowBoundedMapCache.DEFAULT_MAX_SIZE);
+  }
+
+  public LongKeyClockWindowBoundedMapCache(int maxSize)
+  {
+    Preconditions.checkArgument(maxSize > 0);
+    this.maxSize = maxSize;
+  }
+
+  @Override
+  public void put(Long key, V value)
+  {
+    put(key.longValue(), value);
+  }
+
+  public void put(long key, V value)
+  {
+    Preconditions.checkNotNull(value);
+
+    int slot = indexOf(key);
+    if (slot < 0) {
+      slot = insert(key);
+      size++;
+    } else if ((flags[slot] & REMOVED) != 0) {
+      flags[slot] &= ~REMOVED;
+      removedCount--;
+      size++;
+    }
+    if ((flags[slot] & CHANGED) == 0) {
+      flags[slot] |= CHANGED;
+      changedCount++;
+    }
+    flags[slot] |= REFERENCED;
+    values[slot] = value;
+  }
+
+  @Override
+  public V get(Long key)
+  {
+    return get(key.longValue());
+  }
+
+  @SuppressWarnings("unchecked")
+  public V get(long key)
+  {
+    int slot = indexOf(key);
+    if (slot < 0) {
+      return null;
+    }
+    flags[slot] |= REFERENCED;
+    return (V)values[slot];
+  }
+
+  @Override
+  public boolean contains(Long key)
+  {
+    return contains(key.longValue());
+  }
+
+  public boolean contains(long key)
+  {
+    int slot = indexOf(key);
+    return slot >= 0 && values[slot] != null;
+  }
+
+  @Override
+  public void remove(Long key)
+  {
+    remove(key.longValue());
+  }
+
+  public void remove(long key)
+  {
+    int slot = indexOf(key);
+    if (slot < 0) {
+      slot = insert(key);
+    } else if ((flags[slot] & REMOVED) != 0) {
+      return;
+    } else {
+      if ((flags[slot] & CHANGED) != 0) {
+        changedCount--;
+      }
+      values[slot] = null;
+      size--;
+    }
+    flags[slot] = OCCUPIED | REMOVED;
+    removedCount++;
+  }
+
+  @Override
+  public Set<Long> getChangedKeys()
+  {
+    return changedKeys;
+  }
+
+  @Override
+  public Set<Long> getRemovedKeys()
+  {
+    return removedKeys;
+  }
+
+  public int size()
+  {
+    return size;
+  }
+
+  @Override
+  public void endWindow()
+  {
+    if (removedCount > 0 || changedCount > 0) {
+      for (int slot = 0; slot < flags.length; slot++) {
+        // deleting a slot shifts a later entry into it, so the slot is checked again
+        while ((flags[slot] & REMOVED) != 0) {
+          delete(slot);
+        }
+        flags[slot] &= ~CHANGED;
+      }
+      removedCount = 0;
+      changedCount = 0;
+    }
+
+    int count = size - maxSize;
+    while (count > 0) {
+      if ((flags[clockHand] & OCCUPIED) == 0) {
+        clockHand = (clockHand + 1) & mask;
+      } else if ((flags[clockHand] & REFERENCED) != 0) {
+        flags[clockHand] &= ~REFERENCED;
+        clockHand = (clockHand + 1) & mask;
+      } else {
+        delete(clockHand);
+        size--;
+        count--;
+      }
+    }
+  }
+
+  private int indexOf(long key)
+  {
+    int slot = hash(key) & mask;
+    while ((flags[slot] & OCCUPIED) != 0) {
+      if (keys[slot] == key) {
+        return slot;
+      }
+      slot = (slot + 1) & mask;
+    }
+    return -1;
+  }
+
+  private int insert(long key)
+  {
+    if ((occupied + 1) * 4 > keys.length * 3) {
+      resize(keys.length << 1);
+    }
+    int slot = hash(key) & mask;
+    while ((flags[slot] & OCCUPIED) != 0) {
+      slot = (slot + 1) & mask;
+    }
+    keys[slot] = key;
+    flags[slot] = OCCUPIED;
+    occupied++;
+    return slot;
+  }
+
+  /**
+   * Deletes the entry of a slot and shifts back the entries of the probe sequence so that no tombstones are needed.
+   */
+  private void delete(int slot)
+  {
+    int hole = slot;
+    int next = (hole + 1) & mask;
+    while ((flags[next] & OCCUPIED) != 0) {
+      int home = hash(keys[next]) & mask;
+      // the entry can move to the hole if its home slot is not cyclically in (hole, next]
+      if (((next - home) & mask) >= ((next - hole) & mask)) {
+        keys[hole] = keys[next];
+        values[hole] = values[next];
+        flags[hole] = flags[next];
+        hole = next;
+      }
+      next = (next + 1) & mask;
+    }
+    values[hole] = null;
+    flags[hole] = 0;
+    occupied--;
+  }
+
+  private void resize(int capacity)
+  {
+    long[] oldKeys = keys;
+    Object[] oldValues = values;
+    byte[] oldFlags = flags;
+
+    keys = new long[capacity];
+    values = new Object[capacity];
+    flags = new byte[capacity];
+    mask = capacity - 1;
+    clockHand = 0;
+
+    for (int i = 0; i < oldKeys.length; i++) {
+      if ((oldFlags[i] & OCCUPIED) != 0) {
+        int slot = hash(oldKeys[i]) & mask;
+        while ((flags[slot] & OCCUPIED) != 0) {
+          slot = (slot + 1) & mask;
+        }
+        keys[slot] = oldKeys[i];
+        values[slot] = oldValues[i];
+        flags[slot] = oldFlags[i];
+      }
+    }
+  }
+
+  private static int hash(long key)
+  {
+    long h = key * 0x9E3779B97F4A7C15L;
+    return (int)(h ^ (h >>> 32));
+  }
+
+  /**
+   * A view of the keys with a flag. The keys are boxed only when the view is iterated.
+   */
+  private class FlaggedKeys extends AbstractSet<Long>
+  {
+    private final byte flag;
+
+    FlaggedKeys(byte flag)
+    {
+      this.flag = flag;
+    }
+
+    @Override
+    public boolean contains(Object key)
+    {
+      if (!(key instanceof Long)) {
+        return false;
+      }
+      int slot = indexOf((Long)key);
+      return slot >= 0 && (flags[slot] & flag) != 0;
+    }
+
+    @Override
+    public int size()
+    {
+      return flag == CHANGED ? changedCount : removedCount;
+    }
+
+    @Override
+    public Iterator<Long> iterator()
+    {
+      return new Iterator<Long>()
+      {
+        private int slot = advance(0);
+
+        private int advance(int from)
+        {
+          int next = from;
+          while (next < flags.length && (flags[next] & flag) == 0) {
+            next++;
+          }
+          return next;
+        }
+
+        @Override
+        public boolean hasNext()
+        {
+          return slot < flags.length;
+        }
+
+        @Override
+        public Long next()
+        {
+          if (!hasNext()) {
+            throw new NoSuchElementException();
+          }
+          long key = keys[slot];
+          slot = advance(slot + 1);
+          return key;
+        }
+
+        @Override
+        public void remove()
+        {
+          throw new UnsupportedOperationException();
+        }
+      };
+    }
+  }
+}
@@ -52,6 +52,9 @@ public class SpillableComplexComponentImpl implements SpillableComplexComponent
   @NotNull
   private SpillableIdentifierGenerator identifierGenerator;
 
+  @NotNull
+  private WindowBoundedCache.Type mapCacheType = WindowBoundedCache.Type.LRU;
+
   /**
    * need to make sure all the buckets are created during setup.
    */
@@ -97,6 +100,7 @@ public class SpillableComplexComponentImpl implements SpillableComplexComponent
   {
     SpillableMapImpl<K, V> map = new SpillableMapImpl<>(store, identifierGenerator.next(),
         bucket, serdeKey, serdeValue);
+    map.setCacheType(mapCacheType);
     bucketIds.add(bucket);
     componentList.add(map);
     return map;
@@ -108,6 +112,7 @@ public class SpillableComplexComponentImpl implements SpillableComplexComponent
   {
     identifierGenerator.register(identifier);
     SpillableMapImpl<K, V> map = new SpillableMapImpl<>(store, identifier, bucket, serdeKey, serdeValue);
+    map.setCacheType(mapCacheType);
     bucketIds.add(bucket);
     componentList.add(map);
     return map;
@@ -118,6 +123,7 @@ public class SpillableComplexComponentImpl implements SpillableComplexComponent
       Serde<V> serdeValue, TimeExtractor<K> timeExtractor)
   {
     SpillableMapImpl<K, V> map = new SpillableMapImpl<>(store, identifierGenerator.next(), serdeKey, serdeValue, timeExtractor);
+    map.setCacheType(mapCacheType);
     componentList.add(map);
     return map;
   }
@@ -128,6 +134,7 @@ public class SpillableComplexComponentImpl implements SpillableComplexComponent
   {
     identifierGenerator.register(identifier);
     SpillableMapImpl<K, V> map = new SpillableMapImpl<>(store, identifier, serdeKey, serdeValue, timeExtractor);
+    map.setCacheType(mapCacheType);
     componentList.add(map);
     return map;
   }
@@ -266,4 +273,19 @@ public class SpillableComplexComponentImpl implements SpillableComplexComponent
   {
     return store;
   }
+
+  public WindowBoundedCache.Type getMapCacheType()
+  {
+    return mapCacheType;
+  }
+
+  /**
+   * Sets the type of the cache of the spillable maps which are created after this call.
+   * {@link WindowBoundedCache.Type#CLOCK} avoids the allocations of the default LRU cache per access and per window.
+   * @param mapCacheType type of the cache.
+   */
+  public void setMapCacheType(@NotNull WindowBoundedCache.Type mapCacheType)
+  {
+    this.mapCacheType = Preconditions.checkNotNull(mapCacheType);
+  }
 }
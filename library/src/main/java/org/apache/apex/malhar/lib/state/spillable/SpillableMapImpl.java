@@ -54,7 +54,8 @@ public class SpillableMapImpl<K, V> implements Spillable.SpillableMap<K, V>, Spi
     Serializable
 {
   private static final long serialVersionUID = 4552547110215784584L;
-  private transient WindowBoundedMapCache<K, V> cache = new WindowBoundedMapCache<>();
+  private transient WindowBoundedCache<K, V> cache = new WindowBoundedMapCache<>();
+  private WindowBoundedCache.Type cacheType = WindowBoundedCache.Type.LRU;
   private transient Input tmpInput = new Input();
 
   private TimeExtractor<K> timeExtractor;
@@ -112,6 +113,20 @@ public class SpillableMapImpl<K, V> implements Spillable.SpillableMap<K, V>, Spi
     return this.store;
   }
 
+  public WindowBoundedCache.Type getCacheType()
+  {
+    return cacheType;
+  }
+
+  /**
+   * Sets the type of the cache of the entries which are accessed and changed. The cache is created in setup.
+   * @param cacheType type of the cache.
+   */
+  public void setCacheType(@NotNull WindowBoundedCache.Type cacheType)
+  {
+    this.cacheType = Preconditions.checkNotNull(cacheType);
+  }
+
   @Override
   public int size()
   {
@@ -225,6 +240,9 @@ public class SpillableMapImpl<K, V> implements Spillable.SpillableMap<K, V>, Spi
   @Override
   public void setup(Context.OperatorContext context)
   {
+    if (cacheType != WindowBoundedCache.Type.LRU) {
+      cache = cacheType.newCache(keyValueSerdeManager.getKeySerde(), WindowBoundedMapCache.DEFAULT_MAX_SIZE);
+    }
     store.ensureBucket(bucket);
     keyValueSerdeManager.setup(store, bucket);
   }
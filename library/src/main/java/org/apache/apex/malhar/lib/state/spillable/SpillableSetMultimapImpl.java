@@ -18,9 +18,8 @@
  */
 package org.apache.apex.malhar.lib.state.spillable;
 
-import java.util.ArrayList;
 import java.util.Collection;
-import java.util.List;
+import java.util.HashMap;
 import java.util.Map;
 import java.util.Set;
 
@@ -67,7 +66,7 @@ public class SpillableSetMultimapImpl<K, V> implements Spillable.SpillableSetMul
   private SpillableStateStore store;
   private long bucket;
   private Serde<V> valueSerde;
-  private transient List<SpillableSetImpl<V>> removedSets = new ArrayList<>();
+  private transient Map<K, SpillableSetImpl<V>> removedSets = new HashMap<>();
 
   private TimeExtractor<K> timeExtractor = null;
   private AffixKeyValueSerdeManager<K, V> keyValueSerdeManager;
@@ -139,6 +138,11 @@ public class SpillableSetMultimapImpl<K, V> implements Spillable.SpillableSetMul
   {
     SpillableSetImpl<V> spillableSet = cache.get(key);
 
+    if (spillableSet == null) {
+      // the nodes of a set removed in this window are not in the store yet, so the set is reused
+      spillableSet = removedSets.remove(key);
+    }
+
     if (spillableSet == null) {
       long keyTime = -1;
       Pair<Integer, V> meta;
@@ -205,7 +209,7 @@ public class SpillableSetMultimapImpl<K, V> implements Spillable.SpillableSetMul
       cache.remove((K)key);
       map.put((K)key, new ImmutablePair<>(0, spillableSet.getHead()));
       spillableSet.clear();
-      removedSets.add(spillableSet);
+      removedSets.put((K)key, spillableSet);
     }
     return null;
   }
@@ -346,7 +350,7 @@ public class SpillableSetMultimapImpl<K, V> implements Spillable.SpillableSetMul
       map.put(key, new ImmutablePair<>(spillableSet.size(), spillableSet.getHead()));
     }
 
-    for (SpillableSetImpl removedSet : removedSets) {
+    for (SpillableSetImpl removedSet : removedSets.values()) {
       removedSet.endWindow();
     }
     removedSets.clear();
@@ -0,0 +1,88 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.apex.malhar.lib.state.spillable;
+
+import java.util.Set;
+
+import org.apache.apex.malhar.lib.utils.serde.LongSerde;
+import org.apache.apex.malhar.lib.utils.serde.Serde;
+import org.apache.hadoop.classification.InterfaceStability;
+
+/**
+ * A cache with a maximum size which is used by spillable data structures to keep the recently accessed entries in
+ * memory. The cache tracks the keys which are changed and removed in the current window. The excess entries are kept
+ * in the cache until the end of the window when they are evicted.
+ *
+ * @param <K> The type of the keys.
+ * @param <V> The type of the values.
+ */
+@InterfaceStability.Evolving
+public interface WindowBoundedCache<K, V>
+{
+  void put(K key, V value);
+
+  V get(K key);
+
+  boolean contains(K key);
+
+  void remove(K key);
+
+  /**
+   * @return keys which are put in the current window. The returned set is only valid until the end of the window.
+   */
+  Set<K> getChangedKeys();
+
+  /**
+   * @return keys which are removed in the current window. The returned set is only valid until the end of the window.
+   */
+  Set<K> getRemovedKeys();
+
+  /**
+   * Evicts the excess entries and resets the changed and removed keys.
+   */
+  void endWindow();
+
+  /**
+   * Type of the {@link WindowBoundedCache} used by a spillable data structure.
+   */
+  enum Type
+  {
+    /**
+     * {@link WindowBoundedMapCache} which evicts the least recently put entries.
+     */
+    LRU,
+    /**
+     * {@link ClockWindowBoundedMapCache} which evicts the entries with a CLOCK sweep over an open addressing table.
+     * {@link LongKeyClockWindowBoundedMapCache} is used when the keys are serialized with {@link LongSerde}.
+     */
+    CLOCK;
+
+    @SuppressWarnings("unchecked")
+    public <K, V> WindowBoundedCache<K, V> newCache(Serde<K> keySerde, int maxSize)
+    {
+      if (this == LRU) {
+        return new WindowBoundedMapCache<>(maxSize);
+      }
+      if (keySerde instanceof LongSerde) {
+        return (WindowBoundedCache<K, V>)new LongKeyClockWindowBoundedMapCache<V>(maxSize);
+      }
+      return new ClockWindowBoundedMapCache<>(maxSize);
+    }
+  }
+}
@@ -40,7 +40,7 @@ import com.google.common.collect.Sets;
  * @since 3.5.0
  */
 @InterfaceStability.Evolving
-public class WindowBoundedMapCache<K, V>
+public class WindowBoundedMapCache<K, V> implements WindowBoundedCache<K, V>
 {
   private static final transient Logger logger = LoggerFactory.getLogger(WindowBoundedMapCache.class);
   public static final int DEFAULT_MAX_SIZE = 50000;
@@ -49,8 +49,8 @@ public class WindowBoundedMapCache<K, V>
 
   private Map<K, V> cache = Maps.newHashMap();
 
-  private Set<K> changedKeys = Sets.newHashSet();
-  private Set<K> removedKeys = Sets.newHashSet();
+  private final Set<K> changedKeys = Sets.newHashSet();
+  private final Set<K> removedKeys = Sets.newHashSet();
   private TimeBasedPriorityQueue<K> priorityQueue = new TimeBasedPriorityQueue<>();
 
   public WindowBoundedMapCache()
@@ -64,6 +64,7 @@ public class WindowBoundedMapCache<K, V>
     this.maxSize = maxSize;
   }
 
+  @Override
   public void put(K key, V value)
   {
     Preconditions.checkNotNull(key);
@@ -76,6 +77,7 @@ public class WindowBoundedMapCache<K, V>
     cache.put(key, value);
   }
 
+  @Override
   public V get(K key)
   {
     Preconditions.checkNotNull(key);
@@ -83,11 +85,13 @@ public class WindowBoundedMapCache<K, V>
     return cache.get(key);
   }
 
+  @Override
   public boolean contains(K key)
   {
     return cache.containsKey(key);
   }
 
+  @Override
   public void remove(K key)
   {
     Preconditions.checkNotNull(key);
@@ -99,11 +103,13 @@ public class WindowBoundedMapCache<K, V>
     }
   }
 
+  @Override
   public Set<K> getChangedKeys()
   {
     return changedKeys;
   }
 
+  @Override
   public Set<K> getRemovedKeys()
   {
     return removedKeys;
@@ -113,6 +119,7 @@ public class WindowBoundedMapCache<K, V>
     Note: beginWindow is intentionally not implemented because many users need a cache that does not require
     beginWindow to be called.
    */
+  @Override
   public void endWindow()
   {
     int count = cache.size() - maxSize;
@@ -125,7 +132,7 @@ public class WindowBoundedMapCache<K, V>
       }
     }
 
-    changedKeys = Sets.newHashSet();
-    removedKeys = Sets.newHashSet();
+    changedKeys.clear();
+    removedKeys.clear();
   }
 }
@@ -52,6 +52,11 @@ public class Block
   private int objectBeginOffset = 0;
   private byte[] buffer;
 
+  /**
+   * the pool of the buffer, null if the buffer is not pooled.
+   */
+  private transient BlockPool pool;
+
   /**
    * whether any slices have been exposed to the caller.
    */
@@ -71,6 +76,23 @@ public class Block
     this.capacity = capacity;
   }
 
+  /**
+   * Creates a block whose buffer is allocated from the pool. The capacity of the block is the size of the slab class of
+   * the given capacity.
+   *
+   * @param capacity minimum capacity of the block
+   * @param pool     pool of the buffers
+   */
+  public Block(int capacity, BlockPool pool)
+  {
+    if (capacity <= 0) {
+      throw new IllegalArgumentException("Invalid capacity: " + capacity);
+    }
+    this.pool = pool;
+    buffer = pool.allocate(capacity);
+    this.capacity = buffer.length;
+  }
+
   public void write(byte data)
   {
     checkOrReallocateBuffer(1);
@@ -111,7 +133,12 @@ public class Block
     capacity = (size + length) * 2;
 
     byte[] oldBuffer = buffer;
-    buffer = new byte[capacity];
+    if (pool != null) {
+      buffer = pool.allocate(capacity);
+      capacity = buffer.length;
+    } else {
+      buffer = new byte[capacity];
+    }
 
     /**
      * no slices are exposed in this block yet (this is the first object in this block).
@@ -120,6 +147,9 @@ public class Block
     if (size > 0) {
       System.arraycopy(oldBuffer, 0, buffer, 0, size);
     }
+    if (pool != null) {
+      pool.release(oldBuffer);
+    }
   }
 
   /**
@@ -211,9 +241,16 @@ public class Block
     return objectBeginOffset == size;
   }
 
+  /**
+   * Releases the buffer of the block. A pooled buffer is returned to its pool, so the slices of the block must not be
+   * used after this call.
+   */
   public void release()
   {
     reset();
+    if (pool != null && buffer != null) {
+      pool.release(buffer);
+    }
     buffer = null;
   }
 }
@@ -0,0 +1,169 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.apex.malhar.lib.utils.serde;
+
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+import com.google.common.base.Preconditions;
+import com.google.common.collect.Maps;
+
+/**
+ * A pool of the buffers of {@link Block}s which can be shared by the block streams of a container. The buffers are
+ * grouped in slab classes whose sizes are multiples of {@link #SLAB_UNIT}, so a block asks for a capacity and gets a
+ * buffer of the smallest slab class which can hold it.<br/>
+ * <p/>
+ * A buffer is released to the pool only when no slices of it are used anymore, which is when the block is released
+ * by its stream after the windows of the block are complete or when the block grows before any slice is exposed. The
+ * pool keeps up to {@link #getMaxPooledBytes()} bytes of free buffers and the rest are left to the GC.
+ * <p/>
+ * The pool is lock-free and can be used by multiple threads.
+ */
+public class BlockPool
+{
+  public static final int SLAB_UNIT = 4096;
+  public static final long DEFAULT_MAX_POOLED_BYTES = 64L * 1024 * 1024;
+
+  private static final BlockPool SHARED_POOL = new BlockPool(DEFAULT_MAX_POOLED_BYTES);
+
+  private final ConcurrentMap<Integer, Queue<byte[]>> slabs = Maps.newConcurrentMap();
+  private final AtomicLong pooledBytes = new AtomicLong();
+  private final AtomicLong allocatedBuffers = new AtomicLong();
+  private final AtomicLong reusedBuffers = new AtomicLong();
+  private volatile long maxPooledBytes;
+
+  public BlockPool(long maxPooledBytes)
+  {
+    setMaxPooledBytes(maxPooledBytes);
+  }
+
+  /**
+   * @return the pool which is shared by the block streams of the container.
+   */
+  public static BlockPool getSharedPool()
+  {
+    return SHARED_POOL;
+  }
+
+  /**
+   * Returns a free buffer of the slab class of the capacity or allocates a new one.
+   *
+   * @param capacity minimum capacity of the buffer
+   * @return a buffer whose length is the size of the slab class. The content of the buffer is undefined.
+   */
+  public byte[] allocate(int capacity)
+  {
+    Preconditions.checkArgument(capacity > 0, "capacity");
+    int slabSize = getSlabSize(capacity);
+    Queue<byte[]> slab = slabs.get(slabSize);
+    byte[] buffer = slab == null ? null : slab.poll();
+    if (buffer != null) {
+      pooledBytes.addAndGet(-buffer.length);
+      reusedBuffers.incrementAndGet();
+      return buffer;
+    }
+    allocatedBuffers.incrementAndGet();
+    return new byte[slabSize];
+  }
+
+  /**
+   * Returns a buffer to the pool. The buffer must not be used by the caller after this call.
+   *
+   * @param buffer buffer which was allocated by this pool.
+   */
+  public void release(byte[] buffer)
+  {
+    if (buffer.length % SLAB_UNIT != 0) {
+      return;
+    }
+    if (pooledBytes.addAndGet(buffer.length) > maxPooledBytes) {
+      pooledBytes.addAndGet(-buffer.length);
+      return;
+    }
+    Queue<byte[]> slab = slabs.get(buffer.length);
+    if (slab == null) {
+      Queue<byte[]> newSlab = new ConcurrentLinkedQueue<>();
+      slab = slabs.putIfAbsent(buffer.length, newSlab);
+      if (slab == null) {
+        slab = newSlab;
+      }
+    }
+    slab.offer(buffer);
+  }
+
+  /**
+   * Drops all the free buffers of the pool.
+   */
+  public void clear()
+  {
+    for (Queue<byte[]> slab : slabs.values()) {
+      byte[] buffer;
+      while ((buffer = slab.poll()) != null) {
+        pooledBytes.addAndGet(-buffer.length);
+      }
+    }
+  }
+
+  public static int getSlabSize(int capacity)
+  {
+    return (int)Math.min(((long)capacity + SLAB_UNIT - 1) / SLAB_UNIT * SLAB_UNIT, Integer.MAX_VALUE - SLAB_UNIT + 1);
+  }
+
+  /**
+   * @return bytes of the free buffers in the pool.
+   */
+  public long getPooledBytes()
+  {
+    return pooledBytes.get();
+  }
+
+  /**
+   * @return number of buffers which were allocated because the pool had no free buffer of the slab class.
+   */
+  public long getAllocatedBuffers()
+  {
+    return allocatedBuffers.get();
+  }
+
+  /**
+   * @return number of buffers which were reused from the pool.
+   */
+  public long getReusedBuffers()
+  {
+    return reusedBuffers.get();
+  }
+
+  public long getMaxPooledBytes()
+  {
+    return maxPooledBytes;
+  }
+
+  /**
+   * Sets the maximum bytes of free buffers kept by the pool.
+   *
+   * @param maxPooledBytes max bytes of free buffers.
+   */
+  public void setMaxPooledBytes(long maxPooledBytes)
+  {
+    Preconditions.checkArgument(maxPooledBytes >= 0, "max pooled bytes");
+    this.maxPooledBytes = maxPooledBytes;
+  }
+}
@@ -49,6 +49,11 @@ public class BlockStream extends OutputStream
 
   protected Block currentBlock;
 
+  /**
+   * pool of the buffers of the blocks, null if the buffers are not pooled.
+   */
+  protected transient BlockPool blockPool;
+
   public BlockStream()
   {
     this(Block.DEFAULT_BLOCK_SIZE);
@@ -132,7 +137,7 @@ public class BlockStream extends OutputStream
   {
     Block block = blocks.get(currentBlockIndex);
     if (block == null) {
-      block = new Block(blockCapacity);
+      block = blockPool == null ? new Block(blockCapacity) : new Block(blockCapacity, blockPool);
       blocks.put(currentBlockIndex, block);
     }
     return block;
@@ -178,4 +183,20 @@ public class BlockStream extends OutputStream
     reset();
     blocks.clear();
   }
+
+  public BlockPool getBlockPool()
+  {
+    return blockPool;
+  }
+
+  /**
+   * Sets the pool of the buffers of the blocks which are created after this call. The blocks which are released by
+   * the stream return their buffers to the pool.
+   *
+   * @param blockPool pool of the buffers, null to not pool the buffers.
+   */
+  public void setBlockPool(BlockPool blockPool)
+  {
+    this.blockPool = blockPool;
+  }
 }
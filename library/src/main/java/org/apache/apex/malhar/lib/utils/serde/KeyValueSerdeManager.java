@@ -104,4 +104,9 @@ public class KeyValueSerdeManager<K, V>
   {
     keyBufferForRead.release();
   }
+
+  public Serde<K> getKeySerde()
+  {
+    return keySerde;
+  }
 }
@@ -18,49 +18,47 @@
  */
 package org.apache.apex.malhar.lib.utils.serde;
 
-import java.util.Iterator;
-import java.util.Set;
-import java.util.concurrent.locks.ReadWriteLock;
-import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.Arrays;
 
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import org.apache.apex.malhar.lib.state.spillable.WindowListener;
 
-import com.google.common.collect.HashMultimap;
-import com.google.common.collect.SetMultimap;
-import com.google.common.collect.Sets;
-
 /**
  * This is a stream which manages blocks and supports window related operations.
- *
+ * <p/>
+ * A block which has data belongs to a single window because a new window never continues a block with data. So the
+ * window of each block is kept in an array indexed by the block index and the free blocks in a stack of block
+ * indexes. The stream is not thread safe and all the calls are expected from the operator thread.
  *
  * @since 3.6.0
  */
 public class WindowedBlockStream extends BlockStream implements WindowListener, WindowCompleteListener
 {
   private static final Logger logger = LoggerFactory.getLogger(WindowedBlockStream.class);
+
+  /**
+   * Window id of the blocks which are free, released or not used by any window yet.
+   */
+  protected static final long UNASSIGNED_WINDOW_ID = Long.MIN_VALUE;
+
   /**
-   * Map from windowId to blockIds
+   * Window id of each block index.
    */
-  protected SetMultimap<Long, Integer> windowToBlockIds = HashMultimap.create();
+  protected long[] blockWindowIds = new long[0];
 
   /**
-   * set of all free blockIds.
+   * Stack of the free block indexes.
    */
-  protected Set<Integer> freeBlockIds = Sets.newHashSet();
+  protected int[] freeBlockIds = new int[0];
+  protected int numFreeBlocks;
 
   // max block index; must be >= 0
   protected int maxBlockIndex = 0;
 
   protected long currentWindowId;
 
-  /**
-   * This lock is used for adding/removing block(s)
-   */
-  protected transient ReadWriteLock lock = new ReentrantReadWriteLock();
-
   protected BlockReleaseStrategy releaseStrategy = new DefaultBlockReleaseStrategy();
 
   public WindowedBlockStream()
@@ -73,6 +71,12 @@ public class WindowedBlockStream extends BlockStream implements WindowListener,
     super(blockCapacity);
   }
 
+  public WindowedBlockStream(int blockCapacity, BlockPool blockPool)
+  {
+    super(blockCapacity);
+    this.blockPool = blockPool;
+  }
+
   @Override
   public void beginWindow(long windowId)
   {
@@ -94,7 +98,7 @@ public class WindowedBlockStream extends BlockStream implements WindowListener,
     if (block.size() > 0) {
       moveToNextBlock();
     }
-    windowToBlockIds.put(currentWindowId, currentBlockIndex);
+    setBlockWindowId(currentBlockIndex, currentWindowId);
   }
 
   /**
@@ -106,22 +110,16 @@ public class WindowedBlockStream extends BlockStream implements WindowListener,
   @Override
   protected Block moveToNextBlock()
   {
-    lock.writeLock().lock();
-    try {
-      Block previousBlock = currentBlock;
-      if (!freeBlockIds.isEmpty()) {
-        currentBlockIndex = freeBlockIds.iterator().next();
-        freeBlockIds.remove(currentBlockIndex);
-        currentBlock = this.blocks.get(currentBlockIndex);
-      } else {
-        currentBlockIndex = ++maxBlockIndex;
-        currentBlock = getOrCreateCurrentBlock();
-      }
-      windowToBlockIds.put(currentWindowId, currentBlockIndex);
-      return previousBlock;
-    } finally {
-      lock.writeLock().unlock();
+    Block previousBlock = currentBlock;
+    if (numFreeBlocks > 0) {
+      currentBlockIndex = freeBlockIds[--numFreeBlocks];
+      currentBlock = this.blocks.get(currentBlockIndex);
+    } else {
+      currentBlockIndex = ++maxBlockIndex;
+      currentBlock = getOrCreateCurrentBlock();
     }
+    setBlockWindowId(currentBlockIndex, currentWindowId);
+    return previousBlock;
   }
 
   @Override
@@ -133,58 +131,59 @@ public class WindowedBlockStream extends BlockStream implements WindowListener,
   @Override
   public void completeWindow(long windowId)
   {
-    lock.writeLock().lock();
-    try {
-      Set<Long> windIds = Sets.newHashSet(windowToBlockIds.keySet());
-      for (long windId : windIds) {
-        if (windId <= windowId) {
-          resetWindow(windId);
-        }
-      }
-    } finally {
-      lock.writeLock().unlock();
-    }
+    resetWindows(UNASSIGNED_WINDOW_ID + 1, windowId);
   }
 
   protected void resetWindow(long windowId)
   {
-    lock.writeLock().lock();
-    try {
-      Set<Integer> removedBlockIds = windowToBlockIds.removeAll(windowId);
+    resetWindows(windowId, windowId);
+  }
 
-      int removedSize = 0;
-      for (int blockId : removedBlockIds) {
-        removedSize += blocks.get(blockId).size();
-        Block theBlock = blocks.get(blockId);
-        theBlock.reset();
-        if (theBlock == currentBlock) {
-          //the client code could ask reset up to current window
-          //but the reset block should not be current block. current block should be reassigned.
-          moveToNextBlock();
-        }
-        logger.debug("reset block: {}, currentBlock: {}", blockId, theBlock);
+  /**
+   * Resets the blocks of the windows in the range and makes them free.
+   */
+  private void resetWindows(long fromWindowId, long toWindowId)
+  {
+    boolean currentBlockReset = false;
+    for (int blockId = 0; blockId < blockWindowIds.length; blockId++) {
+      long blockWindowId = blockWindowIds[blockId];
+      if (blockWindowId < fromWindowId || blockWindowId > toWindowId) {
+        continue;
       }
-
-      freeBlockIds.addAll(removedBlockIds);
-      size -= removedSize;
-    } finally {
-      lock.writeLock().unlock();
+      blockWindowIds[blockId] = UNASSIGNED_WINDOW_ID;
+      Block theBlock = blocks.get(blockId);
+      size -= theBlock.size();
+      theBlock.reset();
+      if (blockId == currentBlockIndex) {
+        currentBlockReset = true;
+      } else {
+        pushFreeBlock(blockId);
+      }
+      logger.debug("reset block: {}, currentBlock: {}", blockId, theBlock);
+    }
+    if (currentBlockReset) {
+      //the client code could ask reset up to current window
+      //but the reset block should not be current block. current block should be reassigned.
+      int resetBlockId = currentBlockIndex;
+      moveToNextBlock();
+      pushFreeBlock(resetBlockId);
     }
   }
 
   @Override
   public void reset()
   {
-    lock.writeLock().lock();
-    try {
-      super.reset();
+    super.reset();
 
-      //all blocks are free now except the current one
-      freeBlockIds.addAll(blocks.keySet());
-      freeBlockIds.remove(currentBlockIndex);
-    } finally {
-      lock.writeLock().unlock();
+    //all blocks are free now except the current one
+    numFreeBlocks = 0;
+    Arrays.fill(blockWindowIds, UNASSIGNED_WINDOW_ID);
+    for (int blockId : blocks.keySet()) {
+      if (blockId != currentBlockIndex) {
+        pushFreeBlock(blockId);
+      }
     }
+    setBlockWindowId(currentBlockIndex, currentWindowId);
   }
 
   /**
@@ -194,33 +193,24 @@ public class WindowedBlockStream extends BlockStream implements WindowListener,
    */
   public long dataSizeUpToWindow(long windowId)
   {
-    lock.readLock().lock();
-    try {
-      long totalSize = 0;
-      for (long winId : windowToBlockIds.keySet()) {
-        totalSize += dataSizeOfWindow(winId);
+    long totalSize = 0;
+    for (int blockId = 0; blockId < blockWindowIds.length; blockId++) {
+      if (blockWindowIds[blockId] != UNASSIGNED_WINDOW_ID && blockWindowIds[blockId] <= windowId) {
+        totalSize += blocks.get(blockId).size();
       }
-      return totalSize;
-    } finally {
-      lock.readLock().unlock();
     }
+    return totalSize;
   }
 
   protected long dataSizeOfWindow(long windowId)
   {
-    lock.readLock().lock();
-    try {
-      long sizeOfWindow = 0;
-      Set<Integer> blockIds = windowToBlockIds.get(windowId);
-      if (blockIds != null) {
-        for (int blockId : blockIds) {
-          sizeOfWindow += blocks.get(blockId).size();
-        }
+    long sizeOfWindow = 0;
+    for (int blockId = 0; blockId < blockWindowIds.length; blockId++) {
+      if (blockWindowIds[blockId] == windowId) {
+        sizeOfWindow += blocks.get(blockId).size();
       }
-      return sizeOfWindow;
-    } finally {
-      lock.readLock().unlock();
     }
+    return sizeOfWindow;
   }
 
   public void releaseMemory()
@@ -228,23 +218,17 @@ public class WindowedBlockStream extends BlockStream implements WindowListener,
     /**
      * report and release extra blocks
      */
-    releaseStrategy.currentFreeBlocks(freeBlockIds.size());
-    int releasingBlocks = Math.min(releaseStrategy.getNumBlocksToRelease(), freeBlockIds.size());
-    int releasedBlocks = 0;
-    Iterator<Integer> iter = freeBlockIds.iterator();
-    while (releasedBlocks < releasingBlocks) {
-      //release blocks
-      int blockId = iter.next();
-      iter.remove();
-      blocks.remove(blockId);
-      releasedBlocks++;
+    releaseStrategy.currentFreeBlocks(numFreeBlocks);
+    int releasingBlocks = Math.min(releaseStrategy.getNumBlocksToRelease(), numFreeBlocks);
+    for (int releasedBlocks = 0; releasedBlocks < releasingBlocks; releasedBlocks++) {
+      releaseBlock(freeBlockIds[--numFreeBlocks]);
     }
 
     /**
      * report number of released blocks
      */
-    if (releasedBlocks > 0) {
-      releaseStrategy.releasedBlocks(releasedBlocks);
+    if (releasingBlocks > 0) {
+      releaseStrategy.releasedBlocks(releasingBlocks);
     }
   }
 
@@ -254,15 +238,9 @@ public class WindowedBlockStream extends BlockStream implements WindowListener,
    */
   public void releaseAllFreeMemory()
   {
-    int releasedBlocks = 0;
-
-    Iterator<Integer> iter = freeBlockIds.iterator();
-    while (iter.hasNext()) {
-      //release blocks
-      int blockId = iter.next();
-      iter.remove();
-      blocks.remove(blockId);
-      releasedBlocks++;
+    int releasedBlocks = numFreeBlocks;
+    while (numFreeBlocks > 0) {
+      releaseBlock(freeBlockIds[--numFreeBlocks]);
     }
 
     /**
@@ -272,4 +250,30 @@ public class WindowedBlockStream extends BlockStream implements WindowListener,
       releaseStrategy.releasedBlocks(releasedBlocks);
     }
   }
+
+  /**
+   * Removes a free block from the stream. The buffer of a pooled block is returned to the pool.
+   */
+  private void releaseBlock(int blockId)
+  {
+    blocks.remove(blockId).release();
+  }
+
+  private void pushFreeBlock(int blockId)
+  {
+    if (numFreeBlocks == freeBlockIds.length) {
+      freeBlockIds = Arrays.copyOf(freeBlockIds, Math.max(8, numFreeBlocks * 2));
+    }
+    freeBlockIds[numFreeBlocks++] = blockId;
+  }
+
+  private void setBlockWindowId(int blockId, long windowId)
+  {
+    if (blockId >= blockWindowIds.length) {
+      int length = blockWindowIds.length;
+      blockWindowIds = Arrays.copyOf(blockWindowIds, Math.max(Math.max(8, blockId + 1), length * 2));
+      Arrays.fill(blockWindowIds, length, blockWindowIds.length, UNASSIGNED_WINDOW_ID);
+    }
+    blockWindowIds[blockId] = windowId;
+  }
 }
@@ -0,0 +1,402 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.apex.malhar.lib.wal;
+
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.util.ArrayDeque;
+import java.util.EnumSet;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import org.apache.hadoop.fs.CreateFlag;
+import org.apache.hadoop.fs.FileContext;
+import org.apache.hadoop.fs.Options;
+import org.apache.hadoop.fs.Path;
+import org.apache.hadoop.fs.Syncable;
+
+import com.google.common.base.Preconditions;
+import com.google.common.primitives.Ints;
+
+import com.datatorrent.common.util.NameableThreadFactory;
+import com.datatorrent.netlet.util.Slice;
+
+/**
+ * The output of a {@link FileSystemWAL.FileSystemWALWriter} when the WAL writes asynchronously.<br/>
+ * <p/>
+ * The operator thread copies the entries to a bounded ring buffer and queues the operations on the part files (open,
+ * flush and close) with the position in the ring buffer at which they apply. A background thread appends all the
+ * bytes available up to the next operation with a single write and then performs the operation. The flushes which
+ * are queued before the background thread gets to them are done together as a group commit.
+ * <p/>
+ * The operator thread is blocked only when the ring buffer is full and in {@link #awaitCompletion()}, which is called
+ * at the checkpoint barriers of the WAL. A failure of the background thread is thrown by the next call of the
+ * operator thread.
+ */
+class AsyncFileSystemWALOutput
+{
+  private enum CommandType
+  {
+    OPEN, ADOPT, FLUSH, CLOSE
+  }
+
+  private static class Command
+  {
+    final CommandType type;
+    final long position;
+    final Path path;
+    final boolean append;
+    final DataOutputStream stream;
+
+    Command(CommandType type, long position, Path path, boolean append, DataOutputStream stream)
+    {
+      this.type = type;
+      this.position = position;
+      this.path = path;
+      this.append = append;
+      this.stream = stream;
+    }
+  }
+
+  private final FileContext fileContext;
+  private final byte[] ring;
+
+  private final ReentrantLock lock = new ReentrantLock();
+  private final Condition notFull = lock.newCondition();
+  private final Condition notEmpty = lock.newCondition();
+  private final Condition progressed = lock.newCondition();
+
+  //guarded by lock. positions are the number of bytes put into and taken out of the ring buffer.
+  private long writePosition;
+  private long readPosition;
+  private final ArrayDeque<Command> commands = new ArrayDeque<>();
+  private long queuedCommands;
+  private long completedCommands;
+  private IOException failure;
+  private boolean stopped;
+
+  //operator thread
+  private boolean open;
+  private final byte[] lengthBytes = new byte[Ints.BYTES];
+
+  //background thread
+  private DataOutputStream outputStream;
+  private volatile long writes;
+  private volatile long flushes;
+
+  private final ExecutorService writerService;
+
+  AsyncFileSystemWALOutput(FileContext fileContext, int bufferSize)
+  {
+    Preconditions.checkArgument(bufferSize > 0, "buffer size");
+    this.fileContext = fileContext;
+    this.ring = new byte[bufferSize];
+    writerService = Executors.newSingleThreadExecutor(new NameableThreadFactory("fs-wal-writer"));
+    writerService.submit(new Runnable()
+    {
+      @Override
+      public void run()
+      {
+        try {
+          writeLoop();
+        } catch (Throwable t) {
+          LOG.error("async wal write", t);
+          lock.lock();
+          try {
+            failure = t instanceof IOException ? (IOException)t : new IOException(t);
+            notFull.signalAll();
+            progressed.signalAll();
+          } finally {
+            lock.unlock();
+          }
+        }
+      }
+    });
+  }
+
+  /**
+   * @return true if a part file is open for the operator thread; false otherwise.
+   */
+  boolean isOpen()
+  {
+    return open;
+  }
+
+  void open(Path path, boolean append) throws IOException
+  {
+    queue(CommandType.OPEN, path, append, null);
+    open = true;
+  }
+
+  /**
+   * Continues writing to a stream which was opened by the operator thread.
+   */
+  void adopt(DataOutputStream stream) throws IOException
+  {
+    queue(CommandType.ADOPT, null, false, stream);
+    open = true;
+  }
+
+  void flush() throws IOException
+  {
+    queue(CommandType.FLUSH, null, false, null);
+  }
+
+  void close() throws IOException
+  {
+    queue(CommandType.CLOSE, null, false, null);
+    open = false;
+  }
+
+  /**
+   * Copies an entry, prefixed by its length, to the ring buffer.
+   */
+  void write(Slice entry) throws IOException
+  {
+    lengthBytes[0] = (byte)(entry.length >>> 24);
+    lengthBytes[1] = (byte)(entry.length >>> 16);
+    lengthBytes[2] = (byte)(entry.length >>> 8);
+    lengthBytes[3] = (byte)entry.length;
+    lock.lock();
+    try {
+      put(lengthBytes, 0, lengthBytes.length);
+      put(entry.buffer, entry.offset, entry.length);
+    } finally {
+      lock.unlock();
+    }
+  }
+
+  /**
+   * Waits till all the entries and operations which were queued are done by the background thread.
+   */
+  void awaitCompletion() throws IOException
+  {
+    lock.lock();
+    try {
+      while ((readPosition < writePosition || completedCommands < queuedCommands) && failure == null) {
+        progressed.await();
+      }
+      checkFailure();
+    } catch (InterruptedException e) {
+      throw new InterruptedIOException("awaiting wal writes");
+    } finally {
+      lock.unlock();
+    }
+  }
+
+  /**
+   * Waits till the queued entries and operations are done and stops the background thread.
+   */
+  void stop() throws IOException
+  {
+    try {
+      awaitCompletion();
+    } finally {
+      lock.lock();
+      try {
+        stopped = true;
+        notEmpty.signal();
+      } finally {
+        lock.unlock();
+      }
+      writerService.shutdown();
+      try {
+        writerService.awaitTermination(1, TimeUnit.MINUTES);
+      } catch (InterruptedException e) {
+        throw new InterruptedIOException("stopping wal writer");
+      }
+      if (outputStream != null) {
+        outputStream.close();
+        outputStream = null;
+      }
+    }
+  }
+
+  /**
+   * @return number of writes of the background thread. Each write appends all the entries which were available.
+   */
+  long getWrites()
+  {
+    return writes;
+  }
+
+  /**
+   * @return number of flushes of the background thread.
+   */
+  long getFlushes()
+  {
+    return flushes;
+  }
+
+  private void queue(CommandType type, Path path, boolean append, DataOutputStream stream) throws IOException
+  {
+    lock.lock();
+    try {
+      checkFailure();
+      commands.add(new Command(type, writePosition, path, append, stream));
+      queuedCommands++;
+      notEmpty.signal();
+    } finally {
+      lock.unlock();
+    }
+  }
+
+  private void put(byte[] bytes, int offset, int length) throws IOException
+  {
+    int remaining = length;
+    int from = offset;
+    try {
+      while (remaining > 0) {
+        while (writePosition - readPosition == ring.length && failure == null) {
+          notFull.await();
+        }
+        checkFailure();
+        int index = (int)(writePosition % ring.length);
+        int count = Math.min(remaining, Math.min(ring.length - (int)(writePosition - readPosition), ring.length - index));
+        System.arraycopy(bytes, from, ring, index, count);
+        writePosition += count;
+        from += count;
+        remaining -= count;
+        notEmpty.signal();
+      }
+    } catch (InterruptedException e) {
+      throw new InterruptedIOException("writing to wal");
+    }
+  }
+
+  private void checkFailure() throws IOException
+  {
+    if (failure != null) {
+      throw new IOException("async wal write failed", failure);
+    }
+  }
+
+  private void writeLoop() throws IOException, InterruptedException
+  {
+    int groupedFlushes = 0;
+    while (true) {
+      long from;
+      long to;
+      Command command;
+      lock.lock();
+      try {
+        while (readPosition == writePosition && commands.isEmpty() && !stopped) {
+          notEmpty.await();
+        }
+        if (readPosition == writePosition && commands.isEmpty()) {
+          return;
+        }
+        command = commands.peek();
+        from = readPosition;
+        to = command != null ? command.position : writePosition;
+      } finally {
+        lock.unlock();
+      }
+
+      if (to > from) {
+        writeRing(from, to);
+      }
+
+      lock.lock();
+      try {
+        readPosition = to;
+        notFull.signal();
+        if (command != null) {
+          commands.poll();
+          if (command.type == CommandType.FLUSH && !commands.isEmpty() &&
+              commands.peek().type == CommandType.FLUSH) {
+            //group commit with the next flush
+            groupedFlushes++;
+            continue;
+          }
+        } else {
+          progressed.signalAll();
+        }
+      } finally {
+        lock.unlock();
+      }
+
+      if (command != null) {
+        execute(command);
+        lock.lock();
+        try {
+          completedCommands += 1 + groupedFlushes;
+          groupedFlushes = 0;
+          progressed.signalAll();
+        } finally {
+          lock.unlock();
+        }
+      }
+    }
+  }
+
+  private void writeRing(long from, long to) throws IOException
+  {
+    Preconditions.checkState(outputStream != null, "no open part file");
+    int index = (int)(from % ring.length);
+    int length = (int)(to - from);
+    int firstLength = Math.min(length, ring.length - index);
+    outputStream.write(ring, index, firstLength);
+    if (firstLength < length) {
+      outputStream.write(ring, 0, length - firstLength);
+    }
+    writes++;
+  }
+
+  private void execute(Command command) throws IOException
+  {
+    switch (command.type) {
+      case OPEN:
+        Preconditions.checkState(outputStream == null, "output stream is not null");
+        outputStream = fileContext.create(command.path, command.append ?
+            EnumSet.of(CreateFlag.CREATE, CreateFlag.APPEND) : EnumSet.of(CreateFlag.CREATE, CreateFlag.OVERWRITE),
+            Options.CreateOpts.CreateParent.createParent());
+        break;
+      case ADOPT:
+        Preconditions.checkState(outputStream == null, "output stream is not null");
+        outputStream = command.stream;
+        break;
+      case FLUSH:
+        if (outputStream != null) {
+          Syncable syncableOutputStream = (Syncable)outputStream;
+          syncableOutputStream.hflush();
+          syncableOutputStream.hsync();
+          flushes++;
+        }
+        break;
+      case CLOSE:
+        if (outputStream != null) {
+          outputStream.close();
+          outputStream = null;
+        }
+        break;
+      default:
+        throw new IllegalStateException("unknown command " + command.type);
+    }
+  }
+
+  private static final Logger LOG = LoggerFactory.getLogger(AsyncFileSystemWALOutput.class);
+}
@@ -18,18 +18,29 @@
  */
 package org.apache.apex.malhar.lib.wal;
 
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
 import java.io.IOException;
+import java.io.InterruptedIOException;
 import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.EnumSet;
 import java.util.HashMap;
 import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
+import java.util.NavigableMap;
 import java.util.NavigableSet;
 import java.util.Set;
 import java.util.SortedSet;
 import java.util.TreeSet;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 
+import javax.validation.constraints.Min;
 import javax.validation.constraints.NotNull;
 
 import org.slf4j.Logger;
@@ -41,8 +52,10 @@ import org.apache.apex.malhar.lib.util.KryoCloneUtils;
 import org.apache.apex.malhar.lib.utils.FileContextUtils;
 import org.apache.apex.malhar.lib.utils.serde.SerializationBuffer;
 import org.apache.apex.malhar.lib.utils.serde.WindowedBlockStream;
+import org.apache.hadoop.fs.CreateFlag;
 import org.apache.hadoop.fs.FileContext;
 import org.apache.hadoop.fs.FileStatus;
+import org.apache.hadoop.fs.Options;
 import org.apache.hadoop.fs.Path;
 import org.apache.hadoop.fs.RemoteIterator;
 
@@ -50,6 +63,7 @@ import com.esotericsoftware.kryo.Kryo;
 import com.esotericsoftware.kryo.io.Input;
 import com.google.common.annotations.VisibleForTesting;
 import com.google.common.base.Preconditions;
+import com.google.common.base.Throwables;
 import com.google.common.collect.ImmutableSet;
 import com.google.common.collect.Maps;
 import com.google.common.primitives.Longs;
@@ -57,6 +71,7 @@ import com.google.common.primitives.Longs;
 import com.datatorrent.api.Context;
 import com.datatorrent.api.DAG;
 import com.datatorrent.api.annotation.Stateless;
+import com.datatorrent.common.util.NameableThreadFactory;
 import com.datatorrent.netlet.util.Slice;
 
 /**
@@ -104,12 +119,26 @@ import com.datatorrent.netlet.util.Slice;
  * window. {@link #retrieveAllPartitions(long)} retrieves the artifacts of all partitions wrt a completed window.
  *
  *
+ * <p/>
+ * <b>Recovery</b><br/>
+ * Every wal keeps a sparse index of its durable windows which maps a window id to the position of the window in the
+ * part files. The index is written next to the part files when windows are committed and it is used during recovery
+ * to start reading the part files from the nearest indexed window instead of from the beginning, both when finding
+ * the largest completed window and when retrieving the first window that is replayed. An index which is missing or
+ * doesn't match the part files is ignored.<br/>
+ * After re-partitioning, the wals of the other partitions are recovered and replayed concurrently by
+ * {@link #getRecoveryThreads()} threads.
+ *
  * @since 3.4.0
  */
 public class FSWindowDataManager implements WindowDataManager
 {
   private static final String DEF_STATE_PATH = "idempotentState";
   private static final String WAL_FILE_NAME = "wal";
+  private static final String WINDOW_INDEX_FILE_NAME = "windowIndex";
+
+  public static final int DEFAULT_WINDOW_INDEX_INTERVAL = 64 * 1024;
+  public static final int DEFAULT_RECOVERY_THREADS = 4;
 
   /**
    * State path relative to app filePath where state is saved.
@@ -135,6 +164,12 @@ public class FSWindowDataManager implements WindowDataManager
    */
   private boolean relyOnCheckpoints;
 
+  @Min(1)
+  private int windowIndexInterval = DEFAULT_WINDOW_INDEX_INTERVAL;
+
+  @Min(1)
+  private int recoveryThreads = DEFAULT_RECOVERY_THREADS;
+
   private transient long largestCompletedWindow = Stateless.WINDOW_ID;
 
   private final FSWindowReplayWAL wal = new FSWindowReplayWAL();
@@ -151,6 +186,8 @@ public class FSWindowDataManager implements WindowDataManager
 
   private transient SerializationBuffer serializationBuffer;
 
+  private transient ExecutorService recoveryService;
+
   public FSWindowDataManager()
   {
     kryo.setClassLoader(Thread.currentThread().getContextClassLoader());
@@ -176,18 +213,11 @@ public class FSWindowDataManager implements WindowDataManager
     }
   }
 
-  private void setupWals(long activationWindow) throws IOException
+  private void setupWals(final long activationWindow) throws IOException
   {
     findFiles(wal, operatorId);
     configureWal(wal, operatorId, !relyOnCheckpoints);
-
-    if (repartitioned) {
-      createReadOnlyWals();
-      for (Map.Entry<Integer, FSWindowReplayWAL> entry : readOnlyWals.entrySet()) {
-        findFiles(entry.getValue(), entry.getKey());
-        configureWal(entry.getValue(), entry.getKey(), true);
-      }
-    }
+    readWindowIndex(wal, operatorId);
 
     //find largest completed window
     if (!relyOnCheckpoints) {
@@ -205,20 +235,38 @@ public class FSWindowDataManager implements WindowDataManager
       largestCompletedWindow = wal.getLastCheckpointedWindow();
     }
 
-    if (repartitioned && largestCompletedWindow > Stateless.WINDOW_ID) {
-      //find the min of max window ids: a downstream will not finish a window until all the upstream have finished it.
-      for (Map.Entry<Integer, FSWindowReplayWAL> entry : readOnlyWals.entrySet()) {
+    if (repartitioned) {
+      createReadOnlyWals();
+      final boolean findCompletedWindows = largestCompletedWindow > Stateless.WINDOW_ID;
 
-        long completedWindow = Stateless.WINDOW_ID;
-        if (!relyOnCheckpoints) {
-          long window = findLargestCompletedWindow(entry.getValue(), null);
-          if (window > activationWindow) {
-            completedWindow = window;
+      //the wals of the other partitions are independent so they are recovered concurrently.
+      Map<Integer, Callable<Long>> recoveries = new HashMap<>();
+      for (Map.Entry<Integer, FSWindowReplayWAL> entry : readOnlyWals.entrySet()) {
+        final int readOnlyOperatorId = entry.getKey();
+        final FSWindowReplayWAL readOnlyWal = entry.getValue();
+        recoveries.put(readOnlyOperatorId, new Callable<Long>()
+        {
+          @Override
+          public Long call() throws IOException
+          {
+            findFiles(readOnlyWal, readOnlyOperatorId);
+            configureWal(readOnlyWal, readOnlyOperatorId, true);
+            readWindowIndex(readOnlyWal, readOnlyOperatorId);
+
+            if (!findCompletedWindows) {
+              return Stateless.WINDOW_ID;
+            }
+            if (!relyOnCheckpoints) {
+              long window = findLargestCompletedWindow(readOnlyWal, null);
+              return window > activationWindow ? window : Stateless.WINDOW_ID;
+            }
+            return findLargestCompletedWindow(readOnlyWal, activationWindow);
           }
-        } else {
-          completedWindow = findLargestCompletedWindow(entry.getValue(), activationWindow);
-        }
+        });
+      }
 
+      //find the min of max window ids: a downstream will not finish a window until all the upstream have finished it.
+      for (long completedWindow : invokeAll(recoveries).values()) {
         if (completedWindow < largestCompletedWindow) {
           largestCompletedWindow = completedWindow;
         }
@@ -285,6 +333,9 @@ public class FSWindowDataManager implements WindowDataManager
 
       while (walFilesIter.hasNext()) {
         FileStatus fileStatus = walFilesIter.next();
+        if (fileStatus.getPath().getName().startsWith(WINDOW_INDEX_FILE_NAME)) {
+          continue;
+        }
         FSWindowReplayWAL.FileDescriptor descriptor = FSWindowReplayWAL.FileDescriptor.create(fileStatus.getPath());
         wal.fileDescriptors.put(descriptor.part, descriptor);
       }
@@ -300,12 +351,38 @@ public class FSWindowDataManager implements WindowDataManager
       NavigableSet<Integer> descendingParts = new TreeSet<>(wal.fileDescriptors.keySet()).descendingSet();
       for (int part : descendingParts) {
         FSWindowReplayWAL.FileDescriptor last = wal.fileDescriptors.get(part).last();
-        reader.seek(new FileSystemWAL.FileSystemWALPointer(last.part, 0));
+
+        //start from the largest indexed window of the part, if any, instead of the beginning of the part.
+        Map.Entry<Long, FileSystemWAL.FileSystemWALPointer> indexed = null;
+        NavigableMap<Long, FileSystemWAL.FileSystemWALPointer> candidates = ceilingWindow == null ?
+            wal.windowIndex.descendingMap() : wal.windowIndex.headMap(ceilingWindow, true).descendingMap();
+        for (Map.Entry<Long, FileSystemWAL.FileSystemWALPointer> entry : candidates.entrySet()) {
+          if (entry.getValue().getPartNum() <= part) {
+            if (entry.getValue().getPartNum() == part) {
+              indexed = entry;
+            }
+            break;
+          }
+        }
+
+        Slice slice = null;
+        if (indexed != null) {
+          reader.seek(indexed.getValue().getCopy());
+          slice = readNext(reader);
+          if (slice == null || Longs.fromByteArray(slice.toByteArray()) != indexed.getKey()) {
+            LOG.warn("window index of {} doesn't match part {}", wal.getFilePath(), part);
+            wal.windowIndex.clear();
+            slice = null;
+          }
+        }
+        if (slice == null) {
+          reader.seek(new FileSystemWAL.FileSystemWALPointer(last.part, 0));
+          slice = readNext(reader);
+        }
 
         long endOffset = -1;
 
         long lastWindow = Stateless.WINDOW_ID;
-        Slice slice = readNext(reader);
 
         while (slice != null) {
           boolean skipComplete = skipNext(reader); //skip the artifact because we need just the largest window id.
@@ -381,6 +458,7 @@ public class FSWindowDataManager implements WindowDataManager
   private void closeReaders() throws IOException
   {
     //close all reader stream and remove read-only wals
+    stopRecoveryService();
     wal.getReader().close();
     if (readOnlyWals.size() > 0) {
       Iterator<Map.Entry<Integer, FSWindowReplayWAL>> walIterator = readOnlyWals.entrySet().iterator();
@@ -416,6 +494,7 @@ public class FSWindowDataManager implements WindowDataManager
   {
     closeReaders();
     FileSystemWAL.FileSystemWALWriter writer = wal.getWriter();
+    FileSystemWAL.FileSystemWALPointer windowPointer = writer.getCurrentPointer().getCopy();
 
     byte[] windowIdBytes = Longs.toByteArray(windowId);
     writer.append(new Slice(windowIdBytes));
@@ -431,6 +510,7 @@ public class FSWindowDataManager implements WindowDataManager
     serializationBuffer.reset();
 
     wal.beforeCheckpoint(windowId);
+    indexWindow(windowId, windowPointer);
     wal.windowWalParts.put(windowId, writer.getCurrentPointer().getPartNum());
     writer.rotateIfNecessary();
   }
@@ -455,28 +535,54 @@ public class FSWindowDataManager implements WindowDataManager
       return null;
     }
     Map<Integer, Object> artifacts = Maps.newHashMap();
-    Object artifact = retrieve(wal, windowId);
-    if (artifact != null) {
-      artifacts.put(operatorId, artifact);
+    if (!repartitioned || readOnlyWals.isEmpty()) {
+      Object artifact = retrieve(wal, windowId);
+      if (artifact != null) {
+        artifacts.put(operatorId, artifact);
+      }
+      return artifacts;
     }
-    if (repartitioned) {
-      for (Map.Entry<Integer, FSWindowReplayWAL> entry : readOnlyWals.entrySet()) {
-        artifact = retrieve(entry.getValue(), windowId);
-        if (artifact != null) {
-          artifacts.put(entry.getKey(), artifact);
-        }
+
+    //the wals are read concurrently and the artifacts are deserialized by the caller because kryo is not thread-safe.
+    Map<Integer, Callable<Slice>> retrievals = new HashMap<>();
+    retrievals.put(operatorId, createRetrieval(wal, windowId));
+    for (Map.Entry<Integer, FSWindowReplayWAL> entry : readOnlyWals.entrySet()) {
+      retrievals.put(entry.getKey(), createRetrieval(entry.getValue(), windowId));
+    }
+    for (Map.Entry<Integer, Slice> entry : invokeAll(retrievals).entrySet()) {
+      if (entry.getValue() != null) {
+        artifacts.put(entry.getKey(), fromSlice(entry.getValue()));
       }
     }
     return artifacts;
   }
 
+  private Callable<Slice> createRetrieval(final FSWindowReplayWAL wal, final long windowId)
+  {
+    return new Callable<Slice>()
+    {
+      @Override
+      public Slice call() throws IOException
+      {
+        return retrieveSlice(wal, windowId);
+      }
+    };
+  }
+
   private Object retrieve(FSWindowReplayWAL wal, long windowId) throws IOException
+  {
+    Slice data = retrieveSlice(wal, windowId);
+    return data == null ? null : fromSlice(data);
+  }
+
+  private Slice retrieveSlice(FSWindowReplayWAL wal, long windowId) throws IOException
   {
     if (windowId > largestCompletedWindow || wal.walEndPointerAfterRecovery == null) {
       return null;
     }
 
     FileSystemWAL.FileSystemWALReader reader = wal.getReader();
+    seekToIndexedWindow(wal, windowId);
 
     while (reader.getCurrentPointer() == null ||
         reader.getCurrentPointer().compareTo(wal.walEndPointerAfterRecovery) < 0) {
@@ -495,7 +601,7 @@ public class FSWindowDataManager implements WindowDataManager
         wal.windowWalParts.put(currentWindow, reader.getCurrentPointer().getPartNum());
         wal.retrievedWindow = readNext(reader); //null or next window
 
-        return fromSlice(data);
+        return data;
       } else if (windowId < currentWindow) {
         //no artifact saved corresponding to that window and artifact is not read.
         return null;
@@ -514,6 +620,161 @@ public class FSWindowDataManager implements WindowDataManager
     return null;
   }
 
+  /**
+   * Moves the reader of a wal forward to the largest indexed window which is less than or equal to the window id, when
+   * the reader hasn't reached that window yet, so that the windows before it are not read.
+   */
+  private void seekToIndexedWindow(FSWindowReplayWAL wal, long windowId) throws IOException
+  {
+    Map.Entry<Long, FileSystemWAL.FileSystemWALPointer> indexed = wal.windowIndex.floorEntry(windowId);
+    if (indexed == null || indexed.getValue().compareTo(wal.walEndPointerAfterRecovery) >= 0) {
+      return;
+    }
+    FileSystemWAL.FileSystemWALReader reader = wal.getReader();
+    boolean behind;
+    if (wal.retrievedWindow != null) {
+      behind = Longs.fromByteArray(wal.retrievedWindow.toByteArray()) < indexed.getKey();
+    } else {
+      behind = reader.getCurrentPointer() == null || reader.getCurrentPointer().compareTo(indexed.getValue()) < 0;
+    }
+    if (behind) {
+      reader.seek(indexed.getValue().getCopy());
+      wal.retrievedWindow = null;
+    }
+  }
+
+  /**
+   * Adds the window to the index of the wal if the window is the first one of its part or enough bytes were written
+   * after the previous indexed window. It is called only when the window is durable.
+   *
+   * @param windowId      window id
+   * @param windowPointer pointer to the window id entry of the window
+   */
+  private void indexWindow(long windowId, FileSystemWAL.FileSystemWALPointer windowPointer)
+  {
+    Map.Entry<Long, FileSystemWAL.FileSystemWALPointer> lastIndexed = wal.windowIndex.lastEntry();
+    if (lastIndexed == null || lastIndexed.getValue().getPartNum() != windowPointer.getPartNum() ||
+        windowPointer.getOffset() - lastIndexed.getValue().getOffset() >= windowIndexInterval) {
+      wal.windowIndex.put(windowId, windowPointer);
+    }
+  }
+
+  /**
+   * Reads the window index of a wal. The entries which don't belong to the part files of the wal are dropped.
+   */
+  private void readWindowIndex(FSWindowReplayWAL wal, int operatorId)
+  {
+    wal.windowIndex.clear();
+    Path indexPath = new Path(fullStatePath + Path.SEPARATOR + operatorId + Path.SEPARATOR + WINDOW_INDEX_FILE_NAME);
+    try {
+      if (!fileContext.util().exists(indexPath)) {
+        return;
+      }
+      try (DataInputStream in = fileContext.open(indexPath)) {
+        int count = in.readInt();
+        for (int i = 0; i < count; i++) {
+          long window = in.readLong();
+          FileSystemWAL.FileSystemWALPointer pointer = new FileSystemWAL.FileSystemWALPointer(in.readInt(),
+              in.readLong());
+          if (wal.fileDescriptors.containsKey(pointer.getPartNum()) &&
+              (wal.walStartPointer == null || pointer.compareTo(wal.walStartPointer) >= 0)) {
+            wal.windowIndex.put(window, pointer);
+            wal.windowWalParts.put(window, pointer.getPartNum());
+          }
+        }
+      }
+      if (!wal.windowIndex.isEmpty()) {
+        wal.indexedWindow = wal.windowIndex.lastKey();
+      }
+    } catch (IOException e) {
+      //the index only speeds up the recovery so the part files are read from the beginning.
+      LOG.warn("ignoring window index {}", indexPath, e);
+      wal.windowIndex.clear();
+    }
+  }
+
+  /**
+   * Writes the indexed windows which are less than or equal to the committed window. Only these windows are written
+   * because the windows after the committed window can be overwritten after a failure.
+   */
+  private void writeWindowIndex(long committedWindowId, boolean partsDeleted) throws IOException
+  {
+    NavigableMap<Long, FileSystemWAL.FileSystemWALPointer> committedIndex =
+        wal.windowIndex.headMap(committedWindowId, true);
+    if (committedIndex.isEmpty() || (!partsDeleted && committedIndex.lastKey() == wal.indexedWindow)) {
+      return;
+    }
+    String operatorDir = fullStatePath + Path.SEPARATOR + operatorId;
+    Path indexPath = new Path(operatorDir + Path.SEPARATOR + WINDOW_INDEX_FILE_NAME);
+    Path tmpPath = new Path(operatorDir + Path.SEPARATOR + WINDOW_INDEX_FILE_NAME + FileSystemWAL.TMP_EXTENSION);
+    try (DataOutputStream out = fileContext.create(tmpPath, EnumSet.of(CreateFlag.CREATE, CreateFlag.OVERWRITE),
+        Options.CreateOpts.CreateParent.createParent())) {
+      out.writeInt(committedIndex.size());
+      for (Map.Entry<Long, FileSystemWAL.FileSystemWALPointer> entry : committedIndex.entrySet()) {
+        out.writeLong(entry.getKey());
+        out.writeInt(entry.getValue().getPartNum());
+        out.writeLong(entry.getValue().getOffset());
+      }
+    }
+    fileContext.rename(tmpPath, indexPath, Options.Rename.OVERWRITE);
+    wal.indexedWindow = committedIndex.lastKey();
+  }
+
+  /**
+   * Runs the tasks with the recovery threads and waits for all of them.
+   *
+   * @param tasks operator id -> task
+   * @return operator id -> result of the task
+   * @throws IOException if any task failed
+   */
+  private <T> Map<Integer, T> invokeAll(Map<Integer, Callable<T>> tasks) throws IOException
+  {
+    Map<Integer, T> results = new HashMap<>();
+    if (tasks.size() < 2 || recoveryThreads < 2) {
+      for (Map.Entry<Integer, Callable<T>> entry : tasks.entrySet()) {
+        try {
+          results.put(entry.getKey(), entry.getValue().call());
+        } catch (IOException | RuntimeException e) {
+          throw e;
+        } catch (Exception e) {
+          throw new IOException(e);
+        }
+      }
+      return results;
+    }
+
+    if (recoveryService == null) {
+      recoveryService = Executors.newFixedThreadPool(recoveryThreads, new NameableThreadFactory("fs-wal-recovery"));
+    }
+    Map<Integer, Future<T>> futures = new HashMap<>();
+    for (Map.Entry<Integer, Callable<T>> entry : tasks.entrySet()) {
+      futures.put(entry.getKey(), recoveryService.submit(entry.getValue()));
+    }
+    try {
+      for (Map.Entry<Integer, Future<T>> entry : futures.entrySet()) {
+        results.put(entry.getKey(), entry.getValue().get());
+      }
+    } catch (InterruptedException e) {
+      throw new InterruptedIOException("recovering wals");
+    } catch (ExecutionException e) {
+      Throwables.propagateIfInstanceOf(e.getCause(), IOException.class);
+      throw Throwables.propagate(e.getCause());
+    } finally {
+      for (Future<T> future : futures.values()) {
+        future.cancel(true);
+      }
+    }
+    return results;
+  }
+
+  private void stopRecoveryService()
+  {
+    if (recoveryService != null) {
+      recoveryService.shutdownNow();
+      recoveryService = null;
+    }
+  }
+
   /**
    * Deletes artifacts for all windows less than equal to committed window id.<p/>
    *
@@ -559,12 +820,19 @@ public class FSWindowDataManager implements WindowDataManager
       }
     }
 
+    boolean partsDeleted = false;
     if (largestEntryForDeletion != null && !wal.windowWalParts.containsValue(
         largestEntryForDeletion.getValue()) /* no artifacts for higher window present*/) {
 
       int highestPartToDelete = largestEntryForDeletion.getValue();
       wal.getWriter().delete(new FileSystemWAL.FileSystemWALPointer(highestPartToDelete + 1, 0));
 
+      Iterator<FileSystemWAL.FileSystemWALPointer> indexIterator = wal.windowIndex.values().iterator();
+      while (indexIterator.hasNext() && indexIterator.next().getPartNum() <= highestPartToDelete) {
+        indexIterator.remove();
+        partsDeleted = true;
+      }
+
       //also delete any old stray temp files that correspond to parts < deleteTillPointer.partNum
       Iterator<Map.Entry<Integer, FSWindowReplayWAL.FileDescriptor>> fileIterator =
           wal.fileDescriptors.entries().iterator();
@@ -579,6 +847,7 @@ public class FSWindowDataManager implements WindowDataManager
         }
       }
     }
+    writeWindowIndex(committedWindowId, partsDeleted);
 
     //delete data of partitions that have been removed
     if (deletedOperators != null) {
@@ -644,6 +913,7 @@ public class FSWindowDataManager implements WindowDataManager
   @Override
   public void teardown()
   {
+    stopRecoveryService();
     wal.teardown();
     for (FSWindowReplayWAL wal : readOnlyWals.values()) {
       wal.teardown();
@@ -655,6 +925,47 @@ public class FSWindowDataManager implements WindowDataManager
     this.relyOnCheckpoints = relyOnCheckpoints;
   }
 
+  /**
+   * @return minimum number of bytes between the windows of the window index.
+   */
+  public int getWindowIndexInterval()
+  {
+    return windowIndexInterval;
+  }
+
+  /**
+   * Sets the minimum number of bytes written between two windows of the window index. The first window of every part
+   * file is always indexed. A smaller interval makes the index larger and the recovery reads less of the part files.
+   * By default this is {@link #DEFAULT_WINDOW_INDEX_INTERVAL}.
+   *
+   * @param windowIndexInterval interval in bytes
+   */
+  public void setWindowIndexInterval(int windowIndexInterval)
+  {
+    Preconditions.checkArgument(windowIndexInterval > 0, "window index interval");
+    this.windowIndexInterval = windowIndexInterval;
+  }
+
+  /**
+   * @return number of threads which recover and replay the wals of the other partitions after re-partitioning.
+   */
+  public int getRecoveryThreads()
+  {
+    return recoveryThreads;
+  }
+
+  /**
+   * Sets the number of threads which recover and replay the wals of the other partitions after re-partitioning. The
+   * threads are stopped when the replay is over. By default this is {@link #DEFAULT_RECOVERY_THREADS}.
+   *
+   * @param recoveryThreads number of threads
+   */
+  public void setRecoveryThreads(int recoveryThreads)
+  {
+    Preconditions.checkArgument(recoveryThreads > 0, "recovery threads");
+    this.recoveryThreads = recoveryThreads;
+  }
+
   /**
    * @return wal instance
    */
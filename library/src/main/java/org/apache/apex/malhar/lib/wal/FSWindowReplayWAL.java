@@ -46,6 +46,11 @@ public class FSWindowReplayWAL extends FileSystemWAL
 
   transient TreeMap<Long, Integer>  windowWalParts = new TreeMap<>();
 
+  //sparse index of the windows which are durable: window id -> pointer to the window id entry
+  transient TreeMap<Long, FileSystemWALPointer> windowIndex = new TreeMap<>();
+  //largest window of the index file
+  transient long indexedWindow = Long.MIN_VALUE;
+
   FSWindowReplayWAL()
   {
     super();
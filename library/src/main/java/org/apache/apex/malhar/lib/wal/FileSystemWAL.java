@@ -60,7 +60,12 @@ import com.datatorrent.netlet.util.Slice;
  * problems. Typically the WAL Reader will only used in recovery or replay of finished windows.<br/>
  *
  * Also this implementation is thread unsafe- the filesystem wal writer and reader operations should be performed in
- * operator's thread.
+ * operator's thread.<br/>
+ * <br/>
+ * When {@link #isAsyncWrites()} is true, the writer copies the entries to a bounded buffer and a background thread
+ * appends them to the part files and flushes them. The flushes requested before the background thread gets to them are
+ * done together as a group commit. The operator thread waits for the background thread only at the checkpoint
+ * barriers, {@link #beforeCheckpoint(long)}, when a part file is rotated and before the reader opens a part file.
  *
  * @since 3.4.0
  */
@@ -91,6 +96,11 @@ public class FileSystemWAL implements WAL<FileSystemWAL.FileSystemWALReader, Fil
 
   private boolean inBatchMode;
 
+  private boolean asyncWrites;
+
+  @Min(1)
+  private int asyncWriteBufferSize = DEFAULT_ASYNC_WRITE_BUFFER_SIZE;
+
   transient FileContext fileContext;
 
   @Override
@@ -113,11 +123,26 @@ public class FileSystemWAL implements WAL<FileSystemWAL.FileSystemWALReader, Fil
     try {
       lastCheckpointedWindow = window;
       fileSystemWALWriter.flush();
+      fileSystemWALWriter.awaitAsyncWrites();
     } catch (IOException e) {
       throw new RuntimeException("during before cp", e);
     }
   }
 
+  /**
+   * Flushes the entries which are written. With asynchronous writes the flush is done by the background thread and the
+   * call doesn't wait for it; the flushes requested before the background thread gets to them are done together.
+   * Otherwise the entries are flushed before the call returns.
+   */
+  public void requestFlush()
+  {
+    try {
+      fileSystemWALWriter.flush();
+    } catch (IOException e) {
+      throw new RuntimeException("during flush", e);
+    }
+  }
+
   /**
    * A temporary WAL file is not renamed as soon as it is closed (completed) instead it is tagged to be renamed with
    * respect to the window it gets closed. The actual renaming is deferred until the window gets committed.<br/>
@@ -150,6 +175,7 @@ public class FileSystemWAL implements WAL<FileSystemWAL.FileSystemWALReader, Fil
     try {
       fileSystemWALReader.close();
       fileSystemWALWriter.close();
+      fileSystemWALWriter.stopAsyncWrites();
     } catch (IOException e) {
       throw new RuntimeException("during teardown", e);
     }
@@ -282,6 +308,44 @@ public class FileSystemWAL implements WAL<FileSystemWAL.FileSystemWALReader, Fil
     this.inBatchMode = inBatchMode;
   }
 
+  /**
+   * @return true if the entries are written by a background thread; false otherwise.
+   */
+  public boolean isAsyncWrites()
+  {
+    return asyncWrites;
+  }
+
+  /**
+   * When async writes is true, the entries are copied to a buffer of {@link #getAsyncWriteBufferSize()} bytes and
+   * written to the part files by a background thread. The writer blocks only when the buffer is full and at the
+   * checkpoint barriers. By default this is set to false.
+   *
+   * @param asyncWrites write asynchronously or not.
+   */
+  public void setAsyncWrites(boolean asyncWrites)
+  {
+    this.asyncWrites = asyncWrites;
+  }
+
+  /**
+   * @return size of the buffer of asynchronous writes in bytes.
+   */
+  public int getAsyncWriteBufferSize()
+  {
+    return asyncWriteBufferSize;
+  }
+
+  /**
+   * Sets the size of the buffer of asynchronous writes. An entry larger than the buffer is copied to it in chunks.
+   *
+   * @param asyncWriteBufferSize size of the buffer in bytes.
+   */
+  public void setAsyncWriteBufferSize(int asyncWriteBufferSize)
+  {
+    this.asyncWriteBufferSize = asyncWriteBufferSize;
+  }
+
   public static class FileSystemWALPointer implements Comparable<FileSystemWALPointer>
   {
     private final int partNum;
@@ -393,6 +457,8 @@ public class FileSystemWAL implements WAL<FileSystemWAL.FileSystemWALReader, Fil
     private DataInputStream getInputStream(FileSystemWALPointer walPointer) throws IOException
     {
       Preconditions.checkArgument(inputStream == null, "input stream not null");
+      //the entries which were written asynchronously have to reach the part files before they are read
+      fileSystemWAL.fileSystemWALWriter.awaitAsyncWrites();
       Path pathToReadFrom;
       String tmpPath = fileSystemWAL.tempPartFiles.get(walPointer.getPartNum());
       if (tmpPath != null) {
@@ -514,6 +580,7 @@ public class FileSystemWAL implements WAL<FileSystemWAL.FileSystemWALReader, Fil
   {
     private FileSystemWALPointer currentPointer = new FileSystemWALPointer(0, 0);
     private transient DataOutputStream outputStream;
+    private transient AsyncFileSystemWALOutput asyncOutput;
 
     //windowId => Latest part which can be finalized.
     private final Map<Long, Integer> pendingFinalization = new TreeMap<>();
@@ -594,7 +661,12 @@ public class FileSystemWAL implements WAL<FileSystemWAL.FileSystemWALReader, Fil
     @Override
     public void close() throws IOException
     {
-      if (outputStream != null) {
+      if (asyncOutput != null) {
+        if (asyncOutput.isOpen()) {
+          asyncOutput.close();
+          LOG.debug("closing {}", currentPointer.partNum);
+        }
+      } else if (outputStream != null) {
         outputStream.close();
         outputStream = null;
         LOG.debug("closed {}", currentPointer.partNum);
@@ -604,7 +676,20 @@ public class FileSystemWAL implements WAL<FileSystemWAL.FileSystemWALReader, Fil
     @Override
     public int append(Slice entry) throws IOException
     {
-      if (outputStream == null) {
+      if (fileSystemWAL.asyncWrites && asyncOutput == null) {
+        asyncOutput = new AsyncFileSystemWALOutput(fileSystemWAL.fileContext, fileSystemWAL.asyncWriteBufferSize);
+        if (outputStream != null) {
+          //the active part which was restored is still open
+          asyncOutput.adopt(outputStream);
+          outputStream = null;
+        }
+      }
+      if (asyncOutput != null) {
+        if (!asyncOutput.isOpen()) {
+          boolean append = isAppendToPart(currentPointer);
+          asyncOutput.open(getOutputPath(currentPointer, append), append);
+        }
+      } else if (outputStream == null) {
         outputStream = getOutputStream(currentPointer);
       }
 
@@ -619,8 +704,12 @@ public class FileSystemWAL implements WAL<FileSystemWAL.FileSystemWALReader, Fil
         rotate(true);
       }
 
-      outputStream.writeInt(entry.length);
-      outputStream.write(entry.buffer, entry.offset, entry.length);
+      if (asyncOutput != null) {
+        asyncOutput.write(entry);
+      } else {
+        outputStream.writeInt(entry.length);
+        outputStream.write(entry.buffer, entry.offset, entry.length);
+      }
       currentPointer.offset += entrySize;
 
       if (currentPointer.offset >= fileSystemWAL.maxLength && !fileSystemWAL.inBatchMode) {
@@ -702,9 +791,16 @@ public class FileSystemWAL implements WAL<FileSystemWAL.FileSystemWALReader, Fil
 
     protected void flush() throws IOException
     {
-      if (outputStream != null) {
-        if (fileSystemWAL.fileContext.getDefaultFileSystem() instanceof LocalFs ||
-            fileSystemWAL.fileContext.getDefaultFileSystem() instanceof RawLocalFs) {
+      if (asyncOutput != null) {
+        if (asyncOutput.isOpen()) {
+          if (isLocalFileSystem()) {
+            asyncOutput.close();
+          } else {
+            asyncOutput.flush();
+          }
+        }
+      } else if (outputStream != null) {
+        if (isLocalFileSystem()) {
           //until the stream is closed on the local FS, readers don't see any data.
           close();
         } else {
@@ -715,6 +811,30 @@ public class FileSystemWAL implements WAL<FileSystemWAL.FileSystemWALReader, Fil
       }
     }
 
+    /**
+     * Waits till the entries which are written asynchronously are written and flushed if requested.
+     */
+    void awaitAsyncWrites() throws IOException
+    {
+      if (asyncOutput != null) {
+        asyncOutput.awaitCompletion();
+      }
+    }
+
+    /**
+     * Stops the background thread of asynchronous writes after its pending writes are done.
+     */
+    void stopAsyncWrites() throws IOException
+    {
+      if (asyncOutput != null) {
+        try {
+          asyncOutput.stop();
+        } finally {
+          asyncOutput = null;
+        }
+      }
+    }
+
     protected boolean shouldRotate(int entryLength)
     {
       return currentPointer.offset + entryLength > fileSystemWAL.maxLength;
@@ -724,13 +844,19 @@ public class FileSystemWAL implements WAL<FileSystemWAL.FileSystemWALReader, Fil
     {
       flush();
       close();
+      //the part has to be complete before it can be finalized
+      awaitAsyncWrites();
 
       int partNum = currentPointer.partNum;
       LOG.debug("rotate {} to {}", partNum, currentPointer.partNum + 1);
       currentPointer = new FileSystemWALPointer(currentPointer.partNum + 1, 0);
       if (openNextFile) {
         //if adding the new entry to the file can cause the current file to exceed the max length then it is rotated.
-        outputStream = getOutputStream(currentPointer);
+        if (asyncOutput != null) {
+          asyncOutput.open(getOutputPath(currentPointer, false), false);
+        } else {
+          outputStream = getOutputStream(currentPointer);
+        }
       }
 
       rotated(partNum);
@@ -800,12 +926,26 @@ public class FileSystemWAL implements WAL<FileSystemWAL.FileSystemWALReader, Fil
     {
       Preconditions.checkArgument(outputStream == null, "output stream is not null");
 
-      if (pointer.offset > 0 && (fileSystemWAL.fileContext.getDefaultFileSystem() instanceof LocalFs ||
-          fileSystemWAL.fileContext.getDefaultFileSystem() instanceof RawLocalFs)) {
-        //On local file system the stream is always closed and never flushed so we open it again in append mode if the
-        //offset > 0. This block is entered only when appending to wal while writing on local fs.
-        return fileSystemWAL.fileContext.create(new Path(fileSystemWAL.tempPartFiles.get(pointer.partNum)),
-            EnumSet.of(CreateFlag.CREATE, CreateFlag.APPEND), Options.CreateOpts.CreateParent.createParent());
+      boolean append = isAppendToPart(pointer);
+      Path path = getOutputPath(pointer, append);
+      outputStream = fileSystemWAL.fileContext.create(path, append ? EnumSet.of(CreateFlag.CREATE, CreateFlag.APPEND) :
+          EnumSet.of(CreateFlag.CREATE, CreateFlag.OVERWRITE), Options.CreateOpts.CreateParent.createParent());
+      return outputStream;
+    }
+
+    /**
+     * On local file system the stream is always closed and never flushed so it is opened again in append mode if the
+     * offset > 0. This happens only when appending to wal while writing on local fs.
+     */
+    private boolean isAppendToPart(FileSystemWALPointer pointer)
+    {
+      return pointer.offset > 0 && isLocalFileSystem();
+    }
+
+    private Path getOutputPath(FileSystemWALPointer pointer, boolean append)
+    {
+      if (append) {
+        return new Path(fileSystemWAL.tempPartFiles.get(pointer.partNum));
       }
 
       String partFile = fileSystemWAL.getPartFilePath(pointer.partNum);
@@ -814,9 +954,13 @@ public class FileSystemWAL implements WAL<FileSystemWAL.FileSystemWALReader, Fil
 
       Preconditions.checkArgument(pointer.offset == 0, "offset > 0");
       LOG.debug("open {} => {}", pointer.partNum, tmpFilePath);
-      outputStream = fileSystemWAL.fileContext.create(new Path(tmpFilePath),
-          EnumSet.of(CreateFlag.CREATE, CreateFlag.OVERWRITE), Options.CreateOpts.CreateParent.createParent());
-      return outputStream;
+      return new Path(tmpFilePath);
+    }
+
+    private boolean isLocalFileSystem()
+    {
+      return fileSystemWAL.fileContext.getDefaultFileSystem() instanceof LocalFs ||
+          fileSystemWAL.fileContext.getDefaultFileSystem() instanceof RawLocalFs;
     }
 
     //visible to WindowDataManager
@@ -839,5 +983,7 @@ public class FileSystemWAL implements WAL<FileSystemWAL.FileSystemWALReader, Fil
 
   static final String TMP_EXTENSION = ".tmp";
 
+  static final int DEFAULT_ASYNC_WRITE_BUFFER_SIZE = 1024 * 1024;
+
   private static final Logger LOG = LoggerFactory.getLogger(FileSystemWAL.class);
 }
@@ -22,7 +22,6 @@ import java.util.ArrayList;
 import java.util.Collection;
 import java.util.Collections;
 import java.util.HashMap;
-import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
 import java.util.TreeMap;
@@ -48,6 +47,7 @@ import org.apache.hadoop.classification.InterfaceStability;
 
 import com.google.common.base.Function;
 
+import com.datatorrent.api.AutoMetric;
 import com.datatorrent.api.Component;
 import com.datatorrent.api.Context;
 import com.datatorrent.api.DefaultInputPort;
@@ -94,6 +94,8 @@ public abstract class AbstractWindowedOperator<InputT, OutputT, DataStorageT ext
   private transient long streamingWindowId;
   private transient TreeMap<Long, Long> streamingWindowToLatenessHorizon = new TreeMap<>();
   private ImplicitWatermarkGenerator implicitWatermarkGenerator;
+  private final transient WindowTriggerScheduler triggerScheduler = new WindowTriggerScheduler();
+  private final transient List<Window> dueWindows = new ArrayList<>();
 
   private Map<String, Component<Context.OperatorContext>> components = new HashMap<>();
 
@@ -101,6 +103,15 @@ public abstract class AbstractWindowedOperator<InputT, OutputT, DataStorageT ext
   protected RetractionStorageT retractionStorage;
   protected AccumulationT accumulation;
 
+  // Metrics
+  @AutoMetric
+  private transient long openWindows;
+  @AutoMetric
+  private transient long visitedWindows;
+  @AutoMetric
+  private transient long firedTriggers;
+  @AutoMetric
+  private transient long endWindowLatencyMicros;
 
   protected static final transient Collection<? extends Window> GLOBAL_WINDOW_SINGLETON_SET = Collections.singleton(Window.GlobalWindow.INSTANCE);
 
@@ -160,6 +171,10 @@ public abstract class AbstractWindowedOperator<InputT, OutputT, DataStorageT ext
   {
     for (Window window : windowedTuple.getWindows()) {
       WindowState windowState = windowStateMap.get(window);
+      if (!triggerScheduler.isScheduled(window)) {
+        // the window state was put by a subclass
+        scheduleWindow(window, windowState);
+      }
       windowState.tupleCount++;
       // process any count based triggers
       if (windowState.watermarkArrivalTime == -1) {
@@ -336,11 +351,37 @@ public abstract class AbstractWindowedOperator<InputT, OutputT, DataStorageT ext
   {
     for (Window window : windows) {
       if (!windowStateMap.containsWindow(window)) {
-        windowStateMap.put(window, new WindowState());
+        WindowState windowState = new WindowState();
+        windowStateMap.put(window, windowState);
+        scheduleWindow(window, windowState);
       }
     }
   }
 
+  /**
+   * Removes the state of a window which is not used anymore, e.g. a session window which is merged to another window.
+   *
+   * @param window the window
+   */
+  protected void removeWindowState(Window window)
+  {
+    windowStateMap.remove(window);
+    triggerScheduler.unschedule(window);
+  }
+
+  private void scheduleWindow(Window window, WindowState windowState)
+  {
+    triggerScheduler.schedule(window, windowState.watermarkArrivalTime != -1, allowedLatenessMillis >= 0);
+    scheduleTimeTrigger(window, windowState);
+  }
+
+  private void scheduleTimeTrigger(Window window, WindowState windowState)
+  {
+    long triggerMillis = windowState.watermarkArrivalTime == -1 ? earlyTriggerMillis : lateTriggerMillis;
+    triggerScheduler.scheduleTrigger(window,
+        triggerMillis > 0 ? windowState.lastTriggerFiredTime + triggerMillis : WindowTriggerScheduler.NOT_SCHEDULED);
+  }
+
   protected <T> long extractTimestamp(Tuple<T> tuple, Function<T, Long> timestampExtractor)
   {
     if (timestampExtractor == null) {
@@ -449,6 +490,11 @@ public abstract class AbstractWindowedOperator<InputT, OutputT, DataStorageT ext
     if (this.windowOption instanceof WindowOption.GlobalWindow) {
       windowStateMap.put(Window.GlobalWindow.INSTANCE, new WindowState());
     }
+    // the schedules are not checkpointed, they are rebuilt from the window states
+    triggerScheduler.clear();
+    for (Map.Entry<Window, WindowState> entry : windowStateMap.entries()) {
+      scheduleWindow(entry.getKey(), entry.getValue());
+    }
   }
 
   @Override
@@ -485,6 +531,8 @@ public abstract class AbstractWindowedOperator<InputT, OutputT, DataStorageT ext
       currentDerivedTimestamp += timeIncrement;
     }
     streamingWindowId = windowId;
+    firedTriggers = 0;
+    visitedWindows = 0;
   }
 
   /**
@@ -495,8 +543,11 @@ public abstract class AbstractWindowedOperator<InputT, OutputT, DataStorageT ext
   {
     // We only do actual processing of watermark at window boundary so that it will not break idempotency.
     // TODO: May want to revisit this if the application cares more about latency than idempotency
+    long startNanos = System.nanoTime();
     processWatermarkAtEndWindow();
     fireTimeTriggers();
+    endWindowLatencyMicros = (System.nanoTime() - startNanos) / 1000;
+    openWindows = triggerScheduler.size();
 
     for (Component component : components.values()) {
       if (component instanceof WindowListener) {
@@ -520,28 +571,37 @@ public abstract class AbstractWindowedOperator<InputT, OutputT, DataStorageT ext
 
       long horizon = nextWatermark - allowedLatenessMillis;
 
-      for (Iterator<Map.Entry<Window, WindowState>> it = windowStateMap.entries().iterator(); it.hasNext(); ) {
-        Map.Entry<Window, WindowState> entry = it.next();
-        Window window = entry.getKey();
-        WindowState windowState = entry.getValue();
-        if (window.getBeginTimestamp() + window.getDurationMillis() < nextWatermark) {
+      // only the windows which end before the watermark are visited
+      triggerScheduler.pollWatermarkDue(nextWatermark, allowedLatenessMillis >= 0, dueWindows);
+      for (Window window : sortDueWindows()) {
+        WindowState windowState = windowStateMap.get(window);
+        if (windowState == null) {
+          triggerScheduler.unschedule(window);
+        } else if (windowState.watermarkArrivalTime == -1) {
           // watermark has not arrived for this window before, marking this window late
-          if (windowState.watermarkArrivalTime == -1) {
-            windowState.watermarkArrivalTime = currentDerivedTimestamp;
-            if (triggerAtWatermark) {
-              // fire trigger at watermark if applicable
-              fireTrigger(window, windowState);
-            }
+          windowState.watermarkArrivalTime = currentDerivedTimestamp;
+          if (triggerAtWatermark) {
+            // fire trigger at watermark if applicable
+            fireTrigger(window, windowState);
           }
-          if (allowedLatenessMillis >= 0 && window.getBeginTimestamp() + window.getDurationMillis() < horizon) {
-            // discard this window because it's too late now
-            it.remove();
-            dataStorage.remove(window);
-            if (retractionStorage != null) {
-              retractionStorage.remove(window);
-            }
+          // the late time trigger replaces the early one
+          scheduleTimeTrigger(window, windowState);
+        }
+      }
+      dueWindows.clear();
+
+      if (allowedLatenessMillis >= 0) {
+        triggerScheduler.pollDiscardDue(horizon, dueWindows);
+        visitedWindows += dueWindows.size();
+        for (Window window : dueWindows) {
+          // discard this window because it's too late now
+          windowStateMap.remove(window);
+          dataStorage.remove(window);
+          if (retractionStorage != null) {
+            retractionStorage.remove(window);
           }
         }
+        dueWindows.clear();
       }
       streamingWindowToLatenessHorizon.put(streamingWindowId, horizon);
       controlOutput.emit(new WatermarkImpl(nextWatermark));
@@ -552,22 +612,38 @@ public abstract class AbstractWindowedOperator<InputT, OutputT, DataStorageT ext
   private void fireTimeTriggers()
   {
     if (earlyTriggerMillis > 0 || lateTriggerMillis > 0) {
-      for (Map.Entry<Window, WindowState> entry : windowStateMap.entries()) {
-        Window window = entry.getKey();
-        WindowState windowState = entry.getValue();
-        if (windowState.watermarkArrivalTime == -1) {
-          if (earlyTriggerMillis > 0 && windowState.lastTriggerFiredTime + earlyTriggerMillis <= currentDerivedTimestamp) {
-            // fire early time triggers
-            fireTrigger(window, windowState);
-          }
-        } else {
-          if (lateTriggerMillis > 0 && windowState.lastTriggerFiredTime + lateTriggerMillis <= currentDerivedTimestamp) {
-            // fire late time triggers
-            fireTrigger(window, windowState);
-          }
+      // only the windows whose time trigger may be due are visited
+      triggerScheduler.pollTriggersDue(currentDerivedTimestamp, dueWindows);
+      for (Window window : sortDueWindows()) {
+        WindowState windowState = windowStateMap.get(window);
+        if (windowState == null) {
+          triggerScheduler.unschedule(window);
+          continue;
+        }
+        // the scheduled time is a lower bound because count triggers may have fired since it was scheduled
+        long triggerMillis = windowState.watermarkArrivalTime == -1 ? earlyTriggerMillis : lateTriggerMillis;
+        if (triggerMillis > 0 && windowState.lastTriggerFiredTime + triggerMillis <= currentDerivedTimestamp) {
+          // fire early or late time triggers
+          fireTrigger(window, windowState);
         }
+        scheduleTimeTrigger(window, windowState);
       }
+      dueWindows.clear();
+    }
+  }
+
+  /**
+   * Sorts the due windows in the order of the windows so that the triggers are fired in the same order as the windows
+   * are iterated in the window state storage.
+   */
+  @SuppressWarnings("unchecked")
+  private List<Window> sortDueWindows()
+  {
+    visitedWindows += dueWindows.size();
+    if (dueWindows.size() > 1) {
+      Collections.sort((List)dueWindows);
     }
+    return dueWindows;
   }
 
   protected boolean isFiringOnlyUpdatedPanes()
@@ -583,6 +659,7 @@ public abstract class AbstractWindowedOperator<InputT, OutputT, DataStorageT ext
     }
     fireNormalTrigger(window, triggerOption.isFiringOnlyUpdatedPanes());
     windowState.lastTriggerFiredTime = currentDerivedTimestamp;
+    firedTriggers++;
     if (triggerOption.getAccumulationMode() == TriggerOption.AccumulationMode.DISCARDING) {
       clearWindowData(window);
     }
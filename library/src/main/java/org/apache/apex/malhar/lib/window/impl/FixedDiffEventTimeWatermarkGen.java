@@ -42,6 +42,11 @@ public class FixedDiffEventTimeWatermarkGen implements ImplicitWatermarkGenerato
   private long fixedDifference;
   private long maxEventTime = -1;
 
+  private FixedDiffEventTimeWatermarkGen()
+  {
+    // for kryo
+  }
+
   public FixedDiffEventTimeWatermarkGen(long fixedDifference)
   {
     this.fixedDifference = fixedDifference;
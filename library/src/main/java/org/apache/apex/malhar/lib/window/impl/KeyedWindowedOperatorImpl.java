@@ -104,7 +104,7 @@ public class KeyedWindowedOperatorImpl<KeyT, InputValT, AccumT, OutputValT>
             long newEndTimestamp = Math.max(sessionWindow.getBeginTimestamp() + sessionWindow.getDurationMillis(), timestamp + minGapMillis);
             Window.SessionWindow<KeyT> newSessionWindow =
                 new Window.SessionWindow<>(key, newBeginTimestamp, newEndTimestamp - newBeginTimestamp);
-            windowStateMap.remove(sessionWindow);
+            removeWindowState(sessionWindow);
             sessionStorage.migrateWindow(sessionWindow, newSessionWindow);
             windowStateMap.put(newSessionWindow, new WindowState());
             sessionWindowToAssign = newSessionWindow;
@@ -135,8 +135,8 @@ public class KeyedWindowedOperatorImpl<KeyT, InputValT, AccumT, OutputValT>
           sessionStorage.remove(sessionWindow1);
           sessionStorage.remove(sessionWindow2);
           sessionStorage.put(newSessionWindow, key, newSessionData);
-          windowStateMap.remove(sessionWindow1);
-          windowStateMap.remove(sessionWindow2);
+          removeWindowState(sessionWindow1);
+          removeWindowState(sessionWindow2);
           windowStateMap.put(newSessionWindow, new WindowState());
           sessionWindowToAssign = newSessionWindow;
           break;
@@ -0,0 +1,269 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.apex.malhar.lib.window.impl;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.PriorityQueue;
+
+import org.apache.apex.malhar.lib.window.Window;
+
+/**
+ * An index of the windows of a windowed operator by the times at which the windows have to be visited at the end of
+ * a streaming window, so that only the windows which are due are visited instead of all the open windows:
+ * <ul>
+ * <li>the end timestamp of a window, which is due when the watermark passes it.</li>
+ * <li>the end timestamp of a window whose watermark has arrived, which is due when the lateness horizon passes it and
+ * the window is discarded.</li>
+ * <li>the time of the next early or late time trigger of a window.</li>
+ * </ul>
+ * Each of the times is kept in a min-heap. The entries of a window are not removed from the heaps when the window is
+ * unscheduled or its trigger is rescheduled; such stale entries are skipped when they are polled and the heaps are
+ * compacted when the stale entries outnumber the scheduled windows.
+ */
+class WindowTriggerScheduler
+{
+  static final long NOT_SCHEDULED = Long.MAX_VALUE;
+
+  private static final int MIN_COMPACTION_SIZE = 1024;
+
+  private static final Comparator<Registration> END_TIMESTAMP_COMPARATOR = new Comparator<Registration>()
+  {
+    @Override
+    public int compare(Registration o1, Registration o2)
+    {
+      return Long.compare(o1.endTimestamp, o2.endTimestamp);
+    }
+  };
+
+  private final Map<Window, Registration> registrations = new HashMap<>();
+  private final PriorityQueue<Registration> watermarkQueue = new PriorityQueue<>(16, END_TIMESTAMP_COMPARATOR);
+  private final PriorityQueue<Registration> discardQueue = new PriorityQueue<>(16, END_TIMESTAMP_COMPARATOR);
+  private final PriorityQueue<TriggerTime> triggerQueue = new PriorityQueue<>();
+
+  boolean isScheduled(Window window)
+  {
+    return registrations.containsKey(window);
+  }
+
+  /**
+   * Schedules a window for its watermark or, if its watermark has arrived already, for its discarding.
+   *
+   * @param window           the window
+   * @param watermarkArrived whether the watermark of the window has arrived
+   * @param discarding       whether the window is discarded when it is beyond the allowed lateness
+   */
+  void schedule(Window window, boolean watermarkArrived, boolean discarding)
+  {
+    Registration registration = new Registration(window);
+    registrations.put(window, registration);
+    if (!watermarkArrived) {
+      watermarkQueue.add(registration);
+    } else if (discarding) {
+      discardQueue.add(registration);
+    }
+    if (watermarkQueue.size() + discardQueue.size() > 2 * registrations.size() + MIN_COMPACTION_SIZE) {
+      compact();
+    }
+  }
+
+  /**
+   * Removes a window from all the schedules.
+   */
+  void unschedule(Window window)
+  {
+    registrations.remove(window);
+  }
+
+  /**
+   * Schedules the next time trigger of a window. The previous time trigger of the window is cancelled.
+   *
+   * @param window the window which is scheduled
+   * @param time   the time of the trigger or {@link #NOT_SCHEDULED}
+   */
+  void scheduleTrigger(Window window, long time)
+  {
+    Registration registration = registrations.get(window);
+    if (registration == null || registration.triggerTime == time) {
+      return;
+    }
+    registration.triggerTime = time;
+    if (time != NOT_SCHEDULED) {
+      triggerQueue.add(new TriggerTime(registration, time));
+      if (triggerQueue.size() > 2 * registrations.size() + MIN_COMPACTION_SIZE) {
+        compact();
+      }
+    }
+  }
+
+  /**
+   * Polls the windows whose end timestamp is before the watermark. If the windows are discarded later, they are moved
+   * to the discarding schedule.
+   *
+   * @param watermark  the watermark
+   * @param discarding whether the windows are discarded when they are beyond the allowed lateness
+   * @param windows    collection to which the due windows are added
+   */
+  void pollWatermarkDue(long watermark, boolean discarding, Collection<Window> windows)
+  {
+    Registration registration;
+    while ((registration = watermarkQueue.peek()) != null && registration.endTimestamp < watermark) {
+      watermarkQueue.poll();
+      if (isCurrent(registration)) {
+        windows.add(registration.window);
+        if (discarding) {
+          discardQueue.add(registration);
+        }
+      }
+    }
+  }
+
+  /**
+   * Polls and unschedules the windows whose end timestamp is before the lateness horizon.
+   *
+   * @param horizon the lateness horizon
+   * @param windows collection to which the due windows are added
+   */
+  void pollDiscardDue(long horizon, Collection<Window> windows)
+  {
+    Registration registration;
+    while ((registration = discardQueue.peek()) != null && registration.endTimestamp < horizon) {
+      discardQueue.poll();
+      if (isCurrent(registration)) {
+        registrations.remove(registration.window);
+        windows.add(registration.window);
+      }
+    }
+  }
+
+  /**
+   * Polls the windows whose time trigger is at or before the given time. The time triggers of the polled windows are
+   * not scheduled anymore.
+   *
+   * @param time    the current time
+   * @param windows collection to which the due windows are added
+   */
+  void pollTriggersDue(long time, Collection<Window> windows)
+  {
+    TriggerTime triggerTime;
+    while ((triggerTime = triggerQueue.peek()) != null && triggerTime.time <= time) {
+      triggerQueue.poll();
+      if (triggerTime.isCurrent()) {
+        triggerTime.registration.triggerTime = NOT_SCHEDULED;
+        windows.add(triggerTime.registration.window);
+      }
+    }
+  }
+
+  /**
+   * @return number of scheduled windows.
+   */
+  int size()
+  {
+    return registrations.size();
+  }
+
+  void clear()
+  {
+    registrations.clear();
+    watermarkQueue.clear();
+    discardQueue.clear();
+    triggerQueue.clear();
+  }
+
+  private boolean isCurrent(Registration registration)
+  {
+    return registrations.get(registration.window) == registration;
+  }
+
+  /**
+   * Rebuilds the heaps from their current entries. Removing the stale entries one by one would cost a linear scan
+   * each.
+   */
+  private void compact()
+  {
+    List<Registration> currentRegistrations = new ArrayList<>(registrations.size());
+    for (Registration registration : watermarkQueue) {
+      if (isCurrent(registration)) {
+        currentRegistrations.add(registration);
+      }
+    }
+    watermarkQueue.clear();
+    watermarkQueue.addAll(currentRegistrations);
+
+    currentRegistrations.clear();
+    for (Registration registration : discardQueue) {
+      if (isCurrent(registration)) {
+        currentRegistrations.add(registration);
+      }
+    }
+    discardQueue.clear();
+    discardQueue.addAll(currentRegistrations);
+
+    List<TriggerTime> currentTriggerTimes = new ArrayList<>(registrations.size());
+    for (TriggerTime triggerTime : triggerQueue) {
+      if (triggerTime.isCurrent()) {
+        currentTriggerTimes.add(triggerTime);
+      }
+    }
+    triggerQueue.clear();
+    triggerQueue.addAll(currentTriggerTimes);
+  }
+
+  private static class Registration
+  {
+    private final Window window;
+    private final long endTimestamp;
+    private long triggerTime = NOT_SCHEDULED;
+
+    Registration(Window window)
+    {
+      this.window = window;
+      // the end of the global window is Long.MAX_VALUE
+      this.endTimestamp = window.getBeginTimestamp() + window.getDurationMillis();
+    }
+  }
+
+  private class TriggerTime implements Comparable<TriggerTime>
+  {
+    private final Registration registration;
+    private final long time;
+
+    TriggerTime(Registration registration, long time)
+    {
+      this.registration = registration;
+      this.time = time;
+    }
+
+    boolean isCurrent()
+    {
+      return registration.triggerTime == time && WindowTriggerScheduler.this.isCurrent(registration);
+    }
+
+    @Override
+    public int compareTo(TriggerTime o)
+    {
+      return Long.compare(time, o.time);
+    }
+  }
+}
@@ -20,6 +20,7 @@ package org.apache.hadoop.io.file.tfile;
 
 import java.lang.management.ManagementFactory;
 import java.util.Collection;
+import java.util.concurrent.atomic.AtomicLong;
 
 import org.apache.hadoop.io.file.tfile.DTBCFile.Reader.BlockReader;
 
@@ -37,6 +38,10 @@ import com.google.common.cache.Weigher;
  * <br>
  * <br>
  * It keeps {@link String} as key and {@link BlockReader} as value
+ * <br>
+ * <br>
+ * The number of hits and misses of {@link #get(String)} are counted for the whole process. A block which is being read
+ * is referenced by its reader so it stays usable when it is evicted from the cache.
  *
  * @since 2.0.0
  */
@@ -52,6 +57,10 @@ public class CacheManager
 
   private static boolean enableStats = false;
 
+  private static final AtomicLong hitCount = new AtomicLong();
+
+  private static final AtomicLong missCount = new AtomicLong();
+
   public static final Cache<String, BlockReader> buildCache(CacheBuilder builder)
   {
     if (singleCache != null) {
@@ -134,10 +143,13 @@ public class CacheManager
 
   public static final BlockReader get(String key)
   {
-    if (singleCache == null) {
-      return null;
+    BlockReader blockReader = singleCache == null ? null : singleCache.getIfPresent(key);
+    if (blockReader == null) {
+      missCount.incrementAndGet();
+    } else {
+      hitCount.incrementAndGet();
     }
-    return singleCache.getIfPresent(key);
+    return blockReader;
   }
 
   public static final void invalidateKeys(Collection<String> keys)
@@ -155,6 +167,22 @@ public class CacheManager
     return 0;
   }
 
+  /**
+   * @return number of lookups which found the block in the cache since the start of the process.
+   */
+  public static final long getHitCount()
+  {
+    return hitCount.get();
+  }
+
+  /**
+   * @return number of lookups which didn't find the block in the cache since the start of the process.
+   */
+  public static final long getMissCount()
+  {
+    return missCount.get();
+  }
+
   public static final class KVWeigher implements Weigher<String, BlockReader>
   {
 
@@ -18,7 +18,9 @@
  */
 package org.apache.apex.malhar.lib.appdata.datastructs;
 
+import java.util.List;
 import java.util.Map;
+import java.util.Random;
 import java.util.Set;
 
 import org.junit.Assert;
@@ -142,6 +144,95 @@ public class DimensionalTableTest
     Assert.assertEquals(expectedPoint, point);
   }
 
+  @Test
+  public void replacedRowSelectionTest()
+  {
+    DimensionalTable<Integer> table = createTestTable();
+    table.appendRow(100, "twitter", "safeway", "NV");
+
+    Map<String, String> selectionKeys = Maps.newHashMap();
+    selectionKeys.put("publisher", "twitter");
+
+    Assert.assertEquals(Sets.newHashSet(100, 4, 5), Sets.newHashSet(table.getDataPoints(selectionKeys)));
+    Assert.assertEquals(10, table.size());
+  }
+
+  @Test
+  public void missingValueAndNullSelectionTest()
+  {
+    DimensionalTable<Integer> table = createTestTable();
+    table.appendRow(11, "amazon", null, "NY");
+
+    Map<String, String> selectionKeys = Maps.newHashMap();
+    selectionKeys.put("publisher", "facebook");
+    Assert.assertTrue(table.getDataPoints(selectionKeys).isEmpty());
+    Assert.assertNull(table.getDataPoint(Lists.newArrayList("facebook", "starbucks", "CA")));
+    Assert.assertNull(table.getDataPoint(Lists.newArrayList("google", "starbucks", "NY")));
+
+    selectionKeys.clear();
+    selectionKeys.put("advertiser", null);
+    Assert.assertEquals(Lists.newArrayList(11), table.getDataPoints(selectionKeys));
+    Assert.assertEquals((Integer)11, table.getDataPoint(Lists.newArrayList("amazon", null, "NY")));
+
+    selectionKeys.clear();
+    Assert.assertEquals(11, table.getDataPoints(selectionKeys).size());
+  }
+
+  @Test
+  public void bulkAppendSelectionTest() throws Exception
+  {
+    final int numRows = 200000;
+    Random random = new Random(7);
+    List<Integer> data = Lists.newArrayList();
+    List<List<Integer>> keys = Lists.newArrayList();
+
+    for (int row = 0; row < numRows; row++) {
+      data.add(row);
+      //a dense, a sparse and a unique key component
+      keys.add(Lists.newArrayList(random.nextInt(3), random.nextInt(5000), row));
+    }
+
+    DimensionalTable<Integer> table = new DimensionalTable<Integer>(Lists.newArrayList("dense", "sparse", "id"));
+    table.appendRows(data, keys);
+    Assert.assertEquals(numRows, table.size());
+
+    table = KryoCloneUtils.cloneObject(table);
+
+    for (int query = 0; query < 20; query++) {
+      int dense = random.nextInt(3);
+      int sparse = random.nextInt(5000);
+      Set<Integer> expectedDense = Sets.newHashSet();
+      Set<Integer> expectedBoth = Sets.newHashSet();
+      for (int row = 0; row < numRows; row++) {
+        if (keys.get(row).get(0) == dense) {
+          expectedDense.add(row);
+          if (keys.get(row).get(1) == sparse) {
+            expectedBoth.add(row);
+          }
+        }
+      }
+
+      Map<String, Integer> selectionKeys = Maps.newHashMap();
+      selectionKeys.put("dense", dense);
+      List<Integer> dataPoints = table.getDataPoints(selectionKeys);
+      Assert.assertEquals(expectedDense.size(), dataPoints.size());
+      Assert.assertEquals(expectedDense, Sets.newHashSet(dataPoints));
+
+      selectionKeys.put("sparse", sparse);
+      Assert.assertEquals(expectedBoth, Sets.newHashSet(table.getDataPoints(selectionKeys)));
+    }
+
+    int row = random.nextInt(numRows);
+    Assert.assertEquals((Integer)row, table.getDataPoint(keys.get(row)));
+
+    DimensionalTable.MemoryFootprint footprint = table.getMemoryFootprint();
+    Assert.assertEquals(numRows, footprint.getRows());
+    Assert.assertEquals((Integer)3, footprint.getColumnCardinalities().get("dense"));
+    Assert.assertEquals((Integer)numRows, footprint.getColumnCardinalities().get("id"));
+    Assert.assertTrue(footprint.getColumnBytes().get("dense") < footprint.getColumnBytes().get("sparse"));
+    Assert.assertTrue(footprint.getTotalBytes() > footprint.getRowIndexBytes());
+  }
+
   private DimensionalTable<Integer> createTestTable()
   {
     DimensionalTable<Integer> table = new DimensionalTable<Integer>(Lists.newArrayList("publisher", "advertiser", "location"));
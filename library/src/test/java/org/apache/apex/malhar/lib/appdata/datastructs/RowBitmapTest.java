@@ -0,0 +1,90 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.apex.malhar.lib.appdata.datastructs;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import com.google.common.collect.Lists;
+
+public class RowBitmapTest
+{
+  @Test
+  public void containersTest()
+  {
+    RowBitmap sparse = new RowBitmap();
+    RowBitmap dense = new RowBitmap();
+    for (int row = 0; row < 200000; row++) {
+      if (row % 100 == 0) {
+        sparse.add(row);
+      }
+      if (row % 2 == 0) {
+        dense.add(row);
+      }
+    }
+
+    Assert.assertEquals(2000, sparse.getCardinality());
+    Assert.assertEquals(100000, dense.getCardinality());
+    Assert.assertTrue(sparse.contains(199900));
+    Assert.assertFalse(sparse.contains(199901));
+    Assert.assertTrue(dense.contains(131072));
+    Assert.assertFalse(dense.contains(131073));
+    Assert.assertFalse(dense.contains(300000));
+    Assert.assertTrue(sparse.getSizeInBytes() < dense.getSizeInBytes());
+  }
+
+  @Test
+  public void intersectTest()
+  {
+    RowBitmap threes = new RowBitmap();
+    RowBitmap fives = new RowBitmap();
+    RowBitmap tail = new RowBitmap();
+    for (int row = 0; row < 150000; row++) {
+      if (row % 3 == 0) {
+        threes.add(row);
+      }
+      if (row % 5 == 0) {
+        fives.add(row);
+      }
+      if (row >= 140000) {
+        tail.add(row);
+      }
+    }
+
+    int[] rows = RowBitmap.intersect(Lists.newArrayList(threes, fives));
+    Assert.assertEquals(10000, rows.length);
+    for (int i = 0; i < rows.length; i++) {
+      Assert.assertEquals(i * 15, rows[i]);
+    }
+
+    rows = RowBitmap.intersect(Lists.newArrayList(threes, fives, tail));
+    Assert.assertEquals(666, rows.length);
+    Assert.assertEquals(140010, rows[0]);
+
+    Assert.assertEquals(50000, RowBitmap.intersect(Lists.newArrayList(threes)).length);
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public void outOfOrderTest()
+  {
+    RowBitmap bitmap = new RowBitmap();
+    bitmap.add(5);
+    bitmap.add(5);
+  }
+}
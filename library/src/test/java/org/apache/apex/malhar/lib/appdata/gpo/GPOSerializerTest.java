@@ -0,0 +1,199 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.apex.malhar.lib.appdata.gpo;
+
+import java.nio.ByteBuffer;
+import java.util.List;
+import java.util.Map;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import org.apache.apex.malhar.lib.appdata.schemas.FieldsDescriptor;
+import org.apache.apex.malhar.lib.appdata.schemas.Type;
+import org.apache.apex.malhar.lib.utils.serde.SerializationBuffer;
+import org.apache.apex.malhar.lib.utils.serde.WindowedBlockStream;
+import org.apache.commons.lang3.mutable.MutableInt;
+
+import com.google.common.collect.Lists;
+import com.google.common.collect.Maps;
+
+public class GPOSerializerTest
+{
+  @Test
+  public void testSameBytesAsGPOUtils()
+  {
+    GPOMutable gpo = createGPO(createFieldsDescriptor());
+    GPOSerializer serializer = GPOSerializer.create(gpo.getFieldDescriptor());
+
+    byte[] expected = GPOUtils.serialize(gpo, new GPOByteArrayList());
+    Assert.assertArrayEquals(expected, serializer.serialize(gpo));
+
+    ByteBuffer buffer = ByteBuffer.allocate(expected.length + 10);
+    buffer.position(10);
+    serializer.serialize(gpo, buffer);
+    Assert.assertEquals(expected.length + 10, buffer.position());
+
+    SerializationBuffer serializationBuffer = new SerializationBuffer(new WindowedBlockStream());
+    serializer.serialize(gpo, serializationBuffer);
+    Assert.assertArrayEquals(expected, serializationBuffer.toSlice().toByteArray());
+  }
+
+  @Test
+  public void testRoundTrip()
+  {
+    FieldsDescriptor fd = createFieldsDescriptor();
+    GPOMutable gpo = createGPO(fd);
+    GPOSerializer serializer = GPOSerializer.create(fd);
+
+    ByteBuffer buffer = ByteBuffer.allocateDirect(256);
+    serializer.serialize(gpo, buffer);
+    serializer.serialize(gpo, buffer);
+    int length = buffer.position() / 2;
+    buffer.flip();
+
+    GPOMutable deserialized = serializer.deserialize(buffer);
+    Assert.assertEquals(gpo, deserialized);
+    Assert.assertEquals(length, buffer.position());
+
+    GPOMutable reused = new GPOMutable(fd);
+    serializer.deserialize(buffer, reused);
+    Assert.assertEquals(gpo, reused);
+    Assert.assertFalse(buffer.hasRemaining());
+
+    GPOMutable fromGPOUtils = GPOUtils.deserialize(fd, serializer.serialize(gpo), new MutableInt(0));
+    Assert.assertEquals(gpo, fromGPOUtils);
+  }
+
+  @Test
+  public void testObjectFields()
+  {
+    Map<String, Type> fieldToType = Maps.newHashMap();
+    fieldToType.put("count", Type.LONG);
+    fieldToType.put("name", Type.STRING);
+    fieldToType.put("tags", Type.OBJECT);
+    Map<String, Serde> fieldToSerde = Maps.newHashMap();
+    fieldToSerde.put("tags", SerdeListString.INSTANCE);
+    FieldsDescriptor fd = new FieldsDescriptor(fieldToType, fieldToSerde);
+
+    GPOMutable gpo = new GPOMutable(fd);
+    gpo.setField("count", 5L);
+    gpo.setField("name", "abc");
+    List<String> tags = Lists.newArrayList("a", "bc");
+    gpo.setFieldGeneric("tags", tags);
+
+    GPOSerializer serializer = GPOSerializer.create(fd);
+    byte[] bytes = serializer.serialize(gpo);
+    Assert.assertArrayEquals(GPOUtils.serialize(gpo, new GPOByteArrayList()), bytes);
+
+    GPOMutable deserialized = serializer.deserialize(ByteBuffer.wrap(bytes));
+    Assert.assertEquals(5L, deserialized.getFieldLong("count"));
+    Assert.assertEquals("abc", deserialized.getFieldString("name"));
+    Assert.assertEquals(tags, deserialized.getFieldObject("tags"));
+  }
+
+  @Test
+  public void testSharedLayout()
+  {
+    Map<String, Type> first = Maps.newHashMap();
+    first.put("a", Type.LONG);
+    first.put("b", Type.INTEGER);
+    Map<String, Type> second = Maps.newHashMap();
+    second.put("x", Type.LONG);
+    second.put("y", Type.INTEGER);
+
+    GPOSerializer firstSerializer = GPOSerializer.create(new FieldsDescriptor(first));
+    GPOSerializer secondSerializer = GPOSerializer.create(new FieldsDescriptor(second));
+    Assert.assertSame(firstSerializer.getClass(), secondSerializer.getClass());
+    Assert.assertEquals(new FieldsDescriptor(second), secondSerializer.getFieldsDescriptor());
+  }
+
+  @Test
+  public void testFlyweight()
+  {
+    FieldsDescriptor fd = createFieldsDescriptor();
+    GPOMutable gpo = createGPO(fd);
+    byte[] bytes = GPOUtils.serialize(gpo, new GPOByteArrayList());
+
+    ByteBuffer buffer = ByteBuffer.allocate(bytes.length * 3);
+    buffer.put(bytes);
+    gpo.setField("tlong", 7L);
+    gpo.setField("tstring2", "changed");
+    buffer.put(GPOSerializer.create(fd).serialize(gpo));
+
+    GPOFlyweight flyweight = new GPOFlyweight(fd);
+    flyweight.wrap(buffer, 0);
+    Assert.assertEquals(true, flyweight.getFieldBool("tboolean"));
+    Assert.assertEquals('A', flyweight.getFieldChar("tchar"));
+    Assert.assertEquals(50, flyweight.getFieldByte("tbyte"));
+    Assert.assertEquals(1000, flyweight.getFieldShort("tshort"));
+    Assert.assertEquals(100000, flyweight.getFieldInt("tinteger"));
+    Assert.assertEquals(10000000000L, flyweight.getFieldLong("tlong"));
+    Assert.assertEquals(1.0f, flyweight.getFieldFloat("tfloat"), 0.0f);
+    Assert.assertEquals(2.0, flyweight.getFieldDouble("tdouble"), 0.0);
+    Assert.assertEquals("hello", flyweight.getFieldString("tstring1"));
+    Assert.assertEquals("world", flyweight.getFieldString("tstring2"));
+    Assert.assertEquals(bytes.length, flyweight.getSerializedLength());
+
+    flyweight.wrap(buffer, bytes.length);
+    Assert.assertEquals(7L, flyweight.getFieldLong("tlong"));
+    Assert.assertEquals("hello", flyweight.getFieldString("tstring1"));
+    Assert.assertEquals("changed", flyweight.getFieldString("tstring2"));
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public void testFlyweightInvalidField()
+  {
+    new GPOFlyweight(createFieldsDescriptor()).getFieldInt("tlong");
+  }
+
+  private static FieldsDescriptor createFieldsDescriptor()
+  {
+    Map<String, Type> fieldToType = Maps.newHashMap();
+    fieldToType.put("tboolean", Type.BOOLEAN);
+    fieldToType.put("tchar", Type.CHAR);
+    fieldToType.put("tbyte", Type.BYTE);
+    fieldToType.put("tshort", Type.SHORT);
+    fieldToType.put("tinteger", Type.INTEGER);
+    fieldToType.put("tlong", Type.LONG);
+    fieldToType.put("tlong2", Type.LONG);
+    fieldToType.put("tfloat", Type.FLOAT);
+    fieldToType.put("tdouble", Type.DOUBLE);
+    fieldToType.put("tstring1", Type.STRING);
+    fieldToType.put("tstring2", Type.STRING);
+    return new FieldsDescriptor(fieldToType);
+  }
+
+  private static GPOMutable createGPO(FieldsDescriptor fd)
+  {
+    GPOMutable gpo = new GPOMutable(fd);
+    gpo.setField("tboolean", true);
+    gpo.setField("tchar", 'A');
+    gpo.setField("tbyte", (byte)50);
+    gpo.setField("tshort", (short)1000);
+    gpo.setField("tinteger", 100000);
+    gpo.setField("tlong", 10000000000L);
+    gpo.setField("tlong2", -3L);
+    gpo.setField("tfloat", 1.0f);
+    gpo.setField("tdouble", 2.0);
+    gpo.setField("tstring1", "hello");
+    gpo.setField("tstring2", "world");
+    return gpo;
+  }
+}
@@ -18,7 +18,10 @@
  */
 package org.apache.apex.malhar.lib.appdata.query;
 
+import java.util.Collections;
+import java.util.List;
 import java.util.Random;
+import java.util.concurrent.CountDownLatch;
 
 import org.junit.Assert;
 import org.junit.Rule;
@@ -34,6 +37,8 @@ import org.apache.apex.malhar.lib.testbench.CollectorTestSink;
 import org.apache.apex.malhar.lib.util.TestUtils;
 import org.apache.commons.lang3.mutable.MutableLong;
 
+import com.google.common.collect.Lists;
+
 import com.datatorrent.api.DefaultOutputPort;
 
 public class QueryManagerAsynchronousTest
@@ -109,6 +114,80 @@ public class QueryManagerAsynchronousTest
     Assert.assertEquals(totalTuples, sink.collectedTuples.size());
   }
 
+  @Test
+  public void interactiveFirstTest() throws Exception
+  {
+    AppDataWindowEndQueueManager<MockQuery, Void> queueManager = new AppDataWindowEndQueueManager<MockQuery, Void>();
+
+    DefaultOutputPort<String> outputPort = new DefaultOutputPort<String>();
+    CollectorTestSink<MockResult> sink = new CollectorTestSink<MockResult>();
+    TestUtils.setSink(outputPort, sink);
+
+    MessageSerializerFactory msf = new MessageSerializerFactory(new ResultFormatter());
+    BlockingQueryExecutor executor = new BlockingQueryExecutor("blocking");
+
+    QueryManagerAsynchronous<MockQuery, Void, MutableLong, MockResult> queryManagerAsynch =
+        new QueryManagerAsynchronous<>(outputPort, queueManager, executor, msf, Thread.currentThread());
+    queryManagerAsynch.setup(null);
+    queryManagerAsynch.beginWindow(0);
+
+    queueManager.enqueue(new MockQuery("blocking"), null, null);
+    executor.started.await();
+
+    queueManager.enqueue(new MockQuery("bulk1", 1L), null, null);
+    queueManager.enqueue(new MockQuery("bulk2", 1L), null, null);
+    queueManager.enqueue(new MockQuery("interactive"), null, null);
+
+    while (queryManagerAsynch.workers.getQueue().size() < 3) {
+      Thread.sleep(1);
+    }
+    Assert.assertTrue(queryManagerAsynch.getQueueDepth() >= 4);
+
+    executor.release.countDown();
+    queryManagerAsynch.endWindow();
+    queryManagerAsynch.teardown();
+
+    Assert.assertEquals(Lists.newArrayList("blocking", "interactive", "bulk1", "bulk2"), executor.executedIDs);
+    Assert.assertEquals(4, sink.collectedTuples.size());
+    Assert.assertEquals(0, queryManagerAsynch.getQueueDepth());
+
+    long executed = 0;
+    for (long count : queryManagerAsynch.getLatencyHistogram()) {
+      executed += count;
+    }
+    Assert.assertEquals(4, executed);
+  }
+
+  public static class BlockingQueryExecutor implements QueryExecutor<MockQuery, Void, MutableLong, MockResult>
+  {
+    private final String blockingID;
+    private final CountDownLatch started = new CountDownLatch(1);
+    private final CountDownLatch release = new CountDownLatch(1);
+    private final List<String> executedIDs = Collections.synchronizedList(Lists.<String>newArrayList());
+
+    public BlockingQueryExecutor(String blockingID)
+    {
+      this.blockingID = blockingID;
+    }
+
+    @Override
+    public MockResult executeQuery(MockQuery query, Void metaQuery, MutableLong queueContext)
+    {
+      executedIDs.add(query.getId());
+
+      if (query.getId().equals(blockingID)) {
+        started.countDown();
+        try {
+          release.await();
+        } catch (InterruptedException ex) {
+          throw new RuntimeException(ex);
+        }
+      }
+
+      return new MockResult(query);
+    }
+  }
+
   public static class NOPQueryExecutor implements QueryExecutor<MockQuery, Void, MutableLong, MockResult>
   {
     private final double waitMillisProb;
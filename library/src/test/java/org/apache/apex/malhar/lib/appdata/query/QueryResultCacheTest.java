@@ -0,0 +1,223 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.apex.malhar.lib.appdata.query;
+
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import org.apache.commons.lang3.mutable.MutableLong;
+
+import com.google.common.collect.Lists;
+
+public class QueryResultCacheTest
+{
+  @Test
+  public void testHitAndDataVersion()
+  {
+    CountingQueryExecutor executor = new CountingQueryExecutor();
+    QueryResultCache<MockQuery, Void, MutableLong, MockResult> cache = new QueryResultCache<>(executor);
+
+    MockResult first = cache.executeQuery(new MockQuery("1"), null, null);
+    MockResult second = cache.executeQuery(new MockQuery("2"), null, null);
+    Assert.assertEquals("1", first.getId());
+    Assert.assertEquals("2", second.getId());
+    Assert.assertEquals(1, executor.executions.get());
+    Assert.assertEquals(1, cache.getHitCount());
+    Assert.assertEquals(1, cache.getMissCount());
+
+    executor.dataVersion++;
+    cache.executeQuery(new MockQuery("3"), null, null);
+    Assert.assertEquals(2, executor.executions.get());
+    Assert.assertEquals(2, cache.getMissCount());
+  }
+
+  @Test
+  public void testNotCacheable()
+  {
+    CountingQueryExecutor executor = new CountingQueryExecutor();
+    executor.cacheable = false;
+    QueryResultCache<MockQuery, Void, MutableLong, MockResult> cache = new QueryResultCache<>(executor);
+
+    cache.executeQuery(new MockQuery("1"), null, null);
+    cache.executeQuery(new MockQuery("2"), null, null);
+    Assert.assertEquals(2, executor.executions.get());
+    Assert.assertEquals(0, cache.getHitCount());
+  }
+
+  @Test
+  public void testEviction()
+  {
+    CountingQueryExecutor executor = new CountingQueryExecutor();
+    executor.keyByID = true;
+    QueryResultCache<MockQuery, Void, MutableLong, MockResult> cache = new QueryResultCache<>(executor);
+    cache.setMaxCachedResults(2);
+
+    cache.executeQuery(new MockQuery("1"), null, null);
+    cache.executeQuery(new MockQuery("2"), null, null);
+    cache.executeQuery(new MockQuery("1"), null, null);
+    cache.executeQuery(new MockQuery("3"), null, null);
+    Assert.assertEquals(3, executor.executions.get());
+
+    //"2" is the least recently used result
+    cache.executeQuery(new MockQuery("1"), null, null);
+    Assert.assertEquals(3, executor.executions.get());
+    cache.executeQuery(new MockQuery("2"), null, null);
+    Assert.assertEquals(4, executor.executions.get());
+  }
+
+  @Test
+  public void testCoalescing() throws Exception
+  {
+    final CountingQueryExecutor executor = new CountingQueryExecutor();
+    executor.release = new CountDownLatch(1);
+    final QueryResultCache<MockQuery, Void, MutableLong, MockResult> cache = new QueryResultCache<>(executor);
+    final int numThreads = 8;
+    final List<MockResult> results = Lists.newArrayList();
+    List<Thread> threads = Lists.newArrayList();
+
+    for (int index = 0; index < numThreads; index++) {
+      final String id = Integer.toString(index);
+      Thread thread = new Thread()
+      {
+        @Override
+        public void run()
+        {
+          MockResult result = cache.executeQuery(new MockQuery(id), null, null);
+          synchronized (results) {
+            results.add(result);
+          }
+        }
+      };
+      threads.add(thread);
+      thread.start();
+    }
+
+    while (cache.getCoalescedCount() + cache.getMissCount() < numThreads) {
+      Thread.sleep(1);
+    }
+    executor.release.countDown();
+
+    for (Thread thread : threads) {
+      thread.join();
+    }
+
+    Assert.assertEquals(1, executor.executions.get());
+    Assert.assertEquals(numThreads - 1, cache.getCoalescedCount());
+    Assert.assertEquals(numThreads, results.size());
+  }
+
+  @Test
+  public void testCoalescingWithNewDataVersion() throws Exception
+  {
+    final CountingQueryExecutor executor = new CountingQueryExecutor();
+    executor.release = new CountDownLatch(1);
+    final QueryResultCache<MockQuery, Void, MutableLong, MockResult> cache = new QueryResultCache<>(executor);
+
+    Thread first = new Thread()
+    {
+      @Override
+      public void run()
+      {
+        cache.executeQuery(new MockQuery("1"), null, null);
+      }
+    };
+    first.start();
+    while (executor.executions.get() == 0) {
+      Thread.sleep(1);
+    }
+
+    //the second query waits for the execution of the first query which started with the previous data version
+    executor.dataVersion++;
+    Thread second = new Thread()
+    {
+      @Override
+      public void run()
+      {
+        cache.executeQuery(new MockQuery("2"), null, null);
+      }
+    };
+    second.start();
+    while (cache.getCoalescedCount() == 0) {
+      Thread.sleep(1);
+    }
+    executor.release.countDown();
+
+    first.join();
+    second.join();
+
+    Assert.assertEquals(2, executor.executions.get());
+    Assert.assertEquals(0, cache.getCoalescedCount());
+    Assert.assertEquals(2, cache.getMissCount());
+
+    cache.executeQuery(new MockQuery("3"), null, null);
+    Assert.assertEquals(2, executor.executions.get());
+    Assert.assertEquals(1, cache.getHitCount());
+  }
+
+  public static class CountingQueryExecutor implements CacheableQueryExecutor<MockQuery, Void, MutableLong, MockResult>
+  {
+    private final AtomicInteger executions = new AtomicInteger();
+    private volatile long dataVersion;
+    private boolean cacheable = true;
+    private boolean keyByID;
+    private CountDownLatch release;
+
+    @Override
+    public MockResult executeQuery(MockQuery query, Void metaQuery, MutableLong queueContext)
+    {
+      executions.incrementAndGet();
+
+      if (release != null) {
+        try {
+          release.await();
+        } catch (InterruptedException ex) {
+          throw new RuntimeException(ex);
+        }
+      }
+
+      return new MockResult(query);
+    }
+
+    @Override
+    public Object getCacheKey(MockQuery query, Void metaQuery, MutableLong queueContext)
+    {
+      if (!cacheable) {
+        return null;
+      }
+
+      return keyByID ? query.getId() : query.getType();
+    }
+
+    @Override
+    public long getDataVersion()
+    {
+      return dataVersion;
+    }
+
+    @Override
+    public MockResult reuseResult(MockResult result, MockQuery query, Void metaQuery, MutableLong queueContext)
+    {
+      return new MockResult(query);
+    }
+  }
+}
@@ -109,5 +109,83 @@ public class AppDataSnapshotServerMapTest
     KryoCloneUtils.cloneObject(snapshotServer);
   }
 
+  @Test
+  public void resultCacheTest() throws Exception
+  {
+    AppDataSnapshotServerMap snapshotServer = new AppDataSnapshotServerMap();
+    snapshotServer.setSnapshotSchemaJSON(SIMPLE_SCHEMA);
+    snapshotServer.setResultCacheEnabled(true);
+
+    CollectorTestSink<String> resultSink = new CollectorTestSink<String>();
+    @SuppressWarnings({"unchecked", "rawtypes"})
+    CollectorTestSink<Object> tempResultSink = (CollectorTestSink)resultSink;
+    snapshotServer.queryResult.setSink(tempResultSink);
+
+    snapshotServer.setup(null);
+
+    snapshotServer.beginWindow(0L);
+    snapshotServer.input.put(createData(2));
+    snapshotServer.endWindow();
+
+    //queries which differ only in their ids share a result
+    snapshotServer.beginWindow(1L);
+    snapshotServer.query.put(createQuery("1", "\"word\", \"count\""));
+    snapshotServer.query.put(createQuery("2", "\"word\", \"count\""));
+    snapshotServer.query.put(createQuery("3", "\"word\""));
+    snapshotServer.endWindow();
+
+    Assert.assertEquals(3, resultSink.collectedTuples.size());
+    Assert.assertEquals("1", new JSONObject(resultSink.collectedTuples.get(0)).getString("id"));
+    Assert.assertEquals("2", new JSONObject(resultSink.collectedTuples.get(1)).getString("id"));
+    Assert.assertEquals(2, getCount(resultSink.collectedTuples.get(1)));
+    Assert.assertEquals("3", new JSONObject(resultSink.collectedTuples.get(2)).getString("id"));
+    Assert.assertFalse(new JSONObject(resultSink.collectedTuples.get(2)).getJSONArray("data").getJSONObject(0)
+        .has("count"));
+    Assert.assertEquals(1, snapshotServer.resultCacheHits);
+    Assert.assertEquals(2, snapshotServer.resultCacheMisses);
+    Assert.assertEquals(3, snapshotServer.queryQueueDepth);
+    long numQueries = 0;
+    for (long count : snapshotServer.queryLatencyHistogram) {
+      numQueries += count;
+    }
+    Assert.assertEquals(3, numQueries);
+
+    //new data invalidates the cached results
+    resultSink.clear();
+    snapshotServer.beginWindow(2L);
+    snapshotServer.input.put(createData(5));
+    snapshotServer.query.put(createQuery("4", "\"word\", \"count\""));
+    snapshotServer.endWindow();
+
+    Assert.assertEquals(1, resultSink.collectedTuples.size());
+    Assert.assertEquals(5, getCount(resultSink.collectedTuples.get(0)));
+    Assert.assertEquals(0, snapshotServer.resultCacheHits);
+    Assert.assertEquals(1, snapshotServer.resultCacheMisses);
+
+    //Test serialization
+    KryoCloneUtils.cloneObject(snapshotServer);
+  }
+
+  private static List<Map<String, Object>> createData(int count)
+  {
+    Map<String, Object> data = Maps.newHashMap();
+    data.put("word", "a");
+    data.put("count", count);
+
+    List<Map<String, Object>> dataList = Lists.newArrayList();
+    dataList.add(data);
+    return dataList;
+  }
+
+  private static String createQuery(String id, String fields)
+  {
+    return "{\"id\": \"" + id + "\", \"type\": \"dataQuery\", \"data\": {\"fields\": [" + fields + "]}}";
+  }
+
+  private static int getCount(String result) throws Exception
+  {
+    return new JSONObject(result).getJSONArray("data").getJSONObject(0).getInt("count");
+  }
+
   private static final Logger LOG = LoggerFactory.getLogger(AppDataSnapshotServerMapTest.class);
 }
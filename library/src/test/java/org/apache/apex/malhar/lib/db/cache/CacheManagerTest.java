@@ -22,6 +22,8 @@ import java.io.IOException;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicInteger;
 
 import javax.annotation.Nullable;
 
@@ -155,6 +157,46 @@ public class CacheManagerTest
     }
   }
 
+  private static class CountingBackupStore extends DummyBackupStore
+  {
+    final List<List<Object>> batches = new CopyOnWriteArrayList<>();
+
+    @Override
+    public Map<Object, Object> loadInitialData()
+    {
+      return null;
+    }
+
+    @Override
+    public List<Object> getAll(List<Object> keys)
+    {
+      batches.add(Lists.newArrayList(keys));
+      return super.getAll(keys);
+    }
+  }
+
+  private static class FailingBackupStore extends CountingBackupStore
+  {
+    @Override
+    public List<Object> getAll(List<Object> keys)
+    {
+      throw new RuntimeException("backup is down");
+    }
+  }
+
+  private static class CollectingListener implements CacheManager.LoadListener
+  {
+    final Map<Object, Object> values = Maps.newHashMap();
+    final AtomicInteger calls = new AtomicInteger();
+
+    @Override
+    public void loaded(Object key, Object value)
+    {
+      values.put(key, value);
+      calls.incrementAndGet();
+    }
+  }
+
   @Test
   public void testCacheManager() throws IOException
   {
@@ -187,4 +229,103 @@ public class CacheManagerTest
     Thread.sleep(30);
     Assert.assertEquals("not evicted number of cached lines", 3, manager.primary.getKeys().size());
   }
+
+  @Test
+  public void testAsyncLoad() throws IOException
+  {
+    CountingBackupStore backup = new CountingBackupStore();
+    CacheManager manager = new CacheManager();
+    manager.setPrimary(new TinyLfuStore());
+    manager.setBackup(backup);
+    manager.setAsyncLoad(true);
+    manager.initialize();
+
+    CollectingListener listener = new CollectingListener();
+    try {
+      Assert.assertNull("miss", manager.get(6, listener));
+      Assert.assertNull("coalesced miss", manager.get(6, listener));
+      Assert.assertNull("missing key", manager.get(11, listener));
+      Assert.assertEquals(2, manager.getPendingLoadCount());
+
+      manager.awaitLoads();
+      Assert.assertEquals("listener calls", 3, listener.calls.get());
+      Assert.assertEquals("six", listener.values.get(6));
+      Assert.assertTrue(listener.values.containsKey(11));
+      Assert.assertNull(listener.values.get(11));
+
+      int loadedKeys = 0;
+      for (List<Object> batch : backup.batches) {
+        loadedKeys += batch.size();
+      }
+      Assert.assertEquals("keys loaded once", 2, loadedKeys);
+
+      Assert.assertEquals("hit", "six", manager.get(6, listener));
+      Assert.assertEquals(1, manager.getHitCount());
+      Assert.assertEquals(3, manager.getMissCount());
+      Assert.assertEquals(0.25, manager.getHitRatio(), 0);
+      Assert.assertEquals(2, manager.getLoadCount());
+    } finally {
+      manager.close();
+    }
+  }
+
+  @Test(timeout = 30000)
+  public void testLoadFailure() throws IOException
+  {
+    CacheManager manager = new CacheManager();
+    manager.setPrimary(new TinyLfuStore());
+    manager.setBackup(new FailingBackupStore());
+    manager.setAsyncLoad(true);
+    manager.setMaxPendingLoads(1);
+    manager.initialize();
+
+    CollectingListener listener = new CollectingListener();
+    try {
+      Assert.assertNull("miss", manager.get(6, listener));
+      try {
+        manager.get(7, listener);
+        Assert.fail("the failure of the loader is not reported");
+      } catch (RuntimeException e) {
+        Assert.assertEquals("backup is down", e.getCause().getMessage());
+      }
+      try {
+        manager.awaitLoads();
+        Assert.fail("the failure of the loader is not reported");
+      } catch (RuntimeException e) {
+        Assert.assertEquals("backup is down", e.getCause().getMessage());
+      }
+      Assert.assertEquals(0, listener.calls.get());
+    } finally {
+      manager.close();
+    }
+  }
+
+  @Test
+  public void testRefreshAhead() throws IOException, InterruptedException
+  {
+    CountingBackupStore backup = new CountingBackupStore();
+    TinyLfuStore primary = new TinyLfuStore();
+    primary.setRefreshAfterWriteMillis(10);
+    CacheManager manager = new CacheManager();
+    manager.setPrimary(primary);
+    manager.setBackup(backup);
+    manager.setAsyncLoad(true);
+    manager.initialize();
+
+    try {
+      primary.put(7, "old seven");
+      Thread.sleep(20);
+      CollectingListener listener = new CollectingListener();
+      Assert.assertEquals("stale value is served", "old seven", manager.get(7, listener));
+
+      long deadline = System.currentTimeMillis() + 30000;
+      while (manager.getRefreshCount() == 0 && System.currentTimeMillis() < deadline) {
+        Thread.sleep(10);
+      }
+      Assert.assertEquals("refreshed value", "seven", manager.get(7, listener));
+      Assert.assertEquals(0, listener.calls.get());
+    } finally {
+      manager.close();
+    }
+  }
 }
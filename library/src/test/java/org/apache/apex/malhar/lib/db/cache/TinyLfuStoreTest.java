@@ -0,0 +1,158 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.apex.malhar.lib.db.cache;
+
+import java.io.IOException;
+import java.util.List;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import com.google.common.collect.Lists;
+
+/**
+ * Tests for {@link TinyLfuStore}
+ */
+public class TinyLfuStoreTest
+{
+  @Test
+  public void testMaxCacheSize() throws IOException
+  {
+    TinyLfuStore store = new TinyLfuStore();
+    store.setMaxCacheSize(100);
+    store.connect();
+    for (int i = 0; i < 1000; i++) {
+      store.put(i, "v" + i);
+    }
+    Assert.assertEquals(100, store.getSize());
+    Assert.assertEquals(100, store.getKeys().size());
+    Assert.assertEquals(900, store.getEvictionCount());
+
+    store.remove(store.getKeys().iterator().next());
+    Assert.assertEquals(99, store.getSize());
+  }
+
+  @Test
+  public void testFrequentKeysSurviveScan() throws IOException
+  {
+    TinyLfuStore store = new TinyLfuStore();
+    store.setMaxCacheSize(100);
+    store.connect();
+    for (int round = 0; round < 5; round++) {
+      for (int i = 0; i < 50; i++) {
+        if (store.get(i) == null) {
+          store.put(i, "hot" + i);
+        }
+      }
+    }
+
+    //one-time keys which would flush a plain LRU
+    for (int i = 1000; i < 11000; i++) {
+      if (store.get(i) == null) {
+        store.put(i, "cold" + i);
+      }
+    }
+
+    int hotKeys = 0;
+    for (int i = 0; i < 50; i++) {
+      if (store.get(i) != null) {
+        hotKeys++;
+      }
+    }
+    Assert.assertTrue("hot keys retained " + hotKeys, hotKeys >= 45);
+    Assert.assertEquals(100, store.getSize());
+  }
+
+  @Test
+  public void testMaxWeight() throws IOException
+  {
+    TinyLfuStore store = new TinyLfuStore();
+    store.setMaxWeight(100);
+    store.setWeigher(new TinyLfuStore.Weigher()
+    {
+      @Override
+      public int weigh(Object key, Object value)
+      {
+        return ((String)value).length();
+      }
+    });
+    store.connect();
+    for (int i = 0; i < 100; i++) {
+      store.put(i, "0123456789");
+    }
+    Assert.assertEquals(10, store.getSize());
+    Assert.assertEquals(100, store.getWeight());
+    Assert.assertEquals(900, store.getEvictionWeight());
+
+    Object key = store.getKeys().iterator().next();
+    store.put(key, "0");
+    Assert.assertEquals(91, store.getWeight());
+  }
+
+  @Test
+  public void testRefreshAfterWrite() throws IOException, InterruptedException
+  {
+    TinyLfuStore store = new TinyLfuStore();
+    store.setRefreshAfterWriteMillis(10);
+    store.connect();
+    store.put(1, "one");
+    store.put(2, "two");
+
+    store.get(1);
+    List<Object> values = Lists.newArrayList();
+    Assert.assertTrue("fresh entry", store.pollKeysToRefresh(10, values).isEmpty());
+
+    Thread.sleep(20);
+    store.get(1);
+    store.get(1);
+    List<Object> keys = store.pollKeysToRefresh(10, values);
+    Assert.assertEquals("stale entry which was read", 1, keys.size());
+    Assert.assertEquals(1, keys.get(0));
+    Assert.assertEquals("one", values.get(0));
+
+    Assert.assertTrue(store.refreshed(1, "one", "uno"));
+    Assert.assertEquals("uno", store.get(1));
+    Assert.assertTrue("refreshed entry", store.pollKeysToRefresh(10, values).isEmpty());
+  }
+
+  @Test
+  public void testRefreshAfterConcurrentWrite() throws IOException, InterruptedException
+  {
+    TinyLfuStore store = new TinyLfuStore();
+    store.setRefreshAfterWriteMillis(10);
+    store.connect();
+    store.put(1, "one");
+    store.put(2, "two");
+    Thread.sleep(20);
+    store.get(1);
+    store.get(2);
+    List<Object> values = Lists.newArrayList();
+    List<Object> keys = store.pollKeysToRefresh(10, values);
+    Assert.assertEquals(2, keys.size());
+
+    //written and removed by the operator while they were reloaded
+    store.put(1, "uno");
+    store.remove(2);
+
+    Assert.assertFalse(store.refreshed(keys.get(0), values.get(0), null));
+    Assert.assertFalse(store.refreshed(keys.get(1), values.get(1), "dos"));
+    Assert.assertEquals("written value is kept", "uno", store.get(1));
+    Assert.assertNull("removed key is not put back", store.get(2));
+  }
+}
@@ -18,6 +18,7 @@
  */
 package org.apache.apex.malhar.lib.db.jdbc;
 
+import java.math.BigDecimal;
 import java.sql.Connection;
 import java.sql.Date;
 import java.sql.DriverManager;
@@ -34,10 +35,13 @@ import javax.annotation.Nonnull;
 
 import org.junit.Assert;
 import org.junit.Test;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 
 import org.apache.apex.malhar.lib.helper.TestPortContext;
 import org.apache.apex.malhar.lib.testbench.CollectorTestSink;
 import org.apache.apex.malhar.lib.util.FieldInfo;
+import org.apache.apex.malhar.lib.util.PojoUtils;
 import org.apache.apex.malhar.lib.util.TestUtils;
 
 import com.google.common.collect.Lists;
@@ -426,6 +430,213 @@ public class JdbcPojoOperatorTest extends JdbcOperatorTest
   }
 
 
+  private TestPOJOOutputOperator createBulkOutputOperator(OperatorContext context, int batchSize, boolean bulkWrite,
+      int rowsPerStatement)
+  {
+    JdbcTransactionalStore transactionalStore = new JdbcTransactionalStore();
+    transactionalStore.setDatabaseDriver(DB_DRIVER);
+    transactionalStore.setDatabaseUrl(URL);
+
+    TestPOJOOutputOperator outputOperator = new TestPOJOOutputOperator();
+    outputOperator.setBatchSize(batchSize);
+    outputOperator.setTablename(TABLE_POJO_NAME);
+    outputOperator.setBulkWrite(bulkWrite);
+    outputOperator.setRowsPerStatement(rowsPerStatement);
+    outputOperator.setStore(transactionalStore);
+
+    outputOperator.setup(context);
+
+    Attribute.AttributeMap.DefaultAttributeMap portAttributes = new Attribute.AttributeMap.DefaultAttributeMap();
+    portAttributes.put(Context.PortContext.TUPLE_CLASS, TestPOJOEvent.class);
+    outputOperator.input.setup(new TestPortContext(portAttributes));
+
+    outputOperator.activate(context);
+    return outputOperator;
+  }
+
+  /**
+   * Tests the bulk write mode with multi-row statements and a failure in the middle of a window
+   */
+  @Test
+  public void testJdbcPojoInsertOutputOperatorBulkWriteExactlyOnce()
+  {
+    com.datatorrent.api.Attribute.AttributeMap.DefaultAttributeMap attributeMap = new com.datatorrent.api.Attribute.AttributeMap.DefaultAttributeMap();
+    attributeMap.put(DAG.APPLICATION_ID, APP_ID);
+    OperatorContext context = mockOperatorContext(OPERATOR_ID, attributeMap);
+
+    // batches of 5 rows are written with a statement of 2 rows, 2 statements of 2 rows and a single row statement
+    TestPOJOOutputOperator outputOperator = createBulkOutputOperator(context, 5, true, 2);
+
+    List<TestPOJOEvent> events = Lists.newArrayList();
+    for (int i = 0; i < 50; i++) {
+      events.add(new TestPOJOEvent(i, "test" + i));
+    }
+
+    outputOperator.beginWindow(0);
+    for (int i = 0; i < 12; i++) {
+      outputOperator.input.process(events.get(i));
+    }
+    outputOperator.endWindow();
+    Assert.assertEquals("rows in db", 12, outputOperator.getNumOfEventsInStore(TABLE_POJO_NAME));
+    Assert.assertEquals("written", 12, outputOperator.getTuplesWrittenSuccessfully());
+
+    // the batches of window 1 are written but not committed before the failure
+    outputOperator.beginWindow(1);
+    for (int i = 12; i < 25; i++) {
+      outputOperator.input.process(events.get(i));
+    }
+    outputOperator.deactivate();
+    outputOperator.teardown();
+    Assert.assertEquals("rows in db", 12, outputOperator.getNumOfEventsInStore(TABLE_POJO_NAME));
+
+    // restart the operator from the last checkpoint which is before window 0
+    outputOperator.setup(context);
+    Attribute.AttributeMap.DefaultAttributeMap portAttributes = new Attribute.AttributeMap.DefaultAttributeMap();
+    portAttributes.put(Context.PortContext.TUPLE_CLASS, TestPOJOEvent.class);
+    outputOperator.input.setup(new TestPortContext(portAttributes));
+    outputOperator.activate(context);
+
+    outputOperator.beginWindow(0);
+    for (int i = 0; i < 12; i++) {
+      outputOperator.input.process(events.get(i));
+    }
+    outputOperator.endWindow();
+    outputOperator.beginWindow(1);
+    for (int i = 12; i < 25; i++) {
+      outputOperator.input.process(events.get(i));
+    }
+    outputOperator.endWindow();
+    outputOperator.beginWindow(2);
+    for (int i = 25; i < 50; i++) {
+      outputOperator.input.process(events.get(i));
+    }
+    outputOperator.endWindow();
+    outputOperator.deactivate();
+    outputOperator.teardown();
+
+    Assert.assertEquals("rows in db", 50, outputOperator.getNumOfEventsInStore(TABLE_POJO_NAME));
+  }
+
+  /**
+   * Compares the throughput of the bulk write mode with the default mode against the embedded database
+   */
+  @Test
+  public void testJdbcPojoInsertOutputOperatorBulkWriteThroughput()
+  {
+    com.datatorrent.api.Attribute.AttributeMap.DefaultAttributeMap attributeMap = new com.datatorrent.api.Attribute.AttributeMap.DefaultAttributeMap();
+    attributeMap.put(DAG.APPLICATION_ID, APP_ID);
+    OperatorContext context = mockOperatorContext(OPERATOR_ID, attributeMap);
+
+    int numEvents = 50000;
+    List<TestPOJOEvent> events = Lists.newArrayList();
+    for (int i = 0; i < numEvents; i++) {
+      events.add(new TestPOJOEvent(i, "test" + i));
+    }
+
+    for (boolean bulkWrite : new boolean[] {false, true}) {
+      TestPOJOOutputOperator outputOperator = createBulkOutputOperator(context, 1000, bulkWrite, 50);
+      long start = System.nanoTime();
+      int windowId = 0;
+      for (int i = 0; i < numEvents; i += 10000) {
+        outputOperator.beginWindow(windowId++);
+        for (int j = i; j < i + 10000; j++) {
+          outputOperator.input.process(events.get(j));
+        }
+        outputOperator.endWindow();
+      }
+      long elapsedMillis = Math.max(1, (System.nanoTime() - start) / 1000000);
+      LOG.info("bulk write {}: {} rows in {} ms, {} rows/s", bulkWrite, numEvents, elapsedMillis,
+          numEvents * 1000L / elapsedMillis);
+      outputOperator.deactivate();
+      outputOperator.teardown();
+
+      Assert.assertEquals("rows in db", numEvents, outputOperator.getNumOfEventsInStore(TABLE_POJO_NAME));
+    }
+  }
+
+  /**
+   * Binds a NUMERIC column, which neither the default mode nor the bulk write mode supports, with
+   * handleUnknownDataType. The bulk write mode falls back to the row by row writes for it.
+   */
+  @Test
+  public void testJdbcPojoInsertOutputOperatorBulkWriteUnknownDataType() throws SQLException
+  {
+    String tableName = "test_pojo_numeric_table";
+    Connection con = DriverManager.getConnection(URL);
+    Statement stmt = con.createStatement();
+    stmt.executeUpdate("CREATE TABLE IF NOT EXISTS " + tableName
+        + "(id INTEGER not NULL, name VARCHAR(255), score NUMERIC(10,2), PRIMARY KEY ( id ))");
+    stmt.executeUpdate("DELETE FROM " + tableName);
+
+    com.datatorrent.api.Attribute.AttributeMap.DefaultAttributeMap attributeMap = new com.datatorrent.api.Attribute.AttributeMap.DefaultAttributeMap();
+    attributeMap.put(DAG.APPLICATION_ID, APP_ID);
+    OperatorContext context = mockOperatorContext(OPERATOR_ID, attributeMap);
+
+    JdbcTransactionalStore transactionalStore = new JdbcTransactionalStore();
+    transactionalStore.setDatabaseDriver(DB_DRIVER);
+    transactionalStore.setDatabaseUrl(URL);
+
+    NumericOutputOperator outputOperator = new NumericOutputOperator();
+    outputOperator.setBatchSize(5);
+    outputOperator.setTablename(tableName);
+    outputOperator.setBulkWrite(true);
+    outputOperator.setRowsPerStatement(2);
+    outputOperator.setStore(transactionalStore);
+    outputOperator.setup(context);
+
+    Attribute.AttributeMap.DefaultAttributeMap portAttributes = new Attribute.AttributeMap.DefaultAttributeMap();
+    portAttributes.put(Context.PortContext.TUPLE_CLASS, TestPOJOEvent.class);
+    outputOperator.input.setup(new TestPortContext(portAttributes));
+    outputOperator.activate(context);
+
+    outputOperator.beginWindow(0);
+    for (int i = 0; i < 12; i++) {
+      TestPOJOEvent event = new TestPOJOEvent(i, "test" + i);
+      event.setScore(i + 0.25);
+      outputOperator.input.process(event);
+    }
+    outputOperator.endWindow();
+    outputOperator.deactivate();
+    outputOperator.teardown();
+
+    Assert.assertEquals("rows in db", 12, outputOperator.getNumOfEventsInStore(tableName));
+    ResultSet resultSet = stmt.executeQuery("SELECT SUM(score) FROM " + tableName);
+    resultSet.next();
+    Assert.assertEquals("sum of scores", new BigDecimal("69.00"), resultSet.getBigDecimal(1));
+    con.close();
+  }
+
+  private static class NumericOutputOperator extends TestPOJOOutputOperator
+  {
+    private transient PreparedStatement statement;
+
+    @Override
+    protected void setStatementParameters(PreparedStatement statement, Object tuple) throws SQLException
+    {
+      this.statement = statement;
+      super.setStatementParameters(statement, tuple);
+    }
+
+    @Override
+    @SuppressWarnings("unchecked")
+    protected void handleUnknownDataType(int type, Object tuple, ActiveFieldInfo activeFieldInfo)
+    {
+      if (type != Types.NUMERIC) {
+        super.handleUnknownDataType(type, tuple, activeFieldInfo);
+      } else if (tuple == null) {
+        activeFieldInfo.setterOrGetter = PojoUtils.createGetterDouble(pojoClass,
+            activeFieldInfo.fieldInfo.getPojoFieldExpression());
+      } else {
+        double value = ((PojoUtils.GetterDouble<Object>)activeFieldInfo.setterOrGetter).get(tuple);
+        try {
+          statement.setBigDecimal(columnFieldGetters.indexOf(activeFieldInfo) + 1, BigDecimal.valueOf(value));
+        } catch (SQLException e) {
+          throw new RuntimeException(e);
+        }
+      }
+    }
+  }
+
   /**
    * This test will assume direct mapping for POJO fields to DB columns Nullable
    * DB field missing in POJO name1 field, which is nullable in DB is missing
@@ -690,4 +901,5 @@ public class JdbcPojoOperatorTest extends JdbcOperatorTest
     }
   }
 
+  private static final Logger LOG = LoggerFactory.getLogger(JdbcPojoOperatorTest.class);
 }
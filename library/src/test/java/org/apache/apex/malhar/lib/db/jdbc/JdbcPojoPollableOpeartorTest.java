@@ -411,4 +411,222 @@ public class JdbcPojoPollableOpeartorTest extends JdbcOperatorTest
 
   }
 
+  @Test
+  public void testKeysetPagination() throws Exception
+  {
+    insertEvents(10, true, 0);
+
+    JdbcStore store = new JdbcStore();
+    store.setDatabaseDriver(DB_DRIVER);
+    store.setDatabaseUrl(URL);
+
+    Attribute.AttributeMap.DefaultAttributeMap portAttributes = new Attribute.AttributeMap.DefaultAttributeMap();
+    portAttributes.put(Context.PortContext.TUPLE_CLASS, TestPOJOEvent.class);
+    TestPortContext tpc = new TestPortContext(portAttributes);
+
+    JdbcPOJOPollInputOperator inputOperator = new JdbcPOJOPollInputOperator();
+    inputOperator.setStore(store);
+    inputOperator.setTableName(TABLE_POJO_NAME);
+    inputOperator.setKey("id");
+    inputOperator.setFieldInfos(getFieldInfos());
+    inputOperator.setFetchSize(100);
+    inputOperator.setFetchSizeBytes(1024);
+    inputOperator.setBatchSize(100);
+    inputOperator.setPartitionCount(2);
+    inputOperator.setKeysetPagination(true);
+    // several pages per partition
+    inputOperator.setResultLimit(2);
+
+    Collection<com.datatorrent.api.Partitioner.Partition<AbstractJdbcPollInputOperator<Object>>> newPartitions = inputOperator
+        .definePartitions(new ArrayList<Partitioner.Partition<AbstractJdbcPollInputOperator<Object>>>(), null);
+    Assert.assertEquals("partitions", 3, newPartitions.size());
+
+    List<JdbcPOJOPollInputOperator> instances = Lists.newArrayList();
+    int operatorId = 0;
+    for (com.datatorrent.api.Partitioner.Partition<AbstractJdbcPollInputOperator<Object>> partition : newPartitions) {
+      Attribute.AttributeMap.DefaultAttributeMap partitionAttributeMap = new Attribute.AttributeMap.DefaultAttributeMap();
+      partitionAttributeMap.put(DAG.APPLICATION_ID, APP_ID);
+      partitionAttributeMap.put(Context.DAGContext.APPLICATION_PATH, dir);
+
+      OperatorContext partitioningContext = mockOperatorContext(operatorId++, partitionAttributeMap);
+
+      JdbcPOJOPollInputOperator parition = (JdbcPOJOPollInputOperator)partition.getPartitionedInstance();
+      parition.outputPort.setup(tpc);
+      parition.setScheduledExecutorService(mockscheduler);
+      parition.setup(partitioningContext);
+      parition.activate(partitioningContext);
+      instances.add(parition);
+    }
+
+    // ids 0..9 are split into the key ranges [0, 4] and (4, 9]
+    int[][] expectedIds = {{0, 5}, {5, 10}};
+    for (int i = 0; i < 2; i++) {
+      JdbcPOJOPollInputOperator instance = instances.get(i);
+      CollectorTestSink<Object> sink = new CollectorTestSink<>();
+      instance.outputPort.setSink(sink);
+      instance.beginWindow(0);
+      instance.pollRecords();
+      instance.emitTuples();
+      instance.endWindow();
+
+      Assert.assertEquals("rows from db", 5, sink.collectedTuples.size());
+      int expectedId = expectedIds[i][0];
+      for (Object tuple : sink.collectedTuples) {
+        Assert.assertEquals("id", expectedId++, ((TestPOJOEvent)tuple).getId());
+      }
+      Assert.assertEquals("last id", expectedIds[i][1], expectedId);
+    }
+
+    JdbcPOJOPollInputOperator poller = instances.get(2);
+    CollectorTestSink<Object> sink = new CollectorTestSink<>();
+    poller.outputPort.setSink(sink);
+    poller.beginWindow(0);
+    poller.pollRecords();
+    poller.emitTuples();
+    poller.endWindow();
+    Assert.assertEquals("no new rows", 0, sink.collectedTuples.size());
+
+    insertEvents(3, false, 10);
+    poller.beginWindow(1);
+    poller.pollRecords();
+    poller.emitTuples();
+    poller.endWindow();
+    Assert.assertEquals("new rows", 3, sink.collectedTuples.size());
+    Assert.assertEquals("key", 12, poller.lastEmittedKey);
+  }
+
+  @Test
+  public void testKeysetPagesBoundedByQueueCapacity() throws Exception
+  {
+    insertEvents(10, true, 0);
+
+    JdbcStore store = new JdbcStore();
+    store.setDatabaseDriver(DB_DRIVER);
+    store.setDatabaseUrl(URL);
+
+    Attribute.AttributeMap.DefaultAttributeMap portAttributes = new Attribute.AttributeMap.DefaultAttributeMap();
+    portAttributes.put(Context.PortContext.TUPLE_CLASS, TestPOJOEvent.class);
+    TestPortContext tpc = new TestPortContext(portAttributes);
+
+    Attribute.AttributeMap.DefaultAttributeMap partitionAttributeMap = new Attribute.AttributeMap.DefaultAttributeMap();
+    partitionAttributeMap.put(DAG.APPLICATION_ID, APP_ID);
+    partitionAttributeMap.put(Context.DAGContext.APPLICATION_PATH, dir);
+    OperatorContext context = mockOperatorContext(1, partitionAttributeMap);
+
+    final JdbcPOJOPollInputOperator inputOperator = new JdbcPOJOPollInputOperator();
+    inputOperator.setStore(store);
+    inputOperator.setTableName(TABLE_POJO_NAME);
+    inputOperator.setKey("id");
+    inputOperator.setFieldInfos(getFieldInfos());
+    inputOperator.setFetchSize(100);
+    inputOperator.setBatchSize(1);
+    inputOperator.setKeysetPagination(true);
+    // the pages are limited to 2 rows by the queue capacity
+    inputOperator.setQueueCapacity(4);
+    inputOperator.lastEmittedRow = 0; //setting as not calling partition logic
+    inputOperator.isPollerPartition = true;
+
+    inputOperator.outputPort.setup(tpc);
+    inputOperator.setScheduledExecutorService(mockscheduler);
+    inputOperator.setup(context);
+    inputOperator.activate(context);
+
+    CollectorTestSink<Object> sink = new CollectorTestSink<>();
+    inputOperator.outputPort.setSink(sink);
+
+    // the fetch thread waits for the emitted rows before it fetches the next pages
+    Thread fetchThread = new Thread()
+    {
+      @Override
+      public void run()
+      {
+        inputOperator.pollRecords();
+      }
+    };
+    fetchThread.start();
+
+    long windowId = 1;
+    long deadline = System.currentTimeMillis() + 30000;
+    while (sink.collectedTuples.size() < 10 && System.currentTimeMillis() < deadline) {
+      inputOperator.beginWindow(windowId++);
+      inputOperator.emitTuples();
+      inputOperator.endWindow();
+      Thread.sleep(1);
+    }
+    fetchThread.join(30000);
+    Assert.assertFalse("fetch thread finished", fetchThread.isAlive());
+
+    Assert.assertEquals("rows", 10, sink.collectedTuples.size());
+    int expectedId = 0;
+    for (Object tuple : sink.collectedTuples) {
+      Assert.assertEquals("id", expectedId++, ((TestPOJOEvent)tuple).getId());
+    }
+    inputOperator.deactivate();
+    inputOperator.teardown();
+  }
+
+  @Test
+  public void testKeysetRecovery() throws IOException
+  {
+    int operatorId = 1;
+    AbstractJdbcPollInputOperator.WindowData windowData = WindowData.of(2, 0, 4);
+    windowData.upperKey = 6;
+    when(windowDataManagerMock.getLargestCompletedWindow()).thenReturn(1L);
+    when(windowDataManagerMock.retrieve(1)).thenReturn(windowData);
+
+    insertEvents(10, true, 0);
+
+    JdbcStore store = new JdbcStore();
+    store.setDatabaseDriver(DB_DRIVER);
+    store.setDatabaseUrl(URL);
+
+    Attribute.AttributeMap.DefaultAttributeMap portAttributes = new Attribute.AttributeMap.DefaultAttributeMap();
+    portAttributes.put(Context.PortContext.TUPLE_CLASS, TestPOJOEvent.class);
+    TestPortContext tpc = new TestPortContext(portAttributes);
+
+    Attribute.AttributeMap.DefaultAttributeMap partitionAttributeMap = new Attribute.AttributeMap.DefaultAttributeMap();
+    partitionAttributeMap.put(DAG.APPLICATION_ID, APP_ID);
+    partitionAttributeMap.put(Context.DAGContext.APPLICATION_PATH, dir);
+
+    OperatorContext context = mockOperatorContext(operatorId, partitionAttributeMap);
+
+    JdbcPOJOPollInputOperator inputOperator = new JdbcPOJOPollInputOperator();
+    inputOperator.setStore(store);
+    inputOperator.setTableName(TABLE_POJO_NAME);
+    inputOperator.setKey("id");
+    inputOperator.setFieldInfos(getFieldInfos());
+    inputOperator.setFetchSize(100);
+    inputOperator.setBatchSize(100);
+    inputOperator.setKeysetPagination(true);
+    inputOperator.lastEmittedRow = 0; //setting as not calling partition logic
+    inputOperator.isPollerPartition = true;
+
+    inputOperator.outputPort.setup(tpc);
+    inputOperator.setScheduledExecutorService(mockscheduler);
+    inputOperator.setup(context);
+    inputOperator.setWindowManager(windowDataManagerMock);
+    inputOperator.activate(context);
+
+    CollectorTestSink<Object> sink = new CollectorTestSink<>();
+    inputOperator.outputPort.setSink(sink);
+    inputOperator.beginWindow(1);
+    verify(mockscheduler, times(1)).scheduleAtFixedRate(any(Runnable.class), anyLong(), anyLong(), any(TimeUnit.class));
+    inputOperator.emitTuples();
+    inputOperator.endWindow();
+
+    // the rows with the keys in (2, 6] are replayed
+    Assert.assertEquals("replayed rows", 4, sink.collectedTuples.size());
+    int expectedId = 3;
+    for (Object tuple : sink.collectedTuples) {
+      Assert.assertEquals("id", expectedId++, ((TestPOJOEvent)tuple).getId());
+    }
+
+    // polling continues after the replayed rows
+    inputOperator.beginWindow(2);
+    inputOperator.pollRecords();
+    inputOperator.emitTuples();
+    inputOperator.endWindow();
+    Assert.assertEquals("rows", 7, sink.collectedTuples.size());
+  }
+
 }
@@ -0,0 +1,118 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.apex.malhar.lib.dedup;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import org.apache.apex.malhar.lib.util.KryoCloneUtils;
+
+import com.datatorrent.netlet.util.Slice;
+
+public class DedupPreFilterTest
+{
+  @Test
+  public void testFiltersAddedWithKeys()
+  {
+    DedupPreFilter preFilter = new DedupPreFilter(100, 10, 4);
+    for (int i = 0; i < 600; i++) {
+      preFilter.put(0, key(i));
+    }
+    //the filters are for 100, 400 and 1600 keys
+    Assert.assertEquals("filters", 3, preFilter.getNumFilters(0));
+    for (int i = 0; i < 600; i++) {
+      Assert.assertFalse("key " + i, preFilter.put(0, key(i)));
+    }
+  }
+
+  @Test
+  public void testFalsePositivesAfterRotations()
+  {
+    DedupPreFilter preFilter = new DedupPreFilter(1000, 10, 8);
+    int numKeys = 1000 + 4000 + 16000 + 64000;
+    for (int i = 0; i < numKeys; i++) {
+      preFilter.put(0, key(i));
+    }
+    Assert.assertEquals("filters", 4, preFilter.getNumFilters(0));
+
+    int falsePositives = 0;
+    int numChecks = 100000;
+    for (int i = numKeys; i < numKeys + numChecks; i++) {
+      if (preFilter.mightContain(0, key(i))) {
+        falsePositives++;
+      }
+    }
+    //a single filter of 10 bits per key has about 1% false positives
+    Assert.assertTrue("false positive rate " + falsePositives, falsePositives < numChecks * 0.02);
+  }
+
+  @Test
+  public void testMaxFilters()
+  {
+    DedupPreFilter preFilter = new DedupPreFilter(10, 10, 2);
+    for (int i = 0; i < 1000; i++) {
+      preFilter.put(0, key(i));
+    }
+    Assert.assertEquals("filters", 2, preFilter.getNumFilters(0));
+    long size = preFilter.getSizeInBytes();
+    for (int i = 1000; i < 2000; i++) {
+      preFilter.put(0, key(i));
+    }
+    Assert.assertEquals("size", size, preFilter.getSizeInBytes());
+    for (int i = 0; i < 2000; i++) {
+      Assert.assertFalse("key " + i, preFilter.put(0, key(i)));
+    }
+  }
+
+  @Test
+  public void testPurge()
+  {
+    DedupPreFilter preFilter = new DedupPreFilter(100, 10, 4);
+    for (long timeBucket = 0; timeBucket < 5; timeBucket++) {
+      Assert.assertTrue("new key", preFilter.put(timeBucket, key(1)));
+    }
+    preFilter.purgeTimeBucketsLessThanEqualTo(2);
+    Assert.assertEquals("time buckets", 2, preFilter.getNumTimeBuckets());
+    Assert.assertEquals("filters", 0, preFilter.getNumFilters(2));
+    Assert.assertEquals("filters", 1, preFilter.getNumFilters(3));
+  }
+
+  @Test
+  public void testRestore()
+  {
+    DedupPreFilter preFilter = new DedupPreFilter(100, 10, 4);
+    for (int i = 0; i < 150; i++) {
+      preFilter.put(0, key(i));
+    }
+
+    DedupPreFilter restored = KryoCloneUtils.cloneObject(preFilter);
+    Assert.assertEquals("filters are checkpointed", preFilter.getSizeInBytes(), restored.getSizeInBytes());
+    for (int i = 0; i < 150; i++) {
+      Assert.assertFalse("key " + i, restored.put(0, key(i)));
+    }
+    for (int i = 150; i < 1000; i++) {
+      Assert.assertEquals("key " + i, preFilter.put(0, key(i)), restored.put(0, key(i)));
+    }
+  }
+
+  private static Slice key(int i)
+  {
+    return new Slice(Integer.toString(i).getBytes());
+  }
+}
@@ -98,6 +98,46 @@ public class DeduperBoundedPOJOImplTest
     deduper.teardown();
   }
 
+  @Test
+  public void testDedupWithFullPipeline()
+  {
+    com.datatorrent.api.Attribute.AttributeMap.DefaultAttributeMap attributes =
+        new com.datatorrent.api.Attribute.AttributeMap.DefaultAttributeMap();
+    attributes.put(DAG.APPLICATION_ID, APP_ID);
+    attributes.put(DAG.APPLICATION_PATH, applicationPath);
+    attributes.put(DAG.InputPortMeta.TUPLE_CLASS, TestPojo.class);
+    OperatorContext context = mockOperatorContext(OPERATOR_ID, attributes);
+    deduper.setPipelineCapacity(4);
+    deduper.setLookupBatchSize(16);
+    deduper.setup(context);
+    deduper.input.setup(new PortContext(attributes, context));
+    deduper.activate(context);
+    CollectorTestSink<TestPojo> uniqueSink = new CollectorTestSink<TestPojo>();
+    TestUtils.setSink(deduper.unique, uniqueSink);
+    CollectorTestSink<TestPojo> duplicateSink = new CollectorTestSink<TestPojo>();
+    TestUtils.setSink(deduper.duplicate, duplicateSink);
+
+    deduper.beginWindow(0);
+    for (int i = 1; i <= 100; i++) {
+      deduper.input.process(new TestPojo(i, new Date(), i));
+      deduper.input.process(new TestPojo(i, new Date(), i));
+    }
+    for (int i = 1; i <= 100; i++) {
+      deduper.input.process(new TestPojo(i, new Date(), i));
+    }
+    deduper.endWindow();
+
+    Assert.assertEquals("unique", 100, uniqueSink.collectedTuples.size());
+    Assert.assertEquals("duplicate", 200, duplicateSink.collectedTuples.size());
+    for (int i = 0; i < 100; i++) {
+      Assert.assertEquals("order of unique tuples", i + 1, uniqueSink.collectedTuples.get(i).getKey());
+      Assert.assertEquals("order of duplicate tuples", i + 1, duplicateSink.collectedTuples.get(i).getKey());
+      Assert.assertEquals("order of duplicate tuples", i + 1, duplicateSink.collectedTuples.get(100 + i).getKey());
+    }
+
+    deduper.teardown();
+  }
+
   @After
   public void teardown()
   {
@@ -19,7 +19,10 @@
 package org.apache.apex.malhar.lib.dedup;
 
 import java.io.IOException;
+import java.util.Collection;
 import java.util.Date;
+import java.util.Map;
+import java.util.concurrent.Future;
 
 import org.junit.After;
 import org.junit.Assert;
@@ -29,7 +32,9 @@ import org.junit.Test;
 import org.apache.apex.malhar.lib.fileaccess.FileAccessFSImpl;
 import org.apache.apex.malhar.lib.fileaccess.TFileImpl;
 import org.apache.apex.malhar.lib.helper.OperatorContextTestHelper;
+import org.apache.apex.malhar.lib.state.managed.ManagedTimeUnifiedStateImpl;
 import org.apache.apex.malhar.lib.testbench.CollectorTestSink;
+import org.apache.apex.malhar.lib.util.KryoCloneUtils;
 import org.apache.apex.malhar.lib.util.TestUtils;
 import org.apache.hadoop.conf.Configuration;
 import org.apache.hadoop.fs.FileSystem;
@@ -37,6 +42,7 @@ import org.apache.hadoop.fs.Path;
 
 import com.datatorrent.api.Context.OperatorContext;
 import com.datatorrent.api.DAG;
+import com.datatorrent.netlet.util.Slice;
 import com.datatorrent.stram.engine.PortContext;
 
 import static org.apache.apex.malhar.lib.helper.OperatorContextTestHelper.mockOperatorContext;
@@ -148,6 +154,77 @@ public class DeduperTimeBasedPOJOImplTest
     deduper.teardown();
   }
 
+  @Test
+  public void testDedupWithPreFilter()
+  {
+    deduper = new TimeBasedDedupOperator();
+    CountingManagedState managedState = new CountingManagedState();
+    deduper.managedState = managedState;
+    deduper.setKeyExpression("key");
+    deduper.setTimeExpression("date.getTime()");
+    deduper.setBucketSpan(10);
+    deduper.setExpireBefore(60);
+    deduper.setPreFilterExpectedKeys(1000);
+    FileAccessFSImpl fAccessImpl = new TFileImpl.DTFileImpl();
+    fAccessImpl.setBasePath(applicationPath + "/bucket_data");
+    deduper.managedState.setFileAccess(fAccessImpl);
+
+    com.datatorrent.api.Attribute.AttributeMap.DefaultAttributeMap attributes =
+        new com.datatorrent.api.Attribute.AttributeMap.DefaultAttributeMap();
+    attributes.put(DAG.APPLICATION_ID, APP_ID);
+    attributes.put(DAG.APPLICATION_PATH, applicationPath);
+    attributes.put(DAG.InputPortMeta.TUPLE_CLASS, TestPojo.class);
+    OperatorContext context = mockOperatorContext(OPERATOR_ID, attributes);
+    deduper.setup(context);
+    deduper.input.setup(new PortContext(attributes, context));
+    deduper.activate(context);
+    CollectorTestSink<TestPojo> uniqueSink = new CollectorTestSink<TestPojo>();
+    TestUtils.setSink(deduper.unique, uniqueSink);
+    CollectorTestSink<TestPojo> duplicateSink = new CollectorTestSink<TestPojo>();
+    TestUtils.setSink(deduper.duplicate, duplicateSink);
+    CollectorTestSink<TestPojo> expiredSink = new CollectorTestSink<TestPojo>();
+    TestUtils.setSink(deduper.expired, expiredSink);
+
+    deduper.beginWindow(0);
+
+    long millis = System.currentTimeMillis();
+    for (int i = 0; i < 100; i++) {
+      deduper.input.process(new TestPojo(i, new Date(millis + i)));
+    }
+    deduper.input.process(new TestPojo(100, new Date(millis - 1000 * 60)));
+    for (int i = 90; i < 200; i++) {
+      deduper.input.process(new TestPojo(i, new Date(millis + i)));
+    }
+    deduper.input.process(new TestPojo(10, new Date(millis + 70000))); // same key in a later time bucket
+    deduper.input.process(new TestPojo(10, new Date(millis))); // expired after the time buckets moved
+    deduper.handleIdleTime();
+    deduper.endWindow();
+
+    Assert.assertEquals("unique", 201, uniqueSink.collectedTuples.size());
+    Assert.assertEquals("duplicate", 10, duplicateSink.collectedTuples.size());
+    Assert.assertEquals("expired", 2, expiredSink.collectedTuples.size());
+    for (int i = 0; i < 200; i++) {
+      Assert.assertEquals("order of unique tuples", i, uniqueSink.collectedTuples.get(i).getKey());
+    }
+    Assert.assertTrue("lookups of the keys which were not seen are skipped", managedState.readKeys < 20);
+
+    //the filters are checkpointed with the operator
+    KryoCloneUtils.cloneObject(deduper);
+    deduper.teardown();
+  }
+
+  public static class CountingManagedState extends ManagedTimeUnifiedStateImpl
+  {
+    int readKeys;
+
+    @Override
+    public Future<Map<Slice, Slice>> getAllAsyncFromTimeBucket(long timeBucket, Collection<Slice> keys)
+    {
+      readKeys += keys.size();
+      return super.getAllAsyncFromTimeBucket(timeBucket, keys);
+    }
+  }
+
   @After
   public void teardown()
   {
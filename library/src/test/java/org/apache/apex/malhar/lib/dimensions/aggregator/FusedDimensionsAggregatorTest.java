@@ -0,0 +1,195 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.apex.malhar.lib.dimensions.aggregator;
+
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import org.apache.apex.malhar.lib.appdata.gpo.GPOMutable;
+import org.apache.apex.malhar.lib.appdata.schemas.DimensionalConfigurationSchema;
+import org.apache.apex.malhar.lib.dimensions.DimensionsEvent.Aggregate;
+import org.apache.apex.malhar.lib.dimensions.DimensionsEvent.EventKey;
+import org.apache.apex.malhar.lib.dimensions.DimensionsEvent.InputEvent;
+
+import com.google.common.collect.Lists;
+import com.google.common.collect.Maps;
+
+import it.unimi.dsi.fastutil.objects.Object2ObjectOpenCustomHashMap;
+
+public class FusedDimensionsAggregatorTest
+{
+  private static final String SCHEMA = "{\"keys\":[{\"name\":\"publisher\",\"type\":\"string\"},\n" +
+      "{\"name\":\"advertiser\",\"type\":\"string\"}],\n" +
+      "\"timeBuckets\":[\"1m\",\"1h\"],\n" +
+      "\"values\":[{\"name\":\"impressions\",\"type\":\"long\",\"aggregators\":[\"SUM\",\"COUNT\",\"MIN\"," +
+      "\"MAX\"]},\n" +
+      "{\"name\":\"cost\",\"type\":\"double\",\"aggregators\":[\"SUM\",\"MAX\",\"FIRST\",\"LAST\"]},\n" +
+      "{\"name\":\"clicks\",\"type\":\"integer\",\"aggregators\":[\"SUM\"]},\n" +
+      "{\"name\":\"priority\",\"type\":\"short\",\"aggregators\":[\"SUM\",\"MIN\"]}],\n" +
+      "\"dimensions\":[{\"combination\":[]},\n" +
+      "{\"combination\":[\"publisher\"]},\n" +
+      "{\"combination\":[\"publisher\",\"advertiser\"],\"additionalValues\":[\"clicks:MAX\"]}]}";
+
+  private static final String[] PUBLISHERS = {"twitter", "facebook", "yahoo"};
+  private static final String[] ADVERTISERS = {"starbucks", "safeway", "mcdonalds", "macys"};
+
+  @Test
+  public void testSameAggregatesAsAggregators()
+  {
+    DimensionalConfigurationSchema schema = new DimensionalConfigurationSchema(SCHEMA,
+        AggregatorRegistry.newDefaultAggregatorRegistry());
+    FusedDimensionsAggregator fused = new FusedDimensionsAggregator(schema, 1);
+    List<InputEvent> inputEvents = createInputEvents(schema, 2000);
+
+    for (InputEvent inputEvent : inputEvents) {
+      fused.aggregate(inputEvent);
+    }
+    Map<EventKey, GPOMutable> expected = aggregateWithAggregators(schema, fused, inputEvents);
+
+    List<Aggregate> aggregates = fused.flush();
+    Assert.assertEquals(expected.size(), aggregates.size());
+    for (Aggregate aggregate : aggregates) {
+      Assert.assertEquals(aggregate.getEventKey().toString(), expected.get(aggregate.getEventKey()),
+          aggregate.getAggregates());
+    }
+
+    Assert.assertEquals(0, fused.getKeyCount());
+    Assert.assertTrue(fused.flush().isEmpty());
+  }
+
+  @Test
+  public void testDeltasPerWindow()
+  {
+    DimensionalConfigurationSchema schema = new DimensionalConfigurationSchema(SCHEMA,
+        AggregatorRegistry.newDefaultAggregatorRegistry());
+    FusedDimensionsAggregator fused = new FusedDimensionsAggregator(schema, 1);
+    List<InputEvent> inputEvents = createInputEvents(schema, 200);
+
+    for (int window = 0; window < 2; window++) {
+      List<InputEvent> windowEvents = inputEvents.subList(window * 100, (window + 1) * 100);
+      for (InputEvent inputEvent : windowEvents) {
+        fused.aggregate(inputEvent);
+      }
+      Map<EventKey, GPOMutable> expected = aggregateWithAggregators(schema, fused, windowEvents);
+      Assert.assertTrue(fused.getKeyCount() > 0);
+
+      List<Aggregate> aggregates = fused.flush();
+      Assert.assertEquals(expected.size(), aggregates.size());
+      for (Aggregate aggregate : aggregates) {
+        Assert.assertEquals(expected.get(aggregate.getEventKey()), aggregate.getAggregates());
+      }
+    }
+  }
+
+  @Test
+  public void testNotFusedAggregator()
+  {
+    Map<String, IncrementalAggregator> nameToAggregator = Maps.newHashMap();
+    nameToAggregator.put("SUM", new AggregatorSum());
+    nameToAggregator.put("OTHER_SUM", new OtherSum());
+    AggregatorRegistry registry = new AggregatorRegistry(nameToAggregator,
+        Maps.<String, OTFAggregator>newHashMap());
+    registry.setup();
+
+    String json = "{\"keys\":[{\"name\":\"publisher\",\"type\":\"string\"},\n" +
+        "{\"name\":\"advertiser\",\"type\":\"string\"}],\n" +
+        "\"timeBuckets\":[\"1m\"],\n" +
+        "\"values\":[{\"name\":\"impressions\",\"type\":\"long\",\"aggregators\":[\"SUM\",\"OTHER_SUM\"]},\n" +
+        "{\"name\":\"cost\",\"type\":\"double\",\"aggregators\":[\"SUM\"]},\n" +
+        "{\"name\":\"clicks\",\"type\":\"integer\",\"aggregators\":[\"OTHER_SUM\"]},\n" +
+        "{\"name\":\"priority\",\"type\":\"short\",\"aggregators\":[\"SUM\"]}],\n" +
+        "\"dimensions\":[{\"combination\":[\"publisher\"]}]}";
+    DimensionalConfigurationSchema schema = new DimensionalConfigurationSchema(json, registry);
+    FusedDimensionsAggregator fused = new FusedDimensionsAggregator(schema, 1);
+    List<InputEvent> inputEvents = createInputEvents(schema, 300);
+
+    for (InputEvent inputEvent : inputEvents) {
+      fused.aggregate(inputEvent);
+    }
+    Map<EventKey, GPOMutable> expected = aggregateWithAggregators(schema, fused, inputEvents);
+
+    List<Aggregate> aggregates = fused.flush();
+    Assert.assertEquals(expected.size(), aggregates.size());
+    for (Aggregate aggregate : aggregates) {
+      Assert.assertEquals(expected.get(aggregate.getEventKey()), aggregate.getAggregates());
+    }
+  }
+
+  public static class OtherSum extends AggregatorSum
+  {
+    private static final long serialVersionUID = 201610180000L;
+  }
+
+  private static Map<EventKey, GPOMutable> aggregateWithAggregators(DimensionalConfigurationSchema schema,
+      FusedDimensionsAggregator fused, List<InputEvent> inputEvents)
+  {
+    Map<EventKey, GPOMutable> keyToAggregates = Maps.newHashMap();
+
+    for (int ddID = 0; ddID < schema.getDimensionsDescriptorIDToDimensionsDescriptor().size(); ddID++) {
+      List<IncrementalAggregator> aggregators = fused.getIncrementalAggregators(ddID);
+      List<Integer> aggregatorIDs = schema.getDimensionsDescriptorIDToIncrementalAggregatorIDs().get(ddID);
+
+      for (int index = 0; index < aggregators.size(); index++) {
+        IncrementalAggregator aggregator = aggregators.get(index);
+        Object2ObjectOpenCustomHashMap<InputEvent, Aggregate> map = new Object2ObjectOpenCustomHashMap<>(aggregator);
+
+        for (InputEvent inputEvent : inputEvents) {
+          Aggregate aggregate = map.get(inputEvent);
+          if (aggregate == null) {
+            aggregate = aggregator.getGroup(inputEvent, aggregatorIDs.get(index));
+            map.put(inputEvent, aggregate);
+          }
+          aggregator.aggregate(aggregate, inputEvent);
+        }
+
+        for (Aggregate aggregate : map.values()) {
+          Assert.assertNull(keyToAggregates.put(aggregate.getEventKey(), aggregate.getAggregates()));
+        }
+      }
+    }
+    return keyToAggregates;
+  }
+
+  private static List<InputEvent> createInputEvents(DimensionalConfigurationSchema schema, int count)
+  {
+    Random random = new Random(1);
+    List<InputEvent> inputEvents = Lists.newArrayList();
+    long time = 1476748800000L;
+
+    for (int index = 0; index < count; index++) {
+      GPOMutable keys = new GPOMutable(schema.getKeyDescriptorWithTime());
+      keys.setField("publisher", PUBLISHERS[random.nextInt(PUBLISHERS.length)]);
+      keys.setField("advertiser", ADVERTISERS[random.nextInt(ADVERTISERS.length)]);
+      keys.setField("time", time + random.nextInt(5) * 30000L);
+
+      GPOMutable values = new GPOMutable(schema.getInputValuesDescriptor());
+      values.setField("impressions", (long)random.nextInt(1000));
+      values.setField("cost", random.nextDouble() * 10.0);
+      values.setField("clicks", random.nextInt(50));
+      values.setField("priority", (short)random.nextInt(100));
+
+      inputEvents.add(new InputEvent(new EventKey(1, 0, 0, keys), values));
+    }
+    return inputEvents;
+  }
+}
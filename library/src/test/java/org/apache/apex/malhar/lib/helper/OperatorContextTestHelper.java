@@ -66,7 +66,7 @@ public class OperatorContextTestHelper
       public Object answer(InvocationOnMock invocation) throws Throwable
       {
         final Attribute key = (Attribute)invocation.getArguments()[0];
-        Object value = map.get(key);
+        Object value = map == null ? null : map.get(key);
         if (value != null) {
           return value;
         }
@@ -29,6 +29,9 @@ import org.apache.apex.malhar.lib.util.TestUtils;
 import org.apache.commons.lang.mutable.MutableLong;
 import org.apache.hadoop.fs.FSDataInputStream;
 
+import com.esotericsoftware.kryo.Kryo;
+import com.esotericsoftware.kryo.io.Input;
+import com.esotericsoftware.kryo.io.Output;
 import com.google.common.collect.Lists;
 
 import com.datatorrent.api.DefaultPartition;
@@ -125,6 +128,35 @@ public class AbstractBlockReaderTest
     Assert.assertEquals(8, newPartitions.size());
   }
 
+  @Test
+  public void testReaderRecordSerialization()
+  {
+    byte[] buffer = new byte[8192];
+    buffer[100] = 'a';
+    buffer[101] = 'b';
+    AbstractBlockReader.ReaderRecord<Slice> record = new AbstractBlockReader.ReaderRecord<>(1, new Slice(buffer, 100, 2));
+
+    Kryo kryo = new Kryo();
+    Output output = new Output(1024, -1);
+    kryo.writeClassAndObject(output, record);
+    Assert.assertTrue("only the bytes of the view are written", output.position() < 1024);
+
+    @SuppressWarnings("unchecked")
+    AbstractBlockReader.ReaderRecord<Slice> copy = (AbstractBlockReader.ReaderRecord<Slice>)kryo.readClassAndObject(
+        new Input(output.toBytes()));
+    Assert.assertEquals("block id", 1, copy.getBlockId());
+    Assert.assertArrayEquals("record", new byte[] {'a', 'b'}, copy.getRecord().toByteArray());
+    Assert.assertEquals("compact record", 0, copy.getRecord().offset);
+
+    AbstractBlockReader.ReaderRecord<String> stringRecord = new AbstractBlockReader.ReaderRecord<>(2, "ab");
+    output.clear();
+    kryo.writeClassAndObject(output, stringRecord);
+    @SuppressWarnings("unchecked")
+    AbstractBlockReader.ReaderRecord<String> stringCopy = (AbstractBlockReader.ReaderRecord<String>)kryo
+        .readClassAndObject(new Input(output.toBytes()));
+    Assert.assertEquals("string record", "ab", stringCopy.getRecord());
+  }
+
   @Test
   public void testCountersTransfer() throws Exception
   {
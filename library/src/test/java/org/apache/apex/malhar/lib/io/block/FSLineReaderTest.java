@@ -23,6 +23,7 @@ import java.io.File;
 import java.io.FileInputStream;
 import java.io.IOException;
 import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
 import java.util.Arrays;
 import java.util.Collections;
 import java.util.Comparator;
@@ -38,12 +39,19 @@ import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import org.apache.apex.malhar.lib.testbench.CollectorTestSink;
+import org.apache.commons.io.FileUtils;
+import org.apache.commons.lang3.StringUtils;
+import org.apache.hadoop.conf.Configuration;
+import org.apache.hadoop.fs.FSDataInputStream;
+import org.apache.hadoop.fs.FileSystem;
+import org.apache.hadoop.fs.Path;
 
 import com.google.common.collect.Lists;
 
 import com.datatorrent.api.Attribute;
 import com.datatorrent.api.Context;
 import com.datatorrent.api.DAG;
+import com.datatorrent.netlet.util.Slice;
 
 import static org.apache.apex.malhar.lib.helper.OperatorContextTestHelper.mockOperatorContext;
 
@@ -218,6 +226,44 @@ public class FSLineReaderTest
     }
   }
 
+  @Test
+  public void testDelimiterAndMultiByteCharacters() throws IOException
+  {
+    File file = new File("target/" + FSLineReaderTest.class.getSimpleName() + "/" + testMeta.appId + ".txt");
+    String delimiter = "\u00a6\u00a6";
+    String[] records = {"\u03b1,\u03b2", "", "l\u00ednea\u00a6x", "\u20ac\u20ac\u20ac\u20ac", "end"};
+    FileUtils.write(file, StringUtils.join(records, delimiter), StandardCharsets.UTF_8);
+
+    for (int bufferSize = 1; bufferSize <= 9; bufferSize++) {
+      ReaderContext.LineReaderContext<FSDataInputStream> context = new ReaderContext.LineReaderContext<>();
+      context.setDelimiter(delimiter);
+      context.setBufferSize(bufferSize);
+      context.setOverflowBufferSize(bufferSize);
+      Assert.assertEquals("buffer size " + bufferSize, Arrays.asList(records), readRecords(context, file));
+    }
+
+    FileUtils.write(file, "\u03b1\u03b2\r\n\u20ac\nend", StandardCharsets.UTF_8);
+    ReaderContext.LineReaderContext<FSDataInputStream> context = new ReaderContext.LineReaderContext<>();
+    context.setBufferSize(4);
+    context.setOverflowBufferSize(4);
+    Assert.assertEquals(Arrays.asList("\u03b1\u03b2", "\u20ac", "end"), readRecords(context, file));
+  }
+
+  private static List<String> readRecords(ReaderContext<FSDataInputStream> context, File file) throws IOException
+  {
+    List<String> records = Lists.newArrayList();
+    try (FSDataInputStream stream = FileSystem.getLocal(new Configuration()).open(new Path(file.getAbsolutePath()))) {
+      context.initialize(stream, new BlockMetadata.FileBlockMetadata(file.getAbsolutePath(), 0L, 0L, file.length(),
+          true, -1), false);
+      ReaderContext.Entity entity;
+      while ((entity = context.next()) != null) {
+        Slice record = entity.getRecordSlice();
+        records.add(new String(record.buffer, record.offset, record.length, StandardCharsets.UTF_8));
+      }
+    }
+    return records;
+  }
+
   public static final class BlockReader extends AbstractFSBlockReader.AbstractFSLineReader<String>
   {
     private final Pattern datePattern = Pattern.compile("\\d{2}?/\\d{2}?/\\d{4}?");
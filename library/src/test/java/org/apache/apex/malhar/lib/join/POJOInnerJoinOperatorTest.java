@@ -19,6 +19,9 @@
 package org.apache.apex.malhar.lib.join;
 
 import java.io.IOException;
+import java.util.HashSet;
+import java.util.Set;
+
 import org.junit.After;
 import org.junit.Assert;
 import org.junit.Before;
@@ -352,4 +355,57 @@ public class POJOInnerJoinOperatorTest
     Assert.assertEquals("value of Amount: ", order2.Amount, emitted.Amount);
     oper.teardown();
   }
+
+  @Test
+  public void testHotKeys() throws IOException, InterruptedException
+  {
+    POJOInnerJoinOperator oper = new POJOInnerJoinOperator();
+    oper.setIncludeFieldStr("ID,Name;OID,Amount");
+    oper.setLeftKeyExpression("ID");
+    oper.setRightKeyExpression("CID");
+    oper.setExpiryTime(10000L);
+    oper.setHotKeyThreshold(1);
+    oper.setLookupBatchSize(16);
+
+    oper.setup(context);
+    attributes.put(DAG.InputPortMeta.TUPLE_CLASS, CustOrder.class);
+    oper.outputPort.setup(new PortContext(attributes,context));
+
+    attributes.put(DAG.InputPortMeta.TUPLE_CLASS, Customer.class);
+    oper.input1.setup(new PortContext(attributes,context));
+    attributes.put(DAG.InputPortMeta.TUPLE_CLASS, Order.class);
+    oper.input2.setup(new PortContext(attributes,context));
+    oper.activate(context);
+
+    CollectorTestSink<CustOrder> sink = new CollectorTestSink<>();
+    @SuppressWarnings({"unchecked", "rawtypes"})
+    CollectorTestSink<Object> tmp = (CollectorTestSink)sink;
+    oper.outputPort.setSink(tmp);
+
+    oper.beginWindow(0);
+    oper.input1.process(new Customer(1, "Anil"));
+    for (int i = 0; i < 5; i++) {
+      oper.input2.process(new Order(200 + i, 1, 300));
+    }
+    oper.input2.process(new Order(300, 3, 300));
+    // the values of the hot key are updated with the tuples which are put afterwards
+    oper.input1.process(new Customer(1, "Join"));
+    for (int i = 5; i < 7; i++) {
+      oper.input2.process(new Order(200 + i, 1, 300));
+    }
+    oper.endWindow();
+
+    Set<String> joined = new HashSet<>();
+    for (CustOrder emitted : sink.collectedTuples) {
+      Assert.assertEquals("value of ID :", 1, emitted.ID);
+      Assert.assertEquals("value of Amount: ", 300, emitted.Amount);
+      joined.add(emitted.Name + emitted.OID);
+    }
+    Assert.assertEquals("Number of tuple emitted ", 14, sink.collectedTuples.size());
+    for (int i = 0; i < 7; i++) {
+      Assert.assertTrue(joined.contains("Anil" + (200 + i)));
+      Assert.assertTrue(joined.contains("Join" + (200 + i)));
+    }
+    oper.teardown();
+  }
 }
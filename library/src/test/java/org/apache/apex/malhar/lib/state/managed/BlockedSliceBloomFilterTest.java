@@ -0,0 +1,92 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.apex.malhar.lib.state.managed;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import com.datatorrent.netlet.util.Slice;
+
+public class BlockedSliceBloomFilterTest
+{
+  private static final int NUM_KEYS = 100000;
+
+  private static Slice key(int i)
+  {
+    return new Slice(("key" + i).getBytes());
+  }
+
+  @Test
+  public void testNoFalseNegatives()
+  {
+    BlockedSliceBloomFilter bloomFilter = new BlockedSliceBloomFilter(NUM_KEYS, 10);
+    for (int i = 0; i < NUM_KEYS; i++) {
+      bloomFilter.put(key(i));
+    }
+    Assert.assertEquals("number of keys", NUM_KEYS, bloomFilter.getNumberOfKeys());
+    for (int i = 0; i < NUM_KEYS; i++) {
+      Assert.assertTrue("key " + i, bloomFilter.mightContain(key(i)));
+    }
+  }
+
+  @Test
+  public void testFalsePositiveRate()
+  {
+    BlockedSliceBloomFilter bloomFilter = new BlockedSliceBloomFilter(NUM_KEYS, 10);
+    for (int i = 0; i < NUM_KEYS; i++) {
+      bloomFilter.put(key(i));
+    }
+    int falsePositives = 0;
+    for (int i = NUM_KEYS; i < 2 * NUM_KEYS; i++) {
+      if (bloomFilter.mightContain(key(i))) {
+        falsePositives++;
+      }
+    }
+    //about 1% with 10 bits per key, blocking adds a little
+    Assert.assertTrue("false positive rate " + falsePositives, falsePositives < NUM_KEYS * 0.02);
+  }
+
+  @Test
+  public void testWriteRead() throws IOException
+  {
+    BlockedSliceBloomFilter bloomFilter = new BlockedSliceBloomFilter(1000, 10);
+    for (int i = 0; i < 1000; i++) {
+      bloomFilter.put(key(i));
+    }
+    ByteArrayOutputStream bos = new ByteArrayOutputStream();
+    DataOutputStream dos = new DataOutputStream(bos);
+    bloomFilter.writeTo(dos);
+    dos.close();
+
+    BlockedSliceBloomFilter read = BlockedSliceBloomFilter.readFrom(new DataInputStream(
+        new ByteArrayInputStream(bos.toByteArray())));
+    Assert.assertEquals("number of keys", 1000, read.getNumberOfKeys());
+    Assert.assertEquals("number of hashes", bloomFilter.getNumberOfHashes(), read.getNumberOfHashes());
+    Assert.assertEquals("size", bloomFilter.getSizeInBytes(), read.getSizeInBytes());
+    for (int i = 0; i < 2000; i++) {
+      Assert.assertEquals("key " + i, bloomFilter.mightContain(key(i)), read.mightContain(key(i)));
+    }
+  }
+}
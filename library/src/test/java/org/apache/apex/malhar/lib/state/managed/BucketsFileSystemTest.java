@@ -19,7 +19,9 @@
 
 package org.apache.apex.malhar.lib.state.managed;
 
+import java.io.DataOutputStream;
 import java.io.IOException;
+import java.util.Comparator;
 import java.util.Iterator;
 import java.util.Map;
 import java.util.TreeMap;
@@ -33,6 +35,9 @@ import org.junit.runner.Description;
 import org.apache.apex.malhar.lib.fileaccess.FileAccessFSImpl;
 import org.apache.apex.malhar.lib.util.TestUtils;
 
+import com.google.common.collect.Lists;
+import com.google.common.collect.Maps;
+
 import com.datatorrent.netlet.util.Slice;
 
 public class BucketsFileSystemTest
@@ -187,4 +192,206 @@ public class BucketsFileSystemTest
     Assert.assertEquals("first key", "24", immutableTbm.getFirstKey().stringValue());
     testMeta.bucketsFileSystem.teardown();
   }
+
+  @Test
+  public void testTransferCreatesRun() throws IOException
+  {
+    testMeta.bucketsFileSystem.setup(testMeta.managedStateContext);
+    Map<Slice, Bucket.BucketedValue> unsavedBucket0 = ManagedStateTestUtils.getTestBucketData(0, 100);
+    testMeta.bucketsFileSystem.writeBucketData(10, 0, unsavedBucket0, -1);
+
+    Map<Slice, Bucket.BucketedValue> more = ManagedStateTestUtils.getTestBucketData(50, 100);
+    testMeta.bucketsFileSystem.writeBucketData(11, 0, more, -1);
+
+    BucketsFileSystem.TimeBucketMeta immutableTbm = testMeta.bucketsFileSystem.getTimeBucketMeta(0, 100);
+    Assert.assertEquals("runs", 2, immutableTbm.getRuns().size());
+    Assert.assertEquals("newest run", 1, immutableTbm.getRuns().get(0).getRunId());
+    Assert.assertEquals("first key", "0", immutableTbm.getFirstKey().stringValue());
+    Assert.assertTrue("run file", testMeta.managedStateContext.getFileAccess().exists(0,
+        BucketsFileSystem.getFileName(100, 1)));
+    testMeta.bucketsFileSystem.teardown();
+  }
+
+  @Test
+  public void testCompaction() throws IOException
+  {
+    testMeta.bucketsFileSystem.setMinRunsToCompact(3);
+    testMeta.bucketsFileSystem.setup(testMeta.managedStateContext);
+
+    Map<Slice, Bucket.BucketedValue> expected = Maps.newHashMap();
+    for (int window = 0; window < 3; window++) {
+      Map<Slice, Bucket.BucketedValue> windowData = Maps.newHashMap();
+      Slice updated = new Slice("1".getBytes());
+      windowData.put(updated, new Bucket.BucketedValue(100, new Slice(Integer.toString(window).getBytes())));
+      Slice inserted = new Slice(Integer.toString(10 + window).getBytes());
+      windowData.put(inserted, new Bucket.BucketedValue(100, inserted));
+      testMeta.bucketsFileSystem.writeBucketData(10 + window, 0, windowData, -1);
+      expected.putAll(windowData);
+    }
+    Assert.assertEquals("runs before compaction", 3, testMeta.bucketsFileSystem.getTimeBucketMeta(0, 100).getRuns()
+        .size());
+
+    Assert.assertTrue("compacted", testMeta.bucketsFileSystem.compactTimeBuckets(-1));
+    Assert.assertFalse("nothing to compact", testMeta.bucketsFileSystem.compactTimeBuckets(-1));
+
+    BucketsFileSystem.TimeBucketMeta immutableTbm = testMeta.bucketsFileSystem.getTimeBucketMeta(0, 100);
+    Assert.assertEquals("runs after compaction", 1, immutableTbm.getRuns().size());
+    Assert.assertEquals("merged run", 3, immutableTbm.getRuns().get(0).getRunId());
+    Assert.assertEquals("last transferred window", 12, immutableTbm.getLastTransferredWindowId());
+
+    //obsolete runs are deleted at the second transfer after compaction
+    testMeta.bucketsFileSystem.deleteObsoleteRunFiles();
+    Assert.assertTrue("run retained", testMeta.managedStateContext.getFileAccess().exists(0,
+        BucketsFileSystem.getFileName(100, 0)));
+    testMeta.bucketsFileSystem.deleteObsoleteRunFiles();
+    Assert.assertFalse("run deleted", testMeta.managedStateContext.getFileAccess().exists(0,
+        BucketsFileSystem.getFileName(100, 0)));
+
+    ManagedStateTestUtils.validateBucketOnFileSystem(testMeta.managedStateContext.getFileAccess(), 0, expected, 4);
+    testMeta.bucketsFileSystem.teardown();
+  }
+
+  @Test
+  public void testObsoleteRunsDeletedAfterFailure() throws IOException
+  {
+    testMeta.bucketsFileSystem.setMinRunsToCompact(3);
+    testMeta.bucketsFileSystem.setup(testMeta.managedStateContext);
+    for (int window = 0; window < 3; window++) {
+      testMeta.bucketsFileSystem.writeBucketData(10 + window, 0,
+          ManagedStateTestUtils.getTestBucketData(window * 10, 100), -1);
+    }
+    Assert.assertTrue("compacted", testMeta.bucketsFileSystem.compactTimeBuckets(-1));
+    Assert.assertEquals("obsolete runs", Lists.newArrayList(2L, 1L, 0L),
+        testMeta.bucketsFileSystem.getMutableTimeBucketMeta(0, 100).getObsoleteRunIds());
+    //the operator fails before the obsolete runs are deleted
+    testMeta.bucketsFileSystem.teardown();
+
+    BucketsFileSystem reloaded = new BucketsFileSystem();
+    reloaded.setup(testMeta.managedStateContext);
+    BucketsFileSystem.TimeBucketMeta immutableTbm = reloaded.getTimeBucketMeta(0, 100);
+    Assert.assertEquals("runs", 1, immutableTbm.getRuns().size());
+
+    reloaded.deleteObsoleteRunFiles();
+    Assert.assertTrue("run retained", testMeta.managedStateContext.getFileAccess().exists(0,
+        BucketsFileSystem.getFileName(100, 0)));
+    reloaded.deleteObsoleteRunFiles();
+    for (long runId = 0; runId < 3; runId++) {
+      Assert.assertFalse("run deleted " + runId, testMeta.managedStateContext.getFileAccess().exists(0,
+          BucketsFileSystem.getFileName(100, runId)));
+    }
+    Assert.assertTrue("merged run", testMeta.managedStateContext.getFileAccess().exists(0,
+        BucketsFileSystem.getFileName(100, 3)));
+    reloaded.teardown();
+
+    BucketsFileSystem reloadedAgain = new BucketsFileSystem();
+    reloadedAgain.setup(testMeta.managedStateContext);
+    Assert.assertTrue("no obsolete runs", reloadedAgain.getMutableTimeBucketMeta(0, 100).getObsoleteRunIds().isEmpty());
+    reloadedAgain.teardown();
+  }
+
+  @Test
+  public void testLoadMetaWithRuns() throws IOException
+  {
+    testMeta.bucketsFileSystem.setup(testMeta.managedStateContext);
+    testMeta.bucketsFileSystem.writeBucketData(10, 0, ManagedStateTestUtils.getTestBucketData(50, 100), -1);
+    testMeta.bucketsFileSystem.writeBucketData(11, 0, ManagedStateTestUtils.getTestBucketData(24, 100), -1);
+
+    BucketsFileSystem reloaded = new BucketsFileSystem();
+    reloaded.setup(testMeta.managedStateContext);
+    BucketsFileSystem.TimeBucketMeta immutableTbm = reloaded.getTimeBucketMeta(0, 100);
+    Assert.assertEquals("runs", 2, immutableTbm.getRuns().size());
+    Assert.assertEquals("last transferred window", 11, immutableTbm.getLastTransferredWindowId());
+    Assert.assertEquals("first key", "24", immutableTbm.getFirstKey().stringValue());
+    Assert.assertEquals("first key of older run", "50", immutableTbm.getRuns().get(1).getFirstKey().stringValue());
+    reloaded.teardown();
+    testMeta.bucketsFileSystem.teardown();
+  }
+
+  @Test
+  public void testLoadVersion2Meta() throws IOException
+  {
+    try (DataOutputStream dos = testMeta.managedStateContext.getFileAccess().getOutputStream(0,
+        BucketsFileSystem.META_FILE_NAME)) {
+      dos.writeInt(2);
+      dos.writeInt(1);
+      dos.writeLong(100);
+      dos.writeLong(11);
+      dos.writeInt(2);
+      for (int run = 1; run >= 0; run--) {
+        byte[] firstKey = Integer.toString(run).getBytes();
+        dos.writeLong(run);
+        dos.writeLong(10);
+        dos.writeInt(firstKey.length);
+        dos.write(firstKey);
+      }
+    }
+
+    testMeta.bucketsFileSystem.setup(testMeta.managedStateContext);
+    BucketsFileSystem.TimeBucketMeta immutableTbm = testMeta.bucketsFileSystem.getTimeBucketMeta(0, 100);
+    Assert.assertEquals("runs", 2, immutableTbm.getRuns().size());
+    Assert.assertEquals("last transferred window", 11, immutableTbm.getLastTransferredWindowId());
+    Assert.assertEquals("size", 20, immutableTbm.getSizeInBytes());
+    Assert.assertEquals("first key", "0", immutableTbm.getFirstKey().stringValue());
+    Assert.assertNull("last key", immutableTbm.getLastKey());
+    BucketsFileSystem.RunMeta newestRun = immutableTbm.getRuns().get(0);
+    Assert.assertEquals("newest run", 1, newestRun.getRunId());
+    Assert.assertEquals("first key of newest run", "1", newestRun.getFirstKey().stringValue());
+    Assert.assertEquals("number of keys", -1, newestRun.getNumberOfKeys());
+    Assert.assertNull("last key of newest run", newestRun.getLastKey());
+    testMeta.bucketsFileSystem.teardown();
+  }
+
+  @Test
+  public void testRunBloomFilter() throws IOException
+  {
+    testMeta.bucketsFileSystem.setup(testMeta.managedStateContext);
+    Map<Slice, Bucket.BucketedValue> windowData = Maps.newHashMap();
+    for (int i = 0; i < 5; i++) {
+      Slice keyVal = new Slice(Integer.toString(i).getBytes());
+      windowData.put(keyVal, new Bucket.BucketedValue(100, keyVal));
+    }
+    testMeta.bucketsFileSystem.writeBucketData(10, 0, windowData, -1);
+
+    BucketsFileSystem.TimeBucketMeta immutableTbm = testMeta.bucketsFileSystem.getTimeBucketMeta(0, 100);
+    Assert.assertEquals("number of keys", 5, immutableTbm.getRuns().get(0).getNumberOfKeys());
+
+    BlockedSliceBloomFilter bloomFilter = testMeta.bucketsFileSystem.readBloomFilter(0, 100, 0);
+    Assert.assertNotNull("bloom filter", bloomFilter);
+    for (int i = 0; i < 5; i++) {
+      Assert.assertTrue("key " + i, bloomFilter.mightContain(new Slice(Integer.toString(i).getBytes())));
+    }
+    Assert.assertNull("no bloom filter", testMeta.bucketsFileSystem.readBloomFilter(0, 100, 1));
+    testMeta.bucketsFileSystem.teardown();
+  }
+
+  @Test
+  public void testKeyRangeOfRuns() throws IOException
+  {
+    testMeta.bucketsFileSystem.setup(testMeta.managedStateContext);
+    Comparator<Slice> keyComparator = testMeta.managedStateContext.getKeyComparator();
+    for (int window = 0; window < 2; window++) {
+      Map<Slice, Bucket.BucketedValue> windowData = Maps.newHashMap();
+      for (int i = 0; i < 3; i++) {
+        Slice keyVal = new Slice(Integer.toString(window * 4 + i + 1).getBytes());
+        windowData.put(keyVal, new Bucket.BucketedValue(100, keyVal));
+      }
+      testMeta.bucketsFileSystem.writeBucketData(10 + window, 0, windowData, -1);
+    }
+
+    BucketsFileSystem reloaded = new BucketsFileSystem();
+    reloaded.setup(testMeta.managedStateContext);
+    BucketsFileSystem.TimeBucketMeta immutableTbm = reloaded.getTimeBucketMeta(0, 100);
+    Assert.assertEquals("first key", "1", immutableTbm.getFirstKey().stringValue());
+    Assert.assertEquals("last key", "7", immutableTbm.getLastKey().stringValue());
+    Assert.assertEquals("last key of newest run", "7", immutableTbm.getRuns().get(0).getLastKey().stringValue());
+    Assert.assertEquals("last key of oldest run", "3", immutableTbm.getRuns().get(1).getLastKey().stringValue());
+
+    Assert.assertFalse("below time bucket", immutableTbm.mightContainKey(new Slice("0".getBytes()), keyComparator));
+    Assert.assertFalse("above time bucket", immutableTbm.mightContainKey(new Slice("8".getBytes()), keyComparator));
+    Assert.assertTrue("in time bucket", immutableTbm.mightContainKey(new Slice("4".getBytes()), keyComparator));
+    Assert.assertFalse("between runs", immutableTbm.getRuns().get(1).mightContainKey(new Slice("4".getBytes()),
+        keyComparator));
+    reloaded.teardown();
+    testMeta.bucketsFileSystem.teardown();
+  }
 }
@@ -20,6 +20,8 @@
 package org.apache.apex.malhar.lib.state.managed;
 
 import java.io.IOException;
+import java.util.Collections;
+import java.util.List;
 import java.util.Map;
 
 import org.junit.Assert;
@@ -28,7 +30,6 @@ import org.junit.Test;
 import org.junit.rules.TestWatcher;
 import org.junit.runner.Description;
 
-import org.apache.apex.malhar.lib.fileaccess.FileAccess;
 import org.apache.apex.malhar.lib.fileaccess.FileAccessFSImpl;
 import org.apache.apex.malhar.lib.state.managed.Bucket.DefaultBucket;
 import org.apache.apex.malhar.lib.state.managed.Bucket.ReadSource;
@@ -37,6 +38,8 @@ import org.apache.apex.malhar.lib.utils.serde.AffixSerde;
 import org.apache.apex.malhar.lib.utils.serde.SerializationBuffer;
 import org.apache.apex.malhar.lib.utils.serde.StringSerde;
 
+import com.google.common.collect.Lists;
+import com.google.common.collect.Maps;
 import com.google.common.primitives.Longs;
 
 import com.datatorrent.netlet.util.Slice;
@@ -95,6 +98,25 @@ public class DefaultBucketTest
     testMeta.defaultBucket.teardown();
   }
 
+  @Test
+  public void testOffHeapMemory()
+  {
+    testMeta.defaultBucket.setOffHeapMemory(true);
+    testMeta.defaultBucket.setup(testMeta.managedStateContext);
+    Slice one = ManagedStateTestUtils.getSliceFor("1");
+    Slice two = ManagedStateTestUtils.getSliceFor("2");
+    testMeta.defaultBucket.put(one, 1, one);
+    testMeta.defaultBucket.put(one, 1, two);
+    Assert.assertEquals("value two", two, testMeta.defaultBucket.get(one, 1, Bucket.ReadSource.MEMORY));
+    Assert.assertTrue("off-heap size", testMeta.defaultBucket.getSizeInBytes() > 0);
+
+    Map<Slice, Bucket.BucketedValue> unsaved = testMeta.defaultBucket.checkpoint(10);
+    Assert.assertTrue("off-heap tier", unsaved instanceof OffHeapBucketedValueMap);
+    testMeta.defaultBucket.committed(10);
+    Assert.assertEquals("committed value", two, testMeta.defaultBucket.get(one, 1, Bucket.ReadSource.MEMORY));
+    testMeta.defaultBucket.teardown();
+  }
+
   @Test
   public void testGetFromReader() throws IOException
   {
@@ -129,6 +151,71 @@ public class DefaultBucketTest
     testMeta.defaultBucket.teardown();
   }
 
+  @Test
+  public void testGetFromNewestRun() throws IOException
+  {
+    testMeta.defaultBucket.setup(testMeta.managedStateContext);
+    Slice one = ManagedStateTestUtils.getSliceFor("1");
+    Slice two = ManagedStateTestUtils.getSliceFor("2");
+
+    Map<Slice, Bucket.BucketedValue> unsavedBucket0 = ManagedStateTestUtils.getTestBucketData(0, 100);
+    testMeta.managedStateContext.getBucketsFileSystem().writeBucketData(1, 1, unsavedBucket0, -1);
+
+    Map<Slice, Bucket.BucketedValue> updates = Maps.newHashMap();
+    updates.put(one, new Bucket.BucketedValue(101, two));
+    testMeta.managedStateContext.getBucketsFileSystem().writeBucketData(2, 1, updates, -1);
+
+    Assert.assertEquals("value from newest run", two, testMeta.defaultBucket.get(one, 101, Bucket.ReadSource.READERS));
+    Assert.assertEquals("value from newest run", two, testMeta.defaultBucket.get(one, -1, Bucket.ReadSource.READERS));
+
+    testMeta.defaultBucket.teardown();
+  }
+
+  @Test
+  public void testGetAllFromRuns() throws IOException
+  {
+    testMeta.defaultBucket.setup(testMeta.managedStateContext);
+
+    Map<Slice, Bucket.BucketedValue> run0 = Maps.newHashMap();
+    for (int i = 10; i < 90; i += 2) {
+      Slice keyVal = ManagedStateTestUtils.getSliceFor(Integer.toString(i));
+      run0.put(keyVal, new Bucket.BucketedValue(101, keyVal));
+    }
+    testMeta.managedStateContext.getBucketsFileSystem().writeBucketData(1, 1, run0, -1);
+
+    Map<Slice, Bucket.BucketedValue> run1 = Maps.newHashMap();
+    Slice updated = ManagedStateTestUtils.getSliceFor("updated");
+    run1.put(ManagedStateTestUtils.getSliceFor("20"), new Bucket.BucketedValue(101, updated));
+    run1.put(ManagedStateTestUtils.getSliceFor("70"), new Bucket.BucketedValue(101, updated));
+    run1.put(ManagedStateTestUtils.getSliceFor("71"), new Bucket.BucketedValue(102, updated));
+    testMeta.managedStateContext.getBucketsFileSystem().writeBucketData(2, 1, run1, -1);
+
+    List<Slice> keys = Lists.newArrayList();
+    for (int i = 95; i >= 5; i--) {
+      keys.add(ManagedStateTestUtils.getSliceFor(Integer.toString(i)));
+    }
+
+    Map<Slice, Slice> values = testMeta.defaultBucket.getAll(keys, -1, ReadSource.READERS);
+    Assert.assertEquals("values", 41, values.size());
+    for (int i = 95; i >= 5; i--) {
+      Slice key = ManagedStateTestUtils.getSliceFor(Integer.toString(i));
+      Slice expected = null;
+      if (i == 20 || i == 70 || i == 71) {
+        expected = updated;
+      } else if (i >= 10 && i < 90 && i % 2 == 0) {
+        expected = key;
+      }
+      Assert.assertEquals("value " + i, expected, values.get(key));
+      Assert.assertEquals("same as get " + i, expected, testMeta.defaultBucket.get(key, -1, ReadSource.READERS));
+    }
+
+    values = testMeta.defaultBucket.getAll(keys, 102, ReadSource.READERS);
+    Assert.assertEquals("values of time bucket", Collections.singletonMap(ManagedStateTestUtils.getSliceFor("71"),
+        updated), values);
+
+    testMeta.defaultBucket.teardown();
+  }
+
   @Test
   public void testCheckpointed()
   {
@@ -161,7 +248,7 @@ public class DefaultBucketTest
   {
     testMeta.defaultBucket.setup(testMeta.managedStateContext);
     testGetFromReader();
-    Map<Long, FileAccess.FileReader> readers = testMeta.defaultBucket.getReaders();
+    Map<Long, Bucket.TimeBucketReader> readers = testMeta.defaultBucket.getReaders();
     Assert.assertTrue("reader open", readers.containsKey(101L));
 
     Slice two = ManagedStateTestUtils.getSliceFor("2");
@@ -187,7 +274,7 @@ public class DefaultBucketTest
   {
     testMeta.defaultBucket.setup(testMeta.managedStateContext);
     testGetFromReader();
-    Map<Long, FileAccess.FileReader> readers = testMeta.defaultBucket.getReaders();
+    Map<Long, Bucket.TimeBucketReader> readers = testMeta.defaultBucket.getReaders();
     Assert.assertTrue("reader open", readers.containsKey(101L));
 
     testMeta.defaultBucket.teardown();
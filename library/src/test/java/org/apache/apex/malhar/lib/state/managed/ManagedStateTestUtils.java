@@ -58,22 +58,39 @@ public class ManagedStateTestUtils
       Map<Slice, Bucket.BucketedValue> unsavedBucket, int keysPerTimeBucket) throws IOException
   {
     RemoteIterator<LocatedFileStatus> iterator = fileAccess.listFiles(bucketId);
-    TreeMap<Slice, Slice> fromDisk = Maps.newTreeMap(new SliceComparator());
-    int size = 0;
+    //time bucket -> run files ordered from oldest to newest
+    TreeMap<Long, TreeMap<Long, String>> runFiles = Maps.newTreeMap();
     while (iterator.hasNext()) {
       LocatedFileStatus fileStatus = iterator.next();
 
       String timeBucketStr = fileStatus.getPath().getName();
-      if (timeBucketStr.equals(BucketsFileSystem.META_FILE_NAME) || timeBucketStr.endsWith(".tmp")) {
-        //ignoring meta file
+      if (timeBucketStr.equals(BucketsFileSystem.META_FILE_NAME) || timeBucketStr.endsWith(".tmp") ||
+          timeBucketStr.endsWith(BucketsFileSystem.BLOOM_FILTER_FILE_SUFFIX)) {
+        //ignoring meta file and bloom filters
         continue;
       }
+      long timeBucket = BucketsFileSystem.getTimeBucket(timeBucketStr);
+      int separator = timeBucketStr.indexOf('.');
+      long runId = separator == -1 ? 0 : Long.parseLong(timeBucketStr.substring(separator + 1));
+      if (!runFiles.containsKey(timeBucket)) {
+        runFiles.put(timeBucket, new TreeMap<Long, String>());
+      }
+      runFiles.get(timeBucket).put(runId, timeBucketStr);
+    }
 
-      LOG.debug("bucket {} time-bucket {}", bucketId, timeBucketStr);
-
-      FileAccess.FileReader reader = fileAccess.getReader(bucketId, timeBucketStr);
-
-      reader.readFully(fromDisk);
+    TreeMap<Slice, Slice> fromDisk = Maps.newTreeMap(new SliceComparator());
+    int size = 0;
+    for (Map.Entry<Long, TreeMap<Long, String>> timeBucketEntry : runFiles.entrySet()) {
+      TreeMap<Slice, Slice> timeBucketData = Maps.newTreeMap(new SliceComparator());
+      for (String runFile : timeBucketEntry.getValue().values()) {
+        LOG.debug("bucket {} time-bucket {} run {}", bucketId, timeBucketEntry.getKey(), runFile);
+
+        FileAccess.FileReader reader = fileAccess.getReader(bucketId, runFile);
+        //newer runs override the values of older runs
+        reader.readFully(timeBucketData);
+        reader.close();
+      }
+      fromDisk.putAll(timeBucketData);
       size += keysPerTimeBucket;
       Assert.assertEquals("size of bucket " + bucketId, size, fromDisk.size());
     }
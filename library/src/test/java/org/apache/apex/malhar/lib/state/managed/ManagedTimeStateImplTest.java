@@ -20,6 +20,7 @@
 package org.apache.apex.malhar.lib.state.managed;
 
 import java.io.IOException;
+import java.util.List;
 import java.util.Map;
 import java.util.concurrent.ExecutionException;
 import java.util.concurrent.Future;
@@ -35,6 +36,8 @@ import org.apache.apex.malhar.lib.state.managed.Bucket.DefaultBucket;
 import org.apache.apex.malhar.lib.util.KryoCloneUtils;
 import org.apache.apex.malhar.lib.util.TestUtils;
 
+import com.google.common.collect.Lists;
+
 import com.datatorrent.api.Attribute;
 import com.datatorrent.api.Context;
 import com.datatorrent.api.Context.OperatorContext;
@@ -98,6 +101,35 @@ public class ManagedTimeStateImplTest
     testMeta.managedState.teardown();
   }
 
+  @Test
+  public void testAsyncGetAllFromReadersAndMemory() throws IOException, ExecutionException, InterruptedException
+  {
+    long time = System.currentTimeMillis();
+
+    DefaultBucket.setDisableBloomFilterByDefault(true);
+    testMeta.managedState.setup(testMeta.operatorContext);
+
+    Map<Slice, Bucket.BucketedValue> unsavedBucket0 = ManagedStateTestUtils.getTestBucketData(0, time);
+    testMeta.managedState.bucketsFileSystem.writeBucketData(time, 0, unsavedBucket0, -1);
+
+    Slice seven = ManagedStateTestUtils.getSliceFor("7");
+    testMeta.managedState.beginWindow(0);
+    testMeta.managedState.put(0, time, seven, seven);
+
+    List<Slice> keys = Lists.newArrayList();
+    for (String key : new String[] {"4", "0", "7", "9", "2"}) {
+      keys.add(ManagedStateTestUtils.getSliceFor(key));
+    }
+    Map<Slice, Slice> values = testMeta.managedState.getAllAsync(0, keys).get();
+
+    Assert.assertEquals("number of values", keys.size() - 1, values.size());
+    for (Slice key : keys) {
+      Slice expected = key.equals(ManagedStateTestUtils.getSliceFor("9")) ? null : key;
+      Assert.assertEquals("value of " + key, expected, values.get(key));
+    }
+    testMeta.managedState.teardown();
+  }
+
   @Test
   public void testPutGetWithTime()
   {
@@ -0,0 +1,121 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.apex.malhar.lib.state.managed;
+
+import java.io.ByteArrayOutputStream;
+import java.util.Iterator;
+import java.util.Map;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import com.esotericsoftware.kryo.Kryo;
+import com.esotericsoftware.kryo.io.Input;
+import com.esotericsoftware.kryo.io.Output;
+import com.google.common.collect.Maps;
+
+import com.datatorrent.netlet.util.Slice;
+
+public class OffHeapBucketedValueMapTest
+{
+  @Test
+  public void testPutGet()
+  {
+    OffHeapBucketedValueMap map = new OffHeapBucketedValueMap();
+    Map<Slice, Bucket.BucketedValue> expected = Maps.newHashMap();
+    for (int i = 0; i < 10000; i++) {
+      Slice key = ManagedStateTestUtils.getSliceFor("key" + i);
+      Bucket.BucketedValue value = new Bucket.BucketedValue(i % 7, ManagedStateTestUtils.getSliceFor("value" + i));
+      Assert.assertNull("new key", map.put(key, value));
+      expected.put(key, value);
+    }
+    Assert.assertEquals("size", expected.size(), map.size());
+    for (Map.Entry<Slice, Bucket.BucketedValue> entry : expected.entrySet()) {
+      Bucket.BucketedValue value = map.get(entry.getKey());
+      Assert.assertEquals("value", entry.getValue().getValue(), value.getValue());
+      Assert.assertEquals("time bucket", entry.getValue().getTimeBucket(), value.getTimeBucket());
+    }
+    Assert.assertNull("absent key", map.get(ManagedStateTestUtils.getSliceFor("absent")));
+    Assert.assertTrue("allocated", map.getAllocatedBytes() >= map.getSizeInBytes());
+  }
+
+  @Test
+  public void testUpdateAndRemove()
+  {
+    OffHeapBucketedValueMap map = new OffHeapBucketedValueMap();
+    Slice one = ManagedStateTestUtils.getSliceFor("1");
+    Slice two = ManagedStateTestUtils.getSliceFor("2");
+
+    map.put(one, new Bucket.BucketedValue(1, one));
+    Bucket.BucketedValue previous = map.put(one, new Bucket.BucketedValue(2, two));
+    Assert.assertEquals("previous value", one, previous.getValue());
+    Assert.assertEquals("updated value", two, map.get(one).getValue());
+    Assert.assertEquals("size", 1, map.size());
+
+    Assert.assertEquals("removed value", two, map.remove(one).getValue());
+    Assert.assertFalse("removed", map.containsKey(one));
+    Assert.assertEquals("size", 0, map.size());
+
+    map.put(one, new Bucket.BucketedValue(3, one));
+    Assert.assertEquals("value after remove", one, map.get(one).getValue());
+  }
+
+  @Test
+  public void testIteration()
+  {
+    OffHeapBucketedValueMap map = new OffHeapBucketedValueMap();
+    for (int i = 0; i < 100; i++) {
+      Slice key = ManagedStateTestUtils.getSliceFor(Integer.toString(i));
+      map.put(key, new Bucket.BucketedValue(i, key));
+    }
+    int count = 0;
+    Iterator<Map.Entry<Slice, Bucket.BucketedValue>> iterator = map.entrySet().iterator();
+    while (iterator.hasNext()) {
+      Map.Entry<Slice, Bucket.BucketedValue> entry = iterator.next();
+      Assert.assertEquals("key and value", entry.getKey(), entry.getValue().getValue());
+      if (entry.getValue().getTimeBucket() % 2 == 0) {
+        iterator.remove();
+      }
+      count++;
+    }
+    Assert.assertEquals("iterated", 100, count);
+    Assert.assertEquals("size", 50, map.size());
+    Assert.assertEquals("keys", 50, map.keySet().size());
+  }
+
+  @Test
+  public void testSerialization()
+  {
+    OffHeapBucketedValueMap map = new OffHeapBucketedValueMap();
+    Slice one = ManagedStateTestUtils.getSliceFor("1");
+    map.put(one, new Bucket.BucketedValue(1, one));
+
+    Kryo kryo = new Kryo();
+    ByteArrayOutputStream bos = new ByteArrayOutputStream();
+    Output output = new Output(bos);
+    kryo.writeClassAndObject(output, map);
+    output.close();
+
+    @SuppressWarnings("unchecked")
+    Map<Slice, Bucket.BucketedValue> copy = (Map<Slice, Bucket.BucketedValue>)kryo.readClassAndObject(
+        new Input(bos.toByteArray()));
+    Assert.assertTrue("off-heap", copy instanceof OffHeapBucketedValueMap);
+    Assert.assertEquals("value", one, copy.get(one).getValue());
+  }
+}
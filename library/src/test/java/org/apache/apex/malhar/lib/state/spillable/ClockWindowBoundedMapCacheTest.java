@@ -0,0 +1,125 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.apex.malhar.lib.state.spillable;
+
+import java.util.Map;
+import java.util.Random;
+import java.util.Set;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import com.google.common.collect.Maps;
+import com.google.common.collect.Sets;
+
+public class ClockWindowBoundedMapCacheTest
+{
+  @Test
+  public void getChangedGetRemovedTest()
+  {
+    ClockWindowBoundedMapCache<String, String> cache = new ClockWindowBoundedMapCache<>();
+
+    cache.put("1", "a");
+    cache.put("2", "b");
+
+    Assert.assertEquals(Sets.newHashSet("1", "2"), cache.getChangedKeys());
+    Assert.assertEquals(Sets.newHashSet(), cache.getRemovedKeys());
+
+    cache.endWindow();
+
+    cache.remove("1");
+    cache.remove("3");
+
+    Assert.assertEquals(Sets.newHashSet(), cache.getChangedKeys());
+    Assert.assertEquals(Sets.newHashSet("1", "3"), cache.getRemovedKeys());
+
+    Assert.assertEquals(null, cache.get("1"));
+    Assert.assertFalse(cache.contains("1"));
+    Assert.assertEquals("b", cache.get("2"));
+
+    cache.put("3", "c");
+    Assert.assertEquals(Sets.newHashSet("3"), cache.getChangedKeys());
+    Assert.assertEquals(Sets.newHashSet("1"), cache.getRemovedKeys());
+
+    cache.endWindow();
+
+    Assert.assertEquals(Sets.newHashSet(), cache.getChangedKeys());
+    Assert.assertEquals(Sets.newHashSet(), cache.getRemovedKeys());
+    Assert.assertEquals(2, cache.size());
+    Assert.assertEquals("c", cache.get("3"));
+  }
+
+  @Test
+  public void expirationTest()
+  {
+    ClockWindowBoundedMapCache<String, String> cache = new ClockWindowBoundedMapCache<>(2);
+
+    cache.put("1", "a");
+    cache.put("2", "b");
+    cache.put("3", "c");
+    cache.endWindow();
+
+    // the sweep cleared the reference bits of all the entries before it evicted one of them
+    Assert.assertEquals(2, cache.size());
+
+    cache.put("4", "d");
+    cache.endWindow();
+
+    // the only referenced entry is not evicted
+    Assert.assertEquals(2, cache.size());
+    Assert.assertEquals("d", cache.get("4"));
+  }
+
+  @Test
+  public void randomOperationsTest()
+  {
+    ClockWindowBoundedMapCache<Integer, Integer> cache = new ClockWindowBoundedMapCache<>(100000);
+    Map<Integer, Integer> expected = Maps.newHashMap();
+    Set<Integer> changed = Sets.newHashSet();
+    Set<Integer> removed = Sets.newHashSet();
+    Random random = new Random(0);
+
+    for (int window = 0; window < 20; window++) {
+      for (int i = 0; i < 5000; i++) {
+        Integer key = random.nextInt(2000);
+        if (random.nextInt(4) == 0) {
+          cache.remove(key);
+          expected.remove(key);
+          changed.remove(key);
+          removed.add(key);
+        } else {
+          cache.put(key, i);
+          expected.put(key, i);
+          changed.add(key);
+          removed.remove(key);
+        }
+      }
+      Assert.assertEquals(changed, cache.getChangedKeys());
+      Assert.assertEquals(removed, cache.getRemovedKeys());
+      cache.endWindow();
+      changed.clear();
+      removed.clear();
+
+      Assert.assertEquals(expected.size(), cache.size());
+      for (int key = 0; key < 2000; key++) {
+        Assert.assertEquals(expected.get(key), cache.get(key));
+      }
+    }
+  }
+}
@@ -0,0 +1,90 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.apex.malhar.lib.state.spillable;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import org.apache.apex.malhar.lib.utils.serde.LongSerde;
+import org.apache.apex.malhar.lib.utils.serde.StringSerde;
+
+import com.google.common.collect.Sets;
+
+public class LongKeyClockWindowBoundedMapCacheTest
+{
+  @Test
+  public void getChangedGetRemovedTest()
+  {
+    LongKeyClockWindowBoundedMapCache<String> cache = new LongKeyClockWindowBoundedMapCache<>();
+
+    cache.put(0L, "a");
+    cache.put(-1L, "b");
+
+    Assert.assertEquals(Sets.newHashSet(0L, -1L), cache.getChangedKeys());
+    Assert.assertEquals("a", cache.get(0L));
+    Assert.assertEquals(null, cache.get(1L));
+
+    cache.endWindow();
+
+    cache.remove(0L);
+    Assert.assertEquals(Sets.newHashSet(), cache.getChangedKeys());
+    Assert.assertEquals(Sets.newHashSet(0L), cache.getRemovedKeys());
+    Assert.assertFalse(cache.contains(0L));
+    Assert.assertTrue(cache.contains(-1L));
+
+    cache.endWindow();
+
+    Assert.assertEquals(Sets.newHashSet(), cache.getRemovedKeys());
+    Assert.assertEquals(1, cache.size());
+  }
+
+  @Test
+  public void expirationTest()
+  {
+    LongKeyClockWindowBoundedMapCache<String> cache = new LongKeyClockWindowBoundedMapCache<>(10);
+
+    for (long key = 0; key < 1000; key++) {
+      cache.put(key, Long.toString(key));
+      if (key % 100 == 99) {
+        cache.endWindow();
+        Assert.assertEquals(10, cache.size());
+      }
+    }
+
+    int count = 0;
+    for (long key = 0; key < 1000; key++) {
+      String value = cache.get(key);
+      if (value != null) {
+        Assert.assertEquals(Long.toString(key), value);
+        count++;
+      }
+    }
+    Assert.assertEquals(10, count);
+  }
+
+  @Test
+  public void cacheTypeTest()
+  {
+    Assert.assertTrue(WindowBoundedCache.Type.CLOCK.newCache(new LongSerde(), 10)
+        instanceof LongKeyClockWindowBoundedMapCache);
+    Assert.assertTrue(WindowBoundedCache.Type.CLOCK.newCache(new StringSerde(), 10)
+        instanceof ClockWindowBoundedMapCache);
+    Assert.assertTrue(WindowBoundedCache.Type.LRU.newCache(new LongSerde(), 10) instanceof WindowBoundedMapCache);
+  }
+}
@@ -74,6 +74,64 @@ public class SpillableSetMultimapImplTest
   }
 
 
+  @Test
+  public void removeAllInSameWindowManagedStateTest()
+  {
+    removeAllInSameWindowTestHelper(testMeta.store);
+  }
+
+  @Test
+  public void removeAllInSameWindowTimeUnifiedManagedStateTest()
+  {
+    te = new TestStringTimeExtractor();
+    removeAllInSameWindowTestHelper(testMeta.timeStore);
+  }
+
+  private void removeAllInSameWindowTestHelper(SpillableStateStore store)
+  {
+    SpillableSetMultimapImpl<String, String> map = null;
+    if (te == null) {
+      map = new SpillableSetMultimapImpl<>(store, ID1, 0L, createStringSerde(), createStringSerde());
+    } else {
+      map = new SpillableSetMultimapImpl<>(store, ID1, 0L, createStringSerde(), createStringSerde(), te);
+    }
+
+    store.setup(testMeta.operatorContext);
+    map.setup(testMeta.operatorContext);
+
+    store.beginWindow(0L);
+    map.beginWindow(0L);
+
+    map.put("a", "x");
+    map.put("a", "y");
+    map.removeAll("a");
+    Assert.assertFalse(map.containsKey("a"));
+
+    // the set is accessed again before its removal is written to the store
+    Set<String> set = map.get("a");
+    Assert.assertFalse(set.iterator().hasNext());
+    map.removeAll("a");
+
+    map.put("a", "z");
+    Assert.assertEquals(Sets.newHashSet("z"), Sets.newHashSet(map.get("a")));
+
+    map.endWindow();
+    store.endWindow();
+
+    store.beginWindow(1L);
+    map.beginWindow(1L);
+
+    set = map.get("a");
+    Assert.assertEquals(1, set.size());
+    Assert.assertEquals(Sets.newHashSet("z"), Sets.newHashSet(set));
+
+    map.endWindow();
+    store.endWindow();
+
+    map.teardown();
+    store.teardown();
+  }
+
   public void simpleMultiKeyTestHelper(SpillableStateStore store)
   {
     SpillableSetMultimapImpl<String, String> map = null;
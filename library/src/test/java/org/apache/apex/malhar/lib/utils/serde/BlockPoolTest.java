@@ -0,0 +1,79 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.apex.malhar.lib.utils.serde;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+public class BlockPoolTest
+{
+  @Test
+  public void testSlabClasses()
+  {
+    BlockPool pool = new BlockPool(1024 * 1024);
+
+    byte[] buffer = pool.allocate(100000);
+    Assert.assertEquals(BlockPool.getSlabSize(100000), buffer.length);
+    Assert.assertEquals(0, buffer.length % BlockPool.SLAB_UNIT);
+
+    pool.release(buffer);
+    Assert.assertEquals(buffer.length, pool.getPooledBytes());
+
+    //a smaller slab class does not get the buffer
+    Assert.assertNotSame(buffer, pool.allocate(1000));
+    Assert.assertSame(buffer, pool.allocate(buffer.length - 1));
+    Assert.assertEquals(0, pool.getPooledBytes());
+    Assert.assertEquals(1, pool.getReusedBuffers());
+  }
+
+  @Test
+  public void testMaxPooledBytes()
+  {
+    BlockPool pool = new BlockPool(2 * BlockPool.SLAB_UNIT);
+
+    pool.release(pool.allocate(BlockPool.SLAB_UNIT));
+    pool.release(pool.allocate(BlockPool.SLAB_UNIT));
+    pool.release(new byte[BlockPool.SLAB_UNIT]);
+    pool.release(new byte[BlockPool.SLAB_UNIT]);
+    Assert.assertEquals(2 * BlockPool.SLAB_UNIT, pool.getPooledBytes());
+
+    //buffers which are not of a slab class are not pooled
+    pool.clear();
+    pool.release(new byte[100]);
+    Assert.assertEquals(0, pool.getPooledBytes());
+  }
+
+  @Test
+  public void testBlockGrowth()
+  {
+    BlockPool pool = new BlockPool(1024 * 1024);
+    Block block = new Block(100, pool);
+    Assert.assertEquals(BlockPool.SLAB_UNIT, block.capacity());
+
+    byte[] data = new byte[BlockPool.SLAB_UNIT + 1];
+    block.write(data);
+    Assert.assertTrue(block.capacity() > data.length);
+    //the buffer before the growth is back in the pool
+    Assert.assertEquals(BlockPool.SLAB_UNIT, pool.getPooledBytes());
+
+    block.toSlice();
+    block.release();
+    Assert.assertEquals(BlockPool.SLAB_UNIT + BlockPool.getSlabSize(2 * data.length), pool.getPooledBytes());
+  }
+}
@@ -176,4 +176,46 @@ public class BlockStreamTest
     //at least keep one block as current block
     Assert.assertTrue(stream.capacity() == Block.DEFAULT_BLOCK_SIZE);
   }
+
+  @Test
+  public void testPooledBlocks()
+  {
+    BlockPool pool = new BlockPool(BlockPool.DEFAULT_MAX_POOLED_BYTES);
+    WindowedBlockStream stream = new WindowedBlockStream(Block.DEFAULT_BLOCK_SIZE, pool);
+
+    byte[] data = new byte[2048];
+    long windowId = 0;
+    for (; windowId < 10; ++windowId) {
+      stream.beginWindow(windowId);
+      for (int i = 0; i < 100; ++i) {
+        random.nextBytes(data);
+        stream.write(data);
+        stream.toSlice();
+      }
+      stream.endWindow();
+    }
+    Assert.assertEquals(stream.size(), stream.dataSizeUpToWindow(windowId));
+    Assert.assertEquals(100 * data.length, stream.dataSizeOfWindow(5));
+
+    long allocated = pool.getAllocatedBuffers();
+    stream.completeWindow(5);
+    Assert.assertEquals(4 * 100 * data.length, stream.size());
+    Assert.assertEquals(0, stream.dataSizeUpToWindow(5));
+
+    stream.releaseAllFreeMemory();
+    Assert.assertTrue(pool.getPooledBytes() > 0);
+
+    //the new blocks are taken from the pool
+    for (; windowId < 15; ++windowId) {
+      stream.beginWindow(windowId);
+      for (int i = 0; i < 100; ++i) {
+        stream.write(data);
+        stream.toSlice();
+      }
+      stream.endWindow();
+    }
+    Assert.assertEquals(allocated, pool.getAllocatedBuffers());
+    Assert.assertTrue(pool.getReusedBuffers() > 0);
+    Assert.assertEquals(9 * 100 * data.length, stream.size());
+  }
 }
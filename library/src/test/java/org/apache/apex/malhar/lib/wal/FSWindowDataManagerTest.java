@@ -30,6 +30,7 @@ import org.junit.rules.TestWatcher;
 import org.junit.runner.Description;
 
 import org.apache.apex.malhar.lib.util.TestUtils;
+import org.apache.commons.io.FileUtils;
 
 import com.google.common.collect.Maps;
 import com.google.common.collect.Sets;
@@ -240,6 +241,37 @@ public class FSWindowDataManagerTest
     pair1.second.teardown();
   }
 
+  @Test
+  public void testAsyncSave() throws IOException
+  {
+    Pair<Context.OperatorContext, FSWindowDataManager> pair1 = createManagerAndContextFor(1);
+    pair1.second.getWal().setAsyncWrites(true);
+    pair1.second.getWal().setMaxLength(100);
+    pair1.second.setup(pair1.first);
+
+    for (int i = 1; i <= 9; ++i) {
+      Map<Integer, String> data = Maps.newHashMap();
+      data.put(i, "window" + i);
+      pair1.second.save(data, i);
+    }
+
+    pair1.second.committed(3);
+    pair1.second.teardown();
+
+    Pair<Context.OperatorContext, FSWindowDataManager> pair1AfterRecovery = createManagerAndContextFor(1);
+    testMeta.attributes.put(Context.OperatorContext.ACTIVATION_WINDOW_ID, 1L);
+    pair1AfterRecovery.second.setup(pair1AfterRecovery.first);
+    Assert.assertEquals("largest completed window", 9, pair1AfterRecovery.second.getLargestCompletedWindow());
+
+    Assert.assertEquals("window 3 deleted", null, pair1AfterRecovery.second.retrieve(3));
+    for (int i = 4; i <= 9; ++i) {
+      Map<Integer, String> data = Maps.newHashMap();
+      data.put(i, "window" + i);
+      Assert.assertEquals("window " + i, data, pair1AfterRecovery.second.retrieve(i));
+    }
+    pair1AfterRecovery.second.teardown();
+  }
+
   @Test
   public void testDeleteDoesNotRemoveTmpFiles() throws IOException
   {
@@ -300,6 +332,43 @@ public class FSWindowDataManagerTest
     fsManager.teardown();
   }
 
+  @Test
+  public void testRecoveryWithWindowIndex() throws IOException
+  {
+    for (int operatorId = 1; operatorId <= 3; operatorId++) {
+      Pair<Context.OperatorContext, FSWindowDataManager> pair = createManagerAndContextFor(operatorId);
+      pair.second.getWal().setMaxLength(200);
+      pair.second.setWindowIndexInterval(1);
+      pair.second.setup(pair.first);
+      for (int i = 1; i <= 30; ++i) {
+        pair.second.save("window" + i + "of" + operatorId, i);
+      }
+      pair.second.committed(20);
+      pair.second.teardown();
+    }
+
+    String statePath = testMeta.applicationPath + "/idempotentState/";
+    Assert.assertTrue("window index", new File(statePath + "1/windowIndex").isFile());
+    //a corrupt index is ignored
+    FileUtils.writeByteArrayToFile(new File(statePath + "3/windowIndex"), new byte[] {0, 0, 0, 5});
+
+    Pair<Context.OperatorContext, FSWindowDataManager> pair1 = createManagerAndContextFor(1);
+    FSWindowDataManager fsManager = (FSWindowDataManager)pair1.second.partition(1, Sets.newHashSet(2, 3)).get(0);
+    fsManager.setRecoveryThreads(2);
+    testMeta.attributes.put(Context.OperatorContext.ACTIVATION_WINDOW_ID, 20L);
+    fsManager.setup(pair1.first);
+    Assert.assertEquals("recovery window", 30, fsManager.getLargestCompletedWindow());
+
+    for (int i = 21; i <= 30; ++i) {
+      Map<Integer, Object> artifacts = fsManager.retrieveAllPartitions(i);
+      Assert.assertEquals("num artifacts", 3, artifacts.size());
+      for (int operatorId = 1; operatorId <= 3; operatorId++) {
+        Assert.assertEquals("artifact", "window" + i + "of" + operatorId, artifacts.get(operatorId));
+      }
+    }
+    fsManager.teardown();
+  }
+
   @Test
   public void testAbsoluteRecoveryPath() throws IOException
   {
@@ -21,6 +21,8 @@ package org.apache.apex.malhar.lib.wal;
 import java.io.IOException;
 import java.net.URI;
 import java.net.URISyntaxException;
+import java.util.ArrayList;
+import java.util.List;
 import java.util.Random;
 
 import org.junit.Assert;
@@ -276,6 +278,65 @@ public class FileSystemWALTest
     testMeta.fsWAL.teardown();
   }
 
+  @Test
+  public void testAsyncWalWriteAndRead() throws IOException
+  {
+    //a buffer smaller than some entries so that the entries wrap around and are copied in chunks
+    testMeta.fsWAL.setAsyncWrites(true);
+    testMeta.fsWAL.setAsyncWriteBufferSize(256);
+    testMeta.fsWAL.setup();
+
+    FileSystemWAL.FileSystemWALWriter fsWALWriter = testMeta.fsWAL.getWriter();
+    List<Slice> entries = new ArrayList<>();
+    for (int i = 0; i < 100; i++) {
+      Slice entry = getRandomSlice(RAND.nextInt(1000));
+      entries.add(entry);
+      fsWALWriter.append(entry);
+      if (i % 10 == 0) {
+        testMeta.fsWAL.requestFlush();
+      }
+    }
+    testMeta.fsWAL.beforeCheckpoint(0);
+
+    FileSystemWAL.FileSystemWALReader fsWALReader = testMeta.fsWAL.getReader();
+    for (Slice entry : entries) {
+      Assert.assertEquals("entry", entry, fsWALReader.next());
+    }
+    Assert.assertNull("end of wal", fsWALReader.next());
+
+    testMeta.fsWAL.teardown();
+  }
+
+  @Test
+  public void testAsyncWalRolling() throws IOException
+  {
+    testMeta.fsWAL.setAsyncWrites(true);
+    testMeta.fsWAL.setMaxLength(32 * 1024);
+    testMeta.fsWAL.setup();
+
+    FileSystemWAL.FileSystemWALWriter fsWALWriter = testMeta.fsWAL.getWriter();
+    int numRecords = 100;
+    write1KRecords(fsWALWriter, numRecords);
+
+    testMeta.fsWAL.beforeCheckpoint(0);
+    testMeta.fsWAL.committed(0);
+    Assert.assertTrue("first part finalized", testMeta.fs.isFile(new Path(testMeta.fsWAL.getPartFilePath(0))));
+
+    FileSystemWAL.FileSystemWALReader reader = testMeta.fsWAL.getReader();
+    assertNumTuplesRead(reader, numRecords);
+
+    reader.seek(new FileSystemWAL.FileSystemWALPointer(1, 16 * 1024));
+    assertNumTuplesRead(reader, numRecords - (32 + 16));
+
+    //writes continue after the reads
+    write1KRecords(fsWALWriter, 10);
+    testMeta.fsWAL.beforeCheckpoint(1);
+    reader.seek(new FileSystemWAL.FileSystemWALPointer(1, 0));
+    assertNumTuplesRead(reader, numRecords + 10 - 32);
+
+    testMeta.fsWAL.teardown();
+  }
+
   @Test
   public void testDeleteOfTmpFiles() throws IOException
   {
@@ -0,0 +1,138 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.apex.malhar.lib.window.impl;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import org.apache.apex.malhar.lib.window.Window;
+
+import com.google.common.collect.Lists;
+
+/**
+ * Unit tests for {@link WindowTriggerScheduler}
+ */
+public class WindowTriggerSchedulerTest
+{
+  @Test
+  public void testWatermarkAndDiscard()
+  {
+    WindowTriggerScheduler scheduler = new WindowTriggerScheduler();
+    List<Window> windows = new ArrayList<>();
+    for (int i = 9; i >= 0; i--) {
+      scheduler.schedule(new Window.TimeWindow(i * 1000, 1000), false, true);
+    }
+    Assert.assertEquals(10, scheduler.size());
+
+    scheduler.pollWatermarkDue(3000, true, windows);
+    Assert.assertEquals(Lists.newArrayList(new Window.TimeWindow(0, 1000), new Window.TimeWindow(1000, 1000)), windows);
+    windows.clear();
+    scheduler.pollWatermarkDue(3000, true, windows);
+    Assert.assertTrue("windows are polled once for the watermark", windows.isEmpty());
+
+    scheduler.pollDiscardDue(1500, windows);
+    Assert.assertEquals(Lists.newArrayList(new Window.TimeWindow(0, 1000)), windows);
+    Assert.assertFalse(scheduler.isScheduled(new Window.TimeWindow(0, 1000)));
+    Assert.assertEquals(9, scheduler.size());
+    windows.clear();
+
+    scheduler.unschedule(new Window.TimeWindow(2000, 1000));
+    scheduler.pollWatermarkDue(5000, false, windows);
+    Assert.assertEquals(Lists.newArrayList(new Window.TimeWindow(3000, 1000)), windows);
+    windows.clear();
+
+    scheduler.pollDiscardDue(Long.MAX_VALUE, windows);
+    Assert.assertEquals("windows are not discarded if not requested",
+        Lists.newArrayList(new Window.TimeWindow(1000, 1000)), windows);
+    windows.clear();
+
+    scheduler.pollWatermarkDue(Long.MAX_VALUE, false, windows);
+    Assert.assertEquals(6, windows.size());
+  }
+
+  @Test
+  public void testGlobalWindow()
+  {
+    WindowTriggerScheduler scheduler = new WindowTriggerScheduler();
+    List<Window> windows = new ArrayList<>();
+    scheduler.schedule(Window.GlobalWindow.INSTANCE, false, true);
+    scheduler.pollWatermarkDue(Long.MAX_VALUE, true, windows);
+    Assert.assertTrue("the global window never ends", windows.isEmpty());
+  }
+
+  @Test
+  public void testTriggers()
+  {
+    WindowTriggerScheduler scheduler = new WindowTriggerScheduler();
+    List<Window> windows = new ArrayList<>();
+    Window window1 = new Window.TimeWindow(0, 1000);
+    Window window2 = new Window.TimeWindow(1000, 1000);
+    scheduler.scheduleTrigger(window1, 100);
+    scheduler.pollTriggersDue(Long.MAX_VALUE, windows);
+    Assert.assertTrue("triggers are only scheduled for scheduled windows", windows.isEmpty());
+
+    scheduler.schedule(window1, false, true);
+    scheduler.schedule(window2, false, true);
+    scheduler.scheduleTrigger(window1, 100);
+    scheduler.scheduleTrigger(window2, 200);
+    scheduler.pollTriggersDue(50, windows);
+    Assert.assertTrue(windows.isEmpty());
+
+    // rescheduled triggers replace the previous ones
+    scheduler.scheduleTrigger(window1, 300);
+    scheduler.pollTriggersDue(250, windows);
+    Assert.assertEquals(Lists.newArrayList(window2), windows);
+    windows.clear();
+
+    scheduler.scheduleTrigger(window2, 300);
+    scheduler.pollTriggersDue(300, windows);
+    Assert.assertEquals(2, windows.size());
+    windows.clear();
+    scheduler.pollTriggersDue(Long.MAX_VALUE - 1, windows);
+    Assert.assertTrue("polled triggers are not scheduled anymore", windows.isEmpty());
+
+    scheduler.scheduleTrigger(window1, 400);
+    scheduler.scheduleTrigger(window1, WindowTriggerScheduler.NOT_SCHEDULED);
+    scheduler.scheduleTrigger(window2, 400);
+    scheduler.unschedule(window2);
+    scheduler.pollTriggersDue(Long.MAX_VALUE - 1, windows);
+    Assert.assertTrue("cancelled triggers are not polled", windows.isEmpty());
+  }
+
+  @Test
+  public void testCompaction()
+  {
+    WindowTriggerScheduler scheduler = new WindowTriggerScheduler();
+    List<Window> windows = new ArrayList<>();
+    Window window = new Window.TimeWindow(0, 1000);
+    for (int i = 0; i < 10000; i++) {
+      scheduler.unschedule(window);
+      scheduler.schedule(window, false, true);
+      scheduler.scheduleTrigger(window, i);
+    }
+    scheduler.pollTriggersDue(Long.MAX_VALUE - 1, windows);
+    Assert.assertEquals(Lists.newArrayList(window), windows);
+    windows.clear();
+    scheduler.pollWatermarkDue(Long.MAX_VALUE, true, windows);
+    Assert.assertEquals(Lists.newArrayList(window), windows);
+  }
+}
@@ -173,14 +173,17 @@ public class DTFileTest
 
     long numBlocks = CacheManager.getCacheSize();
     long hit = CacheManager.getCache().stats().hitCount();
+    long hitCount = CacheManager.getHitCount();
     scanner.lowerBound(key);
     Assert.assertEquals("Cache contains some blocks ", CacheManager.getCacheSize(), numBlocks);
     Assert.assertEquals("Cache hit ", CacheManager.getCache().stats().hitCount(), hit + 1);
+    Assert.assertEquals("Cache hit count", hitCount + 1, CacheManager.getHitCount());
 
     /* test cache miss */
     scanner.close();
     hit = CacheManager.getCache().stats().hitCount();
     long oldmiss = CacheManager.getCache().stats().missCount();
+    long missCount = CacheManager.getMissCount();
     ikey = tuples - 1;
     bb.clear();
     bb.putLong(ikey);
@@ -189,6 +192,7 @@ public class DTFileTest
     Assert.assertEquals("Cache contains one more blocks ", CacheManager.getCacheSize(), numBlocks + 1);
     Assert.assertEquals("No cache hit ", CacheManager.getCache().stats().hitCount(), hit);
     Assert.assertEquals("Cache miss", CacheManager.getCache().stats().missCount(), oldmiss + 1);
+    Assert.assertEquals("Cache miss count", missCount + 1, CacheManager.getMissCount());
 
     Assert.assertEquals("Reverse lookup cache and block cache has same number of entries",
         reader.readerBCF.getCacheKeys().size(), CacheManager.getCacheSize());
@@ -29,6 +29,7 @@ import java.util.Properties;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import org.apache.apex.malhar.sql.planner.ApexRelNode;
 import org.apache.apex.malhar.sql.planner.RelNodeVisitor;
 import org.apache.apex.malhar.sql.schema.ApexSQLTable;
 import org.apache.apex.malhar.sql.table.Endpoint;
@@ -85,6 +86,8 @@ public class SQLExecEnvironment
 
   private final JavaTypeFactoryImpl typeFactory;
   private SchemaPlus schema = Frameworks.createRootSchema(true);
+  private int aggregatePartitions = 1;
+  private long aggregateLatenessMillis = ApexRelNode.RelContext.DEFAULT_AGGREGATE_LATENESS_MILLIS;
 
   /**
    * Construct SQL Execution Environment which works on given DAG objec.
@@ -220,6 +223,37 @@ public class SQLExecEnvironment
     return registerFunction(name, scalarFunction);
   }
 
+  /**
+   * Set the number of partitions of the operators computing the partial aggregates of GROUP BY statements. The partial
+   * aggregates of all the partitions are merged by a single windowed operator.
+   *
+   * @param partitions Number of partitions, 1 by default.
+   *
+   * @return Returns this {@link SQLExecEnvironment}
+   */
+  public SQLExecEnvironment withAggregatePartitions(int partitions)
+  {
+    Preconditions.checkArgument(partitions > 0, "Number of partitions must be positive");
+    this.aggregatePartitions = partitions;
+    return this;
+  }
+
+  /**
+   * Set the time by which the rows of the GROUP BY statements with a tumbling window may be late. The result of a
+   * window is emitted once a row which is later than the end of the window by this time is received, the rows of the
+   * window which arrive after that are dropped.
+   *
+   * @param latenessMillis Lateness in milliseconds, 10 seconds by default.
+   *
+   * @return Returns this {@link SQLExecEnvironment}
+   */
+  public SQLExecEnvironment withAggregateLateness(long latenessMillis)
+  {
+    Preconditions.checkArgument(latenessMillis >= 0, "Lateness must not be negative");
+    this.aggregateLatenessMillis = latenessMillis;
+    return this;
+  }
+
   /**
    * This is the main method takes SQL statement as input and contructs a DAG using contructs registered with this
    * {@link SQLExecEnvironment}.
@@ -237,7 +271,7 @@ public class SQLExecEnvironment
       RelNode relationalTree = planner.rel(validatedTree).rel;
       logger.info("RelNode relationalTree generate from SQL statement is:\n {}",
           Util.toLinux(RelOptUtil.toString(relationalTree)));
-      RelNodeVisitor visitor = new RelNodeVisitor(dag, typeFactory);
+      RelNodeVisitor visitor = new RelNodeVisitor(dag, typeFactory, aggregatePartitions, aggregateLatenessMillis);
       visitor.traverse(relationalTree);
     } catch (Exception e) {
       throw Throwables.propagate(e);
@@ -0,0 +1,254 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.apex.malhar.sql.operators;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.apache.apex.malhar.lib.window.Accumulation;
+import org.apache.commons.lang3.mutable.MutableDouble;
+import org.apache.commons.lang3.mutable.MutableLong;
+import org.apache.hadoop.classification.InterfaceStability;
+
+import com.google.common.base.Preconditions;
+
+/**
+ * This is an {@link Accumulation} which computes the aggregate calls of a SQL GROUP BY. The input is the array of
+ * the arguments of the aggregate calls, the accumulated value is the array of the accumulated values of the aggregate
+ * calls and the output is the list of the results of the aggregate calls.
+ *
+ * The accumulation can also merge the accumulated values computed by another instance, which is used to merge the
+ * partial aggregates computed by the partitions of {@link PartialAggregateOperator}.
+ */
+@InterfaceStability.Evolving
+public class AggregateAccumulation implements Accumulation<Object[], Object[], List<Object>>
+{
+  /**
+   * The SQL aggregate functions which are supported.
+   */
+  public enum Function
+  {
+    COUNT, SUM, SUM0, MIN, MAX, AVG
+  }
+
+  private Function[] functions;
+  private boolean[] countNulls;
+  private boolean mergingPartials;
+
+  private AggregateAccumulation()
+  {
+    //for kryo
+  }
+
+  /**
+   * @param functions The aggregate functions of the aggregate calls.
+   * @param countNulls For each aggregate call, true if it counts the rows whatever the argument is, like COUNT(*).
+   */
+  public AggregateAccumulation(Function[] functions, boolean[] countNulls)
+  {
+    Preconditions.checkArgument(functions.length == countNulls.length);
+    this.functions = functions;
+    this.countNulls = countNulls;
+  }
+
+  /**
+   * Creates the accumulation which accumulates the partial aggregates computed by this accumulation.
+   *
+   * @return Returns the merging accumulation
+   */
+  public AggregateAccumulation mergingPartials()
+  {
+    AggregateAccumulation accumulation = new AggregateAccumulation(functions, countNulls);
+    accumulation.mergingPartials = true;
+    return accumulation;
+  }
+
+  public boolean isMergingPartials()
+  {
+    return mergingPartials;
+  }
+
+  @Override
+  public Object[] defaultAccumulatedValue()
+  {
+    Object[] accumulatedValue = new Object[functions.length];
+    for (int index = 0; index < functions.length; index++) {
+      if (functions[index] == Function.COUNT) {
+        accumulatedValue[index] = new MutableLong(0L);
+      } else if (functions[index] == Function.AVG) {
+        accumulatedValue[index] = new double[2];
+      }
+    }
+    return accumulatedValue;
+  }
+
+  @Override
+  public Object[] accumulate(Object[] accumulatedValue, Object[] input)
+  {
+    if (mergingPartials) {
+      return merge(accumulatedValue, input);
+    }
+
+    for (int index = 0; index < functions.length; index++) {
+      Object value = input[index];
+      if (value == null && !countNulls[index]) {
+        continue;
+      }
+
+      switch (functions[index]) {
+        case COUNT:
+          ((MutableLong)accumulatedValue[index]).increment();
+          break;
+        case SUM:
+        case SUM0:
+          accumulatedValue[index] = add(accumulatedValue[index], (Number)value);
+          break;
+        case MIN:
+          accumulatedValue[index] = min(accumulatedValue[index], value);
+          break;
+        case MAX:
+          accumulatedValue[index] = max(accumulatedValue[index], value);
+          break;
+        case AVG:
+          double[] sumAndCount = (double[])accumulatedValue[index];
+          sumAndCount[0] += ((Number)value).doubleValue();
+          sumAndCount[1]++;
+          break;
+        default:
+          throw new UnsupportedOperationException("Aggregate function " + functions[index]);
+      }
+    }
+    return accumulatedValue;
+  }
+
+  @Override
+  public Object[] merge(Object[] accumulatedValue1, Object[] accumulatedValue2)
+  {
+    for (int index = 0; index < functions.length; index++) {
+      Object value = accumulatedValue2[index];
+      if (value == null) {
+        continue;
+      }
+
+      switch (functions[index]) {
+        case COUNT:
+          ((MutableLong)accumulatedValue1[index]).add((MutableLong)value);
+          break;
+        case SUM:
+        case SUM0:
+          accumulatedValue1[index] = add(accumulatedValue1[index], (Number)value);
+          break;
+        case MIN:
+          accumulatedValue1[index] = min(accumulatedValue1[index], value);
+          break;
+        case MAX:
+          accumulatedValue1[index] = max(accumulatedValue1[index], value);
+          break;
+        case AVG:
+          double[] sumAndCount1 = (double[])accumulatedValue1[index];
+          double[] sumAndCount2 = (double[])value;
+          sumAndCount1[0] += sumAndCount2[0];
+          sumAndCount1[1] += sumAndCount2[1];
+          break;
+        default:
+          throw new UnsupportedOperationException("Aggregate function " + functions[index]);
+      }
+    }
+    return accumulatedValue1;
+  }
+
+  @Override
+  public List<Object> getOutput(Object[] accumulatedValue)
+  {
+    List<Object> output = new ArrayList<>(functions.length);
+    for (int index = 0; index < functions.length; index++) {
+      Object value = accumulatedValue[index];
+      switch (functions[index]) {
+        case COUNT:
+          output.add(((MutableLong)value).toLong());
+          break;
+        case SUM:
+          output.add(value == null ? null : toNumber(value));
+          break;
+        case SUM0:
+          output.add(value == null ? 0L : toNumber(value));
+          break;
+        case MIN:
+        case MAX:
+          output.add(value);
+          break;
+        case AVG:
+          double[] sumAndCount = (double[])value;
+          output.add(sumAndCount[1] == 0 ? null : sumAndCount[0] / sumAndCount[1]);
+          break;
+        default:
+          throw new UnsupportedOperationException("Aggregate function " + functions[index]);
+      }
+    }
+    return output;
+  }
+
+  @Override
+  public List<Object> getRetraction(List<Object> value)
+  {
+    throw new UnsupportedOperationException("Retraction of SQL aggregates is not supported");
+  }
+
+  /**
+   * Adds a value to a sum, which is a {@link MutableLong} while only integral values are added to it.
+   */
+  private static Object add(Object sum, Number value)
+  {
+    boolean integral = value instanceof Long || value instanceof Integer || value instanceof Short ||
+        value instanceof Byte || value instanceof MutableLong;
+    if (sum == null) {
+      return integral ? new MutableLong(value.longValue()) : new MutableDouble(value.doubleValue());
+    }
+
+    if (sum instanceof MutableLong) {
+      if (integral) {
+        ((MutableLong)sum).add(value.longValue());
+        return sum;
+      }
+      return new MutableDouble(((MutableLong)sum).doubleValue() + value.doubleValue());
+    }
+
+    ((MutableDouble)sum).add(value.doubleValue());
+    return sum;
+  }
+
+  private static Number toNumber(Object sum)
+  {
+    return sum instanceof MutableLong ? (Number)((MutableLong)sum).toLong() : ((MutableDouble)sum).toDouble();
+  }
+
+  @SuppressWarnings("unchecked")
+  private static Object min(Object accumulatedValue, Object value)
+  {
+    return accumulatedValue == null || ((Comparable<Object>)value).compareTo(accumulatedValue) < 0 ? value :
+        accumulatedValue;
+  }
+
+  @SuppressWarnings("unchecked")
+  private static Object max(Object accumulatedValue, Object value)
+  {
+    return accumulatedValue == null || ((Comparable<Object>)value).compareTo(accumulatedValue) > 0 ? value :
+        accumulatedValue;
+  }
+}
@@ -0,0 +1,161 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.apex.malhar.sql.operators;
+
+import java.lang.reflect.Field;
+import java.util.ArrayList;
+import java.util.List;
+
+import javax.validation.constraints.NotNull;
+
+import org.apache.apex.malhar.lib.util.KeyValPair;
+import org.apache.apex.malhar.lib.util.PojoUtils;
+import org.apache.apex.malhar.lib.window.Tuple;
+import org.apache.commons.lang.ClassUtils;
+import org.apache.hadoop.classification.InterfaceStability;
+
+import com.datatorrent.api.Context;
+import com.datatorrent.api.DefaultInputPort;
+import com.datatorrent.api.DefaultOutputPort;
+import com.datatorrent.api.Operator;
+import com.datatorrent.api.annotation.OutputPortFieldAnnotation;
+import com.datatorrent.common.util.BaseOperator;
+
+/**
+ * This operator converts the results of a SQL GROUP BY, emitted by the windowed operator as key value pairs of the
+ * group key and the results of the aggregate calls, to the POJO of the output row. The output fields are the group
+ * keys followed by the aggregate calls.
+ */
+@InterfaceStability.Evolving
+public class AggregateResultOperator extends BaseOperator
+    implements Operator.ActivationListener<Context.OperatorContext>
+{
+  @NotNull
+  private List<String> outputFields = new ArrayList<>();
+
+  private transient Class<?> outputClass;
+  private transient PojoUtils.Setter[] setters;
+  private transient Class<?>[] setterClasses;
+
+  public final transient DefaultInputPort<Tuple.WindowedTuple<KeyValPair<List<Object>, List<Object>>>> input =
+      new DefaultInputPort<Tuple.WindowedTuple<KeyValPair<List<Object>, List<Object>>>>()
+  {
+    @Override
+    public void process(Tuple.WindowedTuple<KeyValPair<List<Object>, List<Object>>> tuple)
+    {
+      processTuple(tuple.getValue());
+    }
+  };
+
+  @OutputPortFieldAnnotation(schemaRequired = true)
+  public final transient DefaultOutputPort<Object> output = new DefaultOutputPort<Object>()
+  {
+    @Override
+    public void setup(Context.PortContext context)
+    {
+      outputClass = context.getValue(Context.PortContext.TUPLE_CLASS);
+    }
+  };
+
+  @Override
+  public void activate(Context.OperatorContext context)
+  {
+    setters = new PojoUtils.Setter[outputFields.size()];
+    setterClasses = new Class<?>[outputFields.size()];
+    for (int index = 0; index < setters.length; index++) {
+      String field = outputFields.get(index);
+      Field f;
+      try {
+        f = outputClass.getDeclaredField(field);
+      } catch (NoSuchFieldException e) {
+        throw new RuntimeException("Failed to get output field info", e);
+      }
+
+      setterClasses[index] = ClassUtils.primitiveToWrapper(f.getType());
+      setters[index] = PojoUtils.createSetter(outputClass, field, setterClasses[index]);
+    }
+  }
+
+  @Override
+  public void deactivate()
+  {
+  }
+
+  @SuppressWarnings("unchecked")
+  protected void processTuple(KeyValPair<List<Object>, List<Object>> keyValue)
+  {
+    Object out;
+    try {
+      out = outputClass.newInstance();
+    } catch (InstantiationException | IllegalAccessException e) {
+      throw new RuntimeException("Failed to create new object", e);
+    }
+
+    List<Object> keys = keyValue.getKey();
+    List<Object> results = keyValue.getValue();
+    for (int index = 0; index < setters.length; index++) {
+      Object value = index < keys.size() ? keys.get(index) : results.get(index - keys.size());
+      setters[index].set(out, convert(value, setterClasses[index]));
+    }
+
+    output.emit(out);
+  }
+
+  /**
+   * Converts the result of an aggregate call to the type of the output field, since the results are computed as
+   * long or double values whatever the SQL type of the aggregate call is.
+   */
+  private static Object convert(Object value, Class<?> type)
+  {
+    if (!(value instanceof Number) || type.isInstance(value)) {
+      return value;
+    }
+
+    Number number = (Number)value;
+    if (type == Integer.class) {
+      return number.intValue();
+    } else if (type == Long.class) {
+      return number.longValue();
+    } else if (type == Double.class) {
+      return number.doubleValue();
+    } else if (type == Float.class) {
+      return number.floatValue();
+    } else if (type == Short.class) {
+      return number.shortValue();
+    } else if (type == Byte.class) {
+      return number.byteValue();
+    }
+    return value;
+  }
+
+  public List<String> getOutputFields()
+  {
+    return outputFields;
+  }
+
+  /**
+   * Set the fields of the output POJO, the group keys followed by the aggregate calls.
+   *
+   * @param outputFields Names of the output fields
+   */
+  public void setOutputFields(List<String> outputFields)
+  {
+    this.outputFields = outputFields;
+  }
+}
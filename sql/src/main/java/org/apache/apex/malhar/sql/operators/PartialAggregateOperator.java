@@ -0,0 +1,275 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.apex.malhar.sql.operators;
+
+import java.lang.reflect.Field;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import javax.validation.constraints.NotNull;
+
+import org.apache.apex.malhar.lib.util.KeyValPair;
+import org.apache.apex.malhar.lib.util.PojoUtils;
+import org.apache.apex.malhar.lib.window.Tuple;
+import org.apache.commons.lang.ClassUtils;
+import org.apache.hadoop.classification.InterfaceStability;
+
+import com.datatorrent.api.Context;
+import com.datatorrent.api.DefaultInputPort;
+import com.datatorrent.api.DefaultOutputPort;
+import com.datatorrent.api.Operator;
+import com.datatorrent.api.annotation.InputPortFieldAnnotation;
+import com.datatorrent.common.util.BaseOperator;
+
+/**
+ * This operator computes the partial aggregates of a SQL GROUP BY within each streaming window. The group keys and the
+ * arguments of the aggregate calls are read from the fields of the input POJO, the rows are accumulated by group key
+ * with {@link AggregateAccumulation} and the partial aggregates are emitted at the end of the streaming window as
+ * key value pairs of the group key and the accumulated values.
+ *
+ * When one of the group keys is a tumbling window, its value is the timestamp of the emitted tuples.
+ *
+ * The operator does not keep any state across the streaming windows, so it can be partitioned with a stateless
+ * partitioner. The partial aggregates of the partitions are merged per group key by the unifier of the output port
+ * before the downstream operator merges them across the streaming windows.
+ */
+@InterfaceStability.Evolving
+public class PartialAggregateOperator extends BaseOperator
+    implements Operator.ActivationListener<Context.OperatorContext>
+{
+  @NotNull
+  private List<String> keyFields = new ArrayList<>();
+  @NotNull
+  private List<String> argumentFields = new ArrayList<>();
+  private int windowKeyIndex = -1;
+  @NotNull
+  private AggregateAccumulation accumulation;
+
+  private transient Class<?> inputClass;
+  private transient PojoUtils.Getter[] keyGetters;
+  private transient PojoUtils.Getter[] argumentGetters;
+  private transient Map<List<Object>, Object[]> partials = new HashMap<>();
+
+  @InputPortFieldAnnotation(schemaRequired = true)
+  public final transient DefaultInputPort<Object> input = new DefaultInputPort<Object>()
+  {
+    @Override
+    public void setup(Context.PortContext context)
+    {
+      inputClass = context.getValue(Context.PortContext.TUPLE_CLASS);
+    }
+
+    @Override
+    public void process(Object tuple)
+    {
+      processTuple(tuple);
+    }
+  };
+
+  public final transient DefaultOutputPort<Tuple<KeyValPair<List<Object>, Object[]>>> output =
+      new DefaultOutputPort<Tuple<KeyValPair<List<Object>, Object[]>>>()
+  {
+    @Override
+    public Operator.Unifier<Tuple<KeyValPair<List<Object>, Object[]>>> getUnifier()
+    {
+      return new PartialAggregateUnifier(accumulation, windowKeyIndex);
+    }
+  };
+
+  @Override
+  public void activate(Context.OperatorContext context)
+  {
+    keyGetters = createGetters(keyFields);
+    argumentGetters = createGetters(argumentFields);
+  }
+
+  @Override
+  public void deactivate()
+  {
+  }
+
+  @SuppressWarnings("unchecked")
+  protected void processTuple(Object tuple)
+  {
+    List<Object> key = new ArrayList<>(keyGetters.length);
+    for (PojoUtils.Getter getter : keyGetters) {
+      key.add(getter.get(tuple));
+    }
+
+    Object[] arguments = new Object[argumentGetters.length];
+    for (int index = 0; index < argumentGetters.length; index++) {
+      if (argumentGetters[index] != null) {
+        arguments[index] = argumentGetters[index].get(tuple);
+      }
+    }
+
+    Object[] partial = partials.get(key);
+    if (partial == null) {
+      partial = accumulation.defaultAccumulatedValue();
+      partials.put(key, partial);
+    }
+    accumulation.accumulate(partial, arguments);
+  }
+
+  @Override
+  public void endWindow()
+  {
+    emitPartials(partials, windowKeyIndex, output);
+  }
+
+  static void emitPartials(Map<List<Object>, Object[]> partials, int windowKeyIndex,
+      DefaultOutputPort<Tuple<KeyValPair<List<Object>, Object[]>>> output)
+  {
+    for (Map.Entry<List<Object>, Object[]> entry : partials.entrySet()) {
+      KeyValPair<List<Object>, Object[]> keyValue = new KeyValPair<>(entry.getKey(), entry.getValue());
+      if (windowKeyIndex < 0) {
+        output.emit(new Tuple.PlainTuple<>(keyValue));
+      } else {
+        Number timestamp = (Number)entry.getKey().get(windowKeyIndex);
+        output.emit(new Tuple.TimestampedTuple<>(timestamp == null ? 0L : timestamp.longValue(), keyValue));
+      }
+    }
+    partials.clear();
+  }
+
+  @SuppressWarnings("unchecked")
+  private PojoUtils.Getter[] createGetters(List<String> fields)
+  {
+    PojoUtils.Getter[] getters = new PojoUtils.Getter[fields.size()];
+    for (int index = 0; index < getters.length; index++) {
+      String field = fields.get(index);
+      if (field == null) {
+        continue;
+      }
+
+      Field f;
+      try {
+        f = inputClass.getDeclaredField(field);
+      } catch (NoSuchFieldException e) {
+        throw new RuntimeException("Failed to get input field info", e);
+      }
+      getters[index] = PojoUtils.createGetter(inputClass, field, ClassUtils.primitiveToWrapper(f.getType()));
+    }
+    return getters;
+  }
+
+  public List<String> getKeyFields()
+  {
+    return keyFields;
+  }
+
+  /**
+   * Set the fields of the input POJO which are the group keys.
+   *
+   * @param keyFields Names of the group key fields
+   */
+  public void setKeyFields(List<String> keyFields)
+  {
+    this.keyFields = keyFields;
+  }
+
+  public List<String> getArgumentFields()
+  {
+    return argumentFields;
+  }
+
+  /**
+   * Set the fields of the input POJO which are the arguments of the aggregate calls. The field of an aggregate call
+   * without argument, like COUNT(*), is null.
+   *
+   * @param argumentFields Names of the argument fields in the order of the aggregate calls
+   */
+  public void setArgumentFields(List<String> argumentFields)
+  {
+    this.argumentFields = argumentFields;
+  }
+
+  public int getWindowKeyIndex()
+  {
+    return windowKeyIndex;
+  }
+
+  /**
+   * Set the index of the group key which is the start time in milliseconds of a tumbling window, or -1 if the
+   * aggregation is not windowed.
+   *
+   * @param windowKeyIndex Index of the window group key
+   */
+  public void setWindowKeyIndex(int windowKeyIndex)
+  {
+    this.windowKeyIndex = windowKeyIndex;
+  }
+
+  public AggregateAccumulation getAccumulation()
+  {
+    return accumulation;
+  }
+
+  public void setAccumulation(AggregateAccumulation accumulation)
+  {
+    this.accumulation = accumulation;
+  }
+
+  /**
+   * This unifier merges the partial aggregates of the partitions of {@link PartialAggregateOperator} by group key
+   * within each streaming window.
+   */
+  public static class PartialAggregateUnifier extends BaseOperator
+      implements Operator.Unifier<Tuple<KeyValPair<List<Object>, Object[]>>>
+  {
+    private AggregateAccumulation accumulation;
+    private int windowKeyIndex;
+
+    private transient Map<List<Object>, Object[]> partials = new HashMap<>();
+
+    public final transient DefaultOutputPort<Tuple<KeyValPair<List<Object>, Object[]>>> output =
+        new DefaultOutputPort<>();
+
+    private PartialAggregateUnifier()
+    {
+      //for kryo
+    }
+
+    public PartialAggregateUnifier(AggregateAccumulation accumulation, int windowKeyIndex)
+    {
+      this.accumulation = accumulation;
+      this.windowKeyIndex = windowKeyIndex;
+    }
+
+    @Override
+    public void process(Tuple<KeyValPair<List<Object>, Object[]>> tuple)
+    {
+      KeyValPair<List<Object>, Object[]> keyValue = tuple.getValue();
+      Object[] partial = partials.get(keyValue.getKey());
+      if (partial == null) {
+        partials.put(keyValue.getKey(), keyValue.getValue());
+      } else {
+        accumulation.merge(partial, keyValue.getValue());
+      }
+    }
+
+    @Override
+    public void endWindow()
+    {
+      emitPartials(partials, windowKeyIndex, output);
+    }
+  }
+}
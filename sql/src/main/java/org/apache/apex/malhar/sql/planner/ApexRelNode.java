@@ -23,24 +23,49 @@ import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 
+import org.joda.time.Duration;
+
+import org.apache.apex.malhar.lib.fileaccess.FileAccess;
+import org.apache.apex.malhar.lib.fileaccess.TFileImpl;
 import org.apache.apex.malhar.lib.io.ConsoleOutputOperator;
+import org.apache.apex.malhar.lib.state.spillable.SpillableComplexComponentImpl;
+import org.apache.apex.malhar.lib.state.spillable.SpillableSetMultimapImpl;
+import org.apache.apex.malhar.lib.state.spillable.SpillableStateStore;
+import org.apache.apex.malhar.lib.state.spillable.managed.ManagedStateSpillableStateStore;
+import org.apache.apex.malhar.lib.state.spillable.managed.ManagedTimeUnifiedStateSpillableStateStore;
+import org.apache.apex.malhar.lib.utils.serde.GenericSerde;
+import org.apache.apex.malhar.lib.window.TriggerOption;
+import org.apache.apex.malhar.lib.window.Window;
+import org.apache.apex.malhar.lib.window.WindowOption;
+import org.apache.apex.malhar.lib.window.WindowState;
+import org.apache.apex.malhar.lib.window.impl.FixedDiffEventTimeWatermarkGen;
+import org.apache.apex.malhar.lib.window.impl.InMemoryWindowedStorage;
+import org.apache.apex.malhar.lib.window.impl.KeyedWindowedOperatorImpl;
+import org.apache.apex.malhar.lib.window.impl.SpillableWindowedKeyedStorage;
 import org.apache.apex.malhar.sql.codegen.ExpressionCompiler;
+import org.apache.apex.malhar.sql.operators.AggregateAccumulation;
+import org.apache.apex.malhar.sql.operators.AggregateResultOperator;
 import org.apache.apex.malhar.sql.operators.FilterTransformOperator;
 import org.apache.apex.malhar.sql.operators.InnerJoinOperator;
 import org.apache.apex.malhar.sql.operators.OperatorUtils;
+import org.apache.apex.malhar.sql.operators.PartialAggregateOperator;
 import org.apache.apex.malhar.sql.schema.ApexSQLTable;
 import org.apache.apex.malhar.sql.schema.TupleSchemaRegistry;
 import org.apache.apex.malhar.sql.table.Endpoint;
 
 import org.apache.calcite.adapter.java.JavaTypeFactory;
+import org.apache.calcite.avatica.util.TimeUnitRange;
 import org.apache.calcite.plan.RelOptUtil;
 import org.apache.calcite.rel.RelNode;
+import org.apache.calcite.rel.core.Aggregate;
+import org.apache.calcite.rel.core.AggregateCall;
 import org.apache.calcite.rel.core.Filter;
 import org.apache.calcite.rel.core.Join;
 import org.apache.calcite.rel.core.JoinRelType;
 import org.apache.calcite.rel.core.Project;
 import org.apache.calcite.rel.core.TableModify;
 import org.apache.calcite.rel.core.TableScan;
+import org.apache.calcite.rel.logical.LogicalAggregate;
 import org.apache.calcite.rel.logical.LogicalFilter;
 import org.apache.calcite.rel.logical.LogicalJoin;
 import org.apache.calcite.rel.logical.LogicalProject;
@@ -48,9 +73,15 @@ import org.apache.calcite.rel.logical.LogicalTableModify;
 import org.apache.calcite.rel.logical.LogicalTableScan;
 import org.apache.calcite.rel.stream.Delta;
 import org.apache.calcite.rel.stream.LogicalDelta;
+import org.apache.calcite.rel.type.RelDataType;
 import org.apache.calcite.rel.type.RelDataTypeField;
 import org.apache.calcite.rex.RexBuilder;
+import org.apache.calcite.rex.RexCall;
+import org.apache.calcite.rex.RexLiteral;
 import org.apache.calcite.rex.RexNode;
+import org.apache.calcite.sql.SqlKind;
+import org.apache.calcite.sql.fun.SqlSumEmptyIsZeroAggFunction;
+import org.apache.calcite.sql.type.SqlTypeName;
 import org.apache.calcite.util.Pair;
 import org.apache.hadoop.classification.InterfaceStability;
 
@@ -61,6 +92,7 @@ import com.google.common.collect.Lists;
 import com.datatorrent.api.Context;
 import com.datatorrent.api.DAG;
 import com.datatorrent.api.Operator;
+import com.datatorrent.common.partitioner.StatelessPartitioner;
 
 /**
  * This class defines how to populate DAG of Apex for the relational nodes of SQL Calcite
@@ -77,21 +109,37 @@ public abstract class ApexRelNode
       .put(LogicalProject.class, new ApexProjectRel())
       .put(LogicalFilter.class, new ApexFilterRel())
       .put(LogicalJoin.class, new ApexJoinRel())
+      .put(LogicalAggregate.class, new ApexAggregateRel())
       .build();
 
   public abstract RelInfo visit(RelContext context, RelNode node, List<RelInfo> inputStreams);
 
   public static class RelContext
   {
+    /**
+     * Default time by which the rows of a tumbling window aggregation may be late, 10 seconds.
+     */
+    public static final long DEFAULT_AGGREGATE_LATENESS_MILLIS = 10000L;
+
     public DAG dag;
     public JavaTypeFactory typeFactory;
     public TupleSchemaRegistry schemaRegistry;
+    public int aggregatePartitions;
+    public long aggregateLatenessMillis;
 
     public RelContext(DAG dag, JavaTypeFactory typeFactory, TupleSchemaRegistry registry)
+    {
+      this(dag, typeFactory, registry, 1, DEFAULT_AGGREGATE_LATENESS_MILLIS);
+    }
+
+    public RelContext(DAG dag, JavaTypeFactory typeFactory, TupleSchemaRegistry registry, int aggregatePartitions,
+        long aggregateLatenessMillis)
     {
       this.dag = dag;
       this.typeFactory = typeFactory;
       this.schemaRegistry = registry;
+      this.aggregatePartitions = aggregatePartitions;
+      this.aggregateLatenessMillis = aggregateLatenessMillis;
     }
   }
 
@@ -148,7 +196,37 @@ public abstract class ApexRelNode
       ApexSQLTable table = modify.getTable().unwrap(ApexSQLTable.class);
 
       Endpoint endpoint = table.getEndpoint();
-      return endpoint.populateOutputDAG(context.dag, context.typeFactory);
+      RelInfo output = endpoint.populateOutputDAG(context.dag, context.typeFactory);
+
+      /**
+       * Calcite omits the projection which renames the columns to the columns of the table when the projection is
+       * otherwise the identity, as for INSERT INTO ... SELECT of the group keys and the aggregates in their order.
+       * The columns are renamed here in that case.
+       */
+      RelDataType inputRowType = modify.getInput().getRowType();
+      if (inputRowType.getFieldNames().equals(output.getOutRelDataType().getFieldNames())) {
+        return output;
+      }
+
+      FilterTransformOperator operator = context.dag
+          .addOperator(OperatorUtils.getUniqueOperatorName(modify.getRelTypeName()), FilterTransformOperator.class);
+      Map<String, String> expMap = new HashMap<>();
+      for (Pair<RelDataTypeField, RelDataTypeField> pair : Pair.zip(output.getOutRelDataType().getFieldList(),
+          inputRowType.getFieldList())) {
+        expMap.put(OperatorUtils.getFieldName(pair.left), OperatorUtils.getFieldName(pair.right));
+      }
+      operator.setExpressionMap(expMap);
+
+      String streamName = OperatorUtils.getUniqueStreamName("Rename", output.getRelName());
+      Class schema = TupleSchemaRegistry.getSchemaForRelDataType(context.schemaRegistry, streamName,
+          output.getOutRelDataType());
+      Operator.InputPort outputPort = output.getInputPorts().get(0);
+      context.dag.setOutputPortAttribute(operator.output, Context.PortContext.TUPLE_CLASS, schema);
+      context.dag.setInputPortAttribute(outputPort, Context.PortContext.TUPLE_CLASS, schema);
+      context.dag.addStream(streamName, operator.output, outputPort);
+
+      return new RelInfo("Rename", Lists.<Operator.InputPort>newArrayList(operator.input), operator, null,
+          inputRowType);
     }
   }
 
@@ -340,4 +418,219 @@ public abstract class ApexRelNode
           innerJoin.outputPort, join.getRowType());
     }
   }
+
+  /**
+   * This is visitor for {@link Aggregate} for adding operators to DAG.
+   *
+   * The aggregation is computed in two stages. The {@link PartialAggregateOperator}, which can be partitioned, computes
+   * the partial aggregates of each streaming window and a {@link KeyedWindowedOperatorImpl} with spillable storage
+   * merges them. When a group key is FLOOR(rowtime TO unit) of a timestamp, the aggregation is done in tumbling
+   * windows of that unit which are emitted when the event time watermark passes them. Otherwise the aggregation is
+   * done in the global window and the updated groups are emitted periodically.
+   */
+  private static class ApexAggregateRel extends ApexRelNode
+  {
+    private static final String STORE_BASE_PATH = "SQLAggregate";
+    private static final long GLOBAL_WINDOW_FIRING_MILLIS = 1000L;
+
+    @Override
+    public RelInfo visit(RelContext context, RelNode node, List<RelInfo> inputStreams)
+    {
+      Aggregate aggregate = (Aggregate)node;
+      if (inputStreams.size() != 1) {
+        throw new UnsupportedOperationException("Aggregate is a SingleRel");
+      }
+
+      if (aggregate.indicator || aggregate.getGroupType() != Aggregate.Group.SIMPLE) {
+        throw new UnsupportedOperationException("Grouping sets are not supported");
+      }
+
+      RelDataType inputRowType = aggregate.getInput().getRowType();
+      List<String> keyFields = new ArrayList<>();
+      int windowKeyIndex = -1;
+      Duration windowDuration = null;
+      for (int groupIndex : aggregate.getGroupSet()) {
+        keyFields.add(OperatorUtils.getFieldName(inputRowType.getFieldList().get(groupIndex)));
+        if (windowDuration == null) {
+          windowDuration = getTumblingWindowDuration(aggregate.getInput(), groupIndex);
+          if (windowDuration != null) {
+            windowKeyIndex = keyFields.size() - 1;
+          }
+        }
+      }
+
+      List<AggregateCall> aggCalls = aggregate.getAggCallList();
+      AggregateAccumulation.Function[] functions = new AggregateAccumulation.Function[aggCalls.size()];
+      boolean[] countNulls = new boolean[aggCalls.size()];
+      List<String> argumentFields = new ArrayList<>();
+      for (int i = 0; i < aggCalls.size(); i++) {
+        AggregateCall aggCall = aggCalls.get(i);
+        if (aggCall.isDistinct()) {
+          throw new UnsupportedOperationException("DISTINCT aggregates are not supported");
+        }
+
+        functions[i] = getFunction(aggCall);
+        if (aggCall.getArgList().isEmpty()) {
+          argumentFields.add(null);
+          countNulls[i] = true;
+        } else if (aggCall.getArgList().size() == 1) {
+          argumentFields.add(OperatorUtils.getFieldName(inputRowType.getFieldList().get(aggCall.getArgList().get(0))));
+        } else {
+          throw new UnsupportedOperationException("Aggregates with multiple arguments are not supported");
+        }
+      }
+
+      List<String> outputFields = new ArrayList<>();
+      for (RelDataTypeField field : aggregate.getRowType().getFieldList()) {
+        outputFields.add(OperatorUtils.getFieldName(field));
+      }
+
+      AggregateAccumulation accumulation = new AggregateAccumulation(functions, countNulls);
+      String relName = aggregate.getRelTypeName();
+
+      PartialAggregateOperator partialAggregate = context.dag
+          .addOperator(OperatorUtils.getUniqueOperatorName(relName + "_Partial"), PartialAggregateOperator.class);
+      partialAggregate.setKeyFields(keyFields);
+      partialAggregate.setArgumentFields(argumentFields);
+      partialAggregate.setWindowKeyIndex(windowKeyIndex);
+      partialAggregate.setAccumulation(accumulation);
+      if (context.aggregatePartitions > 1) {
+        context.dag.setAttribute(partialAggregate, Context.OperatorContext.PARTITIONER,
+            new StatelessPartitioner<PartialAggregateOperator>(context.aggregatePartitions));
+      }
+
+      String windowedName = OperatorUtils.getUniqueOperatorName(relName + "_Window");
+      KeyedWindowedOperatorImpl<List<Object>, Object[], Object[], List<Object>> windowedOperator = context.dag
+          .addOperator(windowedName, createWindowedOperator(windowedName, accumulation.mergingPartials(),
+          windowDuration, context.aggregateLatenessMillis));
+
+      AggregateResultOperator result = context.dag
+          .addOperator(OperatorUtils.getUniqueOperatorName(relName), AggregateResultOperator.class);
+      result.setOutputFields(outputFields);
+
+      context.dag.addStream(OperatorUtils.getUniqueStreamName(relName + "_Partial", relName + "_Window"),
+          partialAggregate.output, windowedOperator.input);
+      context.dag.addStream(OperatorUtils.getUniqueStreamName(relName + "_Window", relName),
+          windowedOperator.output, result.input);
+
+      return new RelInfo("Aggregate", Lists.<Operator.InputPort>newArrayList(partialAggregate.input), result,
+          result.output, aggregate.getRowType());
+    }
+
+    private KeyedWindowedOperatorImpl<List<Object>, Object[], Object[], List<Object>> createWindowedOperator(
+        String name, AggregateAccumulation accumulation, Duration windowDuration, long latenessMillis)
+    {
+      KeyedWindowedOperatorImpl<List<Object>, Object[], Object[], List<Object>> windowedOperator =
+          new KeyedWindowedOperatorImpl<>();
+
+      // The storage of the windows is bucketed by the end of the windows, so the tumbling windows need the time
+      // bucketed store. The end of the global window is not a time, it is stored in a fixed bucket.
+      SpillableStateStore store;
+      FileAccess fileAccess;
+      if (windowDuration != null) {
+        ManagedTimeUnifiedStateSpillableStateStore timeStore = new ManagedTimeUnifiedStateSpillableStateStore();
+        fileAccess = timeStore.getFileAccess();
+        store = timeStore;
+      } else {
+        ManagedStateSpillableStateStore idStore = new ManagedStateSpillableStateStore();
+        fileAccess = idStore.getFileAccess();
+        store = idStore;
+      }
+      ((TFileImpl.DTFileImpl)fileAccess).setBasePath(STORE_BASE_PATH + "/" + name + "/data");
+      SpillableComplexComponentImpl sccImpl = new SpillableComplexComponentImpl(store);
+      windowedOperator.addComponent("SpillableComplexComponent", sccImpl);
+
+      SpillableWindowedKeyedStorage<List<Object>, Object[]> dataStorage = new SpillableWindowedKeyedStorage<>();
+      dataStorage.setSpillableComplexComponent(sccImpl);
+      windowedOperator.setDataStorage(dataStorage);
+      windowedOperator.setWindowStateStorage(new InMemoryWindowedStorage<WindowState>());
+      windowedOperator.setAccumulation(accumulation);
+
+      if (windowDuration != null) {
+        // The window group key is the start of the window. The watermark trails the latest event time by the lateness,
+        // so a window fires once the rows are the lateness past its end and the rows which arrive later are dropped.
+        windowedOperator.setWindowOption(new WindowOption.TimeWindows(windowDuration));
+        windowedOperator.setTriggerOption(TriggerOption.AtWatermark().discardingFiredPanes());
+        windowedOperator.setAllowedLateness(Duration.ZERO);
+        windowedOperator.setImplicitWatermarkGenerator(new FixedDiffEventTimeWatermarkGen(latenessMillis));
+      } else {
+        SpillableWindowedKeyedStorage<List<Object>, List<Object>> retractionStorage =
+            new SpillableWindowedKeyedStorage<>();
+        retractionStorage.setSpillableComplexComponent(sccImpl);
+        windowedOperator.setRetractionStorage(retractionStorage);
+
+        ManagedStateSpillableStateStore updatedKeyStore = new ManagedStateSpillableStateStore();
+        ((TFileImpl.DTFileImpl)updatedKeyStore.getFileAccess())
+            .setBasePath(STORE_BASE_PATH + "/" + name + "/updatedKeys");
+        windowedOperator.setUpdatedKeyStorage(new SpillableSetMultimapImpl<Window, List<Object>>(updatedKeyStore,
+            new byte[] {(byte)1}, 0, new GenericSerde<Window>(), new GenericSerde<List<Object>>()));
+
+        windowedOperator.setWindowOption(new WindowOption.GlobalWindow());
+        windowedOperator.setTriggerOption(TriggerOption.AtWatermark()
+            .withEarlyFiringsAtEvery(Duration.millis(GLOBAL_WINDOW_FIRING_MILLIS)).accumulatingFiredPanes()
+            .firingOnlyUpdatedPanes());
+      }
+
+      return windowedOperator;
+    }
+
+    /**
+     * Returns the duration of the tumbling window if the given field of the input is FLOOR(timestamp TO unit) with
+     * a fixed length unit, null otherwise.
+     */
+    private Duration getTumblingWindowDuration(RelNode input, int fieldIndex)
+    {
+      if (!(input instanceof Project)) {
+        return null;
+      }
+
+      RexNode expression = ((Project)input).getProjects().get(fieldIndex);
+      if (!(expression instanceof RexCall) || expression.getKind() != SqlKind.FLOOR) {
+        return null;
+      }
+
+      List<RexNode> operands = ((RexCall)expression).getOperands();
+      if (operands.size() != 2 || operands.get(0).getType().getSqlTypeName() != SqlTypeName.TIMESTAMP ||
+          !(operands.get(1) instanceof RexLiteral)) {
+        return null;
+      }
+
+      Object unit = ((RexLiteral)operands.get(1)).getValue();
+      if (unit == TimeUnitRange.SECOND) {
+        return Duration.standardSeconds(1);
+      } else if (unit == TimeUnitRange.MINUTE) {
+        return Duration.standardMinutes(1);
+      } else if (unit == TimeUnitRange.HOUR) {
+        return Duration.standardHours(1);
+      } else if (unit == TimeUnitRange.DAY) {
+        return Duration.standardDays(1);
+      }
+
+      // Weeks, months and years are not aligned on fixed length windows, they are aggregated in the global window.
+      return null;
+    }
+
+    private AggregateAccumulation.Function getFunction(AggregateCall aggCall)
+    {
+      if (aggCall.getAggregation() instanceof SqlSumEmptyIsZeroAggFunction) {
+        return AggregateAccumulation.Function.SUM0;
+      }
+
+      switch (aggCall.getAggregation().getKind()) {
+        case COUNT:
+          return AggregateAccumulation.Function.COUNT;
+        case SUM:
+          return AggregateAccumulation.Function.SUM;
+        case MIN:
+          return AggregateAccumulation.Function.MIN;
+        case MAX:
+          return AggregateAccumulation.Function.MAX;
+        case AVG:
+          return AggregateAccumulation.Function.AVG;
+        default:
+          throw new UnsupportedOperationException("Aggregate " + aggCall.getAggregation().getName() +
+              " is not supported");
+      }
+    }
+  }
 }
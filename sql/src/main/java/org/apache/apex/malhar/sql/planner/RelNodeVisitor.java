@@ -44,12 +44,25 @@ public class RelNodeVisitor
   private final DAG dag;
   private final TupleSchemaRegistry tupleSchemaRegistry;
   private final JavaTypeFactory typeFactory;
+  private final int aggregatePartitions;
+  private final long aggregateLatenessMillis;
 
   public RelNodeVisitor(DAG dag, JavaTypeFactory typeFactory)
+  {
+    this(dag, typeFactory, 1, ApexRelNode.RelContext.DEFAULT_AGGREGATE_LATENESS_MILLIS);
+  }
+
+  /**
+   * @param aggregatePartitions Number of partitions of the operators computing the partial aggregates.
+   * @param aggregateLatenessMillis Time in milliseconds by which the rows of tumbling window aggregates may be late.
+   */
+  public RelNodeVisitor(DAG dag, JavaTypeFactory typeFactory, int aggregatePartitions, long aggregateLatenessMillis)
   {
     this.dag = dag;
     this.typeFactory = typeFactory;
     this.tupleSchemaRegistry = new TupleSchemaRegistry();
+    this.aggregatePartitions = aggregatePartitions;
+    this.aggregateLatenessMillis = aggregateLatenessMillis;
   }
 
   /**
@@ -68,7 +81,8 @@ public class RelNodeVisitor
       inputStreams.add(traverse(input));
     }
 
-    ApexRelNode.RelContext relContext = new ApexRelNode.RelContext(dag, typeFactory, tupleSchemaRegistry);
+    ApexRelNode.RelContext relContext = new ApexRelNode.RelContext(dag, typeFactory, tupleSchemaRegistry,
+        aggregatePartitions, aggregateLatenessMillis);
 
     RelInfo currentNodeRelInfo;
     ApexRelNode apexRelNode = ApexRelNode.relNodeMapping.get(relNode.getClass());
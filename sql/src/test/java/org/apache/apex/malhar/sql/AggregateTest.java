@@ -0,0 +1,346 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.apex.malhar.sql;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Date;
+import java.util.List;
+import java.util.Map;
+import java.util.TimeZone;
+
+import javax.validation.ConstraintViolationException;
+
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+import org.apache.apex.malhar.lib.util.PojoUtils;
+import org.apache.apex.malhar.lib.window.impl.KeyedWindowedOperatorImpl;
+import org.apache.apex.malhar.sql.operators.AggregateResultOperator;
+import org.apache.apex.malhar.sql.operators.FilterTransformOperator;
+import org.apache.apex.malhar.sql.operators.PartialAggregateOperator;
+import org.apache.apex.malhar.sql.table.StreamEndpoint;
+
+import org.apache.commons.io.FileUtils;
+import org.apache.hadoop.conf.Configuration;
+
+import com.google.common.collect.ImmutableMap;
+import com.google.common.collect.Lists;
+import com.google.common.collect.Sets;
+
+import com.datatorrent.api.Context;
+import com.datatorrent.api.DAG;
+import com.datatorrent.api.DefaultInputPort;
+import com.datatorrent.api.DefaultOutputPort;
+import com.datatorrent.api.InputOperator;
+import com.datatorrent.api.LocalMode;
+import com.datatorrent.api.Operator;
+import com.datatorrent.api.StreamingApplication;
+import com.datatorrent.common.partitioner.StatelessPartitioner;
+import com.datatorrent.common.util.BaseOperator;
+import com.datatorrent.stram.plan.logical.LogicalPlan;
+
+public class AggregateTest
+{
+  // The grouped columns are named in the case of the table, which Calcite requires to match the grouped expressions.
+  private static final String TUMBLING_WINDOW_SQL = "INSERT INTO SALES SELECT STREAM FLOOR(RowTime TO MINUTE), " +
+      "Product, COUNT(*), SUM(units) FROM ORDERS GROUP BY FLOOR(RowTime TO MINUTE), Product";
+  private static final String GROUP_BY_SQL = "INSERT INTO SALES SELECT Product, COUNT(*), SUM(units) " +
+      "FROM ORDERS GROUP BY Product";
+
+  private TimeZone defaultTZ;
+
+  @Before
+  public void setUp() throws Exception
+  {
+    defaultTZ = TimeZone.getDefault();
+    TimeZone.setDefault(TimeZone.getTimeZone("GMT"));
+    ResultCollector.RESULTS.clear();
+  }
+
+  @After
+  public void tearDown() throws Exception
+  {
+    TimeZone.setDefault(defaultTZ);
+    // the spillable storage of the windowed operators is relative to the working directory in local mode
+    FileUtils.deleteQuietly(new File("SQLAggregate"));
+  }
+
+  @Test
+  public void testTumblingWindowPlan() throws Exception
+  {
+    LogicalPlan dag = new LogicalPlan();
+    new AggregateApplication(TUMBLING_WINDOW_SQL, true, 2).populateDAG(dag, new Configuration(false));
+    dag.validate();
+
+    PartialAggregateOperator partialAggregate = getOperator(dag, PartialAggregateOperator.class);
+    Assert.assertEquals(2, partialAggregate.getKeyFields().size());
+    Assert.assertEquals("window key index", 0, partialAggregate.getWindowKeyIndex());
+    Assert.assertEquals(Lists.newArrayList(null, "units"), partialAggregate.getArgumentFields());
+    Assert.assertTrue(dag.getMeta(partialAggregate).getValue(Context.OperatorContext.PARTITIONER)
+        instanceof StatelessPartitioner);
+    Assert.assertTrue(dag.getMeta(partialAggregate).getMeta(partialAggregate.output).getUnifier()
+        instanceof PartialAggregateOperator.PartialAggregateUnifier);
+
+    KeyedWindowedOperatorImpl windowedOperator = getOperator(dag, KeyedWindowedOperatorImpl.class);
+    AggregateResultOperator result = getOperator(dag, AggregateResultOperator.class);
+    Assert.assertEquals(4, result.getOutputFields().size());
+
+    // the result fields are renamed to the fields of the table
+    FilterTransformOperator rename = (FilterTransformOperator)getSinkOperator(dag, result.output);
+    Assert.assertEquals(Sets.newHashSet("RowTimeMs", "Product", "OrderCount", "TotalUnits"),
+        rename.getExpressionMap().keySet());
+
+    Assert.assertSame(windowedOperator.input, getSink(dag, partialAggregate.output));
+    Assert.assertSame(result.input, getSink(dag, windowedOperator.output));
+    Assert.assertSame(getOperator(dag, ResultCollector.class).input, getSink(dag, rename.output));
+  }
+
+  @Test
+  public void testGroupByPlan() throws Exception
+  {
+    LogicalPlan dag = new LogicalPlan();
+    new AggregateApplication(GROUP_BY_SQL, false, 1).populateDAG(dag, new Configuration(false));
+    dag.validate();
+
+    PartialAggregateOperator partialAggregate = getOperator(dag, PartialAggregateOperator.class);
+    Assert.assertEquals(Lists.newArrayList("Product"), partialAggregate.getKeyFields());
+    Assert.assertEquals("window key index", -1, partialAggregate.getWindowKeyIndex());
+    Assert.assertNull(dag.getMeta(partialAggregate).getValue(Context.OperatorContext.PARTITIONER));
+
+    KeyedWindowedOperatorImpl windowedOperator = getOperator(dag, KeyedWindowedOperatorImpl.class);
+    AggregateResultOperator result = getOperator(dag, AggregateResultOperator.class);
+    Assert.assertEquals(3, result.getOutputFields().size());
+
+    FilterTransformOperator rename = (FilterTransformOperator)getSinkOperator(dag, result.output);
+    Assert.assertEquals(Sets.newHashSet("Product", "OrderCount", "TotalUnits"), rename.getExpressionMap().keySet());
+
+    Assert.assertSame(windowedOperator.input, getSink(dag, partialAggregate.output));
+    Assert.assertSame(result.input, getSink(dag, windowedOperator.output));
+    Assert.assertSame(getOperator(dag, ResultCollector.class).input, getSink(dag, rename.output));
+  }
+
+  @Test
+  public void testTumblingWindowApplication() throws Exception
+  {
+    try {
+      LocalMode lma = LocalMode.newInstance();
+      lma.prepareDAG(new AggregateApplication(TUMBLING_WINDOW_SQL, true, 2), new Configuration(false));
+      LocalMode.Controller lc = lma.getController();
+      lc.runAsync();
+
+      long timeout = System.currentTimeMillis() + 60000;
+      while (ResultCollector.getResults().size() < 3 && System.currentTimeMillis() < timeout) {
+        Thread.sleep(500);
+      }
+
+      lc.shutdown();
+    } catch (ConstraintViolationException e) {
+      Assert.fail("constraint violations: " + e.getConstraintViolations());
+    }
+
+    // The watermark is the start of the latest window, 10:18, so that window is not emitted.
+    List<String> results = ResultCollector.getResults();
+    Collections.sort(results);
+    Assert.assertEquals(Lists.newArrayList("Mon Feb 15 10:15:00 GMT 2016,paint1,2,3",
+        "Mon Feb 15 10:15:00 GMT 2016,paint2,1,5", "Mon Feb 15 10:16:00 GMT 2016,paint1,1,7"), results);
+  }
+
+  private static <T> T getOperator(LogicalPlan dag, Class<T> operatorClass)
+  {
+    T operator = null;
+    for (LogicalPlan.OperatorMeta operatorMeta : dag.getAllOperators()) {
+      if (operatorClass.isInstance(operatorMeta.getOperator())) {
+        Assert.assertNull("more than one " + operatorClass.getSimpleName(), operator);
+        operator = operatorClass.cast(operatorMeta.getOperator());
+      }
+    }
+
+    Assert.assertNotNull("no " + operatorClass.getSimpleName(), operator);
+    return operator;
+  }
+
+  private static Operator.InputPort<?> getSink(LogicalPlan dag, Operator.OutputPort<?> port)
+  {
+    return getSinkMeta(dag, port).getPort();
+  }
+
+  private static Operator getSinkOperator(LogicalPlan dag, Operator.OutputPort<?> port)
+  {
+    return getSinkMeta(dag, port).getOperatorMeta().getOperator();
+  }
+
+  private static LogicalPlan.InputPortMeta getSinkMeta(LogicalPlan dag, Operator.OutputPort<?> port)
+  {
+    for (LogicalPlan.StreamMeta stream : dag.getAllStreams()) {
+      if (stream.getSource().getPort() == port) {
+        Assert.assertEquals(1, stream.getSinks().size());
+        return stream.getSinks().iterator().next();
+      }
+    }
+
+    Assert.fail("no stream from " + port);
+    return null;
+  }
+
+  public static class AggregateApplication implements StreamingApplication
+  {
+    private final String sql;
+    private final boolean tumblingWindow;
+    private final int partitions;
+
+    public AggregateApplication(String sql, boolean tumblingWindow, int partitions)
+    {
+      this.sql = sql;
+      this.tumblingWindow = tumblingWindow;
+      this.partitions = partitions;
+    }
+
+    @Override
+    public void populateDAG(DAG dag, Configuration conf)
+    {
+      OrderGenerator orders = dag.addOperator("OrderGenerator", OrderGenerator.class);
+      ResultCollector collector = dag.addOperator("ResultCollector", ResultCollector.class);
+
+      Map<String, Class> salesFields = tumblingWindow ?
+          ImmutableMap.<String, Class>of("RowTime", Date.class, "Product", String.class, "OrderCount", Long.class,
+          "TotalUnits", Integer.class) :
+          ImmutableMap.<String, Class>of("Product", String.class, "OrderCount", Long.class, "TotalUnits",
+          Integer.class);
+      collector.setFields(Lists.newArrayList(salesFields.keySet()));
+
+      SQLExecEnvironment.getEnvironment()
+          .registerTable("ORDERS", new StreamEndpoint(orders.output, InputPOJO.class))
+          .registerTable("SALES", new StreamEndpoint(collector.input, salesFields))
+          .withAggregatePartitions(partitions)
+          .withAggregateLateness(0)
+          .executeSQL(dag, sql);
+    }
+  }
+
+  /**
+   * Emits the orders once, as instances of the tuple class of its port.
+   */
+  public static class OrderGenerator extends BaseOperator implements InputOperator
+  {
+    private static final long MINUTE = 60000L;
+    private static final long START = 1455531300000L; // 15/02/2016 10:15:00 GMT
+
+    private boolean emitted;
+    private transient Class<?> tupleClass;
+
+    public final transient DefaultOutputPort<Object> output = new DefaultOutputPort<Object>()
+    {
+      @Override
+      public void setup(Context.PortContext context)
+      {
+        tupleClass = context.getValue(Context.PortContext.TUPLE_CLASS);
+      }
+    };
+
+    @Override
+    public void emitTuples()
+    {
+      if (emitted) {
+        return;
+      }
+
+      emitted = true;
+      emit(START + 1000, 1, "paint1", 1);
+      emit(START + 20000, 2, "paint2", 5);
+      emit(START + 59000, 3, "paint1", 2);
+      emit(START + MINUTE + 30000, 4, "paint1", 7);
+      emit(START + 3 * MINUTE, 5, "paint2", 11);
+    }
+
+    private void emit(long rowTime, int id, String product, int units)
+    {
+      try {
+        Object order = tupleClass.newInstance();
+        PojoUtils.createSetter(tupleClass, "RowTime", Date.class).set(order, new Date(rowTime));
+        PojoUtils.createSetterInt(tupleClass, "id").set(order, id);
+        PojoUtils.createSetter(tupleClass, "Product", String.class).set(order, product);
+        PojoUtils.createSetterInt(tupleClass, "units").set(order, units);
+        output.emit(order);
+      } catch (InstantiationException | IllegalAccessException e) {
+        throw new RuntimeException(e);
+      }
+    }
+  }
+
+  /**
+   * Collects the fields of the results, separated by commas.
+   */
+  public static class ResultCollector extends BaseOperator
+  {
+    private static final List<String> RESULTS = new ArrayList<>();
+
+    private List<String> fields;
+    private transient List<PojoUtils.Getter> getters;
+
+    public final transient DefaultInputPort<Object> input = new DefaultInputPort<Object>()
+    {
+      @Override
+      public void setup(Context.PortContext context)
+      {
+        Class<?> tupleClass = context.getValue(Context.PortContext.TUPLE_CLASS);
+        getters = new ArrayList<>();
+        for (String field : fields) {
+          getters.add(PojoUtils.createGetter(tupleClass, field, Object.class));
+        }
+      }
+
+      @Override
+      public void process(Object tuple)
+      {
+        StringBuilder result = new StringBuilder();
+        for (PojoUtils.Getter getter : getters) {
+          if (result.length() > 0) {
+            result.append(',');
+          }
+          result.append(getter.get(tuple));
+        }
+
+        synchronized (RESULTS) {
+          RESULTS.add(result.toString());
+        }
+      }
+    };
+
+    public void setFields(List<String> fields)
+    {
+      this.fields = fields;
+    }
+
+    public List<String> getFields()
+    {
+      return fields;
+    }
+
+    static List<String> getResults()
+    {
+      synchronized (RESULTS) {
+        return new ArrayList<>(RESULTS);
+      }
+    }
+  }
+}
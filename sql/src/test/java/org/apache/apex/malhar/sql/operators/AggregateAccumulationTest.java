@@ -0,0 +1,93 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.apex.malhar.sql.operators;
+
+import java.util.Arrays;
+import java.util.List;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+public class AggregateAccumulationTest
+{
+  private static final AggregateAccumulation.Function[] FUNCTIONS = {AggregateAccumulation.Function.COUNT,
+      AggregateAccumulation.Function.COUNT, AggregateAccumulation.Function.SUM, AggregateAccumulation.Function.SUM0,
+      AggregateAccumulation.Function.MIN, AggregateAccumulation.Function.MAX, AggregateAccumulation.Function.AVG};
+  private static final boolean[] COUNT_NULLS = {true, false, false, false, false, false, false};
+
+  @Test
+  public void testAccumulate()
+  {
+    AggregateAccumulation accumulation = new AggregateAccumulation(FUNCTIONS, COUNT_NULLS);
+    Object[] accumulatedValue = accumulation.defaultAccumulatedValue();
+    Assert.assertEquals(Arrays.<Object>asList(0L, 0L, null, 0L, null, null, null),
+        accumulation.getOutput(accumulatedValue));
+
+    accumulatedValue = accumulation.accumulate(accumulatedValue, row(3));
+    accumulatedValue = accumulation.accumulate(accumulatedValue, row(null));
+    accumulatedValue = accumulation.accumulate(accumulatedValue, row(7));
+    accumulatedValue = accumulation.accumulate(accumulatedValue, row(2));
+
+    Assert.assertEquals(Arrays.<Object>asList(4L, 3L, 12L, 12L, 2, 7, 4.0), accumulation.getOutput(accumulatedValue));
+  }
+
+  @Test
+  public void testSumOfDecimals()
+  {
+    AggregateAccumulation accumulation = new AggregateAccumulation(
+        new AggregateAccumulation.Function[] {AggregateAccumulation.Function.SUM}, new boolean[] {false});
+    Object[] accumulatedValue = accumulation.defaultAccumulatedValue();
+    accumulatedValue = accumulation.accumulate(accumulatedValue, new Object[] {2});
+    accumulatedValue = accumulation.accumulate(accumulatedValue, new Object[] {1.5});
+
+    Assert.assertEquals(Arrays.<Object>asList(3.5), accumulation.getOutput(accumulatedValue));
+  }
+
+  @Test
+  public void testMergePartials()
+  {
+    AggregateAccumulation accumulation = new AggregateAccumulation(FUNCTIONS, COUNT_NULLS);
+    Object[] partial1 = accumulation.defaultAccumulatedValue();
+    partial1 = accumulation.accumulate(partial1, row(3));
+    partial1 = accumulation.accumulate(partial1, row(null));
+    Object[] partial2 = accumulation.defaultAccumulatedValue();
+    partial2 = accumulation.accumulate(partial2, row(7));
+    partial2 = accumulation.accumulate(partial2, row(2));
+    Object[] partial3 = accumulation.defaultAccumulatedValue();
+
+    AggregateAccumulation merging = accumulation.mergingPartials();
+    Assert.assertTrue(merging.isMergingPartials());
+    Object[] accumulatedValue = merging.defaultAccumulatedValue();
+    accumulatedValue = merging.accumulate(accumulatedValue, partial1);
+    accumulatedValue = merging.accumulate(accumulatedValue, partial2);
+    accumulatedValue = merging.accumulate(accumulatedValue, partial3);
+
+    List<Object> output = merging.getOutput(accumulatedValue);
+    Assert.assertEquals(Arrays.<Object>asList(4L, 3L, 12L, 12L, 2, 7, 4.0), output);
+  }
+
+  private static Object[] row(Integer value)
+  {
+    Object[] row = new Object[FUNCTIONS.length];
+    for (int index = 1; index < row.length; index++) {
+      row[index] = value;
+    }
+    return row;
+  }
+}